@@ -0,0 +1,162 @@
+package csvwrangler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Generator plików CSV dla testów wydajności. Dane zależą wyłącznie od parametrów
+ * (stałe ziarno generatora), więc wyniki są powtarzalne i nie wymagają pobierania
+ * plików. Wygenerowany plik zapamiętywany jest w katalogu tymczasowym i używany
+ * ponownie przez kolejne uruchomienia.
+ * <p>
+ * Kolumny powtarzają się w cyklu: liczba całkowita, liczba zmiennoprzecinkowa, data,
+ * kategoria (mało różnych wartości), tekst, wartość logiczna.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public final class BenchmarkData {
+    /** Ziarno generatora - takie samo dla wszystkich rozmiarów */
+    private static final long SEED = 20_240_101L;
+    /** Liczba rodzajów kolumn w cyklu */
+    static final int COLUMN_KINDS = 6;
+    /** Indeks (w cyklu) kolumny kategorii */
+    static final int CATEGORY_COLUMN = 3;
+    /** Indeks (w cyklu) kolumny tekstowej */
+    static final int TEXT_COLUMN = 4;
+    /** Liczba różnych wartości kolumny kategorii */
+    static final int CATEGORIES = 50;
+
+    private static final Path DIRECTORY = Path.of(System.getProperty("java.io.tmpdir"), "csvwrangler-bench");
+
+    /**
+     * Sposób cytowania pól.
+     */
+    public enum Quoting {
+        /** Bez cudzysłowów - pola nie zawierają separatorów ani cudzysłowów */
+        NONE,
+        /** Część pól tekstowych zawiera separator, cudzysłów lub znak nowego wiersza */
+        SOME,
+        /** Wszystkie pola w cudzysłowach */
+        ALL
+    }
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Zwraca plik o zadanych parametrach, generując go przy pierwszym użyciu.
+     *
+     * @param rows liczba wierszy danych (bez nagłówka)
+     * @param columns liczba kolumn
+     * @param quoting sposób cytowania pól
+     * @param separator separator pól
+     * @return plik CSV z nagłówkiem
+     * @throws IOException jeśli nie uda się zapisać pliku
+     */
+    static File file(int rows, int columns, Quoting quoting, char separator) throws IOException {
+        String name = "rows-" + rows + "-cols-" + columns + "-" + quoting.name().toLowerCase(Locale.ROOT)
+                + "-" + (int) separator + ".csv";
+        Path file = DIRECTORY.resolve(name);
+        if (Files.exists(file)) {
+            return file.toFile();
+        }
+        Files.createDirectories(DIRECTORY);
+        Path temp = Files.createTempFile(DIRECTORY, name, ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            write(writer, rows, columns, quoting, separator);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file.toFile();
+    }
+
+    /**
+     * Zwraca nazwę kolumny o podanym indeksie.
+     *
+     * @param column indeks kolumny
+     * @return nazwa kolumny
+     */
+    static String columnName(int column) {
+        String kind = switch (column % COLUMN_KINDS) {
+            case 0 -> "liczba";
+            case 1 -> "kwota";
+            case 2 -> "data";
+            case CATEGORY_COLUMN -> "kategoria";
+            case TEXT_COLUMN -> "opis";
+            default -> "flaga";
+        };
+        return kind + "_" + (column + 1);
+    }
+
+    private static void write(Writer writer, int rows, int columns, Quoting quoting, char separator)
+            throws IOException {
+        SplittableRandom random = new SplittableRandom(SEED);
+        StringBuilder line = new StringBuilder(columns * 16);
+        for (int col = 0; col < columns; col++) {
+            appendField(line, col, columnName(col), quoting == Quoting.ALL, separator);
+        }
+        writer.write(line.append('\n').toString());
+        for (int row = 0; row < rows; row++) {
+            line.setLength(0);
+            for (int col = 0; col < columns; col++) {
+                appendField(line, col, value(random, row, col % COLUMN_KINDS, quoting, separator),
+                        quoting == Quoting.ALL, separator);
+            }
+            writer.write(line.append('\n').toString());
+        }
+    }
+
+    private static String value(SplittableRandom random, int row, int kind, Quoting quoting, char separator) {
+        return switch (kind) {
+            case 0 -> Integer.toString(row);
+            case 1 -> Double.toString(random.nextInt(10_000_000) / 100.0);
+            case 2 -> LocalDate.ofEpochDay(18_000 + random.nextInt(3_650)).toString();
+            case CATEGORY_COLUMN -> "kat" + random.nextInt(CATEGORIES);
+            case TEXT_COLUMN -> {
+                String text = "opis " + Long.toString(random.nextLong() >>> 24, 36);
+                if (quoting == Quoting.SOME) {
+                    int special = random.nextInt(64);
+                    if (special == 0) {
+                        text += "\nciąg dalszy";
+                    } else if (special < 8) {
+                        text += separator + " \"" + Integer.toString(random.nextInt(1000), 36) + '"';
+                    }
+                }
+                yield text;
+            }
+            default -> random.nextBoolean() ? "true" : "false";
+        };
+    }
+
+    private static void appendField(StringBuilder line, int column, String value, boolean quoteAll, char separator) {
+        if (column > 0) {
+            line.append(separator);
+        }
+        boolean quote = quoteAll || value.indexOf(separator) >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+}
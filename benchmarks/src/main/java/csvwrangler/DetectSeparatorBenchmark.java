@@ -0,0 +1,62 @@
+package csvwrangler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wydajność wykrywania separatora ({@link CSVRecordReader#detectSeparator(File)}).
+ * Wykrywanie czyta tylko początek pliku, więc rozmiar pliku jest stały.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DetectSeparatorBenchmark {
+    @Param({",", ";", "\t"})
+    public char separator;
+
+    @Param({"6", "24"})
+    public int columns;
+
+    @Param({"NONE", "SOME", "ALL"})
+    public BenchmarkData.Quoting quoting;
+
+    private File file;
+
+    /**
+     * Generuje (lub odnajduje) plik danych.
+     *
+     * @throws IOException jeśli nie uda się zapisać pliku
+     */
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        file = BenchmarkData.file(10_000, columns, quoting, separator);
+    }
+
+    /**
+     * Wykrywa separator pliku.
+     */
+    @Benchmark
+    public char detectSeparator() {
+        return CSVRecordReader.detectSeparator(file);
+    }
+}
@@ -0,0 +1,99 @@
+package csvwrangler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wydajność filtrowania ({@code CSVController.filterData}) dla każdego operatora.
+ * "zawiera (skan)" to wartość krótsza niż trigram - sprawdzana bez indeksu.
+ * {@link #filter} mierzy filtrowanie z gotowymi indeksami kolumn, a
+ * {@link #filterWithIndexBuild} - pierwsze filtrowanie, łącznie z budową indeksu.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g"})
+public class FilterBenchmark {
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"równa się", "zaczyna się", "zawiera", "zawiera (skan)"})
+    public String operator;
+
+    private CSVTableModel model;
+    private int column;
+    private String filterOperator;
+    private String value;
+
+    /**
+     * Wczytuje plik danych i dobiera kolumnę oraz wartość do operatora.
+     */
+    @Setup(Level.Trial)
+    public void load() throws IOException, InterruptedException {
+        File file = BenchmarkData.file(rows, BenchmarkData.COLUMN_KINDS, BenchmarkData.Quoting.NONE, ',');
+        model = new CSVTableModel();
+        CSVLoader.load(model, file, ',');
+        switch (operator) {
+            case "równa się" -> {
+                column = BenchmarkData.CATEGORY_COLUMN;
+                filterOperator = operator;
+                value = "kat7";
+            }
+            case "zaczyna się" -> {
+                column = BenchmarkData.CATEGORY_COLUMN;
+                filterOperator = operator;
+                value = "kat1";
+            }
+            case "zawiera" -> {
+                column = BenchmarkData.TEXT_COLUMN;
+                filterOperator = operator;
+                value = "ab1";
+            }
+            default -> {
+                column = BenchmarkData.TEXT_COLUMN;
+                filterOperator = "zawiera";
+                value = "ab";
+            }
+        }
+        filter(new RowCounter());
+    }
+
+    /**
+     * Filtruje model z gotowymi indeksami kolumn.
+     */
+    @Benchmark
+    public BitSet filter(RowCounter counter) {
+        counter.rows += model.getBaseRowCount();
+        return CSVController.filterRows(model, column, filterOperator, value, null, false, rows -> { }, () -> false);
+    }
+
+    /**
+     * Filtruje kopię modelu bez indeksów - mierzy pierwsze filtrowanie po wczytaniu.
+     */
+    @Benchmark
+    public BitSet filterWithIndexBuild(RowCounter counter) throws CloneNotSupportedException {
+        CSVTableModel copy = (CSVTableModel) model.clone();
+        counter.rows += copy.getBaseRowCount();
+        return CSVController.filterRows(copy, column, filterOperator, value, null, false, rows -> { }, () -> false);
+    }
+}
@@ -0,0 +1,73 @@
+package csvwrangler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wydajność grupowania ({@link GroupBy}) według kategorii (mało grup), kategorii i flagi
+ * oraz unikalnej liczby (grupa na każdy wiersz). Wczytywane są tylko potrzebne kolumny.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g"})
+public class GroupByBenchmark {
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"kategoria_4", "kategoria_4, flaga_6", "liczba_1"})
+    public String keys;
+
+    @Param({"count", "count, sum(kwota_2), avg(kwota_2)", "min(data_3), max(kwota_2), distinct(liczba_1)"})
+    public String aggregates;
+
+    private CSVTableModel model;
+    private int[] keyColumns;
+    private List<GroupBy.Aggregate> functions;
+
+    /**
+     * Wczytuje kolumny grupowania i agregatów z pliku danych.
+     */
+    @Setup(Level.Trial)
+    public void load() throws IOException, InterruptedException, ParseException {
+        File file = BenchmarkData.file(rows, BenchmarkData.COLUMN_KINDS, BenchmarkData.Quoting.NONE, ',');
+        String[] names = new String[BenchmarkData.COLUMN_KINDS];
+        for (int col = 0; col < names.length; col++) {
+            names[col] = BenchmarkData.columnName(col);
+        }
+        keyColumns = ExternalSort.parseColumns(keys, names);
+        functions = GroupBy.parseAggregates(aggregates, names);
+        model = new CSVTableModel();
+        CSVLoader.load(model, file, ',', GroupBy.getColumns(keyColumns, functions));
+    }
+
+    /**
+     * Grupuje wszystkie wiersze modelu.
+     */
+    @Benchmark
+    public CSVTableModel groupBy(RowCounter counter) throws ParseException {
+        counter.rows += model.getBaseRowCount();
+        return new GroupBy().aggregate(model, keyColumns, functions, null, () -> false, rows -> { });
+    }
+}
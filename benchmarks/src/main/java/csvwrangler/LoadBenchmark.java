@@ -0,0 +1,64 @@
+package csvwrangler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wydajność wczytywania pliku do modelu - ta sama ścieżka co {@code CSVController.loadCSV}
+ * (parsowanie, rozpoznawanie typów i kodowanie kolumn), bez widoku.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g"})
+public class LoadBenchmark {
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"6", "24"})
+    public int columns;
+
+    @Param({"NONE", "SOME", "ALL"})
+    public BenchmarkData.Quoting quoting;
+
+    private File file;
+
+    /**
+     * Generuje (lub odnajduje) plik danych.
+     *
+     * @throws IOException jeśli nie uda się zapisać pliku
+     */
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        file = BenchmarkData.file(rows, columns, quoting, ',');
+    }
+
+    /**
+     * Wczytuje cały plik do nowego modelu.
+     */
+    @Benchmark
+    public CSVTableModel loadCSV(RowCounter counter) throws IOException, InterruptedException {
+        CSVTableModel model = new CSVTableModel();
+        counter.rows += CSVLoader.load(model, file);
+        return model;
+    }
+}
@@ -0,0 +1,93 @@
+package csvwrangler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wydajność operacji na wczytanym modelu: rozpoznawania typów kolumn, klonowania
+ * i zapisu do pliku (ta sama ścieżka co {@code CSVController.saveToFile}).
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g"})
+public class ModelBenchmark {
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"6", "24"})
+    public int columns;
+
+    @Param({"NONE", "SOME", "ALL"})
+    public BenchmarkData.Quoting quoting;
+
+    private CSVTableModel model;
+    private File output;
+
+    /**
+     * Wczytuje plik danych do modelu.
+     */
+    @Setup(Level.Trial)
+    public void load() throws IOException, InterruptedException {
+        File file = BenchmarkData.file(rows, columns, quoting, ',');
+        model = new CSVTableModel();
+        CSVLoader.load(model, file, ',');
+        output = File.createTempFile("csvwrangler-bench-save", ".csv");
+    }
+
+    /**
+     * Usuwa plik wynikowy zapisu.
+     */
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(output.toPath());
+    }
+
+    /**
+     * Rozpoznaje typy wszystkich kolumn (jeden przebieg po danych).
+     */
+    @Benchmark
+    public void analyzeColumnTypes(RowCounter counter) {
+        model.analyzeColumnTypes();
+        counter.rows += model.getRowCount();
+    }
+
+    /**
+     * Klonuje model (kolumny współdzielone do pierwszej modyfikacji).
+     */
+    @Benchmark
+    public Object cloneModel(RowCounter counter) throws CloneNotSupportedException {
+        counter.rows += model.getRowCount();
+        return model.clone();
+    }
+
+    /**
+     * Zapisuje model do pliku CSV.
+     */
+    @Benchmark
+    public void saveToFile(RowCounter counter) throws IOException {
+        CSVController.writeCSV(model, output, written -> { }, () -> false);
+        counter.rows += model.getRowCount();
+    }
+}
@@ -0,0 +1,29 @@
+package csvwrangler;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Dodatkowy licznik JMH - liczba przetworzonych wierszy, raportowana jako
+ * przepustowość w wierszach na sekundę obok liczby operacji.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class RowCounter {
+    /** Liczba wierszy przetworzonych w bieżącej iteracji */
+    public long rows;
+
+    /**
+     * Zeruje licznik przed iteracją.
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+        rows = 0;
+    }
+}
@@ -0,0 +1,91 @@
+package csvwrangler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsowanie rekordów przez {@link CSVTokenizer} w porównaniu z dawnym podziałem
+ * każdego wiersza przez {@code String.split} (pierwotne {@code CSVController.loadCSV}).
+ * Obie metody czytają ten sam plik i tworzą tablicę pól dla każdego rekordu, bez modelu
+ * i rozpoznawania typów. Plik nie zawiera cudzysłowów, bo {@code String.split} ich nie
+ * obsługuje - na takich danych obie metody dają te same pola.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g"})
+public class TokenizerBenchmark {
+    private static final char SEPARATOR = ',';
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"6", "24"})
+    public int columns;
+
+    private File file;
+
+    /**
+     * Generuje (lub odnajduje) plik danych.
+     *
+     * @throws IOException jeśli nie uda się zapisać pliku
+     */
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        file = BenchmarkData.file(rows, columns, BenchmarkData.Quoting.NONE, SEPARATOR);
+    }
+
+    /**
+     * Dzieli plik na rekordy automatem {@link CSVTokenizer}.
+     */
+    @Benchmark
+    public void tokenizer(RowCounter counter, Blackhole blackhole) throws IOException {
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            CSVTokenizer tokenizer = new CSVTokenizer(reader, SEPARATOR);
+            while (tokenizer.nextRecord()) {
+                blackhole.consume(tokenizer.toArray());
+                counter.rows++;
+            }
+        }
+    }
+
+    /**
+     * Dzieli plik na wiersze i pola tak jak przed wprowadzeniem tokenizera.
+     */
+    @Benchmark
+    public void split(RowCounter counter, Blackhole blackhole) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String separator = String.valueOf(SEPARATOR);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                blackhole.consume(line.split(separator, -1));
+                counter.rows++;
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package csvwrangler;
+
+import javax.swing.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Operacja kontrolera wykonywana poza wątkiem EDT.
+ * Postęp i komunikaty statusu zgłaszane z wątku roboczego są łączone i trafiają do
+ * widoku co najwyżej raz na zdarzenie EDT, a wyniki częściowe publikowane są paczkami
+ * (metody {@code publish}/{@code process}), dzięki czemu zmiany modelu wykonywane są w EDT
+ * grupowo. Zakończenie operacji rozdzielane jest na {@link #succeeded(Object)},
+ * {@link #cancelled()} i {@link #failed(Throwable)}. Jeśli pomiary są włączone, operacja
+ * zapisuje swój pomiar ({@link Metrics}) - czas obsługi zakończenia w EDT liczony jest
+ * jako blokowanie interfejsu.
+ *
+ * @param <T> typ wyniku operacji
+ * @param <V> typ wyników częściowych
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public abstract class BackgroundTask<T, V> extends SwingWorker<T, V> {
+    protected final CSVWranglerApp view;
+    private final AtomicReference<String> pendingStatus = new AtomicReference<>();
+    private volatile Metrics.Operation operation = Metrics.NONE;
+
+    /**
+     * Tworzy operację raportującą postęp we wskazanym widoku.
+     *
+     * @param view widok, w którym wyświetlany jest postęp i status
+     */
+    protected BackgroundTask(CSVWranglerApp view) {
+        this.view = view;
+        addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName()) && !isDone()) {
+                view.setProgress((Integer) e.getNewValue());
+            }
+        });
+    }
+
+    /**
+     * Ustawia pomiar operacji (przed jej uruchomieniem).
+     *
+     * @param operation mierzona operacja
+     */
+    void setOperation(Metrics.Operation operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Zwraca pomiar operacji, do którego można dopisać przetworzone wiersze i bajty
+     * (pusty, jeśli pomiary są wyłączone).
+     *
+     * @return mierzona operacja
+     */
+    protected Metrics.Operation operation() {
+        return operation;
+    }
+
+    /**
+     * Zgłasza postęp operacji (można wywoływać z dowolnego wątku).
+     *
+     * @param done wykonana część pracy (np. liczba bajtów)
+     * @param total cała praca
+     */
+    protected void reportProgress(long done, long total) {
+        setProgress((int) Math.max(0, Math.min(100, done * 100 / Math.max(1, total))));
+    }
+
+    /**
+     * Zgłasza komunikat statusu (można wywoływać z dowolnego wątku).
+     * Jeśli EDT nie zdążył wyświetlić poprzedniego komunikatu, zostaje on zastąpiony.
+     *
+     * @param message komunikat
+     */
+    protected void reportStatus(String message) {
+        if (pendingStatus.getAndSet(message) == null) {
+            SwingUtilities.invokeLater(() -> {
+                String latest = pendingStatus.getAndSet(null);
+                if (!isDone()) {
+                    view.setStatusMessage(latest);
+                }
+            });
+        }
+    }
+
+    /**
+     * Kończy operację (wywoływane w EDT) - ukrywa pasek postępu i przekazuje wynik.
+     */
+    @Override
+    protected final void done() {
+        long start = System.nanoTime();
+        String outcome = "ok";
+        try {
+            view.setProgress(-1);
+            if (isCancelled()) {
+                outcome = "przerwano";
+                cancelled();
+                return;
+            }
+            try {
+                succeeded(get());
+            } catch (InterruptedException e) {
+                outcome = "przerwano";
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                outcome = "błąd";
+                failed(e.getCause());
+            }
+        } finally {
+            operation.edt(System.nanoTime() - start);
+            operation.end(outcome);
+        }
+    }
+
+    /**
+     * Obsługuje poprawne zakończenie operacji (wywoływane w EDT).
+     *
+     * @param result wynik operacji
+     */
+    protected abstract void succeeded(T result);
+
+    /**
+     * Obsługuje przerwanie operacji (wywoływane w EDT).
+     */
+    protected void cancelled() {
+        view.setStatusMessage(" Przerwano operację");
+    }
+
+    /**
+     * Obsługuje błąd operacji (wywoływane w EDT).
+     *
+     * @param cause wyjątek zgłoszony przez operację
+     */
+    protected void failed(Throwable cause) {
+        view.showErrorMessage("Błąd operacji: " + cause.getMessage());
+    }
+}
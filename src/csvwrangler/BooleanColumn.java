@@ -0,0 +1,85 @@
+package csvwrangler;
+
+import java.util.Arrays;
+
+/**
+ * Kolumna wartości logicznych przechowywana jako mapa bitowa (jeden bit na komórkę).
+ * Przyjmuje obiekty Boolean oraz teksty "true" i "false".
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+class BooleanColumn extends Column {
+
+    @Override
+    Object get(int row) {
+        return isNull(row) ? null : getBoolean(row);
+    }
+
+    /**
+     * Zwraca wartość komórki bez opakowywania w obiekt.
+     *
+     * @param row indeks wiersza
+     * @return wartość (false dla pustej komórki)
+     */
+    boolean getBoolean(int row) {
+        long[] bits = (long[]) chunks[row >>> CHUNK_SHIFT];
+        int i = row & CHUNK_MASK;
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        boolean isNull = isEmpty(value);
+        boolean flag = !isNull && (value instanceof Boolean b ? b : value.toString().equals("true"));
+        long[] bits = (long[]) chunks[row >>> CHUNK_SHIFT];
+        int i = row & CHUNK_MASK;
+        if (flag) {
+            bits[i >>> 6] |= 1L << i;
+        } else {
+            bits[i >>> 6] &= ~(1L << i);
+        }
+        setNull(row, isNull);
+    }
+
+    @Override
+    boolean canStore(Object value) {
+        return isEmpty(value) || value instanceof Boolean || (value instanceof String s && ColumnType.isBoolean(s));
+    }
+
+    @Override
+    ColumnType getType() {
+        return ColumnType.BOOLEAN;
+    }
+
+    @Override
+    protected Column newEmpty() {
+        return new BooleanColumn();
+    }
+
+    @Override
+    protected Object newChunk(int capacity) {
+        return new long[(capacity + 63) >>> 6];
+    }
+
+    @Override
+    protected Object copyChunk(Object chunk, int capacity) {
+        return Arrays.copyOf((long[]) chunk, (capacity + 63) >>> 6);
+    }
+
+    @Override
+    protected int chunkCapacity(Object chunk) {
+        return ((long[]) chunk).length << 6;
+    }
+
+    @Override
+    protected void moveValue(int from, int to) {
+        long[] bits = (long[]) chunks[to >>> CHUNK_SHIFT];
+        int i = to & CHUNK_MASK;
+        if (getBoolean(from)) {
+            bits[i >>> 6] |= 1L << i;
+        } else {
+            bits[i >>> 6] &= ~(1L << i);
+        }
+    }
+}
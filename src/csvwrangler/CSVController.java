@@ -1,24 +1,43 @@
 package csvwrangler;
 
 import javax.swing.*;
+import javax.swing.undo.UndoManager;
 import java.io.*;
+import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
 
 /**
- * Kontroler aplikacji CSV Data Wrangler - pośredniczy między widokiem a modelem
+ * Kontroler aplikacji CSV Data Wrangler - pośredniczy między widokiem a modelem.
+ * Długotrwałe operacje (wczytywanie, zapis, filtrowanie) wykonywane są w tle
+ * przez {@link TaskExecutor}; na czas ich trwania edycja tabeli jest zablokowana.
+ * Kolumny ukryte i pominięte przy wczytywaniu nie zajmują pamięci - operacje, które
+ * ich potrzebują, wczytują je z pliku w tle ({@link CSVTableModel#loadColumns}).
  * @author Mateusz Jakoczyk
  * @version 1.0
  */
 public class CSVController {
+    /** Co ile wierszy operacje w tle raportują postęp */
+    private static final int PROGRESS_INTERVAL = 65_536;
+    /** Maksymalna liczba zmian, które można cofnąć */
+    private static final int UNDO_LIMIT = 100;
+
     private CSVWranglerApp view;
     private CSVTableModel tableModel;
-    private CSVTableModel prev_tableModel;
     private File currentFile;
+    /** Ostatnie wczytanie pliku - źródło pozycji, od której śledzony jest plik */
+    private CSVLoader lastLoad;
+    private FileFollower follower;
+    private final TaskExecutor tasks = new TaskExecutor();
+    private final UndoManager undoManager = new UndoManager();
 
     public CSVController(CSVWranglerApp view, CSVTableModel tableModel) {
         this.view = view;
         this.tableModel = tableModel;
-        updatePreviousTableModel();
+        undoManager.setLimit(UNDO_LIMIT);
+        tableModel.addUndoableEditListener(undoManager);
     }
 
     /**
@@ -30,12 +49,24 @@ public class CSVController {
             int choice = view.showConfirmDialog("Czy chcesz zapisać aktualny plik CSV?");
 
             if (choice == JOptionPane.YES_OPTION) {
-                saveFile();
+                tasks.cancel();
+                // Zapis przy zamykaniu musi się zakończyć przed wyjściem z aplikacji - działa w tle
+                // jak zwykły zapis, a modalne okno oczekiwania nie blokuje EDT
+                BackgroundTask<Void, Void> save = saveToFile(currentFile);
+                if (save == null) {
+                    return false;
+                }
+                view.showProgressDialog("Zapisywanie pliku " + currentFile.getName() + "...", save);
+                if (!succeeded(save)) {
+                    return false;
+                }
+                stopFollowing();
                 currentFile = null;
                 tableModel = null;
                 return true;
             }
             else if (choice == JOptionPane.NO_OPTION) {
+                stopFollowing();
                 tableModel = null;
                 currentFile = null;
                 return true;
@@ -53,8 +84,11 @@ public class CSVController {
      * Tworzy nowy plik CSV
      */
     public void newFile() {
-        if(checkFileSaved()) {
+        if(checkIdle() && checkFileSaved()) {
+            stopFollowing();
+            lastLoad = null;
             tableModel = new CSVTableModel();
+            tableModel.addUndoableEditListener(undoManager);
             String value = "";
             var columnsName = new ArrayList<String>();
             do {
@@ -69,9 +103,9 @@ public class CSVController {
             tableModel.setColumnIdentifiers(columnsName.toArray());
 
             if (tableModel.getRowCount() <= 0) {
-                this.addNewRow();
+                tableModel.addRow(new Object[tableModel.getColumnCount()]);
             }
-            updatePreviousTableModel();
+            undoManager.discardAllEdits();
             refreshData();
             view.setStatusMessage(" Utworzono nową tabelę | Rekordów: " + tableModel.getRowCount());
         }
@@ -81,66 +115,359 @@ public class CSVController {
      * Otwiera dialog wyboru pliku i ładuje dane CSV
      */
     public void openFile() {
+        if (!checkIdle()) {
+            return;
+        }
         File file = view.showFileOpenDialog();
         if (file != null) {
+            // Plik, którego model mógłby nie zmieścić się w pamięci, warto otworzyć stronicowo
+            if (file.length() > Runtime.getRuntime().maxMemory() / 2) {
+                int choice = view.showConfirmDialog("Plik jest bardzo duży. Czy otworzyć go w trybie stronicowanym (tylko do odczytu)?");
+                if (choice == JOptionPane.CANCEL_OPTION || choice == JOptionPane.CLOSED_OPTION) {
+                    return;
+                }
+                currentFile = file;
+                if (choice == JOptionPane.YES_OPTION) {
+                    loadPaged(file);
+                    return;
+                }
+            }
             currentFile = file;
             loadCSV(file);
         }
     }
 
     /**
-     * Ładuje dane z pliku CSV do modelu tabeli
-     * @param file plik CSV do wczytania
+     * Otwiera dialog wyboru pliku, a następnie kolumn, które mają zostać wczytane.
+     * Pola pozostałych kolumn są pomijane przy parsowaniu; kolumny te są ukryte
+     * i wczytywane z pliku dopiero po ich pokazaniu lub gdy potrzebuje ich operacja.
      */
-    private void loadCSV(File file) {
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            List<String[]> data = new ArrayList<>();
-            String line;
-            char separator = detectSeparator(file);
+    public void openFileColumns() {
+        if (!checkIdle()) {
+            return;
+        }
+        File file = view.showFileOpenDialog();
+        if (file == null) {
+            return;
+        }
+        String[] names;
+        try {
+            names = CSVLoader.readColumnNames(file);
+        } catch (IOException e) {
+            view.showErrorMessage("Błąd podczas odczytu pliku: " + e.getMessage());
+            return;
+        }
+        int[] projection = view.showColumnSelectionDialog(names);
+        if (projection == null) {
+            return;
+        }
+        if (projection.length == 0) {
+            view.showErrorMessage("Nie wybrano kolumn do wczytania");
+            return;
+        }
+        Arrays.sort(projection);
+        currentFile = file;
+        loadCSV(file, projection.length < names.length ? projection : null);
+    }
 
-            // Odczytaj wszystkie wiersze
-            while ((line = br.readLine()) != null) {
-                String[] row = line.split(String.valueOf(separator), -1);
-                data.add(row);
-            }
+    /**
+     * Otwiera dialog wyboru pliku i otwiera plik w trybie stronicowanym
+     */
+    public void openFilePaged() {
+        if (!checkIdle()) {
+            return;
+        }
+        File file = view.showFileOpenDialog();
+        if (file != null) {
+            currentFile = file;
+            loadPaged(file);
+        }
+    }
 
-            if (!data.isEmpty()) {
-                tableModel.setSeparator(separator);
+    /**
+     * Sortuje i filtruje plik bez wczytywania go do tabeli ({@link ExternalSort}).
+     * Plik przetwarzany jest w tle paczkami mieszczącymi się w budżecie pamięci,
+     * a wynik zapisywany do wskazanego pliku.
+     */
+    public void sortLargeFile() {
+        if (!checkIdle()) {
+            return;
+        }
+        File input = view.showFileOpenDialog();
+        if (input == null) {
+            return;
+        }
+        String sortSpec = (String) view.showInputDialog("Kolumny sortowania (np. kwota:desc, kraj; puste - bez sortowania): ",
+                "Sortowanie dużego pliku", "");
+        if (sortSpec == null) {
+            return;
+        }
+        String filter = (String) view.showInputDialog("Wyrażenie filtrujące (np. kwota > 100 AND kraj = 'PL'; puste - bez filtrowania): ",
+                "Sortowanie dużego pliku", "");
+        if (filter == null) {
+            return;
+        }
+        if (sortSpec.isBlank() && filter.isBlank()) {
+            view.showErrorMessage("Podaj kolumny sortowania lub wyrażenie filtrujące");
+            return;
+        }
+        File output = view.showFileSaveDialog();
+        if (output == null) {
+            return;
+        }
+        CSVDialect dialect;
+        try {
+            dialect = CSVDialect.sniff(input);
+        } catch (IOException e) {
+            view.showErrorMessage("Błąd podczas odczytu pliku: " + e.getMessage());
+            return;
+        }
+        ExternalSort externalSort = new ExternalSort(dialect.separator(), dialect.hasHeader(),
+                ExternalSort.defaultMemoryBudget(), null, tableModel.getCharset());
+        view.setStatusMessage(" Sortowanie: " + input.getName());
+        runTask("Sortowanie dużego pliku", new BackgroundTask<ExternalSort.Result, Void>(view) {
+            @Override
+            protected ExternalSort.Result doInBackground() throws IOException, ParseException {
+                return externalSort.run(input, output, sortSpec, filter, (stage, done, total) -> {
+                    reportProgress(done, total);
+                    reportStatus(" " + stage + ": " + input.getName() + " | " + done / (1024 * 1024) + " MB");
+                }, this::isCancelled);
+            }
 
-                // Jeśli nagłówki są włączone, użyj pierwszego wiersza jako nagłówków
-                if (tableModel.hasHeaders()) {
-                    tableModel.setColumnIdentifiers(data.getFirst());
-                    data.removeFirst();
-                } else {
-                    // Generuj domyślne nagłówki (Kol1, Kol2, ...)
-                    String[] headers = new String[data.get(0).length];
-                    for (int i = 0; i < headers.length; i++) {
-                        headers[i] = "Kol " + (i + 1);
-                    }
-                    tableModel.setColumnIdentifiers(headers);
+            @Override
+            protected void succeeded(ExternalSort.Result result) {
+                if (result == null) {
+                    return;
                 }
+                operation().rows(result.rowsRead()).bytes(input.length());
+                view.setStatusMessage(" Zapisano: " + output.getName() + " | Rekordów: " + result.rowsWritten()
+                        + " z " + result.rowsRead() + " | Przebiegów: " + result.runs()
+                        + " | Czas: " + result.millis() + " ms");
+            }
 
-                // Wstaw dane do modelu
-                tableModel.setRowCount(0);
-                for (String[] row : data) {
-                    tableModel.addRow(row);
-                }
+            @Override
+            protected void cancelled() {
+                view.setStatusMessage(" Przerwano sortowanie - plik " + output.getName() + " nie został zmieniony");
+            }
 
-                updatePreviousTableModel();
+            @Override
+            protected void failed(Throwable cause) {
+                view.showErrorMessage("Błąd podczas sortowania pliku: " + cause.getMessage());
+            }
+        });
+    }
 
-                view.setStatusMessage(" Wczytano: " + file.getName() + " | Rekordów: " + tableModel.getRowCount());
+    /**
+     * Ładuje dane z pliku CSV do modelu tabeli.
+     * Wczytywanie odbywa się w tle, a wiersze trafiają do modelu paczkami.
+     * @param file plik CSV do wczytania
+     */
+    private void loadCSV(File file) {
+        loadCSV(file, null);
+    }
+
+    /**
+     * Ładuje wybrane kolumny pliku CSV do modelu tabeli - pozostałe są ukrywane.
+     * @param file plik CSV do wczytania
+     * @param projection rosnąco posortowane indeksy wczytywanych kolumn (null - wszystkie)
+     */
+    private void loadCSV(File file, int[] projection) {
+        stopFollowing();
+        undoManager.discardAllEdits();
+        CSVTableModel model = tableModel;
+        CSVLoader loader = new CSVLoader(view, model, file, projection, () -> {
+            view.updateColumnsList(getColumnNames());
+            setColumnsHidden(model.getUnloadedColumns(), true);
+        });
+        lastLoad = loader;
+        view.setStatusMessage(" Wczytywanie: " + file.getName());
+        runTask("Wczytywanie", loader);
+    }
+
+    /**
+     * Otwiera plik w trybie stronicowanym: w tle buduje rzadki indeks pozycji
+     * wierszy, a następnie przełącza model na odczyt stron na żądanie.
+     * @param file plik CSV do otwarcia
+     */
+    private void loadPaged(File file) {
+        stopFollowing();
+        lastLoad = null;
+        CSVTableModel model = tableModel;
+        undoManager.discardAllEdits();
+        view.setStatusMessage(" Indeksowanie: " + file.getName());
+        runTask("Wczytywanie stronicowane", new BackgroundTask<PagedRowSource, Void>(view) {
+            @Override
+            protected PagedRowSource doInBackground() throws IOException {
+                return PagedRowSource.index(file, PagedRowSource.DEFAULT_CACHE_PAGES, position -> {
+                    reportProgress(position, file.length());
+                    reportStatus(" Indeksowanie: " + file.getName() + " | " + position / (1024 * 1024) + " MB");
+                }, this::isCancelled);
+            }
+
+            @Override
+            protected void succeeded(PagedRowSource source) {
+                model.setDialect(source.getDialect());
+                model.setPagedSource(source);
+                operation().rows(model.getRowCount()).bytes(file.length());
+                undoManager.discardAllEdits();
                 view.updateColumnsList(getColumnNames());
+                view.setStatusMessage(" Otwarto w trybie stronicowanym: " + file.getName() + " | Rekordów: " + model.getRowCount());
+            }
+
+            @Override
+            protected void cancelled() {
+                view.setStatusMessage(" Przerwano indeksowanie: " + file.getName());
             }
 
+            @Override
+            protected void failed(Throwable cause) {
+                view.showErrorMessage("Błąd podczas wczytywania pliku: " + cause.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Włącza lub wyłącza śledzenie bieżącego pliku: rekordy dopisywane do pliku
+     * (np. do dziennika) trafiają do tabeli bez ponownego wczytywania. Parsowana jest
+     * tylko dopisana część pliku ({@link FileFollower}), a filtr, indeksy i typy kolumn
+     * aktualizowane są przyrostowo ({@link CSVTableModel#appendRows(List, boolean)}).
+     * Dopisanie wierszy czyści historię zmian - cofnięcie do stanu sprzed dopisania
+     * usunęłoby wiersze, których śledzenie nie odczyta ponownie.
+     * @param enabled true - śledź plik, false - zakończ śledzenie
+     */
+    public void setFollowing(boolean enabled) {
+        if (!enabled) {
+            if (follower != null) {
+                stopFollowing();
+                view.setStatusMessage(" Zakończono śledzenie pliku | Rekordów: " + tableModel.getRowCount());
+            }
+            return;
+        }
+        if (follower != null || !checkEditable()) {
+            return;
+        }
+        if (lastLoad == null || !lastLoad.isLoaded()) {
+            view.showErrorMessage("Najpierw wczytaj plik CSV w całości");
+            return;
+        }
+        try {
+            follower = lastLoad.newFollower();
         } catch (IOException e) {
-            view.showErrorMessage("Błąd podczas wczytywania pliku: " + e.getMessage());
+            view.showErrorMessage("Nie można śledzić pliku: " + e.getMessage());
+            return;
+        }
+        CSVTableModel model = tableModel;
+        follower.start(tail -> appendTail(model, tail), e -> {
+            stopFollowing();
+            view.showErrorMessage("Zakończono śledzenie pliku: " + e.getMessage());
+        });
+        view.setStatusMessage(" Śledzenie pliku: " + follower.getFile().getName() + " | Rekordów: " + model.getRowCount());
+    }
+
+    /**
+     * Sprawdza czy bieżący plik jest śledzony.
+     * @return true jeśli rekordy dopisywane do pliku trafiają do tabeli
+     */
+    public boolean isFollowing() {
+        return follower != null;
+    }
+
+    /**
+     * Kończy śledzenie pliku, jeśli jest włączone.
+     */
+    private void stopFollowing() {
+        if (follower != null) {
+            follower.close();
+            follower = null;
+        }
+    }
+
+    /**
+     * Dodaje do modelu rekordy dopisane do śledzonego pliku (wywoływane w EDT).
+     * W trakcie operacji w tle model nie może się zmieniać - rekordy zostaną wtedy
+     * dostarczone ponownie.
+     * @param model model śledzonego pliku
+     * @param tail dopisane rekordy
+     * @return true jeśli rekordy trafiły do modelu
+     */
+    private boolean appendTail(CSVTableModel model, FileFollower.Tail tail) {
+        if (tasks.isBusy() || model.isLocked()) {
+            return false;
+        }
+        if (tail.rows().isEmpty()) {
+            return true;
+        }
+        try (Metrics.Operation operation = Metrics.start("Dopisane wiersze").blocking()) {
+            model.appendRows(tail.rows(), tail.replacesLast());
+            operation.rows(tail.rows().size());
+        }
+        undoManager.discardAllEdits();
+        view.setStatusMessage(" Śledzenie pliku: " + follower.getFile().getName() + " | Dopisano: " + tail.rows().size()
+                + " | Rekordów: " + model.getRowCount());
+        return true;
+    }
+
+    /**
+     * Sprawdza czy model można modyfikować, wyświetlając komunikat w trybie stronicowanym.
+     * @return true jeśli model nie jest w trybie stronicowanym
+     */
+    private boolean checkEditable() {
+        if (!checkIdle()) {
+            return false;
+        }
+        if (tableModel.isPaged()) {
+            view.showErrorMessage("Operacja niedostępna w trybie stronicowanym (tylko do odczytu)");
+            return false;
         }
+        return true;
+    }
+
+    /**
+     * Sprawdza czy nie trwa operacja w tle, wyświetlając komunikat w przeciwnym razie.
+     * @return true jeśli można rozpocząć nową operację
+     */
+    private boolean checkIdle() {
+        if (tasks.isBusy()) {
+            view.showErrorMessage("Trwa inna operacja - poczekaj na jej zakończenie lub ją przerwij");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Uruchamia operację w tle, blokując edycję modelu do zakończenia jej wątku.
+     * Przerwana operacja odblokowuje model dopiero, gdy jej wątek przestanie z niego korzystać.
+     * @param name nazwa operacji w pomiarach ({@link Metrics})
+     * @param task operacja do wykonania
+     */
+    private void runTask(String name, BackgroundTask<?, ?> task) {
+        CSVTableModel model = tableModel;
+        model.setLocked(true);
+        task.setOperation(Metrics.start(name));
+        tasks.execute(task, () -> {
+            // Kolejna operacja (uruchomiona po przerwaniu tej) odblokuje model po swoim zakończeniu
+            if (!tasks.isBusy()) {
+                model.setLocked(false);
+            }
+        });
+    }
+
+    /**
+     * Przerywa trwającą operację w tle, jeśli taka istnieje.
+     * Wiersze wczytane przed przerwaniem pozostają w tabeli; model pozostaje
+     * zablokowany, dopóki wątek operacji nie zakończy pracy.
+     */
+    public void cancelTask() {
+        tasks.cancel();
     }
 
     /**
      * Zapisuje dane do bieżącego pliku lub wyświetla dialog zapisu
      */
     public void saveFile() {
+        if (!checkIdle()) {
+            return;
+        }
         if (currentFile != null) {
             saveToFile(currentFile);
         } else {
@@ -152,6 +479,9 @@ public class CSVController {
      * Wyświetla dialog zapisu pliku i zapisuje dane
      */
     public void saveFileAs() {
+        if (!checkIdle()) {
+            return;
+        }
         String separator = (String) view.showInputDialog("Podaj separator danych: ", "Podaj separator danych", tableModel.getSeparator());
         if (separator != null) {
             tableModel.setSeparator(separator.charAt(0));
@@ -164,37 +494,204 @@ public class CSVController {
     }
 
     /**
-     * Zapisuje dane do określonego pliku
+     * Zapisuje dane do określonego pliku w tle
+     * @param file plik docelowy
+     * @return uruchomiona operacja zapisu lub null, jeśli pliku nie można nadpisać
+     */
+    private BackgroundTask<Void, Void> saveToFile(File file) {
+        if (tableModel.isPaged() && tableModel.getPagedSource().getFile().equals(file)) {
+            view.showErrorMessage("Nie można nadpisać pliku otwartego w trybie stronicowanym - wybierz inny plik");
+            return null;
+        }
+        if (follower != null && follower.getFile().getAbsoluteFile().equals(file.getAbsoluteFile())) {
+            // Zapis zastępuje plik - dalsze śledzenie nie miałoby punktu odniesienia
+            stopFollowing();
+        }
+        CSVTableModel model = tableModel;
+        view.setStatusMessage(" Zapisywanie: " + file.getName());
+        BackgroundTask<Void, Void> task = new BackgroundTask<>(view) {
+            @Override
+            protected Void doInBackground() throws IOException, InterruptedException {
+                // Niewczytane kolumny wczytywane są tylko do kopii zapisywanej do pliku
+                CSVTableModel.LoadedColumns loaded = model.loadColumns(null, this::isCancelled);
+                if (loaded != null) {
+                    writeCSV(model.withLoadedColumns(loaded), file,
+                            rows -> reportProgress(rows, model.getRowCount()), this::isCancelled);
+                }
+                return null;
+            }
+
+            @Override
+            protected void succeeded(Void result) {
+                operation().rows(model.getRowCount()).bytes(file.length());
+                view.setStatusMessage(" Zapisano: " + file.getName());
+            }
+
+            @Override
+            protected void cancelled() {
+                view.setStatusMessage(" Przerwano zapis - plik " + file.getName() + " nie został zmieniony");
+            }
+
+            @Override
+            protected void failed(Throwable cause) {
+                view.showErrorMessage("Błąd podczas zapisywania pliku: " + cause.getMessage());
+            }
+        };
+        runTask("Zapis", task);
+        return task;
+    }
+
+    /**
+     * Sprawdza czy operacja w tle zakończyła się poprawnie.
+     * @param task operacja
+     * @return false, jeśli operacja trwa, została przerwana lub zakończyła się błędem
+     */
+    private static boolean succeeded(BackgroundTask<?, ?> task) {
+        if (!task.isDone() || task.isCancelled()) {
+            return false;
+        }
+        try {
+            task.get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Wyznacza wiersze bazowe spełniające warunek filtra i łączy je z bieżącym filtrem
+     * (może działać poza EDT, gdy edycja modelu jest zablokowana).
+     * @param model model danych
+     * @param columnIndex indeks kolumny modelu
+     * @param operator operator porównania (zawiera, równa się, zaczyna się)
+     * @param value wartość do porównania
+     * @param current bieżący filtr (null - brak)
+     * @param union true - dołącz pasujące wiersze do bieżącego filtra (LUB), false - zawęź go (I)
+     * @param progress odbiorca liczby sprawdzonych wierszy (wywoływany co {@value #PROGRESS_INTERVAL} wierszy)
+     * @param cancelled sprawdzane przed każdym wierszem - zwrócenie true przerywa filtrowanie
+     * @return mapa bitowa wierszy nowego filtra
+     */
+    static BitSet filterRows(CSVTableModel model, int columnIndex, String operator, String value, BitSet current,
+                             boolean union, LongConsumer progress, BooleanSupplier cancelled) {
+        boolean indexed = operator.equals("równa się") || operator.equals("zaczyna się")
+                || (operator.equals("zawiera") && value.length() >= TrigramIndex.GRAM);
+        if (indexed) {
+            // Wyszukiwanie w indeksach kolumny - budowanych przy pierwszym użyciu
+            BitSet matches = switch (operator) {
+                case "równa się" -> model.findEquals(columnIndex, value);
+                case "zaczyna się" -> model.findPrefix(columnIndex, value);
+                default -> model.findContains(columnIndex, value);
+            };
+            if (current == null) {
+                return matches;
+            }
+            if (union) {
+                matches.or(current);
+            } else {
+                matches.and(current);
+            }
+            return matches;
+        }
+        int rowCount = model.getBaseRowCount();
+        BitSet result = current != null ? current : new BitSet(rowCount);
+        // Przy zawężaniu sprawdzane są tylko wiersze bieżącego filtra,
+        // przy dołączaniu - tylko wiersze spoza niego
+        boolean narrow = current != null && !union;
+        int i = narrow ? current.nextSetBit(0) : (current != null ? current.nextClearBit(0) : 0);
+        while (i >= 0 && i < rowCount && !cancelled.getAsBoolean()) {
+            String cellValue = model.getBaseStringAt(i, columnIndex);
+            String cellStr = cellValue != null ? cellValue : "";
+
+            boolean matches = operator.equals("zawiera") && cellStr.contains(value);
+
+            if (matches != narrow) {
+                result.set(i, matches); // zawężanie usuwa niepasujące, pozostałe tryby dodają pasujące
+            }
+            if (i % PROGRESS_INTERVAL == 0) {
+                progress.accept(i);
+            }
+            i = narrow ? result.nextSetBit(i + 1) : (current != null ? result.nextClearBit(i + 1) : i + 1);
+        }
+        return result;
+    }
+
+    /**
+     * Tworzy regułę filtra kolumny - ten sam warunek co {@link #filterRows}, sprawdzany
+     * dla pojedynczych wierszy (np. dopisanych do śledzonego pliku).
+     * @param columnIndex indeks kolumny modelu
+     * @param operator operator porównania (zawiera, równa się, zaczyna się)
+     * @param value wartość do porównania
+     * @return reguła filtra
+     */
+    static CSVTableModel.FilterRule filterRule(int columnIndex, String operator, String value) {
+        return model -> row -> {
+            String cell = model.getBaseStringAt(row, columnIndex);
+            String text = cell != null ? cell : "";
+            return switch (operator) {
+                case "równa się" -> text.equals(value);
+                case "zaczyna się" -> text.startsWith(value);
+                default -> text.contains(value);
+            };
+        };
+    }
+
+    /**
+     * Łączy regułę nowego filtra z regułą bieżącego.
+     * @param model model danych
+     * @param current bieżący filtr (null - brak)
+     * @param rule reguła nowego filtra
+     * @param union true - LUB, false - I
+     * @return reguła wynikowego filtra lub null, jeśli bieżący filtr nie ma reguły
+     */
+    private static CSVTableModel.FilterRule combineRule(CSVTableModel model, BitSet current,
+                                                        CSVTableModel.FilterRule rule, boolean union) {
+        if (current == null) {
+            return rule;
+        }
+        CSVTableModel.FilterRule currentRule = model.getFilterRule();
+        return currentRule != null ? currentRule.combine(rule, union) : null;
+    }
+
+    /**
+     * Zapisuje model do pliku CSV (może działać poza EDT, gdy edycja modelu jest zablokowana).
+     * Plik docelowy zastępowany jest dopiero po zapisaniu wszystkich danych.
+     * @param tableModel model do zapisania
      * @param file plik docelowy
+     * @param progress odbiorca liczby zapisanych wierszy (wywoływany co {@value #PROGRESS_INTERVAL} wierszy)
+     * @param cancelled sprawdzane co {@value #PROGRESS_INTERVAL} wierszy - zwrócenie true przerywa zapis bez zmiany pliku
+     * @throws IOException jeśli nie uda się zapisać pliku
      */
-    private void saveToFile(File file) {
-        try (PrintWriter writer = new PrintWriter(file)) {
+    static void writeCSV(CSVTableModel tableModel, File file, LongConsumer progress,
+                                 BooleanSupplier cancelled) throws IOException {
+        int columnCount = tableModel.getColumnCount();
+        int rowCount = tableModel.getRowCount();
+        try (CSVWriter writer = new CSVWriter(file.toPath(), tableModel.getSeparator(), tableModel.getQuote(),
+                tableModel.getLineSeparator(), tableModel.getCharset())) {
             // Zapisz nagłówki jeśli są widoczne
             if (tableModel.hasHeaders()) {
-                for (int i = 0; i < tableModel.getColumnCount(); i++) {
-                    writer.print(tableModel.getColumnName(i));
-                    if (i < tableModel.getColumnCount() - 1) {
-                        writer.print(tableModel.getSeparator());
-                    }
+                for (int i = 0; i < columnCount; i++) {
+                    writer.writeField(tableModel.getColumnName(i));
                 }
-                writer.println();
+                writer.endRecord();
             }
 
             // Zapisz dane
-            for (int row = 0; row < tableModel.getRowCount(); row++) {
-                for (int col = 0; col < tableModel.getColumnCount(); col++) {
-                    Object value = tableModel.getValueAt(row, col);
-                    writer.print(value != null ? value.toString() : "");
-                    if (col < tableModel.getColumnCount() - 1) {
-                        writer.print(tableModel.getSeparator());
+            for (int row = 0; row < rowCount; row++) {
+                for (int col = 0; col < columnCount; col++) {
+                    writer.writeField(tableModel.getStringAt(row, col));
+                }
+                writer.endRecord();
+                if (row % PROGRESS_INTERVAL == 0) {
+                    if (cancelled.getAsBoolean()) {
+                        return;
                     }
+                    progress.accept(row);
                 }
-                writer.println();
             }
-
-            view.setStatusMessage(" Zapisano: " + file.getName());
-        } catch (IOException e) {
-            view.showErrorMessage("Błąd podczas zapisywania pliku: " + e.getMessage());
+            writer.commit();
         }
     }
 
@@ -202,6 +699,9 @@ public class CSVController {
      * Dodaje nowy wiersz do tabeli
      */
     public void addNewRow() {
+        if (!checkEditable()) {
+            return;
+        }
         if (tableModel.getColumnCount() == 0) {
             view.showErrorMessage("Najpierw wczytaj plik CSV");
             return;
@@ -209,8 +709,12 @@ public class CSVController {
 
         Object[] rowData = new Object[tableModel.getColumnCount()];
 
-        tableModel.addRow(rowData);
-        updatePreviousTableModel();
+        try (Metrics.Operation operation = Metrics.start("Dodanie wiersza").blocking()) {
+            CSVTableModel.Snapshot before = tableModel.snapshot();
+            tableModel.addRow(rowData);
+            tableModel.postEdit("Dodanie wiersza", before);
+            operation.rows(1);
+        }
         view.setStatusMessage(" Dodano nowy wiersz | Rekordów: " + tableModel.getRowCount());
     }
 
@@ -218,25 +722,22 @@ public class CSVController {
      * Usuwa zaznaczony wiersz z tabeli
      */
     public void deleteSelectedRow() {
+        if (!checkEditable()) {
+            return;
+        }
         int[] selectedRow = view.getSelectedRow();
         if (selectedRow.length > 0) {
-            Stack<Integer> selectedRowStack = new Stack<>();
-
-            // Dodawanie wszystkich elementów z selectedRow do stosu
-            for (int row : selectedRow) {
-                selectedRowStack.push(row);
-            }
-
-            // Usuwanie elementów z wierzchu stosu
-            while (!selectedRowStack.isEmpty()) {
-                int row = selectedRowStack.pop();
-                tableModel.removeRow(row);
-            }
-            if (tableModel.getRowCount() <= 0) {
-                this.addNewRow();
+            try (Metrics.Operation operation = Metrics.start("Usunięcie wierszy").blocking()) {
+                CSVTableModel.Snapshot before = tableModel.snapshot();
+                // Wszystkie zaznaczone wiersze usuwane są w jednym przebiegu, jednym zdarzeniem
+                tableModel.removeRows(selectedRow);
+                if (tableModel.getRowCount() <= 0) {
+                    tableModel.addRow(new Object[tableModel.getColumnCount()]);
+                }
+                view.updateTableModel(tableModel);
+                tableModel.postEdit("Usunięcie wierszy", before);
+                operation.rows(selectedRow.length);
             }
-            view.updateTableModel(tableModel);
-            updatePreviousTableModel();
             view.setStatusMessage(" Usunięto wiersze: " + Arrays.toString(Arrays.stream(selectedRow).toArray()) + " | Rekordów: " + tableModel.getRowCount());
         } else {
             view.showErrorMessage("Nie wybrano wiersza do usunięcia");
@@ -244,12 +745,30 @@ public class CSVController {
     }
 
     /**
-     * Filtruje dane w tabeli na podstawie kryteriów
+     * Filtruje dane w tabeli na podstawie kryteriów, zawężając bieżący filtr
      * @param column kolumna do filtrowania
      * @param operator operator porównania (zawiera, równa się, zaczyna się)
      * @param value wartość do porównania
      */
     public void filterData(String column, String operator, String value) {
+        filterData(column, operator, value, false);
+    }
+
+    /**
+     * Filtruje dane w tabeli na podstawie kryteriów.
+     * Filtr nie kopiuje danych - wyznacza mapę bitową pasujących wierszy, którą
+     * łączy z bieżącym filtrem (I - zawężenie, LUB - dołączenie wierszy).
+     * Operatory korzystają z indeksów kolumn modelu; jedynie "zawiera" z tekstem
+     * krótszym niż trzy znaki przegląda wiersze.
+     * @param column kolumna do filtrowania
+     * @param operator operator porównania (zawiera, równa się, zaczyna się)
+     * @param value wartość do porównania
+     * @param union true - dołącz pasujące wiersze do bieżącego filtra (LUB), false - zawęź go (I)
+     */
+    public void filterData(String column, String operator, String value, boolean union) {
+        if (!checkIdle()) {
+            return;
+        }
         if (column == null || value == null || value.isEmpty()) {
             view.showErrorMessage("Wprowadź wartość do filtrowania");
             return;
@@ -261,69 +780,397 @@ public class CSVController {
             return;
         }
 
-        List<Integer> rowsToKeep = new ArrayList<>();
-        for (int i = 0; i < tableModel.getRowCount(); i++) {
-            Object cellValue = tableModel.getValueAt(i, columnIndex);
-            String cellStr = cellValue != null ? cellValue.toString() : "";
+        CSVTableModel model = tableModel;
+        BitSet current = model.getRowFilter();
+        CSVTableModel.FilterRule rule = combineRule(model, current, filterRule(columnIndex, operator, value), union);
+        view.setStatusMessage(" Filtrowanie...");
+        runTask("Filtrowanie", new BackgroundTask<BitSet, Void>(view) {
+            private CSVTableModel.LoadedColumns loaded;
 
-            boolean matches = switch (operator) {
-                case "zawiera" -> cellStr.contains(value);
-                case "równa się" -> cellStr.equals(value);
-                case "zaczyna się" -> cellStr.startsWith(value);
-                default -> false;
-            };
+            @Override
+            protected BitSet doInBackground() throws IOException, InterruptedException {
+                loaded = model.loadColumns(new int[]{columnIndex}, this::isCancelled);
+                if (loaded == null) {
+                    return null;
+                }
+                CSVTableModel data = loaded.isEmpty() ? model : model.withLoadedColumns(loaded);
+                return filterRows(data, columnIndex, operator, value, current, union,
+                        rows -> reportProgress(rows, model.getBaseRowCount()), this::isCancelled);
+            }
 
-            if (matches) {
-                rowsToKeep.add(i);
+            @Override
+            protected void succeeded(BitSet rows) {
+                if (rows == null) {
+                    return;
+                }
+                model.setLoadedColumns(loaded);
+                operation().rows(model.getBaseRowCount());
+                CSVTableModel.Snapshot before = model.snapshot();
+                model.setRowFilter(rows, rule);
+                model.postEdit("Filtrowanie", before);
+                view.setStatusMessage(" Przefiltrowano dane | Pasujących rekordów: " + model.getRowCount());
             }
+        });
+    }
+
+    /**
+     * Filtruje dane wyrażeniem, np. {@code amount > 100 AND country IN ('PL','DE')}.
+     * Wyrażenie kompilowane jest raz do predykatu właściwego dla typów kolumn
+     * ({@link FilterExpression}), a wiersze sprawdzane są równolegle ({@link ParallelFilter}).
+     * @param expression treść wyrażenia
+     * @param union true - dołącz pasujące wiersze do bieżącego filtra (LUB), false - zawęź go (I)
+     */
+    public void filterExpression(String expression, boolean union) {
+        if (!checkIdle()) {
+            return;
+        }
+        if (expression == null || expression.isBlank()) {
+            view.showErrorMessage("Wprowadź wyrażenie filtrujące");
+            return;
         }
 
-        // Zachowaj tylko pasujące wiersze
-        Vector<String> columnNames = new Vector<>();
-        for (int i = 0; i < tableModel.getColumnCount(); i++) {
-            columnNames.add(tableModel.getColumnName(i));
+        CSVTableModel model = tableModel;
+        FilterExpression filter;
+        try {
+            filter = FilterExpression.compile(expression, model);
+        } catch (ParseException e) {
+            view.showErrorMessage("Błędne wyrażenie: " + e.getMessage());
+            return;
         }
+        BitSet current = model.getRowFilter();
+        CSVTableModel.FilterRule rule = combineRule(model, current,
+                m -> FilterExpression.compile(expression, m).getPredicate(), union);
+        view.setStatusMessage(" Filtrowanie...");
+        runTask("Filtrowanie wyrażeniem", new BackgroundTask<BitSet, Void>(view) {
+            private CSVTableModel.LoadedColumns loaded;
 
-        Vector<Vector<Object>> newData = new Vector<>();
-        for (int row : rowsToKeep) {
-            Vector<Object> rowData = new Vector<>();
-            for (int col = 0; col < tableModel.getColumnCount(); col++) {
-                rowData.add(tableModel.getValueAt(row, col));
+            @Override
+            protected BitSet doInBackground() throws IOException, InterruptedException, ParseException {
+                loaded = model.loadColumns(filter.getColumns(), this::isCancelled);
+                if (loaded == null) {
+                    return null;
+                }
+                // Typy wczytanych kolumn są znane dopiero teraz - wyrażenie kompilowane jest ponownie
+                FilterExpression compiled = loaded.isEmpty() ? filter
+                        : FilterExpression.compile(expression, model.withLoadedColumns(loaded));
+                int rowCount = model.getBaseRowCount();
+                // Przy zawężaniu sprawdzane są tylko wiersze bieżącego filtra,
+                // przy dołączaniu - tylko wiersze spoza niego
+                BitSet candidates = null;
+                if (current != null) {
+                    candidates = (BitSet) current.clone();
+                    if (union) {
+                        candidates.flip(0, rowCount);
+                    }
+                }
+                BitSet result = new ParallelFilter().evaluate(compiled, rowCount, candidates,
+                        this::isCancelled, done -> reportProgress(done, rowCount));
+                if (current != null && union) {
+                    result.or(current);
+                }
+                return result;
             }
-            newData.add(rowData);
-        }
 
-        tableModel.setDataVector(newData, columnNames);
-        view.setStatusMessage(" Przefiltrowano dane | Pasujących rekordów: " + tableModel.getRowCount());
+            @Override
+            protected void succeeded(BitSet rows) {
+                if (rows == null) {
+                    return;
+                }
+                model.setLoadedColumns(loaded);
+                operation().rows(model.getBaseRowCount());
+                CSVTableModel.Snapshot before = model.snapshot();
+                model.setRowFilter(rows, rule);
+                model.postEdit("Filtrowanie", before);
+                view.setStatusMessage(" Przefiltrowano dane | Pasujących rekordów: " + model.getRowCount());
+            }
+        });
     }
 
     /**
-     * Uaktualnia stan poprzedni modelu tabeli
+     * Grupuje widoczne wiersze według wskazanych kolumn i otwiera agregaty grup
+     * w nowym oknie jako osobną tabelę (bieżąca tabela się nie zmienia).
      */
-    private void updatePreviousTableModel() {
+    public void groupBy() {
+        if (!checkEditable()) {
+            return;
+        }
+        String keySpec = (String) view.showInputDialog("Kolumny grupowania (np. kraj, miasto; puste - jedna grupa): ",
+                "Grupowanie", "");
+        if (keySpec == null) {
+            return;
+        }
+        String aggregateSpec = (String) view.showInputDialog(
+                "Agregaty (count, sum, min, max, avg, distinct), np. count, sum(kwota), distinct(klient): ",
+                "Grupowanie", "count");
+        if (aggregateSpec == null) {
+            return;
+        }
+
+        CSVTableModel model = tableModel;
+        String[] names = getColumnNames();
+        int[] keys;
+        List<GroupBy.Aggregate> aggregates;
         try {
-            prev_tableModel = (CSVTableModel) tableModel.clone();
-        } catch (CloneNotSupportedException e) {
-            throw new RuntimeException(e);
+            keys = keySpec.isBlank() ? new int[0] : ExternalSort.parseColumns(keySpec, names);
+            aggregates = GroupBy.parseAggregates(aggregateSpec, names);
+        } catch (ParseException e) {
+            view.showErrorMessage("Błędne parametry grupowania: " + e.getMessage());
+            return;
+        }
+        BitSet rows = model.getRowFilter();
+        long start = System.nanoTime();
+        view.setStatusMessage(" Grupowanie...");
+        runTask("Grupowanie", new BackgroundTask<CSVTableModel, Void>(view) {
+            private CSVTableModel.LoadedColumns loaded;
+
+            @Override
+            protected CSVTableModel doInBackground() throws IOException, InterruptedException, ParseException {
+                loaded = model.loadColumns(GroupBy.getColumns(keys, aggregates), this::isCancelled);
+                if (loaded == null) {
+                    return null;
+                }
+                int rowCount = model.getBaseRowCount();
+                return new GroupBy().aggregate(loaded.isEmpty() ? model : model.withLoadedColumns(loaded),
+                        keys, aggregates, rows, this::isCancelled, done -> reportProgress(done, rowCount));
+            }
+
+            @Override
+            protected void succeeded(CSVTableModel result) {
+                if (result == null) {
+                    return;
+                }
+                model.setLoadedColumns(loaded);
+                operation().rows(model.getBaseRowCount());
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                String title = currentFile != null ? currentFile.getName() + " - grupowanie" : "Grupowanie";
+                view.showDerivedTable(title, result);
+                view.setStatusMessage(" Pogrupowano dane | Grup: " + result.getRowCount()
+                        + " | Rekordów: " + model.getRowCount() + " | Czas: " + millis + " ms");
+            }
+        });
+    }
+
+    /**
+     * Cofa ostatnią zmianę tabeli
+     */
+    public void undo() {
+        if (!checkIdle()) {
+            return;
+        }
+        if (!undoManager.canUndo()) {
+            view.showErrorMessage("Brak zmian do cofnięcia");
+            return;
         }
+        String name = undoManager.getPresentationName();
+        try (Metrics.Operation operation = Metrics.start("Cofnięcie").blocking()) {
+            undoManager.undo();
+            operation.rows(tableModel.getRowCount());
+        }
+        view.setStatusMessage(" Cofnięto: " + name + " | Rekordów: " + tableModel.getRowCount());
     }
 
     /**
-     * Czyści wszystkie zastosowane filtry i przywraca oryginalne dane
+     * Ponawia ostatnio cofniętą zmianę tabeli
+     */
+    public void redo() {
+        if (!checkIdle()) {
+            return;
+        }
+        if (!undoManager.canRedo()) {
+            view.showErrorMessage("Brak zmian do ponowienia");
+            return;
+        }
+        String name = undoManager.getPresentationName();
+        try (Metrics.Operation operation = Metrics.start("Ponowienie").blocking()) {
+            undoManager.redo();
+            operation.rows(tableModel.getRowCount());
+        }
+        view.setStatusMessage(" Ponowiono: " + name + " | Rekordów: " + tableModel.getRowCount());
+    }
+
+    /**
+     * Czyści wszystkie zastosowane filtry - widoczne stają się wszystkie wiersze
      */
     public void clearFilters() {
-        try {
-            tableModel = (CSVTableModel) prev_tableModel.clone();
-            view.updateTableModel(tableModel);
-            view.updateColumnsList(getColumnNames());
-            view.setStatusMessage(" Filtry wyczyszczone | Rekordów: " + tableModel.getRowCount());
-        } catch (CloneNotSupportedException e) {
-            throw new RuntimeException(e);
+        if (!checkIdle()) {
+            return;
+        }
+        try (Metrics.Operation operation = Metrics.start("Wyczyszczenie filtrów").blocking()) {
+            CSVTableModel.Snapshot before = tableModel.snapshot();
+            tableModel.clearRowFilter();
+            tableModel.postEdit("Wyczyszczenie filtrów", before);
+            operation.rows(tableModel.getRowCount());
+        }
+        view.setStatusMessage(" Filtry wyczyszczone | Rekordów: " + tableModel.getRowCount());
+    }
+
+    /**
+     * Sortuje widok według kolumny, nie przestawiając danych ({@link ParallelSorter}).
+     * Ponowne sortowanie według tej samej kolumny odwraca kierunek - korzysta przy tym
+     * z zapamiętanej kolejności, więc nie wymaga ponownego sortowania.
+     * @param column indeks kolumny modelu
+     * @param addKey true - dodaj kolumnę jako kolejny klucz sortowania (lub odwróć jej kierunek),
+     *               false - sortuj tylko według tej kolumny
+     */
+    public void sortBy(int column, boolean addKey) {
+        if (!checkIdle()) {
+            return;
+        }
+        if (column < 0 || column >= tableModel.getColumnCount()) {
+            return;
         }
+        List<ParallelSorter.SortKey> current = tableModel.getSortKeys();
+        List<ParallelSorter.SortKey> keys = new ArrayList<>();
+        if (addKey) {
+            boolean found = false;
+            for (ParallelSorter.SortKey key : current) {
+                if (key.column() == column) {
+                    keys.add(key.reversed());
+                    found = true;
+                } else {
+                    keys.add(key);
+                }
+            }
+            if (!found) {
+                keys.add(new ParallelSorter.SortKey(column, true));
+            }
+        } else if (current.size() == 1 && current.getFirst().column() == column) {
+            keys.add(current.getFirst().reversed());
+        } else {
+            keys.add(new ParallelSorter.SortKey(column, true));
+        }
+
+        CSVTableModel model = tableModel;
+        long start = System.nanoTime();
+        view.setStatusMessage(" Sortowanie...");
+        int[] columns = keys.stream().mapToInt(ParallelSorter.SortKey::column).toArray();
+        runTask("Sortowanie", new BackgroundTask<int[], Void>(view) {
+            private CSVTableModel.LoadedColumns loaded;
+
+            @Override
+            protected int[] doInBackground() throws IOException, InterruptedException {
+                loaded = model.loadColumns(columns, this::isCancelled);
+                if (loaded == null) {
+                    return null;
+                }
+                return new ParallelSorter().sort(loaded.isEmpty() ? model : model.withLoadedColumns(loaded),
+                        keys, this::isCancelled);
+            }
+
+            @Override
+            protected void succeeded(int[] order) {
+                if (order == null) {
+                    return;
+                }
+                model.setLoadedColumns(loaded);
+                operation().rows(model.getBaseRowCount());
+                CSVTableModel.Snapshot before = model.snapshot();
+                model.setSortOrder(keys, order);
+                model.postEdit("Sortowanie", before);
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                view.setStatusMessage(" Posortowano według: " + describeSort(model, keys)
+                        + " | Rekordów: " + model.getRowCount() + " | Czas: " + millis + " ms");
+            }
+        });
     }
 
     /**
-     * Ukrywa wybrane kolumny w tabeli
+     * Przywraca kolejność wierszy z pliku
+     */
+    public void clearSort() {
+        if (!checkIdle()) {
+            return;
+        }
+        if (!tableModel.isSorted()) {
+            return;
+        }
+        try (Metrics.Operation operation = Metrics.start("Wyczyszczenie sortowania").blocking()) {
+            CSVTableModel.Snapshot before = tableModel.snapshot();
+            tableModel.clearSortOrder();
+            tableModel.postEdit("Wyczyszczenie sortowania", before);
+            operation.rows(tableModel.getRowCount());
+        }
+        view.setStatusMessage(" Przywrócono kolejność z pliku | Rekordów: " + tableModel.getRowCount());
+    }
+
+    /**
+     * Opisuje klucze sortowania do wyświetlenia na pasku stanu, np. "kwota ▼, kraj ▲".
+     * @param model model danych
+     * @param keys klucze sortowania
+     * @return opis kluczy
+     */
+    private static String describeSort(CSVTableModel model, List<ParallelSorter.SortKey> keys) {
+        StringBuilder description = new StringBuilder();
+        for (ParallelSorter.SortKey key : keys) {
+            if (!description.isEmpty()) {
+                description.append(", ");
+            }
+            description.append(model.getColumnName(key.column())).append(key.ascending() ? " ▲" : " ▼");
+        }
+        return description.toString();
+    }
+
+    /**
+     * Wyszukuje tekst we wszystkich kolumnach i podświetla pasujące komórki.
+     * Indeksy trigramowe kolumn budowane są w tle przy pierwszym wyszukiwaniu.
+     * Kolumny niewczytane (ukryte) są pomijane.
+     * @param text szukany tekst (pusty usuwa podświetlenie)
+     */
+    public void searchAll(String text) {
+        if (!checkIdle()) {
+            return;
+        }
+        if (text == null || text.isEmpty()) {
+            view.setSearchHighlight(null);
+            view.setStatusMessage(" Wyczyszczono wyszukiwanie | Rekordów: " + tableModel.getRowCount());
+            return;
+        }
+
+        CSVTableModel model = tableModel;
+        view.setStatusMessage(" Wyszukiwanie...");
+        runTask("Wyszukiwanie", new BackgroundTask<BitSet[], Void>(view) {
+            @Override
+            protected BitSet[] doInBackground() {
+                int columnCount = model.getColumnCount();
+                BitSet[] matches = new BitSet[columnCount];
+                for (int col = 0; col < columnCount && !isCancelled(); col++) {
+                    matches[col] = model.isColumnLoaded(col) ? model.findContains(col, text) : new BitSet();
+                    reportProgress(col + 1, columnCount);
+                }
+                return matches;
+            }
+
+            @Override
+            protected void succeeded(BitSet[] matches) {
+                operation().rows(model.getBaseRowCount());
+                // Liczone są tylko komórki widoczne przy bieżącym filtrze
+                BitSet visible = model.getRowFilter();
+                BitSet rows = new BitSet();
+                long cells = 0;
+                for (BitSet columnMatches : matches) {
+                    BitSet shown = columnMatches;
+                    if (visible != null) {
+                        shown = (BitSet) columnMatches.clone();
+                        shown.and(visible);
+                    }
+                    cells += shown.cardinality();
+                    rows.or(shown);
+                }
+                view.setSearchHighlight(matches);
+                int first = rows.nextSetBit(0);
+                if (first >= 0) {
+                    view.scrollToRow(model.convertRowIndexToView(first));
+                }
+                view.setStatusMessage(" Wyszukano \"" + text + "\" | Komórek: " + cells + " | Wierszy: " + rows.cardinality());
+            }
+        });
+    }
+
+    /**
+     * Ukrywa wybrane kolumny w tabeli. Wartości ukrytych kolumn wczytanych z pliku
+     * są zwalniane z pamięci (poza kolumnami edytowanymi od wczytania) - wczytywane
+     * są ponownie po pokazaniu kolumn. Przy filtrze z regułą kolumny pozostają w pamięci,
+     * bo reguła może sprawdzać je w wierszach dopisanych do śledzonego pliku.
      * @param columnIndices indeksy kolumn do ukrycia
      */
     public void hideColumns(int[] columnIndices) {
@@ -332,58 +1179,72 @@ public class CSVController {
             return;
         }
 
-        for (int index : columnIndices) {
-            view.getTable().getColumnModel().getColumn(index).setMinWidth(0);
-            view.getTable().getColumnModel().getColumn(index).setMaxWidth(0);
-            view.getTable().getColumnModel().getColumn(index).setWidth(0);
-        }
+        setColumnsHidden(columnIndices, true);
 
-        view.setStatusMessage(" Ukryto " + columnIndices.length + " kolumn");
+        int released = 0;
+        if (!tasks.isBusy() && tableModel.getFilterRule() == null) {
+            released = tableModel.unloadColumns(columnIndices);
+        }
+        view.setStatusMessage(" Ukryto " + columnIndices.length + " kolumn"
+                + (released > 0 ? " | Zwolniono z pamięci: " + released : ""));
     }
 
     /**
-     * Pokazuje wszystkie ukryte kolumny
+     * Pokazuje wszystkie ukryte kolumny. Kolumny niewczytane wczytywane są z pliku w tle.
      */
     public void showAllColumns() {
-        JTable table = view.getTable();
-        for (int i = 0; i < tableModel.getColumnCount(); i++) {
-            table.getColumnModel().getColumn(i).setMinWidth(50);
-            table.getColumnModel().getColumn(i).setMaxWidth(Integer.MAX_VALUE);
-            table.getColumnModel().getColumn(i).setPreferredWidth(100);
+        int[] unloaded = tableModel.getUnloadedColumns();
+        if (unloaded.length == 0) {
+            setColumnsHidden(null, false);
+            view.setStatusMessage(" Pokazano wszystkie kolumny");
+            return;
         }
-        view.setStatusMessage(" Pokazano wszystkie kolumny");
+        if (!checkIdle()) {
+            return;
+        }
+        CSVTableModel model = tableModel;
+        view.setStatusMessage(" Wczytywanie kolumn: " + unloaded.length);
+        runTask("Wczytywanie kolumn", new BackgroundTask<CSVTableModel.LoadedColumns, Void>(view) {
+            @Override
+            protected CSVTableModel.LoadedColumns doInBackground() throws IOException, InterruptedException {
+                return model.loadColumns(unloaded, this::isCancelled);
+            }
+
+            @Override
+            protected void succeeded(CSVTableModel.LoadedColumns loaded) {
+                if (loaded == null) {
+                    return;
+                }
+                model.setLoadedColumns(loaded);
+                operation().rows(model.getBaseRowCount());
+                setColumnsHidden(null, false);
+                view.setStatusMessage(" Pokazano wszystkie kolumny | Wczytano z pliku: " + loaded.indices().length);
+            }
+        });
     }
 
     /**
-     * Wykrywa separator w pliku CSV
-     * @param file plik do analizy
-     * @return wykryty separator
+     * Ukrywa lub pokazuje kolumny tabeli, zmieniając ich szerokość.
+     * @param columnIndices indeksy kolumn (null - wszystkie)
+     * @param hidden true - ukryj, false - pokaż
      */
-    private char detectSeparator(File file) {
-        char[] possibleSeparators = {',', ';', '\t', '|'};
-        int[] counts = new int[possibleSeparators.length];
-
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null && line.length() < 1000) {
-                for (int i = 0; i < possibleSeparators.length; i++) {
-                    int finalI = i;
-                    counts[i] += line.chars().filter(ch -> ch == possibleSeparators[finalI]).count();
-                }
-            }
-        } catch (IOException e) {
-            return ','; // Domyślny separator jeśli nie uda się odczytać pliku
+    private void setColumnsHidden(int[] columnIndices, boolean hidden) {
+        JTable table = view.getTable();
+        int[] indices = columnIndices != null ? columnIndices : new int[table.getColumnModel().getColumnCount()];
+        if (columnIndices == null) {
+            Arrays.setAll(indices, i -> i);
         }
-
-        // Znajdź separator z największą liczbą wystąpień
-        int maxIndex = 0;
-        for (int i = 1; i < counts.length; i++) {
-            if (counts[i] > counts[maxIndex]) {
-                maxIndex = i;
+        for (int index : indices) {
+            if (hidden) {
+                table.getColumnModel().getColumn(index).setMinWidth(0);
+                table.getColumnModel().getColumn(index).setMaxWidth(0);
+                table.getColumnModel().getColumn(index).setWidth(0);
+            } else {
+                table.getColumnModel().getColumn(index).setMinWidth(50);
+                table.getColumnModel().getColumn(index).setMaxWidth(Integer.MAX_VALUE);
+                table.getColumnModel().getColumn(index).setPreferredWidth(100);
             }
         }
-
-        return possibleSeparators[maxIndex];
     }
 
     /**
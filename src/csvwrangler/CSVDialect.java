@@ -0,0 +1,380 @@
+package csvwrangler;
+
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dialekt pliku CSV - separator, znak cudzysłowu, obecność nagłówka, kodowanie,
+ * długość znacznika BOM i znak końca wiersza.
+ * <p>
+ * Dialekt wykrywany jest metodą {@link #sniff(FileChannel)} na podstawie próbki
+ * o stałym rozmiarze ({@value #SAMPLE_SIZE} bajtów) z początku pliku, odczytanej
+ * jednym odczytem z kanału, z którego następnie czyta loader. Czas wykrywania
+ * zależy więc tylko od rozmiaru próbki, a nie od rozmiaru pliku.
+ *
+ * @param separator separator pól
+ * @param quote znak cudzysłowu
+ * @param hasHeader czy pierwszy rekord zawiera nazwy kolumn
+ * @param charset kodowanie znaków
+ * @param bomLength liczba bajtów znacznika BOM na początku pliku (0 - brak znacznika)
+ * @param lineSeparator znak (znaki) końca rekordu
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public record CSVDialect(char separator, char quote, boolean hasHeader, Charset charset,
+                         int bomLength, String lineSeparator) {
+    /** Maksymalna liczba bajtów z początku pliku analizowana przy wykrywaniu dialektu */
+    public static final int SAMPLE_SIZE = 64 * 1024;
+    /** Maksymalna liczba rekordów próbki analizowana przy wykrywaniu separatora i nagłówka */
+    public static final int SAMPLE_RECORDS = 100;
+
+    /** Rozważane separatory - przy równej ocenie wygrywa wcześniejszy */
+    private static final char[] SEPARATORS = {',', ';', '\t', '|'};
+    private static final char APOSTROPHE = '\'';
+    /**
+     * Kodowanie przyjmowane dla plików, które nie są poprawnym UTF-8 - typowe dla
+     * plików eksportowanych przez polskie wersje Excela.
+     */
+    private static final Charset FALLBACK_CHARSET = Charset.isSupported("windows-1250")
+            ? Charset.forName("windows-1250") : StandardCharsets.ISO_8859_1;
+
+    /**
+     * Tworzy dialekt z domyślnymi ustawieniami i podanym separatorem: cudzysłów '"',
+     * nagłówek w pierwszym wierszu, UTF-8 bez znacznika BOM, systemowy koniec wiersza.
+     *
+     * @param separator separator pól
+     * @return dialekt
+     */
+    public static CSVDialect of(char separator) {
+        return new CSVDialect(separator, CSVTokenizer.DEFAULT_QUOTE, true, StandardCharsets.UTF_8, 0,
+                System.lineSeparator());
+    }
+
+    /**
+     * Zwraca kopię dialektu z innym separatorem.
+     *
+     * @param separator separator pól
+     * @return dialekt
+     */
+    public CSVDialect withSeparator(char separator) {
+        return new CSVDialect(separator, quote, hasHeader, charset, bomLength, lineSeparator);
+    }
+
+    /**
+     * Sprawdza czy plik w tym dialekcie można dzielić na rekordy bezpośrednio w bajtach
+     * (separator, cudzysłów i znaki końca wiersza są pojedynczymi bajtami ASCII).
+     *
+     * @return true dla UTF-8 i kodowań jednobajtowych
+     */
+    public boolean isByteOriented() {
+        return separator < 0x80 && quote < 0x80
+                && (charset.equals(StandardCharsets.UTF_8) || charset.newEncoder().maxBytesPerChar() == 1);
+    }
+
+    /**
+     * Wykrywa dialekt pliku.
+     *
+     * @param file plik CSV
+     * @return wykryty dialekt
+     * @throws IOException jeśli nie uda się odczytać pliku
+     */
+    public static CSVDialect sniff(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return sniff(channel);
+        }
+    }
+
+    /**
+     * Wykrywa dialekt na podstawie próbki z początku kanału. Odczyt nie zmienia
+     * pozycji kanału, więc ten sam kanał można następnie przekazać czytnikowi.
+     *
+     * @param channel kanał pliku CSV
+     * @return wykryty dialekt
+     * @throws IOException jeśli nie uda się odczytać pliku
+     */
+    public static CSVDialect sniff(FileChannel channel) throws IOException {
+        ByteBuffer sample = ByteBuffer.allocate((int) Math.min(SAMPLE_SIZE, channel.size()));
+        while (sample.hasRemaining() && channel.read(sample, sample.position()) > 0) {
+            // odczyt pozycyjny - pozycja kanału pozostaje bez zmian
+        }
+        return sniff(sample.array(), sample.position(), sample.position() >= channel.size());
+    }
+
+    /**
+     * Wykrywa dialekt na podstawie próbki bajtów.
+     *
+     * @param sample bajty z początku pliku
+     * @param length liczba bajtów próbki
+     * @param complete czy próbka obejmuje cały plik
+     * @return wykryty dialekt
+     */
+    static CSVDialect sniff(byte[] sample, int length, boolean complete) {
+        int bomLength = 0;
+        Charset charset;
+        if (startsWith(sample, length, 0xEF, 0xBB, 0xBF)) {
+            charset = StandardCharsets.UTF_8;
+            bomLength = 3;
+        } else if (startsWith(sample, length, 0xFE, 0xFF)) {
+            charset = StandardCharsets.UTF_16BE;
+            bomLength = 2;
+        } else if (startsWith(sample, length, 0xFF, 0xFE)) {
+            charset = StandardCharsets.UTF_16LE;
+            bomLength = 2;
+        } else {
+            charset = guessCharset(sample, length, complete);
+        }
+
+        char[] text = decode(sample, bomLength, length - bomLength, charset, complete);
+        int end = text.length;
+        if (!complete) {
+            // Odrzuć ostatni, prawdopodobnie niepełny wiersz próbki
+            while (end > 0 && text[end - 1] != '\n') {
+                end--;
+            }
+            if (end == 0) {
+                end = text.length;
+            }
+        }
+
+        char quote = detectQuote(text, end);
+        String lineSeparator = detectLineSeparator(text, end, quote);
+
+        char separator = SEPARATORS[0];
+        List<String[]> records = List.of();
+        double bestConsistency = 0;
+        int bestFields = 1;
+        for (char candidate : SEPARATORS) {
+            List<String[]> parsed = parse(text, end, candidate, quote);
+            int[] counts = new int[parsed.size()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = parsed.get(i).length;
+            }
+            // Ocena: udział rekordów o najczęstszej liczbie pól, a przy remisie - liczba pól
+            Arrays.sort(counts);
+            int modeFields = 1;
+            int modeFrequency = 0;
+            for (int i = 0, run; i < counts.length; i += run) {
+                run = 1;
+                while (i + run < counts.length && counts[i + run] == counts[i]) {
+                    run++;
+                }
+                if (run > modeFrequency || (run == modeFrequency && counts[i] > modeFields)) {
+                    modeFrequency = run;
+                    modeFields = counts[i];
+                }
+            }
+            if (modeFields < 2) {
+                continue;
+            }
+            double consistency = (double) modeFrequency / counts.length;
+            if (consistency > bestConsistency || (consistency == bestConsistency && modeFields > bestFields)) {
+                bestConsistency = consistency;
+                bestFields = modeFields;
+                separator = candidate;
+                records = parsed;
+            }
+        }
+        if (records.isEmpty()) {
+            records = parse(text, end, separator, quote);
+        }
+
+        return new CSVDialect(separator, quote, detectHeader(records), charset, bomLength, lineSeparator);
+    }
+
+    /**
+     * Sprawdza czy próbka zaczyna się podanymi bajtami.
+     */
+    private static boolean startsWith(byte[] sample, int length, int... prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((sample[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rozpoznaje kodowanie próbki bez znacznika BOM: UTF-16 po bajtach zerowych
+     * na co drugiej pozycji, UTF-8 jeśli próbka jest w nim poprawna, w pozostałych
+     * przypadkach {@link #FALLBACK_CHARSET}.
+     */
+    private static Charset guessCharset(byte[] sample, int length, boolean complete) {
+        int evenZeros = 0;
+        int oddZeros = 0;
+        for (int i = 0; i < length; i++) {
+            if (sample[i] == 0) {
+                if ((i & 1) == 0) {
+                    evenZeros++;
+                } else {
+                    oddZeros++;
+                }
+            }
+        }
+        // Tekst ASCII w UTF-16 ma bajt zerowy w co drugim bajcie
+        if (oddZeros > length / 4 && evenZeros < oddZeros / 8) {
+            return StandardCharsets.UTF_16LE;
+        }
+        if (evenZeros > length / 4 && oddZeros < evenZeros / 8) {
+            return StandardCharsets.UTF_16BE;
+        }
+
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        // Niepełna sekwencja na końcu ucinanej próbki nie świadczy o błędzie kodowania
+        boolean valid = !decoder.decode(ByteBuffer.wrap(sample, 0, length), CharBuffer.allocate(length), complete)
+                .isError();
+        return valid ? StandardCharsets.UTF_8 : FALLBACK_CHARSET;
+    }
+
+    /**
+     * Dekoduje próbkę, zastępując niepoprawne sekwencje.
+     */
+    private static char[] decode(byte[] sample, int offset, int length, Charset charset, boolean complete) {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer out = CharBuffer.allocate(length);
+        decoder.decode(ByteBuffer.wrap(sample, offset, length), out, complete);
+        if (complete) {
+            decoder.flush(out);
+        }
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    /**
+     * Wybiera znak cudzysłowu: apostrof tylko wtedy, gdy rozpoczyna pola,
+     * a cudzysłów podwójny nie występuje na początku żadnego pola.
+     */
+    private static char detectQuote(char[] text, int end) {
+        int doubleQuotes = 0;
+        int apostrophes = 0;
+        for (int i = 0; i < end; i++) {
+            char c = text[i];
+            if ((c == CSVTokenizer.DEFAULT_QUOTE || c == APOSTROPHE) && (i == 0 || isFieldBoundary(text[i - 1]))) {
+                if (c == APOSTROPHE) {
+                    apostrophes++;
+                } else {
+                    doubleQuotes++;
+                }
+            }
+        }
+        return apostrophes > 0 && doubleQuotes == 0 ? APOSTROPHE : CSVTokenizer.DEFAULT_QUOTE;
+    }
+
+    private static boolean isFieldBoundary(char c) {
+        if (c == '\n' || c == '\r') {
+            return true;
+        }
+        for (char separator : SEPARATORS) {
+            if (c == separator) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wybiera najczęstszy znak końca wiersza poza cudzysłowami (CRLF, LF lub CR).
+     */
+    private static String detectLineSeparator(char[] text, int end, char quote) {
+        int crlf = 0;
+        int lf = 0;
+        int cr = 0;
+        boolean quoted = false;
+        for (int i = 0; i < end; i++) {
+            char c = text[i];
+            if (c == quote) {
+                quoted = !quoted; // podwojony cudzysłów zmienia stan dwukrotnie
+            } else if (!quoted && c == '\r') {
+                if (i + 1 < end && text[i + 1] == '\n') {
+                    crlf++;
+                    i++;
+                } else {
+                    cr++;
+                }
+            } else if (!quoted && c == '\n') {
+                lf++;
+            }
+        }
+        if (crlf == 0 && lf == 0 && cr == 0) {
+            return System.lineSeparator();
+        }
+        if (crlf >= lf && crlf >= cr) {
+            return "\r\n";
+        }
+        return lf >= cr ? "\n" : "\r";
+    }
+
+    /**
+     * Dzieli próbkę na co najwyżej {@value #SAMPLE_RECORDS} rekordów.
+     */
+    private static List<String[]> parse(char[] text, int end, char separator, char quote) {
+        CSVTokenizer tokenizer = new CSVTokenizer(new CharArrayReader(text, 0, end), separator, quote);
+        List<String[]> records = new ArrayList<>();
+        try {
+            while (records.size() < SAMPLE_RECORDS && tokenizer.nextRecord()) {
+                records.add(tokenizer.toArray());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // CharArrayReader nie zgłasza wyjątków
+        }
+        return records;
+    }
+
+    /**
+     * Rozpoznaje wiersz nagłówka. Każda kolumna głosuje: kolumna typowana
+     * (liczby, daty, wartości logiczne) - za nagłówkiem, jeśli pierwsza wartość
+     * nie pasuje do typu pozostałych; kolumna tekstowa o stałej długości wartości -
+     * za nagłówkiem, jeśli pierwsza wartość ma inną długość. Bez rozstrzygnięcia
+     * przyjmowany jest nagłówek.
+     */
+    private static boolean detectHeader(List<String[]> records) {
+        if (records.size() < 2) {
+            return true;
+        }
+        String[] first = records.getFirst();
+        int votes = 0;
+        for (int column = 0; column < first.length; column++) {
+            int candidates = ColumnType.ALL;
+            int length = -1;
+            boolean values = false;
+            for (int row = 1; row < records.size(); row++) {
+                String[] record = records.get(row);
+                if (column >= record.length || record[column].isEmpty()) {
+                    continue;
+                }
+                String value = record[column];
+                values = true;
+                candidates &= ColumnType.candidates(value);
+                length = length == -1 || length == value.length() ? value.length() : -2;
+            }
+            if (!values || first[column].isEmpty()) {
+                continue;
+            }
+            int typed = candidates & ~ColumnType.STRING.mask();
+            if (typed != 0) {
+                votes += (ColumnType.candidates(first[column]) & typed) == 0 ? 1 : -1;
+            } else if (length >= 0) {
+                votes += first[column].length() != length ? 1 : -1;
+            }
+        }
+        return votes >= 0;
+    }
+}
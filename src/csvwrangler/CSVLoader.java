@@ -0,0 +1,549 @@
+package csvwrangler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Strumieniowy loader plików CSV działający poza wątkiem EDT.
+ * Plik jest parsowany w paczkach wierszy, a każda paczka trafia do modelu
+ * zaraz po sparsowaniu, dzięki czemu pierwsze wiersze widać natychmiast,
+ * a w pamięci nigdy nie leży jednocześnie cały plik i cały model.
+ * Typy kolumn rozpoznawane są w wątku parsującym, w tym samym przebiegu co
+ * parsowanie - model nie musi później ponownie przeglądać danych. Kodowanie kolumn
+ * dobierane jest po pierwszych {@value #SCHEMA_SAMPLE_ROWS} wierszach (jak w {@link ExternalSort}):
+ * mniejsza próbka częściej trafiałaby na wartość niepasującą do typu dalej w pliku,
+ * co wymusza przepisanie kolumny na tekstową i ponowne przekodowanie po wczytaniu,
+ * a większa dłużej trzyma początkowe wiersze w kolumnach tekstowych.
+ * Dialekt pliku (separator, cudzysłów, nagłówek, kodowanie) wykrywany jest
+ * w wątku tła na podstawie próbki odczytanej z tego samego kanału, z którego
+ * parsowany jest plik.
+ * Duże pliki po wczytaniu zapisywane są w binarnej pamięci podręcznej
+ * ({@link ColumnarCache}); przy kolejnym otwarciu niezmienionego pliku kolumny
+ * odczytywane są z niej bez parsowania.
+ * Można wczytać tylko wybrane kolumny pliku: tekst tworzony jest jedynie dla ich pól,
+ * a pozostałe kolumny trafiają do modelu jako niewczytane ({@link UnloadedColumn})
+ * i są wczytywane z pliku dopiero przy potrzebie ({@link ColumnSource}).
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public class CSVLoader extends BackgroundTask<Integer, CSVLoader.Batch> {
+    /** Rozmiar pierwszej paczki - mały, aby pierwsze wiersze pojawiły się od razu */
+    private static final int FIRST_BATCH_SIZE = 256;
+    /** Docelowy rozmiar kolejnych paczek */
+    private static final int BATCH_SIZE = 16_384;
+    /** Liczba wierszy, po których dobierane jest kodowanie kolumn */
+    private static final int SCHEMA_SAMPLE_ROWS = 16_384;
+    /** Maksymalna liczba paczek oczekujących na przetworzenie w EDT */
+    private static final int MAX_PENDING_BATCHES = 4;
+
+    private final CSVTableModel tableModel;
+    private final File file;
+    /** Indeksy wczytywanych kolumn pliku (null - wszystkie) */
+    private final int[] projection;
+    private final Runnable onFinished;
+    private final Semaphore pendingBatches = new Semaphore(MAX_PENDING_BATCHES);
+    private volatile CSVDialect dialect;
+    private ColumnarCache.Key sourceKey;
+    private ColumnarCache.Key cacheKey;
+    private ColumnarCache.Entry cached;
+    /** Pierwszy rekord pliku ze wszystkimi polami (tylko przy wczytywaniu wybranych kolumn) */
+    private String[] firstRecord;
+    /** Rozmiar pliku w chwili rozpoczęcia odczytu - czytniki nie czytają dalej */
+    private volatile long loadedLength;
+    private boolean loaded;
+    private TypeInferrer inferrer;
+    /** Liczba wierszy uwzględnionych przez {@link #inferrer} */
+    private int inferredRows;
+    private boolean schemaPublished;
+    private boolean headerSkipped;
+    private boolean headersApplied;
+    private int loadedRows;
+
+    /**
+     * Paczka sparsowanych wierszy wraz z liczbą odczytanych do tej pory bajtów.
+     *
+     * @param rows sparsowane wiersze
+     * @param bytesRead liczba bajtów pliku odczytanych po sparsowaniu paczki
+     * @param schema typy kolumn rozpoznane na próbce {@value #SCHEMA_SAMPLE_ROWS} wierszy (tylko w paczce,
+     *               która dopełniła próbkę, w pozostałych null)
+     */
+    public record Batch(List<String[]> rows, long bytesRead, TypeInferrer schema) {
+    }
+
+    /**
+     * Tworzy loader dla wskazanego pliku.
+     *
+     * @param view widok, w którym raportowany jest postęp
+     * @param tableModel model, do którego trafiają wczytane wiersze
+     * @param file plik CSV do wczytania
+     * @param onFinished akcja wykonywana w EDT po poprawnym zakończeniu wczytywania
+     */
+    public CSVLoader(CSVWranglerApp view, CSVTableModel tableModel, File file, Runnable onFinished) {
+        this(view, tableModel, file, null, onFinished);
+    }
+
+    /**
+     * Tworzy loader wczytujący tylko wybrane kolumny pliku.
+     *
+     * @param view widok, w którym raportowany jest postęp
+     * @param tableModel model, do którego trafiają wczytane wiersze
+     * @param file plik CSV do wczytania
+     * @param projection rosnąco posortowane indeksy wczytywanych kolumn (null - wszystkie)
+     * @param onFinished akcja wykonywana w EDT po poprawnym zakończeniu wczytywania
+     */
+    public CSVLoader(CSVWranglerApp view, CSVTableModel tableModel, File file, int[] projection, Runnable onFinished) {
+        super(view);
+        this.tableModel = tableModel;
+        this.file = file;
+        this.projection = projection;
+        this.onFinished = onFinished;
+    }
+
+    /**
+     * Odczytuje kolumny z pamięci podręcznej albo wykrywa dialekt pliku, parsuje
+     * plik w tle i publikuje kolejne paczki wierszy.
+     *
+     * @return liczba sparsowanych wierszy (łącznie z nagłówkiem)
+     * @throws IOException jeśli nie uda się odczytać pliku
+     * @throws InterruptedException jeśli wątek zostanie przerwany
+     */
+    @Override
+    protected Integer doInBackground() throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // Klucz pliku pozwala później wczytać pominięte kolumny ze sprawdzeniem, że plik się nie zmienił
+            sourceKey = ColumnarCache.key(file, channel);
+            if (ColumnarCache.isWorthCaching(channel.size())) {
+                cacheKey = sourceKey;
+                cached = ColumnarCache.read(cacheKey, projection);
+                if (cached != null) {
+                    Metrics.cacheHit();
+                    dialect = cached.dialect();
+                    loadedLength = cacheKey.size();
+                    return cached.rowCount();
+                }
+                Metrics.cacheMiss();
+            }
+            dialect = CSVDialect.sniff(channel);
+            loadedLength = channel.size();
+            if (projection != null) {
+                firstRecord = readFirstRecord(channel, dialect);
+                channel.position(0);
+            }
+            return parse(channel, file, dialect, projection, this::publishBatch, this::isCancelled);
+        }
+    }
+
+    /**
+     * Odczytuje nazwy kolumn pliku - np. do wyboru kolumn przed wczytaniem.
+     * Plik bez nagłówka otrzymuje nazwy domyślne (Kol 1, Kol 2, ...).
+     *
+     * @param file plik CSV
+     * @return nazwy kolumn (pusta tablica dla pustego pliku)
+     * @throws IOException jeśli nie uda się odczytać pliku
+     */
+    static String[] readColumnNames(File file) throws IOException {
+        return readColumnNames(file, null);
+    }
+
+    /**
+     * Odczytuje nazwy kolumn pliku z podanym separatorem (pozostałe cechy dialektu są wykrywane).
+     *
+     * @param file plik CSV
+     * @param separator separator pól (null - wykrywany)
+     * @return nazwy kolumn (pusta tablica dla pustego pliku)
+     * @throws IOException jeśli nie uda się odczytać pliku
+     */
+    static String[] readColumnNames(File file, Character separator) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            CSVDialect dialect = sniff(channel, separator);
+            String[] first = readFirstRecord(channel, dialect);
+            return first == null ? new String[0] : dialect.hasHeader() ? first : defaultHeaders(first.length);
+        }
+    }
+
+    /**
+     * Odczytuje wszystkie pola pierwszego rekordu pliku.
+     *
+     * @param channel kanał pliku ustawiony na początku pliku
+     * @param dialect dialekt pliku
+     * @return pola rekordu lub null dla pustego pliku
+     * @throws IOException jeśli nie uda się odczytać pliku
+     */
+    private static String[] readFirstRecord(FileChannel channel, CSVDialect dialect) throws IOException {
+        CSVRecordReader reader = CSVRecordReader.open(channel, dialect);
+        // Czytnik nie jest zamykany - zamknąłby kanał, z którego plik jest dalej parsowany
+        return reader.nextRecord() ? reader.toArray() : null;
+    }
+
+    /**
+     * Parsuje plik, przekazując kolejne paczki wierszy odbiorcy.
+     *
+     * @param channel kanał pliku ustawiony na początku pliku (zamykany po parsowaniu)
+     * @param file plik CSV
+     * @param dialect dialekt pliku
+     * @param projection indeksy odczytywanych pól - wiersze zawierają tylko je, w tej kolejności
+     *                   (null - wszystkie pola)
+     * @param consumer odbiorca paczek (wywoływany w kolejności wierszy w pliku)
+     * @param cancelled sprawdzane przed każdym wierszem - zwrócenie true przerywa parsowanie
+     * @return liczba sparsowanych wierszy (łącznie z nagłówkiem)
+     * @throws IOException jeśli nie uda się odczytać pliku
+     * @throws InterruptedException jeśli wątek zostanie przerwany
+     */
+    static int parse(FileChannel channel, File file, CSVDialect dialect, int[] projection,
+                     ParallelCSVParser.BatchConsumer consumer, BooleanSupplier cancelled)
+            throws IOException, InterruptedException {
+        if (ParallelCSVParser.isWorthParallel(file, dialect)) {
+            // Duże pliki parsowane są równolegle; paczki trafiają do modelu w kolejności wierszy
+            return (int) new ParallelCSVParser(file, dialect, ForkJoinPool.commonPool(), projection).parse((rows, position) -> {
+                for (int from = 0; from < rows.size() && !cancelled.getAsBoolean(); from += BATCH_SIZE) {
+                    int to = Math.min(rows.size(), from + BATCH_SIZE);
+                    consumer.accept(rows.subList(from, to), position);
+                }
+            }, cancelled);
+        }
+
+        int parsedRows = 0;
+        try (CSVRecordReader reader = CSVRecordReader.open(channel, dialect)) {
+            reader.setProjection(projection);
+            int batchSize = FIRST_BATCH_SIZE;
+            List<String[]> rows = new ArrayList<>(batchSize);
+
+            while (!cancelled.getAsBoolean() && reader.nextRecord()) {
+                rows.add(reader.toArray(projection));
+                parsedRows++;
+                if (rows.size() >= batchSize) {
+                    consumer.accept(rows, reader.getBytesRead());
+                    batchSize = BATCH_SIZE;
+                    rows = new ArrayList<>(batchSize);
+                }
+            }
+            if (!rows.isEmpty() && !cancelled.getAsBoolean()) {
+                consumer.accept(rows, reader.getBytesRead());
+            }
+        }
+        return parsedRows;
+    }
+
+    /**
+     * Wczytuje plik do modelu w bieżącym wątku, bez raportowania postępu w widoku.
+     * Wynik jest taki sam jak przy wczytywaniu w tle (dialekt, nagłówki, typy kolumn).
+     *
+     * @param tableModel model, do którego trafiają wczytane wiersze
+     * @param file plik CSV
+     * @return liczba wierszy modelu
+     * @throws IOException jeśli nie uda się odczytać pliku
+     * @throws InterruptedException jeśli wątek zostanie przerwany
+     */
+    static int load(CSVTableModel tableModel, File file) throws IOException, InterruptedException {
+        return load(tableModel, file, null, null);
+    }
+
+    /**
+     * Wczytuje plik z podanym separatorem do modelu w bieżącym wątku
+     * (pozostałe cechy dialektu są wykrywane).
+     *
+     * @param tableModel model, do którego trafiają wczytane wiersze
+     * @param file plik CSV
+     * @param separator separator pól
+     * @return liczba wierszy modelu
+     * @throws IOException jeśli nie uda się odczytać pliku
+     * @throws InterruptedException jeśli wątek zostanie przerwany
+     */
+    static int load(CSVTableModel tableModel, File file, char separator) throws IOException, InterruptedException {
+        return load(tableModel, file, separator, null);
+    }
+
+    /**
+     * Wczytuje wybrane kolumny pliku do modelu w bieżącym wątku. Pozostałe kolumny
+     * nie zajmują pamięci - można je później wczytać ({@link CSVTableModel#loadColumns}).
+     *
+     * @param tableModel model, do którego trafiają wczytane wiersze
+     * @param file plik CSV
+     * @param separator separator pól (null - wykrywany)
+     * @param projection rosnąco posortowane indeksy wczytywanych kolumn (null - wszystkie)
+     * @return liczba wierszy modelu
+     * @throws IOException jeśli nie uda się odczytać pliku
+     * @throws InterruptedException jeśli wątek zostanie przerwany
+     */
+    static int load(CSVTableModel tableModel, File file, Character separator, int[] projection)
+            throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return load(tableModel, channel, file, sniff(channel, separator), projection);
+        }
+    }
+
+    private static CSVDialect sniff(FileChannel channel, Character separator) throws IOException {
+        CSVDialect dialect = CSVDialect.sniff(channel);
+        return separator != null ? dialect.withSeparator(separator) : dialect;
+    }
+
+    private static int load(CSVTableModel tableModel, FileChannel channel, File file, CSVDialect dialect,
+                            int[] projection) throws IOException, InterruptedException {
+        ColumnarCache.Key key = null;
+        String[] header = null;
+        if (projection != null) {
+            key = ColumnarCache.key(file, channel);
+            header = readFirstRecord(channel, dialect);
+            channel.position(0);
+        }
+        ColumnSource source = projection != null ? new ColumnSource(file, dialect, key) : null;
+        String[] firstRecord = header;
+        List<TypeInferrer> schema = new ArrayList<>(1);
+        parse(channel, file, dialect, projection, (rows, position) -> {
+            if (rows.isEmpty()) {
+                return;
+            }
+            int start = 0;
+            if (schema.isEmpty()) {
+                applyHeaders(tableModel, firstRecord != null ? firstRecord : rows.getFirst(), dialect);
+                if (source != null) {
+                    tableModel.setColumnSource(source);
+                    tableModel.unloadColumns(complement(projection, tableModel.getColumnCount()));
+                }
+                schema.add(new TypeInferrer(rows.getFirst().length));
+                start = dialect.hasHeader() ? 1 : 0;
+            }
+            TypeInferrer inferrer = schema.getFirst();
+            for (int i = start; i < rows.size(); i++) {
+                inferrer.accept(rows.get(i));
+            }
+            // Wszystkie rozpoznane wiersze trafiają do modelu - próbkę dopełnia paczka przekraczająca jej rozmiar
+            int before = tableModel.getBaseRowCount();
+            if (before < SCHEMA_SAMPLE_ROWS && before + rows.size() - start >= SCHEMA_SAMPLE_ROWS) {
+                tableModel.applySchema(inferrer, projection);
+            }
+            tableModel.appendRecords(rows.subList(start, rows.size()), projection);
+        }, () -> false);
+        if (!schema.isEmpty()) {
+            tableModel.applySchema(schema.getFirst(), projection);
+        }
+        return tableModel.getRowCount();
+    }
+
+    /**
+     * Rozpoznaje typy wartości paczki i publikuje ją, czekając, jeśli EDT nie nadąża
+     * z przetwarzaniem poprzednich. Ogranicza to zużycie pamięci do kilku paczek
+     * niezależnie od rozmiaru pliku.
+     *
+     * @param rows wiersze paczki
+     * @param bytesRead liczba bajtów pliku odczytanych po sparsowaniu paczki
+     * @throws InterruptedException jeśli wątek zostanie przerwany
+     */
+    private void publishBatch(List<String[]> rows, long bytesRead) throws InterruptedException {
+        for (String[] row : rows) {
+            if (inferrer == null) {
+                inferrer = new TypeInferrer(row.length);
+                if (dialect.hasHeader()) {
+                    continue; // nagłówek nie jest wartością kolumny
+                }
+            }
+            inferrer.accept(row);
+            inferredRows++;
+        }
+        TypeInferrer schema = null;
+        if (!schemaPublished && inferredRows >= SCHEMA_SAMPLE_ROWS) {
+            schema = inferrer.copy();
+            schemaPublished = true;
+        }
+        while (!pendingBatches.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+            if (isCancelled()) {
+                return;
+            }
+        }
+        publish(new Batch(rows, bytesRead, schema));
+    }
+
+    /**
+     * Przekazuje opublikowane paczki do modelu (wywoływane w EDT).
+     *
+     * @param batches paczki zebrane od ostatniego wywołania
+     */
+    @Override
+    protected void process(List<Batch> batches) {
+        long edtStart = System.nanoTime();
+        long bytesRead = 0;
+        for (Batch batch : batches) {
+            pendingBatches.release();
+            if (isCancelled()) {
+                continue;
+            }
+            List<String[]> rows = batch.rows();
+            int start = 0;
+            if (!headersApplied && !rows.isEmpty()) {
+                applyHeaders(tableModel, firstRecord != null ? firstRecord : rows.getFirst(), dialect);
+                tableModel.setColumnSource(new ColumnSource(file, dialect, sourceKey));
+                if (projection != null) {
+                    tableModel.unloadColumns(complement(projection, tableModel.getColumnCount()));
+                }
+                headersApplied = true;
+                start = tableModel.hasHeaders() ? 1 : 0;
+            }
+            if (batch.schema() != null) {
+                // Kodowanie kolumn dobierane na podstawie próbki - kolejne wiersze
+                // trafiają od razu do zwartych kolumn
+                tableModel.applySchema(batch.schema(), projection);
+            }
+            tableModel.appendRecords(rows.subList(start, rows.size()), projection);
+            loadedRows = tableModel.getRowCount();
+            bytesRead = batch.bytesRead();
+        }
+        if (!isCancelled()) {
+            long total = Math.max(1, file.length());
+            reportProgress(bytesRead, total);
+            view.setStatusMessage(" Wczytywanie: " + file.getName()
+                    + " | Rekordów: " + loadedRows
+                    + " | " + formatMegabytes(bytesRead) + " / " + formatMegabytes(total) + " MB");
+        }
+        operation().edt(System.nanoTime() - edtStart);
+    }
+
+    /**
+     * Ustawia dialekt pliku i nagłówki kolumn na podstawie pierwszego wiersza pliku.
+     *
+     * @param tableModel model danych
+     * @param firstRow pierwszy wiersz pliku
+     * @param dialect dialekt pliku
+     */
+    private static void applyHeaders(CSVTableModel tableModel, String[] firstRow, CSVDialect dialect) {
+        tableModel.setDialect(dialect);
+        if (tableModel.hasHeaders()) {
+            tableModel.setColumnIdentifiers(firstRow);
+        } else {
+            tableModel.setColumnIdentifiers(defaultHeaders(firstRow.length));
+        }
+        tableModel.setRowCount(0);
+    }
+
+    /**
+     * Generuje domyślne nagłówki (Kol 1, Kol 2, ...) dla pliku bez nagłówka.
+     *
+     * @param columnCount liczba kolumn
+     * @return nazwy kolumn
+     */
+    private static String[] defaultHeaders(int columnCount) {
+        String[] headers = new String[columnCount];
+        for (int i = 0; i < headers.length; i++) {
+            headers[i] = "Kol " + (i + 1);
+        }
+        return headers;
+    }
+
+    /**
+     * Wyznacza indeksy kolumn spoza projekcji.
+     *
+     * @param projection rosnąco posortowane indeksy wczytywanych kolumn
+     * @param columnCount liczba kolumn pliku
+     * @return indeksy pomijanych kolumn
+     */
+    private static int[] complement(int[] projection, int columnCount) {
+        return IntStream.range(0, columnCount)
+                .filter(col -> Arrays.binarySearch(projection, col) < 0)
+                .toArray();
+    }
+
+    /**
+     * Kończy wczytywanie (wywoływane w EDT) - stosuje ostateczne typy kolumn i raportuje wynik.
+     *
+     * @param parsedRows liczba sparsowanych wierszy
+     */
+    @Override
+    protected void succeeded(Integer parsedRows) {
+        if (cached != null) {
+            tableModel.setDialect(cached.dialect());
+            tableModel.setColumnData(cached.names(), cached.columns());
+            tableModel.setColumnSource(new ColumnSource(file, cached.dialect(), sourceKey));
+            operation().rows(tableModel.getRowCount()).bytes(file.length());
+            view.setStatusMessage(" Wczytano z pamięci podręcznej: " + file.getName()
+                    + " | Rekordów: " + tableModel.getRowCount());
+            loaded = true;
+            onFinished.run();
+            return;
+        }
+        if (inferrer != null) {
+            // Ostateczne typy po całym pliku - przekodowywane są tylko zmienione kolumny
+            tableModel.applySchema(inferrer, projection);
+        }
+        operation().rows(tableModel.getRowCount()).bytes(file.length());
+        view.setStatusMessage(" Wczytano: " + file.getName() + " | Rekordów: " + tableModel.getRowCount());
+        if (headersApplied) {
+            loaded = true;
+            onFinished.run();
+            if (cacheKey != null && projection == null) {
+                // Kopia współdzieli bloki kolumn z modelem, więc powstaje w czasie proporcjonalnym do liczby bloków
+                ColumnarCache.writeInBackground(cacheKey, dialect, snapshot());
+            }
+        }
+    }
+
+    /**
+     * Sprawdza czy plik został wczytany w całości (wywoływane w EDT).
+     *
+     * @return true po poprawnym zakończeniu wczytywania
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Tworzy obiekt śledzący rekordy dopisane do pliku za wczytaną częścią.
+     *
+     * @return obiekt śledzący plik (jeszcze nieuruchomiony)
+     * @throws IOException jeśli pliku nie da się śledzić
+     */
+    FileFollower newFollower() throws IOException {
+        return new FileFollower(file, dialect, loadedLength);
+    }
+
+    /**
+     * Tworzy kopię modelu do zapisu w pamięci podręcznej - dalsza edycja modelu
+     * nie zmienia kopii.
+     *
+     * @return kopia modelu
+     */
+    private CSVTableModel snapshot() {
+        try {
+            return (CSVTableModel) tableModel.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e); // CSVTableModel implementuje Cloneable
+        }
+    }
+
+    /**
+     * Raportuje przerwanie wczytywania - wczytane wiersze pozostają w tabeli.
+     */
+    @Override
+    protected void cancelled() {
+        view.setStatusMessage(" Przerwano wczytywanie: " + file.getName() + " | Rekordów: " + tableModel.getRowCount());
+    }
+
+    /**
+     * Raportuje błąd wczytywania.
+     *
+     * @param cause wyjątek zgłoszony podczas wczytywania
+     */
+    @Override
+    protected void failed(Throwable cause) {
+        view.showErrorMessage("Błąd podczas wczytywania pliku: " + cause.getMessage());
+    }
+
+    /**
+     * Formatuje liczbę bajtów jako megabajty z jednym miejscem po przecinku.
+     *
+     * @param bytes liczba bajtów
+     * @return sformatowana wartość
+     */
+    private static String formatMegabytes(long bytes) {
+        return String.format("%.1f", bytes / (1024.0 * 1024.0));
+    }
+}
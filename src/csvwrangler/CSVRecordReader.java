@@ -0,0 +1,143 @@
+package csvwrangler;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Czytnik rekordów CSV - wspólny interfejs dla różnych sposobów odczytu pliku.
+ * Czytnik udostępnia zawsze jeden, bieżący rekord; pola są dekodowane
+ * do obiektów String dopiero przy wywołaniu {@link #getField(int)}.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public interface CSVRecordReader extends Closeable {
+    /** Rozmiar pliku, od którego używany jest czytnik mapujący plik do pamięci */
+    long MAPPED_THRESHOLD = 64L * 1024 * 1024;
+
+    /**
+     * Przechodzi do następnego rekordu.
+     *
+     * @return true jeśli wczytano rekord, false na końcu pliku
+     * @throws IOException jeśli nie uda się odczytać pliku
+     */
+    boolean nextRecord() throws IOException;
+
+    /**
+     * Zwraca liczbę pól bieżącego rekordu.
+     *
+     * @return liczba pól
+     */
+    int getFieldCount();
+
+    /**
+     * Zwraca wartość pola bieżącego rekordu.
+     *
+     * @param index indeks pola
+     * @return wartość pola
+     */
+    String getField(int index);
+
+    /**
+     * Zwraca liczbę bajtów pliku przetworzonych do tej pory.
+     *
+     * @return liczba bajtów
+     */
+    long getBytesRead();
+
+    /**
+     * Zwraca bieżący rekord jako nową tablicę wartości.
+     *
+     * @return tablica wartości pól
+     */
+    default String[] toArray() {
+        String[] row = new String[getFieldCount()];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = getField(i);
+        }
+        return row;
+    }
+
+    /**
+     * Zwraca wybrane pola bieżącego rekordu jako nową tablicę wartości.
+     *
+     * @param projection indeksy pól (null - wszystkie pola)
+     * @return wartości pól w kolejności indeksów (null dla pól, których rekord nie ma)
+     */
+    default String[] toArray(int[] projection) {
+        if (projection == null) {
+            return toArray();
+        }
+        String[] row = new String[projection.length];
+        int fieldCount = getFieldCount();
+        for (int i = 0; i < row.length; i++) {
+            if (projection[i] < fieldCount) {
+                row[i] = getField(projection[i]);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Zapowiada, że odczytywane będą tylko wskazane pola - czytnik może nie dekodować
+     * pozostałych ({@link #getField(int)} zwraca wtedy dla nich null). Czytnik mapujący
+     * plik dekoduje pola dopiero na żądanie, więc nie wymaga zapowiedzi.
+     *
+     * @param projection indeksy odczytywanych pól (null - wszystkie)
+     */
+    default void setProjection(int[] projection) {
+    }
+
+    /**
+     * Otwiera czytnik odpowiedni dla rozmiaru pliku: duże pliki są mapowane
+     * do pamięci, małe czytane strumieniowo.
+     *
+     * @param file plik CSV
+     * @param separator separator pól
+     * @return otwarty czytnik
+     * @throws IOException jeśli nie uda się otworzyć pliku
+     */
+    static CSVRecordReader open(File file, char separator) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return open(channel, CSVDialect.of(separator));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Otwiera czytnik na kanale pliku: duże pliki w kodowaniu zgodnym z ASCII są
+     * mapowane do pamięci, pozostałe czytane strumieniowo. Czytnik pomija znacznik BOM
+     * i przejmuje kanał - zamknięcie czytnika zamyka kanał.
+     *
+     * @param channel kanał pliku ustawiony na początku pliku
+     * @param dialect dialekt pliku
+     * @return otwarty czytnik
+     * @throws IOException jeśli nie uda się odczytać pliku
+     */
+    static CSVRecordReader open(FileChannel channel, CSVDialect dialect) throws IOException {
+        if (channel.size() >= MAPPED_THRESHOLD && dialect.isByteOriented()) {
+            return new MappedCSVReader(channel, dialect);
+        }
+        return new StreamCSVReader(channel, dialect);
+    }
+
+    /**
+     * Wykrywa separator w pliku CSV ({@link CSVDialect#sniff(File)}).
+     *
+     * @param file plik do analizy
+     * @return wykryty separator (przecinek, jeśli pliku nie da się odczytać)
+     */
+    static char detectSeparator(File file) {
+        try {
+            return CSVDialect.sniff(file).separator();
+        } catch (IOException e) {
+            return ','; // Domyślny separator jeśli nie uda się odczytać pliku
+        }
+    }
+}
@@ -1,28 +1,82 @@
 package csvwrangler;
 
-import javax.swing.event.TableModelListener;
-import javax.swing.table.DefaultTableModel;
-import java.util.Arrays;
-import java.util.Vector;
+import javax.swing.event.EventListenerList;
+import javax.swing.event.UndoableEditListener;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.undo.UndoableEditSupport;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
 
 /**
- * Rozszerzony model tabeli dostosowany do obsługi danych CSV.
- * Klasa dziedziczy po DefaultTableModel i dodaje funkcjonalność specyficzną dla CSV,
- * w tym obsługę różnych separatorów, zarządzanie oryginalnymi danymi i automatyczne
- * rozpoznawanie typów danych w kolumnach.
+ * Model tabeli dostosowany do obsługi danych CSV.
+ * Dane przechowywane są kolumnowo w kodowaniu wynikającym z typu kolumny
+ * ({@link ColumnType}): liczby w tablicach int[]/long[]/double[], wartości logiczne
+ * w mapach bitowych, daty jako numery dni, teksty o małej liczbie różnych wartości
+ * kodowane słownikowo, a pozostałe jako tekst. Puste komórki oznaczane są w mapach bitowych.
+ * Klasa dodaje też funkcjonalność specyficzną dla CSV, w tym obsługę różnych
+ * separatorów i kodowań znaków oraz automatyczne rozpoznawanie typów danych w kolumnach.
+ * Dla plików większych niż pamięć model może działać w trybie stronicowanym
+ * (tylko do odczytu), w którym wiersze pochodzą z {@link PagedRowSource}.
+ * Filtrowanie nie kopiuje danych: model udostępnia jedynie wiersze wskazane
+ * w mapie bitowej wierszy bazowych ({@link #setRowFilter(BitSet)}), a indeksy
+ * wierszy we wszystkich metodach odnoszą się do tego widoku.
+ * Migawki stanu ({@link #snapshot()}) współdzielą bloki kolumn z modelem
+ * (copy-on-write), dzięki czemu wielopoziomowa historia zmian kosztuje tylko
+ * tyle pamięci, ile zajmują zmodyfikowane bloki.
+ * Wyszukiwanie wartości równych, zaczynających się od tekstu i zawierających tekst
+ * korzysta z indeksów kolumn ({@link ColumnIndex}, {@link TrigramIndex}) budowanych
+ * przy pierwszym użyciu.
+ * Sortowanie również nie przestawia danych - widok wyznacza permutacja wierszy bazowych
+ * ({@link #setSortOrder(List, int[])}), łączona z filtrem.
+ * Wiersze dopisane do śledzonego pliku ({@link #appendRows(List, boolean)}) aktualizują
+ * typy kolumn, filtr i indeksy przyrostowo - bez ponownego przeglądania tabeli.
+ * Kolumny pliku mogą pozostawać niewczytane ({@link UnloadedColumn}) - pominięte przy
+ * wczytywaniu albo zwolnione po ukryciu - i są wczytywane z pliku źródłowego
+ * ({@link ColumnSource}) dopiero przy potrzebie ({@link #loadColumns(int[], BooleanSupplier)}).
  *
  * @author Mateusz Jakoczyk
  * @version 1.0
  */
-public class CSVTableModel extends DefaultTableModel implements Cloneable {
+public class CSVTableModel extends AbstractTableModel implements Cloneable {
+    /** Liczba zapamiętywanych kolejności sortowania (każda zajmuje ok. 4 bajty na wiersz) */
+    private static final int SORT_CACHE_SIZE = 4;
+
     private boolean hasHeaders;
     private char separator;
-    private Vector<Vector<Object>> originalData;
-    private Vector<String> originalColumnNames;
-    private Vector<Vector<Object>> prevData;
-    private Vector<String> prevColumnNames;
-    private boolean isInitialLoad = true;
-    private Class<?>[] columnTypes;
+    private char quote;
+    private String lineSeparator;
+    private Charset charset;
+    private List<String> columnNames;
+    private List<Column> columns;
+    private int rowCount;
+    private PagedRowSource pagedSource;
+    private boolean locked;
+    private BitSet rowFilter;
+    /** Reguła filtra sprawdzana dla dopisywanych wierszy (null - dopisane wiersze są widoczne) */
+    private FilterRule filterRule;
+    private int[] viewRows;
+    /** Pozycje wierszy bazowych w posortowanym widoku (wyznaczane przy potrzebie) */
+    private int[] viewPositions;
+    private List<ParallelSorter.SortKey> sortKeys = List.of();
+    /** Permutacja wierszy bazowych widoku posortowanego - nigdy nie jest modyfikowana w miejscu */
+    private int[] sortOrder;
+    private Map<List<ParallelSorter.SortKey>, ParallelSorter.Order> sortCache = newSortCache();
+    private ColumnIndex[] indexes = new ColumnIndex[0];
+    private TrigramIndex[] trigramIndexes = new TrigramIndex[0];
+    private UndoableEditSupport undoSupport = new UndoableEditSupport(this);
+    /** Plik, z którego można wczytać niewczytane kolumny (null - model nie pochodzi z pliku) */
+    private ColumnSource columnSource;
+    /** Numery rekordów pliku kolejnych wierszy bazowych; pusta komórka - wiersz spoza pliku (null - wiersz i to rekord i) */
+    private Column sourceRecords;
+    /** Liczba rekordów pliku, z których pochodzą wiersze */
+    private int sourceRecordCount;
+    /** Kolumny edytowane od wczytania pliku - ich wartości nie pochodzą już z pliku, więc nie są zwalniane */
+    private BitSet editedColumns = new BitSet();
 
     /**
      * Konstruktor domyślny - inicjalizuje pusty model z domyślnymi wartościami:
@@ -33,8 +87,11 @@ public class CSVTableModel extends DefaultTableModel implements Cloneable {
         super();
         this.hasHeaders = true;
         this.separator = ',';
-        this.originalData = new Vector<>();
-        this.originalColumnNames = new Vector<>();
+        this.quote = CSVTokenizer.DEFAULT_QUOTE;
+        this.lineSeparator = System.lineSeparator();
+        this.charset = StandardCharsets.UTF_8;
+        this.columnNames = new ArrayList<>();
+        this.columns = new ArrayList<>();
     }
 
     /**
@@ -44,153 +101,1742 @@ public class CSVTableModel extends DefaultTableModel implements Cloneable {
      * @param columnNames nazwy kolumn jako wektor stringów
      */
     public CSVTableModel(Vector<Vector<Object>> data, Vector<String> columnNames) {
-        super(data, columnNames);
-        this.hasHeaders = true;
-        this.separator = ',';
-        this.originalData = new Vector<>(data);
-        this.originalColumnNames = new Vector<>(columnNames);
+        this();
+        setDataVector(data, columnNames);
+    }
+
+    /**
+     * Zwraca liczbę wierszy.
+     *
+     * @return liczba wierszy
+     */
+    @Override
+    public int getRowCount() {
+        return viewRows != null ? viewRows.length : getBaseRowCount();
+    }
+
+    /**
+     * Zwraca liczbę wszystkich wierszy danych, niezależnie od filtra.
+     *
+     * @return liczba wierszy bazowych
+     */
+    public int getBaseRowCount() {
+        return pagedSource != null ? pagedSource.getRowCount() : rowCount;
+    }
+
+    /**
+     * Zamienia indeks wiersza widoku (po filtrowaniu i sortowaniu) na indeks wiersza bazowego.
+     *
+     * @param row indeks wiersza widoku
+     * @return indeks wiersza bazowego
+     */
+    public int convertRowIndexToBase(int row) {
+        return viewRows != null ? viewRows[row] : row;
+    }
+
+    /**
+     * Zamienia indeks wiersza bazowego na indeks wiersza widoku.
+     *
+     * @param baseRow indeks wiersza bazowego
+     * @return indeks wiersza widoku lub -1, jeśli wiersz jest ukryty przez filtr
+     */
+    public int convertRowIndexToView(int baseRow) {
+        if (viewRows == null) {
+            return baseRow;
+        }
+        if (sortOrder == null) {
+            int row = Arrays.binarySearch(viewRows, baseRow);
+            return row >= 0 ? row : -1;
+        }
+        int[] positions = viewPositions;
+        if (positions == null) {
+            positions = new int[getBaseRowCount()];
+            Arrays.fill(positions, -1);
+            for (int row = 0; row < viewRows.length; row++) {
+                positions[viewRows[row]] = row;
+            }
+            viewPositions = positions;
+        }
+        return positions[baseRow];
+    }
+
+    /**
+     * Zwraca liczbę kolumn.
+     *
+     * @return liczba kolumn
+     */
+    @Override
+    public int getColumnCount() {
+        return pagedSource != null ? pagedSource.getColumnCount() : columns.size();
+    }
+
+    /**
+     * Zwraca nazwę kolumny.
+     *
+     * @param column indeks kolumny
+     * @return nazwa kolumny
+     */
+    @Override
+    public String getColumnName(int column) {
+        String name = column < columnNames.size() ? columnNames.get(column) : null;
+        return name != null ? name : super.getColumnName(column);
     }
 
     /**
      * Zwraca klasę danych dla określonej kolumny.
      *
      * @param columnIndex indeks kolumny
-     * @return klasa danych w kolumnie (String.class domyślnie)
+     * @return klasa danych w kolumnie (String.class dla kolumn tekstowych i w trybie stronicowanym)
      */
     @Override
     public Class<?> getColumnClass(int columnIndex) {
-        if (columnTypes != null && columnTypes.length > columnIndex) {
-            return columnTypes[columnIndex];
+        return getColumnType(columnIndex).getJavaClass();
+    }
+
+    /**
+     * Zwraca rozpoznany typ kolumny.
+     *
+     * @param columnIndex indeks kolumny
+     * @return typ kolumny
+     */
+    public ColumnType getColumnType(int columnIndex) {
+        if (pagedSource != null || columnIndex >= columns.size()) {
+            return ColumnType.STRING;
         }
-        return String.class; // Domyślnie traktuj wszystkie kolumny jako String
+        return columns.get(columnIndex).getType();
     }
 
     /**
-     * Ustawia nowy wektor danych i identyfikatorów kolumn.
-     * Zachowuje oryginalne dane przy pierwszym ładowaniu.
+     * Zwraca kolumnę danych (do bezpośredniego odczytu wartości typów prostych).
      *
-     * @param dataVector wektor danych (wiersze)
-     * @param columnIdentifiers wektor nazw kolumn
+     * @param columnIndex indeks kolumny
+     * @return kolumna lub null w trybie stronicowanym
+     */
+    Column getColumnStorage(int columnIndex) {
+        return pagedSource == null ? columns.get(columnIndex) : null;
+    }
+
+    /**
+     * Zwraca wartość komórki.
+     *
+     * @param row indeks wiersza
+     * @param column indeks kolumny
+     * @return wartość komórki lub null dla pustej komórki
      */
     @Override
-    public void setDataVector(Vector<? extends Vector> dataVector, Vector<?> columnIdentifiers) {
+    public Object getValueAt(int row, int column) {
+        row = convertRowIndexToBase(row);
+        if (pagedSource != null) {
+            return pagedSource.getValueAt(row, column);
+        }
+        return columns.get(column).get(row);
+    }
+
+    /**
+     * Zwraca wartość komórki jako tekst - dokładnie w postaci wczytanej z pliku,
+     * niezależnie od typu kolumny. Używane przy zapisie i filtrowaniu.
+     *
+     * @param row indeks wiersza
+     * @param column indeks kolumny
+     * @return tekst komórki lub null dla pustej komórki
+     */
+    public String getStringAt(int row, int column) {
+        return getBaseStringAt(convertRowIndexToBase(row), column);
+    }
+
+    /**
+     * Zwraca tekst komórki wiersza bazowego (z pominięciem filtra).
+     *
+     * @param baseRow indeks wiersza bazowego
+     * @param column indeks kolumny
+     * @return tekst komórki lub null dla pustej komórki
+     */
+    public String getBaseStringAt(int baseRow, int column) {
+        if (pagedSource != null) {
+            return pagedSource.getValueAt(baseRow, column);
+        }
+        return columns.get(column).getString(baseRow);
+    }
+
+    /**
+     * Ustawia wartość komórki. Jeśli wartość nie pasuje do kodowania kolumny
+     * (np. tekst w kolumnie liczbowej), kolumna jest przekodowywana na tekstową.
+     *
+     * @param value nowa wartość
+     * @param row indeks wiersza
+     * @param column indeks kolumny
+     */
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        checkNotPaged();
+        checkLoaded(column);
+        Snapshot before = undoSupport.getUndoableEditListeners().length > 0 ? snapshot() : null;
+        ColumnType type = columns.get(column).getType();
+        int baseRow = convertRowIndexToBase(row);
+        storableColumn(column, value).set(baseRow, value);
+        editedColumns.set(column);
+        markIndexStale(baseRow, column);
+        clearSortCache(); // bieżąca kolejność zostaje, ale może już nie odpowiadać kluczom
+        if (columns.get(column).getType() != type) {
+            fireTableDataChanged(); // zmienił się typ całej kolumny
+        } else {
+            fireTableCellUpdated(row, column);
+        }
+        if (before != null) {
+            postEdit("Edycja komórki", before);
+        }
+    }
+
+    /**
+     * Zwraca kolumnę zdolną przechować wartość, w razie potrzeby przekodowując ją.
+     *
+     * @param column indeks kolumny
+     * @param value wartość, która ma zostać zapisana
+     * @return kolumna przyjmująca wartość
+     */
+    private Column storableColumn(int column, Object value) {
+        Column storage = columns.get(column);
+        if (!storage.canStore(value)) {
+            storage = storage.convertTo(new StringColumn());
+            columns.set(column, storage);
+        }
+        return storage;
+    }
+
+    /**
+     * Dodaje wiersz na końcu tabeli. Brakujące wartości są uzupełniane pustymi
+     * komórkami, nadmiarowe - pomijane.
+     *
+     * @param rowData wartości wiersza
+     */
+    public void addRow(Object[] rowData) {
+        addRows(Collections.singletonList(rowData));
+    }
+
+    /**
+     * Dodaje wiersze na końcu tabeli, powiadamiając słuchaczy jednym zdarzeniem.
+     * Dodane wiersze są widoczne także przy aktywnym filtrze i trafiają na koniec
+     * posortowanego widoku. Brakujące wartości są uzupełniane pustymi komórkami,
+     * nadmiarowe - pomijane.
+     *
+     * @param rows wartości wierszy
+     */
+    public void addRows(List<? extends Object[]> rows) {
+        checkNotPaged();
+        if (rows.isEmpty()) {
+            return;
+        }
+        for (Object[] rowData : rows) {
+            for (int col = 0; rowData != null && col < Math.min(rowData.length, columns.size()); col++) {
+                if (!Column.isEmpty(rowData[col])) {
+                    checkLoaded(col);
+                }
+            }
+        }
+        int oldViewCount = getRowCount();
+        int oldRowCount = rowCount;
+        for (Object[] rowData : rows) {
+            appendRow(rowData, null);
+        }
+        if (columnSource != null) {
+            // Dodane wiersze nie pochodzą z pliku - ich niewczytane komórki pozostaną puste
+            ensureSourceRecords().setSize(rowCount);
+        }
+        clearSortCache();
+        if (rowFilter != null) {
+            rowFilter.set(oldRowCount, rowCount);
+        }
+        extendView(oldRowCount, oldRowCount, false);
+        fireTableRowsInserted(oldViewCount, getRowCount() - 1);
+    }
+
+    /**
+     * Dodaje wiersz na końcu tabeli.
+     *
+     * @param rowData wartości wiersza
+     */
+    public void addRow(Vector<?> rowData) {
+        addRow(rowData != null ? rowData.toArray() : null);
+    }
 
-        // Zachowaj kopię oryginalnych danych TYLKO przy pierwszym ładowaniu
-        if (isInitialLoad) {
-            this.originalData = deepCopyVector(dataVector);
-            this.originalColumnNames = new Vector<>();
-            for (Object colName : columnIdentifiers) {
-                this.originalColumnNames.add(colName.toString());
+    /**
+     * Dopisuje na końcu tabeli kolejne rekordy pliku źródłowego (np. wczytywane paczkami),
+     * powiadamiając słuchaczy jednym zdarzeniem. Przy wczytywaniu wybranych kolumn wiersze
+     * zawierają tylko ich pola, a pozostałe kolumny - niewczytane - jedynie się wydłużają.
+     *
+     * @param rows pola rekordów
+     * @param projection indeksy kolumn kolejnych pól wiersza (null - pole i to kolumna i)
+     */
+    void appendRecords(List<String[]> rows, int[] projection) {
+        checkNotPaged();
+        if (rows.isEmpty()) {
+            return;
+        }
+        int[] slots = null;
+        if (projection != null) {
+            slots = new int[columns.size()];
+            Arrays.fill(slots, -1);
+            for (int i = 0; i < projection.length; i++) {
+                slots[projection[i]] = i;
             }
-            isInitialLoad = false;
         }
-        super.setDataVector(dataVector, columnIdentifiers);
+        int oldViewCount = getRowCount();
+        int oldRowCount = rowCount;
+        for (String[] values : rows) {
+            appendRow(values, slots);
+        }
+        addSourceRecords(rows.size());
+        clearSortCache();
+        if (rowFilter != null) {
+            rowFilter.set(oldRowCount, rowCount);
+        }
+        extendView(oldRowCount, oldRowCount, false);
+        fireTableRowsInserted(oldViewCount, getRowCount() - 1);
+    }
+
+    /**
+     * Dopisuje wiersz do kolumn bez powiadamiania słuchaczy.
+     *
+     * @param rowData wartości wiersza
+     * @param slots pozycje wartości kolejnych kolumn w wierszu (-1 - brak wartości; null - wartość i to kolumna i)
+     */
+    private void appendRow(Object[] rowData, int[] slots) {
+        for (int col = 0; col < columns.size(); col++) {
+            int slot = slots != null ? slots[col] : col;
+            Object value = rowData != null && slot >= 0 && slot < rowData.length ? rowData[slot] : null;
+            storableColumn(col, value).add(value);
+        }
+        rowCount++;
+    }
 
-        analyzeColumnTypes();
+    /**
+     * Zapamiętuje, że wiersze dopisane na końcu tabeli pochodzą z kolejnych rekordów pliku.
+     *
+     * @param count liczba dopisanych wierszy
+     */
+    private void addSourceRecords(int count) {
+        if (sourceRecords != null) {
+            for (int i = 0; i < count; i++) {
+                sourceRecords.add(sourceRecordCount + i);
+            }
+        }
+        sourceRecordCount += count;
     }
 
     /**
-     * Tworzy głęboką kopię wektora danych.
+     * Zwraca numery rekordów pliku kolejnych wierszy, tworząc je przy pierwszej zmianie
+     * wierszy, po której wiersz i przestaje pochodzić z rekordu i.
      *
-     * @param source źródłowy wektor danych do skopiowania
-     * @return nowa, niezależna kopia wektora danych
+     * @return numery rekordów wierszy bazowych
      */
-    private Vector<Vector<Object>> deepCopyVector(Vector<? extends Vector> source) {
-        Vector<Vector<Object>> copy = new Vector<>();
-        for (Vector<?> row : source) {
-            Vector<Object> rowCopy = new Vector<>();
-            for (Object cell : row) {
-                rowCopy.add(cell);
+    private Column ensureSourceRecords() {
+        if (sourceRecords == null) {
+            Column records = new IntColumn();
+            for (int row = 0; row < rowCount; row++) {
+                records.add(row < sourceRecordCount ? row : null);
             }
-            copy.add(rowCopy);
+            sourceRecords = records;
         }
-        return copy;
+        return sourceRecords;
     }
 
     /**
-     * Analizuje typy danych w kolumnach i aktualizuje tablicę columnTypes.
-     * Wykrywa kolumny zawierające wyłącznie wartości liczbowe.
+     * Dopisuje wiersze na końcu tabeli (np. rekordy dopisane do śledzonego pliku),
+     * powiadamiając słuchaczy jednym zdarzeniem. Stan modelu aktualizowany jest
+     * przyrostowo, bez przeglądania wcześniejszych wierszy:
+     * <ul>
+     *     <li>typy kolumn - rozpoznawane są tylko nowe wartości, a kolumna jest przekodowywana
+     *     jedynie wtedy, gdy któraś z nich nie mieści się w dotychczasowym typie
+     *     (lub gdy kolumna była dotąd pusta),</li>
+     *     <li>aktywny filtr - jego reguła ({@link FilterRule}) sprawdzana jest tylko dla nowych
+     *     wierszy; filtr bez reguły pokazuje nowe wiersze, jak {@link #addRow(Object[])},</li>
+     *     <li>indeksy kolumn - nowe wiersze tworzą niezaindeksowany "ogon" sprawdzany przy
+     *     zapytaniu, dopóki przebudowa indeksu się nie opłaci ({@link RowIndex}),</li>
+     *     <li>sortowanie - nowe wiersze trafiają na koniec posortowanego widoku.</li>
+     * </ul>
+     *
+     * @param rows wartości nowych wierszy
+     * @param replaceLast true - pierwszy wiersz zastępuje ostatni wiersz tabeli
+     *                    (wczytany z rekordu, który był jeszcze dopisywany)
      */
-    private void analyzeColumnTypes() {
-        if (getRowCount() == 0 || getColumnCount() == 0) {
-            columnTypes = null;
+    public void appendRows(List<String[]> rows, boolean replaceLast) {
+        checkNotPaged();
+        if (rows.isEmpty()) {
             return;
         }
+        int oldViewCount = getRowCount();
+        int oldRowCount = rowCount;
+        int first = replaceLast && rowCount > 0 ? rowCount - 1 : rowCount;
+        boolean retyped = widenColumns(rows);
+        int row = first;
+        for (String[] values : rows) {
+            if (row < rowCount) {
+                for (int col = 0; col < columns.size(); col++) {
+                    String value = col < values.length ? values[col] : null;
+                    storableColumn(col, value).set(row, value);
+                    markIndexStale(row, col);
+                }
+            } else {
+                appendRow(values, null);
+            }
+            row++;
+        }
+        if (columnSource != null) {
+            addSourceRecords(rowCount - oldRowCount);
+        }
+        clearSortCache();
+
+        boolean replacedVisible = first < oldRowCount && isVisible(first);
+        filterAppended(first);
+        extendView(first, oldRowCount, replacedVisible);
+
+        int viewCount = getRowCount();
+        if (retyped || first < oldRowCount) {
+            fireTableDataChanged(); // zmienił się typ kolumny lub zastąpiony wiersz
+        } else if (viewCount > oldViewCount) {
+            fireTableRowsInserted(oldViewCount, viewCount - 1);
+        }
+    }
+
+    /**
+     * Dołącza do widoku wiersze bazowe od podanego do końca tabeli - w posortowanym
+     * widoku trafiają one na koniec, a przy aktywnym filtrze dołączane są tylko
+     * wiersze w nim zaznaczone. Wcześniejsze wiersze widoku nie są przeglądane.
+     *
+     * @param first pierwszy nowy lub zastąpiony wiersz bazowy
+     * @param oldRowCount liczba wierszy bazowych przed dopisaniem
+     * @param replacedVisible czy zastąpiony ostatni wiersz (first &lt; oldRowCount) był widoczny
+     */
+    private void extendView(int first, int oldRowCount, boolean replacedVisible) {
+        if (sortOrder != null) {
+            int[] order = Arrays.copyOf(sortOrder, rowCount);
+            for (int base = oldRowCount; base < rowCount; base++) {
+                order[base] = base;
+            }
+            sortOrder = order;
+            updateView();
+        } else if (viewRows != null) {
+            int n = replacedVisible ? viewRows.length - 1 : viewRows.length; // ostatni wiersz bazowy jest ostatni w widoku
+            int[] view = Arrays.copyOf(viewRows, n + rowCount - first);
+            for (int base = rowFilter.nextSetBit(first); base >= 0; base = rowFilter.nextSetBit(base + 1)) {
+                view[n++] = base;
+            }
+            viewRows = Arrays.copyOf(view, n);
+            viewPositions = null;
+        }
+    }
+
+    /**
+     * Sprawdza czy wiersz bazowy jest widoczny przy aktywnym filtrze.
+     *
+     * @param baseRow indeks wiersza bazowego
+     * @return true jeśli filtr nie jest aktywny lub obejmuje wiersz
+     */
+    private boolean isVisible(int baseRow) {
+        return rowFilter == null || rowFilter.get(baseRow);
+    }
 
-        columnTypes = new Class<?>[getColumnCount()];
-        Arrays.fill(columnTypes, String.class); // Domyślnie String
-
-        for (int col = 0; col < getColumnCount(); col++) {
-            boolean allNumbers = true;
-            for (int row = 0; row < getRowCount(); row++) {
-                Object value = getValueAt(row, col);
-                if (value != null && !value.toString().isEmpty()) {
-                    try {
-                        Double.parseDouble(value.toString());
-                    } catch (NumberFormatException e) {
-                        allNumbers = false;
-                        break;
-                    }
+    /**
+     * Przekodowuje kolumny, w których nie mieszczą się dopisywane wartości, na najbardziej
+     * szczegółowy typ obejmujący zarówno dotychczasowe, jak i nowe wartości
+     * (np. kolumnę int na long po dopisaniu dużej liczby). Pusta dotąd kolumna tekstowa
+     * otrzymuje typ nowych wartości.
+     *
+     * @param rows dopisywane wiersze
+     * @return true jeśli zmienił się typ którejś kolumny
+     */
+    private boolean widenColumns(List<String[]> rows) {
+        TypeInferrer appended = new TypeInferrer(columns.size());
+        for (String[] row : rows) {
+            appended.accept(row);
+        }
+        boolean changed = false;
+        for (int col = 0; col < columns.size(); col++) {
+            Column column = columns.get(col);
+            if (column instanceof UnloadedColumn) {
+                continue; // typ rozpoznawany jest przy wczytaniu kolumny
+            }
+            int candidates = appended.getCandidates(col);
+            if (column.getType() != ColumnType.STRING && (candidates & column.getType().mask()) != 0) {
+                continue; // nowe wartości mieszczą się w typie kolumny
+            }
+            for (ColumnType type : ColumnType.values()) {
+                if ((candidates & type.mask()) == 0) {
+                    continue;
+                }
+                if (type == column.getType()) {
+                    break; // kolumna tekstowa, która nie mieści się w węższym typie
+                }
+                Column target = type == ColumnType.STRING ? new StringColumn() : type.newColumn(false);
+                if (fits(column, target)) {
+                    columns.set(col, column.convertTo(target));
+                    changed = true;
+                    break;
                 }
             }
-            if (allNumbers) {
-                columnTypes[col] = String.class;
+        }
+        if (changed) {
+            clearSortCache(); // porządek kolumny zależy od jej typu
+        }
+        return changed;
+    }
+
+    /**
+     * Sprawdza regułę aktywnego filtra dla wierszy od podanego do końca tabeli.
+     * Jeśli filtr nie ma reguły albo nie da się jej skompilować dla zmienionego
+     * schematu, wiersze są widoczne.
+     *
+     * @param from pierwszy sprawdzany wiersz bazowy
+     */
+    private void filterAppended(int from) {
+        if (rowFilter == null) {
+            return;
+        }
+        FilterExpression.RowPredicate predicate = null;
+        if (filterRule != null) {
+            try {
+                predicate = filterRule.compile(this);
+            } catch (ParseException e) {
+                filterRule = null;
             }
         }
+        for (int row = from; row < rowCount; row++) {
+            rowFilter.set(row, predicate == null || predicate.test(row));
+        }
     }
 
     /**
-     * Sprawdza czy komórka jest edytowalna.
+     * Usuwa wiersz z tabeli.
      *
      * @param row indeks wiersza
-     * @param column indeks kolumny
-     * @return zawsze true (wszystkie komórki są edytowalne)
      */
-    @Override
-    public boolean isCellEditable(int row, int column) {
-        return true; // Wszystkie komórki edytowalne
+    public void removeRow(int row) {
+        removeRows(new int[]{row});
     }
 
     /**
-     * Ustawia separator używany w plikach CSV.
+     * Usuwa wiersze z tabeli, powiadamiając słuchaczy jednym zdarzeniem.
+     * Każda kolumna, filtr, kolejność sortowania i indeksy kompaktowane są
+     * w jednym przebiegu - niezależnie od liczby usuwanych wierszy.
      *
-     * @param separator znak separatora (np. ',', ';', '\t')
+     * @param rows indeksy wierszy widoku (w dowolnej kolejności, mogą się powtarzać)
      */
-    public void setSeparator(char separator) {
-        this.separator = separator;
+    public void removeRows(int[] rows) {
+        checkNotPaged();
+        int[] viewSorted = Arrays.stream(rows).sorted().distinct().toArray();
+        if (viewSorted.length == 0) {
+            return;
+        }
+        int[] removed = new int[viewSorted.length];
+        for (int i = 0; i < removed.length; i++) {
+            removed[i] = convertRowIndexToBase(viewSorted[i]);
+        }
+        Arrays.sort(removed);
+        for (Column column : columns) {
+            column.removeRows(removed);
+        }
+        if (columnSource != null) {
+            ensureSourceRecords().removeRows(removed);
+        }
+        removeFromIndexes(removed);
+        clearSortCache();
+
+        // Nowy indeks wiersza bazowego = indeks - liczba usuniętych przed nim,
+        // wyznaczana w czasie stałym z sum prefiksowych mapy usuniętych wierszy
+        long[] words = new long[(rowCount >>> 6) + 1];
+        for (int base : removed) {
+            words[base >>> 6] |= 1L << base;
+        }
+        int[] removedBefore = new int[words.length];
+        for (int w = 1; w < words.length; w++) {
+            removedBefore[w] = removedBefore[w - 1] + Long.bitCount(words[w - 1]);
+        }
+        if (rowFilter != null) {
+            BitSet shifted = new BitSet(rowCount - removed.length);
+            for (int base = rowFilter.nextSetBit(0); base >= 0; base = rowFilter.nextSetBit(base + 1)) {
+                int row = shiftedIndex(words, removedBefore, base);
+                if (row >= 0) {
+                    shifted.set(row);
+                }
+            }
+            rowFilter = shifted;
+        }
+        if (sortOrder != null) {
+            int[] order = new int[sortOrder.length - removed.length];
+            int n = 0;
+            for (int base : sortOrder) {
+                int row = shiftedIndex(words, removedBefore, base);
+                if (row >= 0) {
+                    order[n++] = row;
+                }
+            }
+            sortOrder = order;
+        }
+        rowCount -= removed.length;
+        updateView();
+
+        int firstRow = viewSorted[0];
+        int lastRow = viewSorted[viewSorted.length - 1];
+        if (lastRow - firstRow == viewSorted.length - 1) {
+            fireTableRowsDeleted(firstRow, lastRow);
+        } else {
+            fireTableDataChanged(); // jedno zdarzenie zamiast osobnego dla każdego przedziału
+        }
     }
 
     /**
-     * Pobiera aktualny separator.
+     * Wyznacza indeks wiersza bazowego po usunięciu wierszy.
      *
-     * @return znak separatora
+     * @param removed mapa bitowa usuniętych wierszy (słowa 64-bitowe)
+     * @param removedBefore liczba usuniętych wierszy przed każdym słowem mapy
+     * @param base indeks wiersza bazowego przed usunięciem
+     * @return nowy indeks lub -1, jeśli wiersz został usunięty
      */
-    public char getSeparator() {
-        return separator;
+    private static int shiftedIndex(long[] removed, int[] removedBefore, int base) {
+        long word = removed[base >>> 6];
+        if ((word & (1L << base)) != 0) {
+            return -1;
+        }
+        return base - removedBefore[base >>> 6] - Long.bitCount(word & ((1L << base) - 1));
     }
 
     /**
-     * Sprawdza czy model używa pierwszego wiersza jako nagłówków.
+     * Ustawia liczbę wierszy - obcina tabelę lub dopełnia ją pustymi wierszami.
      *
-     * @return true jeśli pierwszy wiersz traktowany jest jako nagłówki
+     * @param rowCount nowa liczba wierszy
      */
-    public boolean hasHeaders() {
-        return hasHeaders;
+    public void setRowCount(int rowCount) {
+        checkNotPaged();
+        if (viewRows != null) {
+            resetView();
+            fireTableDataChanged();
+        }
+        int old = this.rowCount;
+        if (rowCount == old) {
+            return;
+        }
+        clearSortCache();
+        for (Column column : columns) {
+            column.setSize(rowCount);
+        }
+        if (columnSource != null) {
+            ensureSourceRecords().setSize(rowCount);
+        }
+        if (rowCount < old) {
+            dropIndexes();
+        }
+        this.rowCount = rowCount;
+        if (rowCount < old) {
+            fireTableRowsDeleted(rowCount, old - 1);
+        } else {
+            fireTableRowsInserted(old, rowCount - 1);
+        }
     }
 
     /**
-     * Tworzy i zwraca kopię tego obiektu.
+     * Ustawia nazwy kolumn. Istniejące dane są zachowywane; nowe kolumny
+     * wypełniane są pustymi komórkami.
      *
-     * @return sklonowany obiekt CSVTableModel
-     * @throws CloneNotSupportedException jeśli klonowanie nie jest wspierane
+     * @param columnIdentifiers nazwy kolumn
      */
-    public Object clone() throws CloneNotSupportedException {
-        CSVTableModel clone = (CSVTableModel) super.clone();
-        clone.originalData = (Vector<Vector<Object>>) originalData.clone();
-        clone.originalColumnNames = (Vector<String>) originalColumnNames.clone();
-        if(columnTypes != null) {
-            clone.columnTypes = columnTypes.clone();
+    public void setColumnIdentifiers(Object[] columnIdentifiers) {
+        if (pagedSource != null) {
+            pagedSource = null;
+            rowCount = 0;
+            resetView();
+        }
+        dropIndexes();
+        clearSortCache();
+        detachColumnSource();
+        columnNames = new ArrayList<>();
+        for (Object name : columnIdentifiers) {
+            columnNames.add(name != null ? name.toString() : null);
+        }
+        while (columns.size() > columnNames.size()) {
+            columns.removeLast();
+        }
+        while (columns.size() < columnNames.size()) {
+            Column column = new StringColumn();
+            column.setSize(rowCount);
+            columns.add(column);
+        }
+        fireTableStructureChanged();
+    }
+
+    /**
+     * Ustawia nowy wektor danych i identyfikatorów kolumn.
+     * Jeśli kolumny się nie zmieniły (np. po filtrowaniu), zachowywany jest
+     * dotychczasowy schemat i dane nie są ponownie analizowane.
+     *
+     * @param dataVector wektor danych (wiersze)
+     * @param columnIdentifiers wektor nazw kolumn
+     */
+    public void setDataVector(Vector<? extends Vector> dataVector, Vector<?> columnIdentifiers) {
+        List<Column> schema = pagedSource == null && columnNames.equals(namesOf(columnIdentifiers)) ? columns : null;
+        pagedSource = null;
+        columns = new ArrayList<>();
+        rowCount = 0;
+        resetView();
+        setColumnIdentifiers(columnIdentifiers.toArray());
+        if (schema != null) {
+            for (int col = 0; col < columns.size(); col++) {
+                columns.set(col, schema.get(col).newEmpty());
+            }
+        }
+        for (Vector<?> row : dataVector) {
+            appendRow(row.toArray(), null);
+        }
+        if (schema == null) {
+            analyzeColumnTypes();
+        }
+        fireTableStructureChanged();
+    }
+
+    /**
+     * Zamienia identyfikatory kolumn na listę nazw.
+     *
+     * @param columnIdentifiers identyfikatory kolumn
+     * @return nazwy kolumn
+     */
+    private static List<String> namesOf(Vector<?> columnIdentifiers) {
+        List<String> names = new ArrayList<>();
+        for (Object name : columnIdentifiers) {
+            names.add(name != null ? name.toString() : null);
+        }
+        return names;
+    }
+
+    /**
+     * Rozpoznaje typy danych w kolumnach w jednym przebiegu i dobiera na ich
+     * podstawie sposób przechowywania każdej kolumny.
+     */
+    public void analyzeColumnTypes() {
+        if (rowCount == 0 || pagedSource != null) {
+            return;
+        }
+        TypeInferrer inferrer = new TypeInferrer(columns.size());
+        for (int col = 0; col < columns.size(); col++) {
+            Column column = columns.get(col);
+            for (int row = 0; row < rowCount && !(column instanceof UnloadedColumn); row++) {
+                inferrer.accept(col, column.getString(row));
+            }
+        }
+        applySchema(inferrer);
+    }
+
+    /**
+     * Stosuje schemat rozpoznany przez {@link TypeInferrer} - przekodowuje tylko
+     * te kolumny, których kodowanie się zmienia. Wartości niepasujące do nowego
+     * typu (np. dopisane po rozpoznaniu) pozostawiają kolumnę tekstową.
+     *
+     * @param inferrer analizator z rozpoznanymi typami kolumn
+     */
+    public void applySchema(TypeInferrer inferrer) {
+        applySchema(inferrer, null);
+    }
+
+    /**
+     * Stosuje schemat rozpoznany dla wybranych kolumn (np. wczytywanych z pliku).
+     * Kolumny niewczytane pozostają bez zmian.
+     *
+     * @param inferrer analizator z rozpoznanymi typami kolumn
+     * @param projection indeksy kolumn modelu kolejnych kolumn analizatora (null - kolumna i to kolumna i)
+     */
+    void applySchema(TypeInferrer inferrer, int[] projection) {
+        if (pagedSource != null) {
+            return;
+        }
+        boolean changed = false;
+        int n = projection != null ? projection.length : Math.min(columns.size(), inferrer.getColumnCount());
+        for (int i = 0; i < n; i++) {
+            int col = projection != null ? projection[i] : i;
+            Column column = columns.get(col);
+            if (column instanceof UnloadedColumn) {
+                continue;
+            }
+            Column encoded = encode(column, inferrer.newColumn(i));
+            if (encoded != column) {
+                columns.set(col, encoded);
+                changed = true;
+            }
+        }
+        if (changed) {
+            clearSortCache(); // porządek kolumny zależy od jej typu
+            fireTableDataChanged();
+        }
+    }
+
+    /**
+     * Przekodowuje kolumnę na kodowanie rozpoznanego typu, jeśli wszystkie jej wartości się w nim mieszczą.
+     *
+     * @param column kolumna
+     * @param encoded pusta kolumna w kodowaniu rozpoznanego typu
+     * @return przekodowana kolumna lub ta sama, jeśli kodowanie się nie zmienia
+     */
+    static Column encode(Column column, Column encoded) {
+        if (encoded.getClass() != column.getClass() && fits(column, encoded)) {
+            return column.convertTo(encoded);
+        }
+        return column;
+    }
+
+    /**
+     * Sprawdza czy wszystkie wartości kolumny dadzą się przechować w innym kodowaniu.
+     *
+     * @param column kolumna źródłowa
+     * @param target pusta kolumna docelowa
+     * @return true jeśli przekodowanie nie zmieni żadnej wartości
+     */
+    private static boolean fits(Column column, Column target) {
+        if (target instanceof StringColumn || target instanceof DictionaryColumn) {
+            return true;
+        }
+        for (int row = 0; row < column.size(); row++) {
+            if (!target.canStore(column.getString(row))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sprawdza czy komórka jest edytowalna.
+     *
+     * @param row indeks wiersza
+     * @param column indeks kolumny
+     * @return true (wszystkie komórki są edytowalne), poza trybem stronicowanym, czasem blokady
+     *         i kolumnami niewczytanymi
+     */
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        // Wszystkie komórki edytowalne, poza niewczytanymi kolumnami
+        return pagedSource == null && !locked && !(columns.get(column) instanceof UnloadedColumn);
+    }
+
+    /**
+     * Blokuje lub odblokowuje edycję komórek przez użytkownika - np. na czas
+     * operacji w tle, które czytają model poza EDT.
+     *
+     * @param locked czy edycja ma być zablokowana
+     */
+    public void setLocked(boolean locked) {
+        this.locked = locked;
+    }
+
+    /**
+     * Sprawdza czy edycja komórek jest zablokowana.
+     *
+     * @return true jeśli trwa operacja blokująca edycję
+     */
+    public boolean isLocked() {
+        return locked;
+    }
+
+    /**
+     * Przełącza model w tryb stronicowany - wiersze będą wczytywane z pliku
+     * na żądanie, a model staje się tylko do odczytu.
+     *
+     * @param source zindeksowane źródło wierszy
+     */
+    public void setPagedSource(PagedRowSource source) {
+        columns = new ArrayList<>();
+        columnNames = new ArrayList<>(Arrays.asList(source.getColumnNames()));
+        rowCount = 0;
+        resetView();
+        dropIndexes();
+        detachColumnSource();
+        pagedSource = source;
+        fireTableStructureChanged();
+    }
+
+    /**
+     * Zastępuje zawartość modelu gotowymi kolumnami (np. odczytanymi z {@link ColumnarCache})
+     * - bez parsowania i rozpoznawania typów.
+     *
+     * @param names nazwy kolumn
+     * @param data kolumny o jednakowej liczbie wierszy
+     */
+    void setColumnData(List<String> names, List<Column> data) {
+        pagedSource = null;
+        columnNames = new ArrayList<>(names);
+        columns = new ArrayList<>(data);
+        rowCount = data.isEmpty() ? 0 : data.getFirst().size();
+        resetView();
+        dropIndexes();
+        detachColumnSource();
+        fireTableStructureChanged();
+    }
+
+    /**
+     * Ustawia plik, z którego pochodzą wszystkie bieżące wiersze modelu - niewczytane
+     * kolumny będą z niego wczytywane.
+     *
+     * @param source plik źródłowy
+     */
+    void setColumnSource(ColumnSource source) {
+        columnSource = source;
+        sourceRecords = null;
+        sourceRecordCount = rowCount;
+        editedColumns = new BitSet();
+    }
+
+    /**
+     * Odłącza plik źródłowy (np. przy wymianie danych) - kolumn nie da się już z niego wczytać.
+     */
+    private void detachColumnSource() {
+        columnSource = null;
+        sourceRecords = null;
+        sourceRecordCount = 0;
+        editedColumns = new BitSet();
+    }
+
+    /**
+     * Zwraca plik, z którego wczytywane są niewczytane kolumny.
+     *
+     * @return plik źródłowy lub null, jeśli model nie pochodzi z pliku
+     */
+    ColumnSource getColumnSource() {
+        return columnSource;
+    }
+
+    /**
+     * Sprawdza czy wartości kolumny są w pamięci.
+     *
+     * @param column indeks kolumny
+     * @return false dla kolumny pominiętej przy wczytywaniu lub zwolnionej
+     */
+    public boolean isColumnLoaded(int column) {
+        return pagedSource != null || !(columns.get(column) instanceof UnloadedColumn);
+    }
+
+    /**
+     * Zwraca indeksy niewczytanych kolumn.
+     *
+     * @return rosnąco posortowane indeksy kolumn
+     */
+    public int[] getUnloadedColumns() {
+        return getUnloadedColumns(null);
+    }
+
+    /**
+     * Zwraca niewczytane kolumny spośród podanych.
+     *
+     * @param candidates indeksy kolumn (null - wszystkie kolumny)
+     * @return rosnąco posortowane indeksy niewczytanych kolumn
+     */
+    public int[] getUnloadedColumns(int[] candidates) {
+        BitSet unloaded = new BitSet();
+        if (pagedSource == null) {
+            for (int col = 0; col < columns.size(); col++) {
+                if (columns.get(col) instanceof UnloadedColumn) {
+                    unloaded.set(col);
+                }
+            }
+        }
+        if (candidates != null) {
+            BitSet selected = new BitSet();
+            for (int col : candidates) {
+                selected.set(col);
+            }
+            unloaded.and(selected);
+        }
+        return unloaded.stream().toArray();
+    }
+
+    /**
+     * Sprawdza czy wszystkie kolumny są wczytane.
+     *
+     * @return true jeśli model nie ma niewczytanych kolumn
+     */
+    public boolean isFullyLoaded() {
+        return getUnloadedColumns().length == 0;
+    }
+
+    /**
+     * Zwalnia wartości kolumn (np. ukrytych), zachowując ich nazwy i liczbę wierszy.
+     * Zwalniane są tylko kolumny, których wartości da się ponownie wczytać z pliku
+     * źródłowego - kolumny edytowane od wczytania pozostają w pamięci.
+     *
+     * @param columnIndices indeksy kolumn
+     * @return liczba zwolnionych kolumn
+     */
+    public int unloadColumns(int[] columnIndices) {
+        if (pagedSource != null || columnSource == null) {
+            return 0;
+        }
+        int unloaded = 0;
+        for (int col : columnIndices) {
+            if (!editedColumns.get(col) && !(columns.get(col) instanceof UnloadedColumn)) {
+                columns.set(col, new UnloadedColumn(rowCount));
+                dropIndexes(col);
+                unloaded++;
+            }
+        }
+        if (unloaded > 0) {
+            clearSortCache();
+            fireTableDataChanged();
+        }
+        return unloaded;
+    }
+
+    /**
+     * Wczytuje z pliku źródłowego wartości podanych kolumn dla bieżących wierszy, nie zmieniając
+     * modelu - może działać poza EDT, gdy edycja modelu jest zablokowana. Wynik należy przekazać
+     * do {@link #setLoadedColumns(LoadedColumns)} albo {@link #withLoadedColumns(LoadedColumns)}.
+     *
+     * @param columnIndices indeksy kolumn (wczytane już kolumny są pomijane)
+     * @param cancelled sprawdzane w trakcie wczytywania - zwrócenie true przerywa wczytywanie
+     * @return wczytane kolumny lub null, jeśli wczytywanie przerwano
+     * @throws IOException jeśli pliku nie da się odczytać lub został zmieniony od wczytania
+     * @throws InterruptedException jeśli wątek zostanie przerwany
+     */
+    public LoadedColumns loadColumns(int[] columnIndices, BooleanSupplier cancelled)
+            throws IOException, InterruptedException {
+        int[] unloaded = getUnloadedColumns(columnIndices);
+        if (unloaded.length == 0) {
+            return new LoadedColumns(unloaded, new Column[0], rowCount);
+        }
+        if (columnSource == null) {
+            throw new IOException("Brak pliku źródłowego kolumn");
+        }
+        Column records = sourceRecords != null ? sourceRecords.copy() : null;
+        Column[] data = columnSource.read(unloaded, records, rowCount, sourceRecordCount, cancelled);
+        return data != null ? new LoadedColumns(unloaded, data, rowCount) : null;
+    }
+
+    /**
+     * Kolumny wczytane z pliku źródłowego ({@link #loadColumns(int[], BooleanSupplier)}).
+     *
+     * @param indices indeksy kolumn modelu
+     * @param columns wartości kolumn w kolejności indeksów
+     * @param rowCount liczba wierszy modelu w chwili wczytania
+     */
+    public record LoadedColumns(int[] indices, Column[] columns, int rowCount) {
+        /**
+         * Sprawdza czy wczytano jakąkolwiek kolumnę.
+         *
+         * @return true jeśli któraś z kolumn nie była wcześniej wczytana
+         */
+        public boolean isEmpty() {
+            return indices.length == 0;
+        }
+    }
+
+    /**
+     * Umieszcza w modelu kolumny wczytane z pliku źródłowego (wywoływane w EDT).
+     * Kolumny, które w międzyczasie zostały wczytane, pozostają bez zmian.
+     *
+     * @param loaded wczytane kolumny
+     * @throws IllegalStateException jeśli od wczytania zmieniła się liczba wierszy
+     */
+    public void setLoadedColumns(LoadedColumns loaded) {
+        if (installColumns(loaded)) {
+            clearSortCache();
+            fireTableDataChanged();
+        }
+    }
+
+    /**
+     * Tworzy kopię modelu z wczytanymi kolumnami, nie zmieniając modelu - np. do filtrowania
+     * lub zapisu poza EDT. Kopia współdzieli bloki kolumn z modelem.
+     *
+     * @param loaded wczytane kolumny
+     * @return kopia modelu
+     */
+    public CSVTableModel withLoadedColumns(LoadedColumns loaded) {
+        try {
+            CSVTableModel copy = (CSVTableModel) clone();
+            copy.installColumns(loaded);
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e); // CSVTableModel implementuje Cloneable
+        }
+    }
+
+    private boolean installColumns(LoadedColumns loaded) {
+        if (loaded.rowCount() != rowCount) {
+            throw new IllegalStateException("Liczba wierszy zmieniła się w trakcie wczytywania kolumn");
+        }
+        boolean changed = false;
+        for (int i = 0; i < loaded.indices().length; i++) {
+            int col = loaded.indices()[i];
+            if (columns.get(col) instanceof UnloadedColumn) {
+                columns.set(col, loaded.columns()[i].copy());
+                dropIndexes(col);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Zgłasza wyjątek przy próbie zapisania wartości w niewczytanej kolumnie.
+     *
+     * @param column indeks kolumny
+     */
+    private void checkLoaded(int column) {
+        if (columns.get(column) instanceof UnloadedColumn) {
+            throw new IllegalStateException("Kolumna " + getColumnName(column) + " nie jest wczytana - najpierw ją pokaż");
+        }
+    }
+
+    /**
+     * Zwraca źródło wierszy trybu stronicowanego.
+     *
+     * @return źródło wierszy lub null, jeśli model nie jest w trybie stronicowanym
+     */
+    public PagedRowSource getPagedSource() {
+        return pagedSource;
+    }
+
+    /**
+     * Sprawdza czy model działa w trybie stronicowanym (tylko do odczytu).
+     *
+     * @return true w trybie stronicowanym
+     */
+    public boolean isPaged() {
+        return pagedSource != null;
+    }
+
+    /**
+     * Reguła filtra - warunek, z którego powstała mapa bitowa filtra. Pozwala
+     * sprawdzić wiersze dopisane po filtrowaniu ({@link #appendRows(List, boolean)})
+     * bez ponownego filtrowania tabeli. Reguła kompilowana jest przy każdym dopisaniu,
+     * bo typy kolumn mogą się w międzyczasie zmienić.
+     */
+    @FunctionalInterface
+    public interface FilterRule {
+        /**
+         * Kompiluje regułę dla bieżącego schematu modelu.
+         *
+         * @param model model, którego wiersze będą sprawdzane
+         * @return predykat na wierszach bazowych
+         * @throws ParseException jeśli reguły nie da się zastosować do schematu
+         */
+        FilterExpression.RowPredicate compile(CSVTableModel model) throws ParseException;
+
+        /**
+         * Łączy regułę z kolejną, tak jak łączone są mapy bitowe filtrów.
+         *
+         * @param next kolejna reguła
+         * @param union true - LUB (dołączenie wierszy), false - I (zawężenie)
+         * @return reguła złożona
+         */
+        default FilterRule combine(FilterRule next, boolean union) {
+            return model -> {
+                FilterExpression.RowPredicate a = compile(model);
+                FilterExpression.RowPredicate b = next.compile(model);
+                return union ? row -> a.test(row) || b.test(row) : row -> a.test(row) && b.test(row);
+            };
+        }
+    }
+
+    /**
+     * Ogranicza widok do wskazanych wierszy bazowych. Dane nie są kopiowane -
+     * kolejne filtry można łączyć operacjami na mapach bitowych.
+     * Wiersze dopisane później są widoczne.
+     *
+     * @param rows mapa bitowa widocznych wierszy bazowych (null usuwa filtr)
+     */
+    public void setRowFilter(BitSet rows) {
+        setRowFilter(rows, null);
+    }
+
+    /**
+     * Ogranicza widok do wskazanych wierszy bazowych i zapamiętuje regułę,
+     * z której powstała mapa - wiersze dopisane później są nią sprawdzane.
+     *
+     * @param rows mapa bitowa widocznych wierszy bazowych (null usuwa filtr)
+     * @param rule reguła filtra (null - dopisane wiersze są widoczne)
+     */
+    public void setRowFilter(BitSet rows, FilterRule rule) {
+        if (rows == null) {
+            clearRowFilter();
+            return;
+        }
+        filterRule = rule;
+        rowFilter = (BitSet) rows.clone();
+        if (rowFilter.length() > getBaseRowCount()) {
+            rowFilter.clear(getBaseRowCount(), rowFilter.length());
+        }
+        updateView();
+        fireTableDataChanged();
+    }
+
+    /**
+     * Zwraca mapę bitową wierszy bazowych widocznych przy aktywnym filtrze.
+     *
+     * @return kopia mapy bitowej lub null, jeśli filtr nie jest aktywny
+     */
+    public BitSet getRowFilter() {
+        return rowFilter != null ? (BitSet) rowFilter.clone() : null;
+    }
+
+    /**
+     * Zwraca regułę aktywnego filtra.
+     *
+     * @return reguła lub null, jeśli filtr nie jest aktywny lub nie ma reguły
+     */
+    public FilterRule getFilterRule() {
+        return filterRule;
+    }
+
+    /**
+     * Usuwa filtr - widoczne stają się wszystkie wiersze (bez przeglądania danych).
+     */
+    public void clearRowFilter() {
+        rowFilter = null;
+        filterRule = null;
+        updateView();
+        fireTableDataChanged();
+    }
+
+    /**
+     * Sprawdza czy aktywny jest filtr wierszy.
+     *
+     * @return true jeśli widok zawiera tylko część wierszy
+     */
+    public boolean isFiltered() {
+        return rowFilter != null;
+    }
+
+    /**
+     * Ustawia kolejność wierszy widoku wyznaczoną dla podanych kluczy
+     * (np. przez {@link ParallelSorter}). Dane nie są przestawiane; aktywny filtr
+     * pozostaje i ogranicza posortowany widok.
+     *
+     * @param keys klucze sortowania (pusta lista lub null usuwa sortowanie)
+     * @param order permutacja wszystkich wierszy bazowych - nie może być później modyfikowana
+     */
+    public void setSortOrder(List<ParallelSorter.SortKey> keys, int[] order) {
+        if (keys == null || keys.isEmpty()) {
+            clearSortOrder();
+            return;
+        }
+        if (order.length != getBaseRowCount()) {
+            throw new IllegalArgumentException("Kolejność obejmuje " + order.length
+                    + " wierszy, a tabela ma " + getBaseRowCount());
+        }
+        sortKeys = List.copyOf(keys);
+        sortOrder = order;
+        updateView();
+        fireTableDataChanged();
+    }
+
+    /**
+     * Przywraca kolejność wierszy z pliku (bez przeglądania danych).
+     */
+    public void clearSortOrder() {
+        sortKeys = List.of();
+        sortOrder = null;
+        updateView();
+        fireTableDataChanged();
+    }
+
+    /**
+     * Zwraca klucze bieżącego sortowania.
+     *
+     * @return niezmienna lista kluczy, od najważniejszego (pusta, jeśli widok nie jest posortowany)
+     */
+    public List<ParallelSorter.SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    /**
+     * Sprawdza czy widok jest posortowany.
+     *
+     * @return true jeśli wiersze widoku ułożone są według kluczy sortowania
+     */
+    public boolean isSorted() {
+        return sortOrder != null;
+    }
+
+    /**
+     * Wyznacza wiersze widoku z kolejności sortowania i filtra.
+     */
+    private void updateView() {
+        viewPositions = null;
+        if (sortOrder == null) {
+            viewRows = rowFilter != null ? rowFilter.stream().toArray() : null;
+        } else if (rowFilter == null) {
+            viewRows = sortOrder;
+        } else {
+            int[] rows = new int[rowFilter.cardinality()];
+            int n = 0;
+            for (int base : sortOrder) {
+                if (rowFilter.get(base)) {
+                    rows[n++] = base;
+                }
+            }
+            viewRows = rows;
+        }
+    }
+
+    /**
+     * Usuwa filtr i sortowanie bez powiadamiania słuchaczy (np. przy wymianie danych).
+     */
+    private void resetView() {
+        rowFilter = null;
+        filterRule = null;
+        sortKeys = List.of();
+        sortOrder = null;
+        viewRows = null;
+        viewPositions = null;
+        clearSortCache();
+    }
+
+    /**
+     * Zwraca zapamiętaną kolejność wierszy dla kluczy sortowania.
+     *
+     * @param keys klucze sortowania
+     * @return kolejność lub null, jeśli nie była wyznaczona od ostatniej zmiany danych
+     */
+    synchronized ParallelSorter.Order getCachedSortOrder(List<ParallelSorter.SortKey> keys) {
+        return sortCache.get(keys);
+    }
+
+    /**
+     * Zapamiętuje kolejność wierszy wyznaczoną dla kluczy sortowania.
+     *
+     * @param keys klucze sortowania
+     * @param order kolejność wierszy
+     */
+    synchronized void cacheSortOrder(List<ParallelSorter.SortKey> keys, ParallelSorter.Order order) {
+        sortCache.put(List.copyOf(keys), order);
+    }
+
+    /**
+     * Usuwa zapamiętane kolejności sortowania (po zmianie danych).
+     */
+    private synchronized void clearSortCache() {
+        sortCache.clear();
+    }
+
+    /**
+     * Tworzy pamięć podręczną kolejności sortowania usuwającą najdawniej używane wpisy.
+     *
+     * @return pusta pamięć podręczna
+     */
+    private static Map<List<ParallelSorter.SortKey>, ParallelSorter.Order> newSortCache() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<ParallelSorter.SortKey>, ParallelSorter.Order> eldest) {
+                return size() > SORT_CACHE_SIZE;
+            }
+        };
+    }
+
+    /**
+     * Zwraca wiersze bazowe, w których wartość kolumny jest równa podanej.
+     * Przy pierwszym wywołaniu dla kolumny budowany jest jej indeks.
+     *
+     * @param column indeks kolumny
+     * @param value szukana wartość
+     * @return mapa bitowa pasujących wierszy bazowych
+     */
+    public BitSet findEquals(int column, String value) {
+        if (value == null || value.isEmpty()) {
+            return findEmpty(column);
+        }
+        BitSet result = new BitSet();
+        synchronized (this) {
+            index(column).findEqual(value, getBaseRowCount(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Zwraca wiersze bazowe, w których wartość kolumny zaczyna się od podanego tekstu.
+     * Przy pierwszym wywołaniu dla kolumny budowany jest jej indeks.
+     *
+     * @param column indeks kolumny
+     * @param prefix szukany początek wartości
+     * @return mapa bitowa pasujących wierszy bazowych
+     */
+    public BitSet findPrefix(int column, String prefix) {
+        BitSet result = new BitSet();
+        if (prefix == null || prefix.isEmpty()) {
+            result.set(0, getBaseRowCount()); // każda wartość zaczyna się od pustego tekstu
+            return result;
+        }
+        synchronized (this) {
+            index(column).findPrefix(prefix, getBaseRowCount(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Zwraca wiersze bazowe, w których wartość kolumny zawiera podany tekst.
+     * Teksty krótsze niż {@value TrigramIndex#GRAM} znaki wyszukiwane są bez indeksu,
+     * dłuższe - w indeksie trigramowym budowanym przy pierwszym wywołaniu dla kolumny.
+     *
+     * @param column indeks kolumny
+     * @param text szukany tekst
+     * @return mapa bitowa pasujących wierszy bazowych
+     */
+    public BitSet findContains(int column, String text) {
+        if (text == null || text.isEmpty()) {
+            BitSet result = new BitSet();
+            result.set(0, getBaseRowCount());
+            return result;
+        }
+        if (text.length() < TrigramIndex.GRAM) {
+            return scan(column, value -> value != null && value.contains(text));
+        }
+        BitSet result = new BitSet();
+        synchronized (this) {
+            trigramIndex(column).findContains(text, getBaseRowCount(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Zwraca wiersze bazowe z pustą wartością w kolumnie (puste wartości nie są indeksowane).
+     *
+     * @param column indeks kolumny
+     * @return mapa bitowa wierszy z pustą komórką
+     */
+    private BitSet findEmpty(int column) {
+        return scan(column, value -> value == null || value.isEmpty());
+    }
+
+    /**
+     * Przegląda wszystkie wiersze bazowe kolumny bez użycia indeksu.
+     *
+     * @param column indeks kolumny
+     * @param matcher warunek dla tekstu komórki (null dla pustej)
+     * @return mapa bitowa pasujących wierszy bazowych
+     */
+    private BitSet scan(int column, Predicate<String> matcher) {
+        BitSet result = new BitSet();
+        int n = getBaseRowCount();
+        for (int row = 0; row < n; row++) {
+            if (matcher.test(getBaseStringAt(row, column))) {
+                result.set(row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Zwraca indeks kolumny, budując go, jeśli nie istnieje lub jest zbyt nieaktualny.
+     *
+     * @param column indeks kolumny
+     * @return indeks kolumny
+     */
+    private synchronized ColumnIndex index(int column) {
+        if (indexes.length < columnNames.size()) {
+            indexes = Arrays.copyOf(indexes, columnNames.size());
+        }
+        int n = getBaseRowCount();
+        if (indexes[column] == null || indexes[column].needsRebuild(n)) {
+            Metrics.cacheMiss();
+            indexes[column] = new ColumnIndex(n, row -> getBaseStringAt(row, column));
+        } else {
+            Metrics.cacheHit();
+        }
+        return indexes[column];
+    }
+
+    /**
+     * Zwraca indeks trigramowy kolumny, budując go, jeśli nie istnieje lub jest zbyt nieaktualny.
+     *
+     * @param column indeks kolumny
+     * @return indeks trigramowy kolumny
+     */
+    private synchronized TrigramIndex trigramIndex(int column) {
+        if (trigramIndexes.length < columnNames.size()) {
+            trigramIndexes = Arrays.copyOf(trigramIndexes, columnNames.size());
+        }
+        int n = getBaseRowCount();
+        if (trigramIndexes[column] == null || trigramIndexes[column].needsRebuild(n)) {
+            Metrics.cacheMiss();
+            trigramIndexes[column] = new TrigramIndex(n, row -> getBaseStringAt(row, column));
+        } else {
+            Metrics.cacheHit();
+        }
+        return trigramIndexes[column];
+    }
+
+    /**
+     * Oznacza zmienioną komórkę w indeksie kolumny.
+     *
+     * @param baseRow indeks wiersza bazowego
+     * @param column indeks kolumny
+     */
+    private synchronized void markIndexStale(int baseRow, int column) {
+        if (column < indexes.length && indexes[column] != null) {
+            indexes[column].markStale(baseRow);
+        }
+        if (column < trigramIndexes.length && trigramIndexes[column] != null) {
+            trigramIndexes[column].markStale(baseRow);
+        }
+    }
+
+    /**
+     * Usuwa wiersze ze wszystkich zbudowanych indeksów.
+     *
+     * @param sortedRows rosnąco posortowane indeksy usuwanych wierszy bazowych
+     */
+    private synchronized void removeFromIndexes(int[] sortedRows) {
+        for (ColumnIndex index : indexes) {
+            if (index != null) {
+                index.removeRows(sortedRows);
+            }
+        }
+        for (TrigramIndex index : trigramIndexes) {
+            if (index != null) {
+                index.removeRows(sortedRows);
+            }
+        }
+    }
+
+    /**
+     * Usuwa wszystkie indeksy (np. po wymianie danych) - zostaną zbudowane ponownie przy potrzebie.
+     */
+    private synchronized void dropIndexes() {
+        indexes = new ColumnIndex[0];
+        trigramIndexes = new TrigramIndex[0];
+    }
+
+    /**
+     * Usuwa indeksy kolumny (np. po wymianie jej wartości).
+     *
+     * @param column indeks kolumny
+     */
+    private synchronized void dropIndexes(int column) {
+        if (column < indexes.length) {
+            indexes[column] = null;
+        }
+        if (column < trigramIndexes.length) {
+            trigramIndexes[column] = null;
+        }
+    }
+
+    /**
+     * Niezmienna migawka stanu modelu: kolumny (współdzielące bloki z modelem),
+     * nazwy kolumn, liczba wierszy, filtr i kolejność sortowania.
+     */
+    public static final class Snapshot {
+        private final List<String> columnNames;
+        private final List<Column> columns;
+        private final int rowCount;
+        private final PagedRowSource pagedSource;
+        private final BitSet rowFilter;
+        private final FilterRule filterRule;
+        private final List<ParallelSorter.SortKey> sortKeys;
+        private final int[] sortOrder;
+        private final ColumnSource columnSource;
+        private final Column sourceRecords;
+        private final int sourceRecordCount;
+
+        private Snapshot(CSVTableModel model) {
+            columnNames = List.copyOf(model.columnNames);
+            columns = new ArrayList<>(model.columns.size());
+            for (Column column : model.columns) {
+                columns.add(column.copy());
+            }
+            rowCount = model.rowCount;
+            pagedSource = model.pagedSource;
+            rowFilter = model.rowFilter != null ? (BitSet) model.rowFilter.clone() : null;
+            filterRule = model.filterRule;
+            sortKeys = model.sortKeys;
+            sortOrder = model.sortOrder;
+            columnSource = model.columnSource;
+            sourceRecords = model.sourceRecords != null ? model.sourceRecords.copy() : null;
+            sourceRecordCount = model.sourceRecordCount;
+        }
+    }
+
+    /**
+     * Tworzy migawkę stanu modelu w czasie proporcjonalnym do liczby bloków kolumn.
+     *
+     * @return migawka stanu
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Przywraca stan modelu z migawki. Migawka pozostaje niezmieniona i może
+     * zostać przywrócona ponownie.
+     *
+     * @param snapshot migawka stanu
+     */
+    public void restore(Snapshot snapshot) {
+        boolean sameStructure = columnNames.equals(snapshot.columnNames);
+        columnNames = new ArrayList<>(snapshot.columnNames);
+        columns = new ArrayList<>(snapshot.columns.size());
+        for (Column column : snapshot.columns) {
+            columns.add(column.copy());
+        }
+        rowCount = snapshot.rowCount;
+        pagedSource = snapshot.pagedSource;
+        rowFilter = snapshot.rowFilter != null ? (BitSet) snapshot.rowFilter.clone() : null;
+        filterRule = snapshot.filterRule;
+        sortKeys = snapshot.sortKeys;
+        sortOrder = snapshot.sortOrder;
+        if (columnSource != snapshot.columnSource) {
+            editedColumns = new BitSet();
+        }
+        columnSource = snapshot.columnSource;
+        sourceRecords = snapshot.sourceRecords != null ? snapshot.sourceRecords.copy() : null;
+        sourceRecordCount = snapshot.sourceRecordCount;
+        updateView();
+        clearSortCache();
+        dropIndexes();
+        if (sameStructure) {
+            fireTableDataChanged(); // zachowuje szerokości i ukrycie kolumn w widoku
+        } else {
+            fireTableStructureChanged();
+        }
+    }
+
+    /**
+     * Rejestruje słuchacza zmian, które można cofnąć (np. {@link javax.swing.undo.UndoManager}).
+     *
+     * @param listener słuchacz zmian
+     */
+    public void addUndoableEditListener(UndoableEditListener listener) {
+        undoSupport.addUndoableEditListener(listener);
+    }
+
+    /**
+     * Usuwa słuchacza zmian, które można cofnąć.
+     *
+     * @param listener słuchacz zmian
+     */
+    public void removeUndoableEditListener(UndoableEditListener listener) {
+        undoSupport.removeUndoableEditListener(listener);
+    }
+
+    /**
+     * Zgłasza słuchaczom zmianę modelu od podanej migawki do stanu bieżącego.
+     *
+     * @param name nazwa zmiany wyświetlana w menu (np. "Dodanie wiersza")
+     * @param before migawka stanu sprzed zmiany
+     */
+    public void postEdit(String name, Snapshot before) {
+        if (undoSupport.getUndoableEditListeners().length > 0) {
+            undoSupport.postEdit(new ModelEdit(this, name, before, snapshot()));
+        }
+    }
+
+    /**
+     * Zgłasza wyjątek przy próbie modyfikacji modelu w trybie stronicowanym.
+     */
+    private void checkNotPaged() {
+        if (pagedSource != null) {
+            throw new UnsupportedOperationException("Model w trybie stronicowanym jest tylko do odczytu");
+        }
+    }
+
+    /**
+     * Ustawia separator używany w plikach CSV.
+     *
+     * @param separator znak separatora (np. ',', ';', '\t')
+     */
+    public void setSeparator(char separator) {
+        this.separator = separator;
+    }
+
+    /**
+     * Pobiera aktualny separator.
+     *
+     * @return znak separatora
+     */
+    public char getSeparator() {
+        return separator;
+    }
+
+    /**
+     * Ustawia dialekt wczytanego pliku - separator, cudzysłów, obecność nagłówka,
+     * kodowanie i koniec wiersza - dzięki czemu zapis zachowuje format pliku.
+     *
+     * @param dialect dialekt pliku
+     */
+    public void setDialect(CSVDialect dialect) {
+        this.separator = dialect.separator();
+        this.quote = dialect.quote();
+        this.hasHeaders = dialect.hasHeader();
+        this.charset = dialect.charset();
+        this.lineSeparator = dialect.lineSeparator();
+    }
+
+    /**
+     * Pobiera znak cudzysłowu używany przy zapisie pliku.
+     *
+     * @return znak cudzysłowu (domyślnie '"')
+     */
+    public char getQuote() {
+        return quote;
+    }
+
+    /**
+     * Pobiera znak (znaki) końca wiersza używany przy zapisie pliku.
+     *
+     * @return koniec wiersza (domyślnie systemowy)
+     */
+    public String getLineSeparator() {
+        return lineSeparator;
+    }
+
+    /**
+     * Ustawia kodowanie znaków używane przy zapisie pliku.
+     *
+     * @param charset kodowanie znaków
+     */
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Pobiera kodowanie znaków pliku.
+     *
+     * @return kodowanie znaków (domyślnie UTF-8)
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Sprawdza czy model używa pierwszego wiersza jako nagłówków.
+     *
+     * @return true jeśli pierwszy wiersz traktowany jest jako nagłówki
+     */
+    public boolean hasHeaders() {
+        return hasHeaders;
+    }
+
+    /**
+     * Tworzy i zwraca kopię tego obiektu.
+     * Kopia nie dzieli z oryginałem słuchaczy zdarzeń, a bloki danych współdzieli
+     * tylko do pierwszej modyfikacji (copy-on-write).
+     *
+     * @return sklonowany obiekt CSVTableModel
+     * @throws CloneNotSupportedException jeśli klonowanie nie jest wspierane
+     */
+    public Object clone() throws CloneNotSupportedException {
+        CSVTableModel clone = (CSVTableModel) super.clone();
+        clone.listenerList = new EventListenerList();
+        clone.undoSupport = new UndoableEditSupport(clone);
+        clone.locked = false;
+        clone.indexes = new ColumnIndex[0];
+        clone.trigramIndexes = new TrigramIndex[0];
+        clone.sortCache = newSortCache();
+        if (rowFilter != null) {
+            clone.rowFilter = (BitSet) rowFilter.clone();
+        }
+        clone.updateView();
+        clone.columnNames = new ArrayList<>(columnNames);
+        clone.columns = new ArrayList<>(columns.size());
+        for (Column column : columns) {
+            clone.columns.add(column.copy());
+        }
+        if (sourceRecords != null) {
+            clone.sourceRecords = sourceRecords.copy();
         }
+        clone.editedColumns = (BitSet) editedColumns.clone();
         return clone;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,280 @@
+package csvwrangler;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Tokenizer CSV zgodny z RFC 4180 oparty o ręcznie napisany automat stanów.
+ * Obsługuje pola w cudzysłowach, podwojone cudzysłowy wewnątrz pól oraz znaki
+ * nowej linii wewnątrz cudzysłowów. Bufory wejścia, pola i tablica pól są
+ * współdzielone między rekordami, więc na każdy rekord przypadają jedynie
+ * alokacje obiektów String z wartościami pól - a przy ograniczeniu odczytu do
+ * wybranych kolumn ({@link #setProjection(int[])}) tylko z wartościami tych kolumn.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public class CSVTokenizer {
+    /** Domyślny znak cudzysłowu */
+    public static final char DEFAULT_QUOTE = '"';
+
+    private static final int EOF = -1;
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+
+    private final Reader reader;
+    private final char separator;
+    private final char quote;
+    private final char[] buffer = new char[64 * 1024];
+    private int position;
+    private int limit;
+    private char[] fieldBuffer = new char[256];
+    private int fieldLength;
+    private String[] fields = new String[16];
+    private int fieldCount;
+    /** Czy pole o danym indeksie jest odczytywane (null - wszystkie pola) */
+    private boolean[] selected;
+
+    /**
+     * Tworzy tokenizer z domyślnym znakiem cudzysłowu.
+     *
+     * @param reader źródło znaków
+     * @param separator separator pól
+     */
+    public CSVTokenizer(Reader reader, char separator) {
+        this(reader, separator, DEFAULT_QUOTE);
+    }
+
+    /**
+     * Tworzy tokenizer.
+     *
+     * @param reader źródło znaków
+     * @param separator separator pól
+     * @param quote znak cudzysłowu
+     */
+    public CSVTokenizer(Reader reader, char separator, char quote) {
+        this.reader = reader;
+        this.separator = separator;
+        this.quote = quote;
+    }
+
+    /**
+     * Ogranicza odczyt do pól wskazanych kolumn. Pozostałe pola są rozpoznawane
+     * (ich separatory i cudzysłowy), ale nie powstają dla nich obiekty String -
+     * {@link #getField(int)} zwraca dla nich null.
+     *
+     * @param projection indeksy odczytywanych pól (null - wszystkie)
+     */
+    public void setProjection(int[] projection) {
+        if (projection == null) {
+            selected = null;
+            return;
+        }
+        selected = new boolean[Arrays.stream(projection).max().orElse(-1) + 1];
+        for (int column : projection) {
+            selected[column] = true;
+        }
+    }
+
+    /**
+     * Wczytuje kolejny rekord.
+     *
+     * @return true jeśli wczytano rekord, false na końcu danych
+     * @throws IOException jeśli nie uda się odczytać danych
+     */
+    public boolean nextRecord() throws IOException {
+        fieldCount = 0;
+        int c = read();
+        if (c == EOF) {
+            return false;
+        }
+        fieldLength = 0;
+        int state = FIELD_START;
+        while (true) {
+            switch (state) {
+                case FIELD_START -> {
+                    if (c == quote) {
+                        state = QUOTED;
+                    } else if (c == separator) {
+                        endField();
+                    } else if (c == '\n' || c == '\r' || c == EOF) {
+                        endField();
+                        endRecord(c);
+                        return true;
+                    } else {
+                        appendToField(c);
+                        state = UNQUOTED;
+                    }
+                }
+                case UNQUOTED -> {
+                    if (c == separator) {
+                        endField();
+                        state = FIELD_START;
+                    } else if (c == '\n' || c == '\r' || c == EOF) {
+                        endField();
+                        endRecord(c);
+                        return true;
+                    } else {
+                        appendToField(c);
+                    }
+                }
+                case QUOTED -> {
+                    if (c == quote) {
+                        state = QUOTE_IN_QUOTED;
+                    } else if (c == EOF) {
+                        // Niezamknięty cudzysłów - zwróć to, co udało się odczytać
+                        endField();
+                        return true;
+                    } else {
+                        appendToField(c);
+                    }
+                }
+                default -> { // QUOTE_IN_QUOTED
+                    if (c == quote) {
+                        appendToField(c); // podwojony cudzysłów
+                        state = QUOTED;
+                    } else if (c == separator) {
+                        endField();
+                        state = FIELD_START;
+                    } else if (c == '\n' || c == '\r' || c == EOF) {
+                        endField();
+                        endRecord(c);
+                        return true;
+                    } else {
+                        // Znaki po cudzysłowie zamykającym traktujemy dosłownie
+                        appendToField(c);
+                        state = UNQUOTED;
+                    }
+                }
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Odczytuje kolejny znak z bufora, uzupełniając go w razie potrzeby.
+     *
+     * @return znak lub EOF
+     * @throws IOException jeśli nie uda się odczytać danych
+     */
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return EOF;
+            }
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * Kończy rekord - po znaku '\r' pomija następujący po nim znak '\n'.
+     *
+     * @param c znak kończący rekord
+     * @throws IOException jeśli nie uda się odczytać danych
+     */
+    private void endRecord(int c) throws IOException {
+        if (c == '\r') {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return;
+                }
+            }
+            if (buffer[position] == '\n') {
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Dopisuje znak do bufora bieżącego pola.
+     *
+     * @param c znak do dopisania
+     */
+    private void appendToField(int c) {
+        if (fieldLength == fieldBuffer.length) {
+            fieldBuffer = Arrays.copyOf(fieldBuffer, fieldLength * 2);
+        }
+        fieldBuffer[fieldLength++] = (char) c;
+    }
+
+    /**
+     * Zamyka bieżące pole i dodaje je do rekordu.
+     */
+    private void endField() {
+        if (fieldCount == fields.length) {
+            fields = Arrays.copyOf(fields, fieldCount * 2);
+        }
+        if (selected != null && (fieldCount >= selected.length || !selected[fieldCount])) {
+            fields[fieldCount++] = null; // pole pominięte
+        } else {
+            fields[fieldCount++] = fieldLength == 0 ? "" : new String(fieldBuffer, 0, fieldLength);
+        }
+        fieldLength = 0;
+    }
+
+    /**
+     * Zwraca liczbę pól bieżącego rekordu.
+     *
+     * @return liczba pól
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Zwraca wartość pola bieżącego rekordu.
+     *
+     * @param index indeks pola
+     * @return wartość pola
+     */
+    public String getField(int index) {
+        return fields[index];
+    }
+
+    /**
+     * Zwraca bieżący rekord jako nową tablicę wartości.
+     *
+     * @return tablica wartości pól
+     */
+    public String[] toArray() {
+        return Arrays.copyOf(fields, fieldCount);
+    }
+
+    /**
+     * Usuwa cudzysłowy z surowej wartości pola rozpoczynającego się cudzysłowem,
+     * stosując te same reguły co automat tokenizera.
+     *
+     * @param raw surowa wartość pola (łącznie z cudzysłowem otwierającym)
+     * @param quote znak cudzysłowu
+     * @return wartość pola
+     */
+    static String unquote(String raw, char quote) {
+        StringBuilder sb = new StringBuilder(raw.length());
+        int i = 1;
+        while (i < raw.length()) {
+            char c = raw.charAt(i);
+            if (c == quote) {
+                if (i + 1 < raw.length() && raw.charAt(i + 1) == quote) {
+                    sb.append(quote);
+                    i += 2;
+                    continue;
+                }
+                // Cudzysłów zamykający - pozostałe znaki traktujemy dosłownie
+                sb.append(raw, i + 1, raw.length());
+                break;
+            }
+            sb.append(c);
+            i++;
+        }
+        return sb.toString();
+    }
+}
@@ -1,11 +1,22 @@
 package csvwrangler;
 
 import javax.swing.*;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.JTableHeader;
+import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableModel;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.List;
 
 /**
  * Główna klasa aplikacji CSV Data Wrangler - widok w architekturze MVC
@@ -13,27 +24,46 @@ import java.io.File;
  * @version 1.0
  */
 public class CSVWranglerApp extends JFrame {
+    /** Tło komórek pasujących do wyszukiwania */
+    private static final Color SEARCH_HIGHLIGHT = new Color(255, 235, 130);
+
     private JTable dataTable;
     private JScrollPane scrollPane;
     private JLabel statusLabel;
+    private JProgressBar progressBar;
     private CSVController controller;
     private CSVTableModel tableModel;
     private JList<String> columnsList;
     private JComboBox<String> filterColumnCombo;
+    private JTextField searchField;
+    /** Wiersze bazowe pasujące do wyszukiwania - osobno dla każdej kolumny modelu */
+    private BitSet[] searchMatches;
+    private JDialog performanceDialog;
 
     /**
      * Konstruktor głównego okna aplikacji.
      * Inicjalizuje komponenty interfejsu użytkownika i kontroler.
      */
     public CSVWranglerApp() {
-        setTitle("CSV Data Wrangler");
+        this("CSV Data Wrangler", new CSVTableModel(), false);
+    }
+
+    /**
+     * Tworzy okno z podanym modelem.
+     *
+     * @param title tytuł okna
+     * @param model model danych
+     * @param derived czy okno pokazuje tabelę pochodną (zamknięcie okna nie kończy aplikacji)
+     */
+    private CSVWranglerApp(String title, CSVTableModel model, boolean derived) {
+        setTitle(title);
         setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
         addWindowListener(new WindowAdapter()
         {
             public void windowClosing(WindowEvent e)
             {
                 if (controller.checkFileSaved())
-                    setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+                    setDefaultCloseOperation(derived ? JFrame.DISPOSE_ON_CLOSE : JFrame.EXIT_ON_CLOSE);
                 else
                     setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
             }
@@ -42,10 +72,13 @@ public class CSVWranglerApp extends JFrame {
         setSize(1000, 700);
         setLocationRelativeTo(null);
 
-        tableModel = new CSVTableModel();
+        tableModel = model;
         controller = new CSVController(this, tableModel);
 
         initUI();
+        if (derived) {
+            controller.refreshData();
+        }
     }
 
     /**
@@ -58,13 +91,43 @@ public class CSVWranglerApp extends JFrame {
         setJMenuBar(createMenuBar());
         mainPanel.add(createToolbar(), BorderLayout.NORTH);
 
-        dataTable = new JTable(tableModel);
+        dataTable = new JTable(tableModel) {
+            @Override
+            public Component prepareRenderer(TableCellRenderer renderer, int row, int column) {
+                Component component = super.prepareRenderer(renderer, row, column);
+                if (searchMatches != null && !isCellSelected(row, column)) {
+                    component.setBackground(isSearchMatch(row, column) ? SEARCH_HIGHLIGHT : getBackground());
+                }
+                return component;
+            }
+
+            @Override
+            public void tableChanged(TableModelEvent e) {
+                // Dodanie, usunięcie wierszy lub zmiana kolumn unieważnia wynik wyszukiwania
+                if (e.getType() != TableModelEvent.UPDATE || e.getFirstRow() == TableModelEvent.HEADER_ROW) {
+                    searchMatches = null;
+                }
+                super.tableChanged(e);
+                if (getTableHeader() != null) {
+                    getTableHeader().repaint(); // wskaźniki sortowania
+                }
+            }
+        };
+        installSortHeader();
+        // Liczby i daty wyświetlane i edytowane są w postaci tekstu wczytanego z pliku
+        dataTable.setDefaultRenderer(Number.class, createExactTextRenderer(SwingConstants.RIGHT));
+        dataTable.setDefaultRenderer(LocalDate.class, createExactTextRenderer(SwingConstants.LEFT));
+        dataTable.setDefaultEditor(Number.class, new DefaultCellEditor(new JTextField()));
+        dataTable.setDefaultEditor(LocalDate.class, new DefaultCellEditor(new JTextField()));
         scrollPane = new JScrollPane(dataTable);
         mainPanel.add(scrollPane, BorderLayout.CENTER);
 
         statusLabel = new JLabel(" Gotowy");
         JPanel statusPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setVisible(false);
         statusPanel.add(statusLabel);
+        statusPanel.add(progressBar);
         mainPanel.add(statusPanel, BorderLayout.SOUTH);
 
         mainPanel.add(createSidePanel(), BorderLayout.EAST);
@@ -72,6 +135,75 @@ public class CSVWranglerApp extends JFrame {
         add(mainPanel);
     }
 
+    /**
+     * Tworzy renderer wyświetlający dokładny tekst komórki z modelu
+     * (np. "100" zamiast "100.0" w kolumnie liczb zmiennoprzecinkowych).
+     *
+     * @param alignment wyrównanie tekstu w komórce
+     * @return renderer komórek
+     */
+    private static DefaultTableCellRenderer createExactTextRenderer(int alignment) {
+        DefaultTableCellRenderer renderer = new DefaultTableCellRenderer() {
+            @Override
+            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                           boolean hasFocus, int row, int column) {
+                if (table.getModel() instanceof CSVTableModel model && value != null) {
+                    value = model.getStringAt(table.convertRowIndexToModel(row), table.convertColumnIndexToModel(column));
+                }
+                return super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            }
+        };
+        renderer.setHorizontalAlignment(alignment);
+        return renderer;
+    }
+
+    /**
+     * Włącza sortowanie kliknięciem w nagłówek kolumny (z klawiszem Shift - dodanie
+     * kolejnego klucza) i wyświetlanie kierunku sortowania w nagłówkach.
+     */
+    private void installSortHeader() {
+        JTableHeader header = dataTable.getTableHeader();
+        header.setToolTipText("Kliknij, aby sortować; Shift+klik dodaje kolejną kolumnę sortowania");
+        header.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = header.columnAtPoint(e.getPoint());
+                if (SwingUtilities.isLeftMouseButton(e) && column >= 0) {
+                    controller.sortBy(dataTable.convertColumnIndexToModel(column), e.isShiftDown());
+                }
+            }
+        });
+        TableCellRenderer defaultRenderer = header.getDefaultRenderer();
+        header.setDefaultRenderer((table, value, isSelected, hasFocus, row, column) -> {
+            if (table.getModel() instanceof CSVTableModel model && model.isSorted()) {
+                List<ParallelSorter.SortKey> keys = model.getSortKeys();
+                int modelColumn = table.convertColumnIndexToModel(column);
+                for (int i = 0; i < keys.size(); i++) {
+                    if (keys.get(i).column() == modelColumn) {
+                        value = value + (keys.get(i).ascending() ? " ▲" : " ▼") + (keys.size() > 1 ? String.valueOf(i + 1) : "");
+                    }
+                }
+            }
+            return defaultRenderer.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+        });
+    }
+
+    /**
+     * Sprawdza czy komórka tabeli pasuje do ostatniego wyszukiwania.
+     *
+     * @param row indeks wiersza tabeli
+     * @param column indeks kolumny tabeli
+     * @return true jeśli komórka ma zostać podświetlona
+     */
+    private boolean isSearchMatch(int row, int column) {
+        int modelColumn = dataTable.convertColumnIndexToModel(column);
+        if (!(dataTable.getModel() instanceof CSVTableModel model) || modelColumn >= searchMatches.length) {
+            return false;
+        }
+        int baseRow = model.convertRowIndexToBase(dataTable.convertRowIndexToModel(row));
+        return searchMatches[modelColumn] != null && searchMatches[modelColumn].get(baseRow);
+    }
+
     /**
      * Tworzy pasek menu aplikacji.
      *
@@ -86,32 +218,92 @@ public class CSVWranglerApp extends JFrame {
         newItem.addActionListener(e -> controller.newFile());
         JMenuItem openItem = new JMenuItem("Otwórz CSV");
         openItem.addActionListener(e -> controller.openFile());
+        JMenuItem openColumnsItem = new JMenuItem("Otwórz wybrane kolumny CSV");
+        openColumnsItem.addActionListener(e -> controller.openFileColumns());
+        JMenuItem openPagedItem = new JMenuItem("Otwórz CSV stronicowo (duże pliki)");
+        openPagedItem.addActionListener(e -> controller.openFilePaged());
+        JCheckBoxMenuItem followItem = new JCheckBoxMenuItem("Śledź dopisywane wiersze");
+        followItem.addActionListener(e -> {
+            controller.setFollowing(followItem.isSelected());
+            followItem.setSelected(controller.isFollowing());
+        });
         JMenuItem saveItem = new JMenuItem("Zapisz CSV");
         saveItem.addActionListener(e -> controller.saveFile());
         JMenuItem saveAsItem = new JMenuItem("Zapisz CSV jako");
         saveAsItem.addActionListener(e -> controller.saveFileAs());
+        JMenuItem sortFileItem = new JMenuItem("Sortuj/filtruj duży plik do pliku");
+        sortFileItem.addActionListener(e -> controller.sortLargeFile());
+        JMenuItem cancelItem = new JMenuItem("Przerwij operację");
+        cancelItem.addActionListener(e -> controller.cancelTask());
         JMenuItem exitItem = new JMenuItem("Wyjdź");
         exitItem.addActionListener(e -> System.exit(0));
 
         fileMenu.add(newItem);
         fileMenu.add(openItem);
+        fileMenu.add(openColumnsItem);
+        fileMenu.add(openPagedItem);
+        fileMenu.add(followItem);
         fileMenu.add(saveItem);
         fileMenu.add(saveAsItem);
+        fileMenu.add(sortFileItem);
+        fileMenu.add(cancelItem);
         fileMenu.addSeparator();
         fileMenu.add(exitItem);
+        fileMenu.addMenuListener(new MenuListener() {
+            @Override
+            public void menuSelected(MenuEvent e) {
+                // Śledzenie kończy się także samo (np. po wczytaniu innego pliku)
+                followItem.setSelected(controller.isFollowing());
+            }
+
+            @Override
+            public void menuDeselected(MenuEvent e) {
+            }
+
+            @Override
+            public void menuCanceled(MenuEvent e) {
+            }
+        });
 
         // Menu Edycja
         JMenu editMenu = new JMenu("Edycja");
+        JMenuItem undoItem = new JMenuItem("Cofnij");
+        undoItem.setAccelerator(KeyStroke.getKeyStroke("control Z"));
+        undoItem.addActionListener(e -> controller.undo());
+        JMenuItem redoItem = new JMenuItem("Ponów");
+        redoItem.setAccelerator(KeyStroke.getKeyStroke("control Y"));
+        redoItem.addActionListener(e -> controller.redo());
+        JMenuItem searchItem = new JMenuItem("Szukaj we wszystkich kolumnach");
+        searchItem.setAccelerator(KeyStroke.getKeyStroke("control F"));
+        searchItem.addActionListener(e -> searchField.requestFocusInWindow());
+        JMenuItem clearSortItem = new JMenuItem("Wyczyść sortowanie");
+        clearSortItem.addActionListener(e -> controller.clearSort());
+        JMenuItem groupByItem = new JMenuItem("Grupuj i agreguj");
+        groupByItem.addActionListener(e -> controller.groupBy());
         JMenuItem addRowItem = new JMenuItem("Dodaj wiersz");
         addRowItem.addActionListener(e -> controller.addNewRow());
         JMenuItem deleteRowItem = new JMenuItem("Usuń wiersz");
         deleteRowItem.addActionListener(e -> controller.deleteSelectedRow());
 
+        editMenu.add(undoItem);
+        editMenu.add(redoItem);
+        editMenu.addSeparator();
+        editMenu.add(searchItem);
+        editMenu.add(clearSortItem);
+        editMenu.add(groupByItem);
+        editMenu.addSeparator();
         editMenu.add(addRowItem);
         editMenu.add(deleteRowItem);
 
+        // Menu Widok
+        JMenu viewMenu = new JMenu("Widok");
+        JMenuItem performanceItem = new JMenuItem("Panel wydajności");
+        performanceItem.addActionListener(e -> showPerformancePanel());
+        viewMenu.add(performanceItem);
+
         menuBar.add(fileMenu);
         menuBar.add(editMenu);
+        menuBar.add(viewMenu);
 
         return menuBar;
     }
@@ -178,6 +370,25 @@ public class CSVWranglerApp extends JFrame {
         sidePanel.setLayout(new BoxLayout(sidePanel, BoxLayout.Y_AXIS));
         sidePanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
 
+        // Panel wyszukiwania we wszystkich kolumnach
+        JPanel searchPanel = new JPanel(new GridLayout(0, 1));
+        searchPanel.setBorder(BorderFactory.createTitledBorder("Wyszukiwanie"));
+
+        searchField = new JTextField();
+        searchField.addActionListener(e -> controller.searchAll(searchField.getText()));
+        JButton searchButton = new JButton("Szukaj");
+        searchButton.addActionListener(e -> controller.searchAll(searchField.getText()));
+        JButton clearSearchButton = new JButton("Wyczyść wyszukiwanie");
+        clearSearchButton.addActionListener(e -> {
+            searchField.setText("");
+            controller.searchAll("");
+        });
+
+        searchPanel.add(new JLabel("Tekst:"));
+        searchPanel.add(searchField);
+        searchPanel.add(searchButton);
+        searchPanel.add(clearSearchButton);
+
         // Panel filtrowania
         JPanel filterPanel = new JPanel(new GridLayout(0, 1));
         filterPanel.setBorder(BorderFactory.createTitledBorder("Filtrowanie"));
@@ -185,19 +396,29 @@ public class CSVWranglerApp extends JFrame {
         filterColumnCombo = new JComboBox<>();
         JComboBox<String> filterOperatorCombo = new JComboBox<>(new String[]{"zawiera", "równa się", "zaczyna się"});
         JTextField filterValueField = new JTextField();
+        JComboBox<String> filterModeCombo = new JComboBox<>(new String[]{"zawęź wynik (I)", "dołącz wiersze (LUB)"});
         JButton filterButton = new JButton("Filtruj");
 
         filterButton.addActionListener(e -> {
             String column = (String) filterColumnCombo.getSelectedItem();
             String operator = (String) filterOperatorCombo.getSelectedItem();
             String value = filterValueField.getText();
-            controller.filterData(column, operator, value);
+            controller.filterData(column, operator, value, filterModeCombo.getSelectedIndex() == 1);
         });
 
+        JTextField filterExpressionField = new JTextField();
+        filterExpressionField.setToolTipText("<html>Np. <code>amount &gt; 100 AND country IN ('PL','DE') OR name ~ 'abc'</code><br>"
+                + "Operatory: = != &lt; &lt;= &gt; &gt;= ~ (zawiera) ^= (zaczyna się), IN, IS NULL, AND, OR, NOT</html>");
+        JButton filterExpressionButton = new JButton("Filtruj wyrażeniem");
+        filterExpressionButton.addActionListener(e -> controller.filterExpression(
+                filterExpressionField.getText(), filterModeCombo.getSelectedIndex() == 1));
+        filterExpressionField.addActionListener(e -> filterExpressionButton.doClick());
+
         JButton clearFilterButton = new JButton("Wyczyść filtry");
         clearFilterButton.addActionListener(e -> {
             controller.clearFilters(); // Wywołanie metody czyszczącej filtry
             filterValueField.setText(""); // Wyczyszczenie pola wartości
+            filterExpressionField.setText("");
         });
 
         filterPanel.add(new JLabel("Kolumna:"));
@@ -206,7 +427,12 @@ public class CSVWranglerApp extends JFrame {
         filterPanel.add(filterOperatorCombo);
         filterPanel.add(new JLabel("Wartość:"));
         filterPanel.add(filterValueField);
+        filterPanel.add(new JLabel("Łączenie filtrów:"));
+        filterPanel.add(filterModeCombo);
         filterPanel.add(filterButton);
+        filterPanel.add(new JLabel("Wyrażenie:"));
+        filterPanel.add(filterExpressionField);
+        filterPanel.add(filterExpressionButton);
         filterPanel.add(clearFilterButton);
 
         // Panel zarządzania kolumnami
@@ -233,6 +459,8 @@ public class CSVWranglerApp extends JFrame {
         columnsPanel.add(columnsScroll, BorderLayout.CENTER);
         columnsPanel.add(columnsButtonPanel, BorderLayout.SOUTH);
 
+        sidePanel.add(searchPanel);
+        sidePanel.add(Box.createVerticalStrut(10));
         sidePanel.add(filterPanel);
         sidePanel.add(Box.createVerticalStrut(10));
         sidePanel.add(columnsPanel);
@@ -267,6 +495,31 @@ public class CSVWranglerApp extends JFrame {
         dataTable.setModel(model);
     }
 
+    /**
+     * Ustawia komórki podświetlane jako wynik wyszukiwania.
+     *
+     * @param matches mapy bitowe pasujących wierszy bazowych dla kolumn modelu (null usuwa podświetlenie)
+     */
+    public void setSearchHighlight(BitSet[] matches) {
+        searchMatches = matches;
+        dataTable.repaint();
+    }
+
+    /**
+     * Przewija tabelę do wskazanego wiersza.
+     *
+     * @param row indeks wiersza modelu (wartość ujemna jest ignorowana)
+     */
+    public void scrollToRow(int row) {
+        if (row < 0 || row >= dataTable.getModel().getRowCount()) {
+            return;
+        }
+        int viewRow = dataTable.convertRowIndexToView(row);
+        if (viewRow >= 0) {
+            dataTable.scrollRectToVisible(dataTable.getCellRect(viewRow, 0, true));
+        }
+    }
+
     /**
      * Ustawia komunikat w pasku statusu.
      *
@@ -276,6 +529,18 @@ public class CSVWranglerApp extends JFrame {
         statusLabel.setText(message);
     }
 
+    /**
+     * Ustawia postęp operacji w pasku statusu.
+     *
+     * @param percent postęp w procentach (0-100) lub wartość ujemna, aby ukryć pasek
+     */
+    public void setProgress(int percent) {
+        progressBar.setVisible(percent >= 0);
+        if (percent >= 0) {
+            progressBar.setValue(percent);
+        }
+    }
+
     /**
      * Aktualizuje listę kolumn w panelu bocznym.
      *
@@ -348,6 +613,66 @@ public class CSVWranglerApp extends JFrame {
         );
     }
 
+    /**
+     * Wyświetla dialog wyboru kolumn wczytywanych z pliku (domyślnie zaznaczone są wszystkie).
+     *
+     * @param names nazwy kolumn pliku
+     * @return rosnąco posortowane indeksy wybranych kolumn lub null, jeśli anulowano
+     */
+    public int[] showColumnSelectionDialog(String[] names) {
+        JList<String> list = new JList<>(names);
+        list.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        list.setSelectionInterval(0, names.length - 1);
+        JScrollPane scroll = new JScrollPane(list);
+        scroll.setPreferredSize(new Dimension(300, 300));
+        int result = JOptionPane.showConfirmDialog(this, scroll, "Wybierz kolumny do wczytania",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        return result == JOptionPane.OK_OPTION ? list.getSelectedIndices() : null;
+    }
+
+    /**
+     * Otwiera tabelę pochodną (np. wynik grupowania) w nowym oknie z własnym kontrolerem -
+     * można ją filtrować, sortować i zapisać niezależnie od bieżącej tabeli.
+     *
+     * @param title tytuł okna
+     * @param model model tabeli pochodnej
+     */
+    public void showDerivedTable(String title, CSVTableModel model) {
+        CSVWranglerApp window = new CSVWranglerApp(title, model, true);
+        window.setLocationRelativeTo(this);
+        window.setVisible(true);
+        window.setStatusMessage(" " + title + " | Rekordów: " + model.getRowCount());
+    }
+
+    /**
+     * Wyświetla modalne okno postępu operacji w tle i czeka na jej zakończenie.
+     * Okno nie blokuje EDT (zdarzenia interfejsu i wyniki operacji są obsługiwane)
+     * i zamyka się samo po zakończeniu operacji; przycisk "Przerwij" przerywa operację.
+     *
+     * @param message komunikat do wyświetlenia
+     * @param task uruchomiona operacja
+     */
+    public void showProgressDialog(String message, SwingWorker<?, ?> task) {
+        if (task.isDone()) {
+            return;
+        }
+        JProgressBar bar = new JProgressBar(0, 100);
+        JOptionPane pane = new JOptionPane(new Object[] {message, bar}, JOptionPane.INFORMATION_MESSAGE,
+                JOptionPane.DEFAULT_OPTION, null, new Object[] {"Przerwij"});
+        JDialog dialog = pane.createDialog(this, getTitle());
+        task.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                bar.setValue((Integer) e.getNewValue());
+            } else if (task.isDone()) {
+                dialog.dispose();
+            }
+        });
+        dialog.setVisible(true);
+        if (!task.isDone()) {
+            task.cancel(false);
+        }
+    }
+
     /**
      * Wyświetla komunikat o błędzie.
      *
@@ -357,12 +682,26 @@ public class CSVWranglerApp extends JFrame {
         JOptionPane.showMessageDialog(this, message, "Błąd", JOptionPane.ERROR_MESSAGE);
     }
 
+    /**
+     * Wyświetla panel wydajności ostatnich operacji (okno niemodalne).
+     */
+    private void showPerformancePanel() {
+        if (performanceDialog == null) {
+            performanceDialog = new JDialog(this, "Wydajność", false);
+            performanceDialog.add(new PerformancePanel());
+            performanceDialog.setSize(900, 350);
+            performanceDialog.setLocationRelativeTo(this);
+        }
+        performanceDialog.setVisible(true);
+    }
+
     /**
      * Punkt wejścia aplikacji.
      *
      * @param args argumenty wiersza poleceń
      */
     public static void main(String[] args) {
+        Metrics.registerMBean();
         SwingUtilities.invokeLater(() -> {
             CSVWranglerApp app = new CSVWranglerApp();
             app.setVisible(true);
@@ -0,0 +1,234 @@
+package csvwrangler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Buforowany zapis plików CSV.
+ * Pola dopisywane są do wielokrotnie używanego bufora znaków, kodowane w podanym
+ * kodowaniu do bufora bajtów i zapisywane dużymi blokami przez {@link FileChannel}.
+ * Pola ujmowane są w cudzysłów (RFC 4180) tylko wtedy, gdy zawierają separator,
+ * cudzysłów lub znak nowej linii.
+ * Zapis jest atomowy: dane trafiają do pliku tymczasowego w katalogu docelowym,
+ * który dopiero w {@link #commit()} zastępuje plik docelowy. Zamknięcie bez
+ * zatwierdzenia usuwa plik tymczasowy i pozostawia plik docelowy bez zmian.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public class CSVWriter implements Closeable {
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel channel;
+    private final CharsetEncoder encoder;
+    private final char separator;
+    private final char quote;
+    private final String lineSeparator;
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private final ByteBuffer bytes;
+    private boolean firstField = true;
+    private boolean committed;
+
+    /**
+     * Otwiera zapis do wskazanego pliku z domyślnym cudzysłowem i znakiem końca linii systemu.
+     *
+     * @param target plik docelowy
+     * @param separator separator pól
+     * @param charset kodowanie znaków pliku
+     * @throws IOException jeśli nie uda się utworzyć pliku tymczasowego
+     */
+    public CSVWriter(Path target, char separator, Charset charset) throws IOException {
+        this(target, separator, CSVTokenizer.DEFAULT_QUOTE, System.lineSeparator(), charset);
+    }
+
+    /**
+     * Otwiera zapis do wskazanego pliku.
+     *
+     * @param target plik docelowy
+     * @param separator separator pól
+     * @param quote znak cudzysłowu
+     * @param lineSeparator znak (znaki) końca rekordu
+     * @param charset kodowanie znaków pliku
+     * @throws IOException jeśli nie uda się utworzyć pliku tymczasowego
+     */
+    public CSVWriter(Path target, char separator, char quote, String lineSeparator, Charset charset) throws IOException {
+        this.target = target.toAbsolutePath();
+        this.separator = separator;
+        this.quote = quote;
+        this.lineSeparator = lineSeparator;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocate((int) Math.ceil(BUFFER_SIZE * encoder.maxBytesPerChar()));
+        this.temp = Files.createTempFile(this.target.getParent(), "." + this.target.getFileName(), ".tmp");
+        if (Files.exists(this.target)) {
+            try {
+                // Plik zastępujący istniejący zachowuje jego uprawnienia
+                Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(this.target));
+            } catch (UnsupportedOperationException e) {
+                // system plików bez uprawnień POSIX
+            }
+        }
+        this.channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Dopisuje pole do bieżącego rekordu.
+     *
+     * @param value wartość pola (null zapisywany jest jako pole puste)
+     * @throws IOException jeśli nie uda się zapisać danych
+     */
+    public void writeField(String value) throws IOException {
+        if (!firstField) {
+            put(separator);
+        }
+        firstField = false;
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        if (needsQuoting(value)) {
+            put(quote);
+            int n = value.length();
+            for (int i = 0; i < n; i++) {
+                char c = value.charAt(i);
+                if (c == quote) {
+                    put(quote); // cudzysłów wewnątrz pola jest podwajany
+                }
+                put(c);
+            }
+            put(quote);
+        } else {
+            put(value);
+        }
+    }
+
+    /**
+     * Zapisuje cały rekord.
+     *
+     * @param values wartości pól
+     * @throws IOException jeśli nie uda się zapisać danych
+     */
+    public void writeRecord(String... values) throws IOException {
+        for (String value : values) {
+            writeField(value);
+        }
+        endRecord();
+    }
+
+    /**
+     * Kończy bieżący rekord.
+     *
+     * @throws IOException jeśli nie uda się zapisać danych
+     */
+    public void endRecord() throws IOException {
+        put(lineSeparator);
+        firstField = true;
+    }
+
+    /**
+     * Sprawdza czy pole trzeba ująć w cudzysłów.
+     *
+     * @param value wartość pola
+     * @return true jeśli pole zawiera separator, cudzysłów lub znak nowej linii
+     */
+    private boolean needsQuoting(String value) {
+        int n = value.length();
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            if (c == separator || c == quote || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void put(char c) throws IOException {
+        if (!chars.hasRemaining()) {
+            flushChars(false);
+        }
+        chars.put(c);
+    }
+
+    private void put(String s) throws IOException {
+        int offset = 0;
+        int n = s.length();
+        while (offset < n) {
+            if (!chars.hasRemaining()) {
+                flushChars(false);
+            }
+            int count = Math.min(chars.remaining(), n - offset);
+            int position = chars.position();
+            s.getChars(offset, offset + count, chars.array(), position);
+            chars.position(position + count);
+            offset += count;
+        }
+    }
+
+    /**
+     * Koduje zgromadzone znaki i zapisuje je do pliku.
+     *
+     * @param endOfInput czy to ostatnie znaki (pozwala domknąć niepełne pary surogatów)
+     * @throws IOException jeśli nie uda się zapisać danych
+     */
+    private void flushChars(boolean endOfInput) throws IOException {
+        chars.flip();
+        CoderResult result = encoder.encode(chars, bytes, endOfInput);
+        if (result.isError()) {
+            result.throwException();
+        }
+        if (endOfInput) {
+            encoder.flush(bytes);
+            encoder.reset();
+        }
+        chars.compact(); // niepełna para surogatów czeka na kolejny znak
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    /**
+     * Zapisuje pozostałe dane, utrwala plik tymczasowy i zastępuje nim plik docelowy.
+     *
+     * @throws IOException jeśli nie uda się zapisać lub przenieść pliku
+     */
+    public void commit() throws IOException {
+        flushChars(true);
+        channel.force(false);
+        channel.close();
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+    }
+
+    /**
+     * Zamyka zapis. Jeśli nie wywołano {@link #commit()}, plik tymczasowy jest usuwany.
+     *
+     * @throws IOException jeśli nie uda się zamknąć lub usunąć pliku tymczasowego
+     */
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            channel.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+}
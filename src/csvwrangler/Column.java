@@ -0,0 +1,329 @@
+package csvwrangler;
+
+import java.util.Arrays;
+
+/**
+ * Kolumna danych modelu przechowywana w blokach (chunkach) stałej wielkości.
+ * Wartości trzymane są w tablicach typów prostych właściwych dla danej klasy
+ * pochodnej, a informacja o pustych komórkach w mapie bitowej. Klasy pochodne
+ * mogą korzystać z dodatkowej mapy bitowej znaczników (np. sposobu zapisu liczby).
+ * Bloki pozwalają rosnąć kolumnie bez kopiowania całej tablicy, a kopie kolumny
+ * ({@link #copy()}) współdzielą bloki z oryginałem do pierwszej modyfikacji
+ * (copy-on-write) - kopiowany jest wtedy tylko modyfikowany blok.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+abstract class Column {
+    static final int CHUNK_SHIFT = 14;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CHUNK_CAPACITY = 16;
+
+    protected Object[] chunks = new Object[0];
+    protected long[][] nullChunks = new long[0][];
+    protected long[][] flagChunks = new long[0][];
+    /** Czy blok należy wyłącznie do tej kolumny (false - współdzielony z kopią) */
+    private boolean[] owned = new boolean[0];
+    protected int size;
+
+    /**
+     * Zwraca liczbę wierszy kolumny.
+     *
+     * @return liczba wierszy
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Sprawdza czy komórka jest pusta.
+     *
+     * @param row indeks wiersza
+     * @return true jeśli komórka nie zawiera wartości
+     */
+    boolean isNull(int row) {
+        return getBit(nullChunks, row);
+    }
+
+    /**
+     * Ustawia znacznik pustej komórki.
+     *
+     * @param row indeks wiersza
+     * @param isNull czy komórka jest pusta
+     */
+    protected void setNull(int row, boolean isNull) {
+        setBit(nullChunks, row, isNull);
+    }
+
+    /**
+     * Sprawdza znacznik komórki (znaczenie zależy od klasy pochodnej).
+     *
+     * @param row indeks wiersza
+     * @return wartość znacznika
+     */
+    protected boolean getFlag(int row) {
+        return getBit(flagChunks, row);
+    }
+
+    /**
+     * Ustawia znacznik komórki.
+     *
+     * @param row indeks wiersza
+     * @param flag wartość znacznika
+     */
+    protected void setFlag(int row, boolean flag) {
+        setBit(flagChunks, row, flag);
+    }
+
+    /**
+     * Odczytuje bit z mapy bitowej podzielonej na bloki.
+     *
+     * @param bitChunks bloki mapy bitowej (null oznacza blok samych zer)
+     * @param row indeks wiersza
+     * @return wartość bitu
+     */
+    private static boolean getBit(long[][] bitChunks, int row) {
+        long[] bits = bitChunks[row >>> CHUNK_SHIFT];
+        int i = row & CHUNK_MASK;
+        return bits != null && (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Ustawia bit w mapie bitowej podzielonej na bloki, tworząc blok w razie potrzeby.
+     *
+     * @param bitChunks bloki mapy bitowej
+     * @param row indeks wiersza
+     * @param value wartość bitu
+     */
+    private static void setBit(long[][] bitChunks, int row, boolean value) {
+        int chunk = row >>> CHUNK_SHIFT;
+        int i = row & CHUNK_MASK;
+        long[] bits = bitChunks[chunk];
+        if (value) {
+            if (bits == null) {
+                bits = new long[CHUNK_SIZE >>> 6];
+                bitChunks[chunk] = bits;
+            }
+            bits[i >>> 6] |= 1L << i;
+        } else if (bits != null) {
+            bits[i >>> 6] &= ~(1L << i);
+        }
+    }
+
+    /**
+     * Dodaje wartość na końcu kolumny.
+     *
+     * @param value wartość (musi spełniać {@link #canStore(Object)})
+     */
+    void add(Object value) {
+        int chunk = size >>> CHUNK_SHIFT;
+        int i = size & CHUNK_MASK;
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunk + 1);
+            nullChunks = Arrays.copyOf(nullChunks, chunk + 1);
+            flagChunks = Arrays.copyOf(flagChunks, chunk + 1);
+            owned = Arrays.copyOf(owned, chunk + 1);
+            chunks[chunk] = newChunk(INITIAL_CHUNK_CAPACITY);
+            owned[chunk] = true;
+        } else if (i == chunkCapacity(chunks[chunk])) {
+            prepareWrite(size);
+            chunks[chunk] = copyChunk(chunks[chunk], Math.min(CHUNK_SIZE, i * 2));
+        }
+        size++;
+        set(size - 1, value);
+    }
+
+    /**
+     * Zmienia liczbę wierszy kolumny - obcina ją lub dopełnia pustymi komórkami.
+     *
+     * @param newSize nowa liczba wierszy
+     */
+    void setSize(int newSize) {
+        if (newSize >= size) {
+            while (size < newSize) {
+                add(null);
+            }
+            return;
+        }
+        size = newSize;
+        int usedChunks = (newSize + CHUNK_MASK) >>> CHUNK_SHIFT;
+        chunks = Arrays.copyOf(chunks, usedChunks);
+        nullChunks = Arrays.copyOf(nullChunks, usedChunks);
+        flagChunks = Arrays.copyOf(flagChunks, usedChunks);
+        owned = Arrays.copyOf(owned, usedChunks);
+    }
+
+    /**
+     * Usuwa wskazane wiersze, kompaktując kolumnę w jednym przebiegu.
+     *
+     * @param sortedRows rosnąco posortowane indeksy wierszy do usunięcia
+     */
+    void removeRows(int[] sortedRows) {
+        if (sortedRows.length == 0) {
+            return;
+        }
+        int dst = sortedRows[0];
+        int k = 0;
+        for (int src = dst; src < size; src++) {
+            if (k < sortedRows.length && sortedRows[k] == src) {
+                while (k < sortedRows.length && sortedRows[k] == src) {
+                    k++;
+                }
+                continue;
+            }
+            prepareWrite(dst);
+            moveValue(src, dst);
+            setNull(dst, isNull(src));
+            setFlag(dst, getFlag(src));
+            dst++;
+        }
+        setSize(dst);
+    }
+
+    /**
+     * Tworzy kopię kolumny w czasie proporcjonalnym do liczby bloków, a nie wierszy.
+     * Kopia i oryginał współdzielą bloki; blok jest kopiowany dopiero przy
+     * pierwszym zapisie do niego w którejkolwiek z kolumn.
+     *
+     * @return kopia kolumny
+     */
+    Column copy() {
+        Column copy = newEmpty();
+        copy.size = size;
+        copy.chunks = chunks.clone();
+        copy.nullChunks = nullChunks.clone();
+        copy.flagChunks = flagChunks.clone();
+        copy.owned = new boolean[owned.length];
+        Arrays.fill(owned, false);
+        return copy;
+    }
+
+    /**
+     * Ustawia zawartość kolumny z gotowych bloków (np. odczytanych z {@link ColumnarCache}).
+     * Wszystkie bloki poza ostatnim muszą mieścić {@link #CHUNK_SIZE} wartości;
+     * kolumna staje się ich jedynym właścicielem.
+     *
+     * @param chunks bloki wartości
+     * @param nullChunks bloki mapy pustych komórek (null - blok bez pustych komórek)
+     * @param flagChunks bloki mapy znaczników (null - blok bez znaczników)
+     * @param size liczba wierszy
+     */
+    void restore(Object[] chunks, long[][] nullChunks, long[][] flagChunks, int size) {
+        this.chunks = chunks;
+        this.nullChunks = nullChunks;
+        this.flagChunks = flagChunks;
+        this.owned = new boolean[chunks.length];
+        Arrays.fill(owned, true);
+        this.size = size;
+    }
+
+    /**
+     * Przygotowuje blok wiersza do zapisu - jeśli jest współdzielony z kopią,
+     * kolumna otrzymuje własną kopię bloku wartości i jego map bitowych.
+     *
+     * @param row indeks wiersza, który zostanie zmodyfikowany
+     */
+    private void prepareWrite(int row) {
+        int chunk = row >>> CHUNK_SHIFT;
+        if (!owned[chunk]) {
+            chunks[chunk] = copyChunk(chunks[chunk], chunkCapacity(chunks[chunk]));
+            nullChunks[chunk] = nullChunks[chunk] != null ? nullChunks[chunk].clone() : null;
+            flagChunks[chunk] = flagChunks[chunk] != null ? flagChunks[chunk].clone() : null;
+            owned[chunk] = true;
+        }
+    }
+
+    /**
+     * Przepisuje wszystkie wartości tej kolumny do innej (np. o innym kodowaniu).
+     * Wartości przenoszone są w postaci tekstowej, więc zachowują swój zapis.
+     *
+     * @param target pusta kolumna docelowa
+     * @return kolumna docelowa
+     */
+    Column convertTo(Column target) {
+        for (int row = 0; row < size; row++) {
+            target.add(getString(row));
+        }
+        return target;
+    }
+
+    /**
+     * Sprawdza czy wartość oznacza pustą komórkę.
+     *
+     * @param value wartość
+     * @return true dla null i pustego tekstu
+     */
+    protected static boolean isEmpty(Object value) {
+        return value == null || (value instanceof String s && s.isEmpty());
+    }
+
+    /**
+     * Zwraca wartość komórki jako tekst - dokładnie w takiej postaci,
+     * w jakiej została zapisana (wczytana z pliku).
+     *
+     * @param row indeks wiersza
+     * @return tekst komórki lub null dla pustej komórki
+     */
+    String getString(int row) {
+        Object value = get(row);
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * Zwraca wartość komórki.
+     *
+     * @param row indeks wiersza
+     * @return wartość lub null dla pustej komórki
+     */
+    abstract Object get(int row);
+
+    /**
+     * Ustawia wartość komórki.
+     *
+     * @param row indeks wiersza
+     * @param value wartość (musi spełniać {@link #canStore(Object)})
+     */
+    void set(int row, Object value) {
+        prepareWrite(row);
+        store(row, value);
+    }
+
+    /**
+     * Zapisuje wartość w bloku należącym wyłącznie do tej kolumny.
+     *
+     * @param row indeks wiersza
+     * @param value wartość (musi spełniać {@link #canStore(Object)})
+     */
+    protected abstract void store(int row, Object value);
+
+    /**
+     * Sprawdza czy kolumna może przechować wartość bez utraty informacji.
+     *
+     * @param value wartość
+     * @return true jeśli wartość pasuje do kodowania kolumny
+     */
+    abstract boolean canStore(Object value);
+
+    /**
+     * Zwraca typ danych przechowywanych w kolumnie.
+     *
+     * @return typ kolumny
+     */
+    abstract ColumnType getType();
+
+    /**
+     * Tworzy pustą kolumnę tego samego rodzaju.
+     *
+     * @return pusta kolumna
+     */
+    protected abstract Column newEmpty();
+
+    protected abstract Object newChunk(int capacity);
+
+    protected abstract Object copyChunk(Object chunk, int capacity);
+
+    protected abstract int chunkCapacity(Object chunk);
+
+    protected abstract void moveValue(int from, int to);
+}
@@ -0,0 +1,167 @@
+package csvwrangler;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntFunction;
+
+/**
+ * Indeks kolumny przyspieszający filtrowanie "równa się" i "zaczyna się".
+ * Składa się z dwóch części:
+ * <ul>
+ *     <li>indeksu haszującego (wiersze pogrupowane według skrótu wartości) - dla "równa się",</li>
+ *     <li>indeksu posortowanego (wiersze uporządkowane według wartości) - dla "zaczyna się".</li>
+ * </ul>
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+class ColumnIndex extends RowIndex {
+    private int[] bucketStarts;
+    private int[] hashRows;
+    private int[] sortedRows;
+    private String[] sortedKeys;
+
+    /**
+     * Buduje indeks dla podanej liczby wierszy.
+     *
+     * @param rowCount liczba wierszy bazowych
+     * @param values dostęp do tekstu komórki wiersza bazowego
+     */
+    ColumnIndex(int rowCount, IntFunction<String> values) {
+        super(rowCount, values);
+
+        String[] keys = new String[rowCount];
+        int nonEmpty = 0;
+        for (int row = 0; row < rowCount; row++) {
+            String value = values.apply(row);
+            if (value != null && !value.isEmpty()) {
+                keys[row] = value;
+                nonEmpty++;
+            }
+        }
+
+        // Indeks haszujący: sortowanie kubełkowe wierszy według skrótu wartości
+        int buckets = Integer.highestOneBit(Math.max(16, nonEmpty)) << 1;
+        bucketStarts = new int[buckets + 1];
+        for (String key : keys) {
+            if (key != null) {
+                bucketStarts[bucket(key) + 1]++;
+            }
+        }
+        for (int b = 0; b < buckets; b++) {
+            bucketStarts[b + 1] += bucketStarts[b];
+        }
+        hashRows = new int[nonEmpty];
+        int[] next = Arrays.copyOf(bucketStarts, buckets);
+        for (int row = 0; row < rowCount; row++) {
+            if (keys[row] != null) {
+                hashRows[next[bucket(keys[row])]++] = row;
+            }
+        }
+
+        // Indeks posortowany: wiersze uporządkowane według wartości
+        sortedRows = new int[nonEmpty];
+        int k = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (keys[row] != null) {
+                sortedRows[k++] = row;
+            }
+        }
+        IntSort.sort(sortedRows, (a, b) -> keys[a].compareTo(keys[b]));
+        sortedKeys = new String[nonEmpty];
+        for (int i = 0; i < nonEmpty; i++) {
+            sortedKeys[i] = keys[sortedRows[i]];
+        }
+    }
+
+    /**
+     * Wyznacza kubełek indeksu haszującego dla wartości.
+     *
+     * @param value wartość
+     * @return numer kubełka
+     */
+    private int bucket(String value) {
+        int h = value.hashCode();
+        return (h ^ (h >>> 16)) & (bucketStarts.length - 2);
+    }
+
+    /**
+     * Zaznacza wiersze, których wartość jest równa podanej.
+     *
+     * @param value szukana wartość (niepusta)
+     * @param rowCount bieżąca liczba wierszy bazowych
+     * @param result mapa bitowa, w której zaznaczane są pasujące wiersze
+     */
+    void findEqual(String value, int rowCount, BitSet result) {
+        int b = bucket(value);
+        for (int i = bucketStarts[b]; i < bucketStarts[b + 1]; i++) {
+            int row = hashRows[i];
+            if (!isStale(row) && value.equals(values.apply(row))) {
+                result.set(row);
+            }
+        }
+        checkUnindexed(rowCount, result, value::equals);
+    }
+
+    /**
+     * Zaznacza wiersze, których wartość zaczyna się od podanego tekstu.
+     *
+     * @param prefix szukany początek wartości (niepusty)
+     * @param rowCount bieżąca liczba wierszy bazowych
+     * @param result mapa bitowa, w której zaznaczane są pasujące wiersze
+     */
+    void findPrefix(String prefix, int rowCount, BitSet result) {
+        int low = 0;
+        int high = sortedKeys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedKeys[middle].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < sortedKeys.length && sortedKeys[i].startsWith(prefix); i++) {
+            int row = sortedRows[i];
+            if (!isStale(row)) {
+                result.set(row);
+            }
+        }
+        checkUnindexed(rowCount, result, value -> value.startsWith(prefix));
+    }
+
+    /**
+     * Usuwa wiersze z obu części indeksu i przenumerowuje pozostałe w jednym przebiegu.
+     *
+     * @param removed rosnąco posortowane indeksy usuwanych wierszy bazowych
+     */
+    @Override
+    protected void renumber(int[] removed) {
+        // Indeks haszujący - kompaktowanie z zachowaniem granic kubełków
+        int w = 0;
+        for (int b = 0; b < bucketStarts.length - 1; b++) {
+            int start = bucketStarts[b];
+            bucketStarts[b] = w;
+            for (int i = start; i < bucketStarts[b + 1]; i++) {
+                int shift = removedBefore(removed, hashRows[i]);
+                if (shift >= 0) {
+                    hashRows[w++] = hashRows[i] - shift;
+                }
+            }
+        }
+        bucketStarts[bucketStarts.length - 1] = w;
+        hashRows = Arrays.copyOf(hashRows, w);
+
+        // Indeks posortowany
+        w = 0;
+        for (int i = 0; i < sortedRows.length; i++) {
+            int shift = removedBefore(removed, sortedRows[i]);
+            if (shift >= 0) {
+                sortedRows[w] = sortedRows[i] - shift;
+                sortedKeys[w++] = sortedKeys[i];
+            }
+        }
+        sortedRows = Arrays.copyOf(sortedRows, w);
+        sortedKeys = Arrays.copyOf(sortedKeys, w);
+    }
+}
@@ -0,0 +1,182 @@
+package csvwrangler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Plik, z którego wczytano model - pozwala wczytać na żądanie kolumny pominięte
+ * przy wczytywaniu lub zwolnione po ukryciu ({@link UnloadedColumn}).
+ * Zapamiętywany jest klucz pliku z chwili wczytania ({@link ColumnarCache.Key});
+ * kolumny wczytywane są tylko wtedy, gdy wcześniejsza zawartość pliku się nie zmieniła
+ * (plik mógł jedynie urosnąć, np. przy śledzeniu dopisywanych rekordów).
+ * Niezmieniony plik z aktualną pamięcią podręczną nie jest parsowany - bloki kolumn
+ * kopiowane są z niej; w pozostałych przypadkach plik jest parsowany, a tekst
+ * tworzony jest tylko dla pól wczytywanych kolumn.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+final class ColumnSource {
+    private final File file;
+    private final CSVDialect dialect;
+    private final ColumnarCache.Key key;
+
+    /**
+     * Tworzy źródło kolumn.
+     *
+     * @param file plik CSV
+     * @param dialect dialekt pliku
+     * @param key klucz pliku wyznaczony przed wczytaniem
+     */
+    ColumnSource(File file, CSVDialect dialect, ColumnarCache.Key key) {
+        this.file = file;
+        this.dialect = dialect;
+        this.key = key;
+    }
+
+    /**
+     * Zwraca plik źródłowy.
+     *
+     * @return plik CSV
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Wczytuje kolumny dla wierszy modelu. Wiersze modelu mogą pochodzić z rekordów
+     * pliku z pominięciem usuniętych ({@code records}); wiersze dodane przez użytkownika
+     * otrzymują puste komórki. Typy kolumn rozpoznawane są tak jak przy wczytywaniu pliku.
+     *
+     * @param columns rosnąco posortowane indeksy kolumn pliku
+     * @param records numery rekordów pliku kolejnych wierszy (rosnące, pusta komórka - wiersz
+     *                spoza pliku) lub null, jeśli wiersz i pochodzi z rekordu i
+     * @param rowCount liczba wierszy modelu
+     * @param recordCount liczba rekordów pliku, z których pochodzą wiersze
+     * @param cancelled sprawdzane w trakcie parsowania - zwrócenie true przerywa wczytywanie
+     * @return kolumny w kolejności indeksów lub null, jeśli wczytywanie przerwano
+     * @throws IOException jeśli pliku nie da się odczytać lub został zmieniony od wczytania
+     * @throws InterruptedException jeśli wątek zostanie przerwany
+     */
+    Column[] read(int[] columns, Column records, int rowCount, int recordCount, BooleanSupplier cancelled)
+            throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (!ColumnarCache.isPrefixUnchanged(key, channel)) {
+                throw new IOException("Plik " + file.getName() + " został zmieniony od wczytania - wczytaj go ponownie");
+            }
+            if (records == null && rowCount == recordCount && channel.size() == key.size()
+                    && ColumnarCache.isWorthCaching(key.size())) {
+                ColumnarCache.Entry cached = ColumnarCache.read(key, columns);
+                if (cached != null && cached.rowCount() == rowCount) {
+                    Metrics.cacheHit();
+                    Column[] result = new Column[columns.length];
+                    for (int i = 0; i < columns.length; i++) {
+                        result[i] = cached.columns().get(columns[i]);
+                    }
+                    return result;
+                }
+            }
+            Filler filler = new Filler(columns.length, records, rowCount, recordCount, dialect.hasHeader());
+            CSVLoader.parse(channel, file, dialect, columns, filler,
+                    () -> filler.isDone() || cancelled.getAsBoolean());
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+            return filler.finish();
+        }
+    }
+
+    /**
+     * Odbiorca sparsowanych rekordów - dopisuje wartości wczytywanych kolumn do wierszy
+     * pochodzących z kolejnych rekordów pliku.
+     */
+    private static final class Filler implements ParallelCSVParser.BatchConsumer {
+        private final StringColumn[] values;
+        private final TypeInferrer inferrer;
+        private final Column records;
+        private final int rowCount;
+        private final int recordCount;
+        private boolean header;
+        private int row;
+        private int record;
+
+        Filler(int columnCount, Column records, int rowCount, int recordCount, boolean header) {
+            this.values = new StringColumn[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                values[i] = new StringColumn();
+            }
+            this.inferrer = new TypeInferrer(columnCount);
+            this.records = records;
+            this.rowCount = rowCount;
+            this.recordCount = recordCount;
+            this.header = header;
+        }
+
+        @Override
+        public void accept(List<String[]> rows, long position) {
+            for (String[] fields : rows) {
+                if (header) {
+                    header = false; // nagłówek nie jest rekordem danych
+                    continue;
+                }
+                if (isDone()) {
+                    return;
+                }
+                skipAddedRows();
+                if (row < rowCount && recordOf(row) == record) {
+                    add(fields);
+                    row++;
+                }
+                record++;
+            }
+        }
+
+        /**
+         * Sprawdza czy odczytano już wszystkie rekordy, z których pochodzą wiersze.
+         */
+        boolean isDone() {
+            return record >= recordCount;
+        }
+
+        /**
+         * Uzupełnia pozostałe wiersze pustymi komórkami i koduje kolumny według rozpoznanych typów.
+         */
+        Column[] finish() {
+            while (row < rowCount) {
+                add(null);
+                row++;
+            }
+            Column[] result = new Column[values.length];
+            for (int i = 0; i < values.length; i++) {
+                result[i] = CSVTableModel.encode(values[i], inferrer.newColumn(i));
+            }
+            return result;
+        }
+
+        private void skipAddedRows() {
+            while (row < rowCount && recordOf(row) < 0) {
+                add(null);
+                row++;
+            }
+        }
+
+        private int recordOf(int row) {
+            if (records == null) {
+                return row;
+            }
+            return records.isNull(row) ? -1 : ((IntColumn) records).getInt(row);
+        }
+
+        private void add(String[] fields) {
+            for (int i = 0; i < values.length; i++) {
+                String value = fields != null && i < fields.length ? fields[i] : null;
+                values[i].add(value);
+                inferrer.accept(i, value);
+            }
+        }
+    }
+}
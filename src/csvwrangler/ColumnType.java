@@ -0,0 +1,229 @@
+package csvwrangler;
+
+import java.time.LocalDate;
+
+/**
+ * Typ danych kolumny wykrywany podczas parsowania.
+ * Typ liczbowy, logiczny lub daty przypisywany jest tylko wtedy, gdy tekst każdej
+ * wartości da się odtworzyć bez zmian - dzięki temu zapis pliku nie zmienia danych.
+ * Wszystkie sprawdzenia są ręczne i nie zgłaszają wyjątków.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public enum ColumnType {
+    INTEGER(Integer.class),
+    LONG(Long.class),
+    DOUBLE(Double.class),
+    BOOLEAN(Boolean.class),
+    DATE(LocalDate.class),
+    STRING(String.class);
+
+    /** Maska wszystkich typów kandydujących */
+    static final int ALL = (1 << values().length) - 1;
+
+    private final Class<?> javaClass;
+
+    ColumnType(Class<?> javaClass) {
+        this.javaClass = javaClass;
+    }
+
+    /**
+     * Zwraca klasę wartości kolumny tego typu (zwracaną przez getColumnClass).
+     *
+     * @return klasa wartości
+     */
+    public Class<?> getJavaClass() {
+        return javaClass;
+    }
+
+    /**
+     * Zwraca bit typu w masce kandydatów.
+     *
+     * @return maska z jednym ustawionym bitem
+     */
+    int mask() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Tworzy pustą kolumnę przechowującą wartości tego typu.
+     *
+     * @param lowCardinality czy kolumna tekstowa ma niewiele różnych wartości
+     * @return pusta kolumna
+     */
+    Column newColumn(boolean lowCardinality) {
+        return switch (this) {
+            case INTEGER -> new IntColumn();
+            case LONG -> new LongColumn();
+            case DOUBLE -> new DoubleColumn();
+            case BOOLEAN -> new BooleanColumn();
+            case DATE -> new DateColumn();
+            case STRING -> lowCardinality ? new DictionaryColumn() : new StringColumn();
+        };
+    }
+
+    /**
+     * Wybiera najbardziej szczegółowy typ z maski kandydatów.
+     *
+     * @param candidates maska typów, do których pasowały wszystkie wartości
+     * @return wybrany typ
+     */
+    static ColumnType fromCandidates(int candidates) {
+        for (ColumnType type : values()) {
+            if ((candidates & type.mask()) != 0) {
+                return type;
+            }
+        }
+        return STRING;
+    }
+
+    /**
+     * Wyznacza maskę typów, do których pasuje niepusta wartość.
+     *
+     * @param s wartość tekstowa
+     * @return maska typów (STRING zawsze ustawiony)
+     */
+    static int candidates(String s) {
+        int mask = STRING.mask();
+        if (s.isEmpty()) {
+            return mask;
+        }
+        char first = s.charAt(0);
+        if (first == '-' || (first >= '0' && first <= '9')) {
+            if (isCanonicalLong(s)) {
+                mask |= LONG.mask();
+                if (isCanonicalInt(s)) {
+                    mask |= INTEGER.mask();
+                }
+                if (isExactDoubleInteger(s)) {
+                    mask |= DOUBLE.mask();
+                }
+            } else if (isDecimal(s)) {
+                mask |= DOUBLE.mask();
+            } else if (isIsoDate(s)) {
+                mask |= DATE.mask();
+            }
+        } else if (isBoolean(s)) {
+            mask |= BOOLEAN.mask();
+        }
+        return mask;
+    }
+
+    /**
+     * Sprawdza czy tekst jest kanoniczną reprezentacją liczby całkowitej,
+     * tzn. czy zapisanie jej z powrotem da identyczny tekst.
+     *
+     * @param s tekst
+     * @return true dla tekstów postaci -?[1-9][0-9]* lub "0" mieszczących się w typie long
+     */
+    static boolean isCanonicalLong(String s) {
+        int n = s.length();
+        int i = 0;
+        if (n > 0 && s.charAt(0) == '-') {
+            i = 1;
+        }
+        int digits = n - i;
+        if (digits == 0 || digits > 18) {
+            return false;
+        }
+        if (s.charAt(i) == '0' && (digits > 1 || i == 1)) {
+            return false; // zera wiodące i "-0" nie przetrwałyby zapisu
+        }
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sprawdza czy tekst jest kanoniczną liczbą całkowitą mieszczącą się w typie int.
+     *
+     * @param s tekst
+     * @return true jeśli wartość można przechować jako int
+     */
+    static boolean isCanonicalInt(String s) {
+        if (!isCanonicalLong(s)) {
+            return false;
+        }
+        if (s.length() < 10) {
+            return true;
+        }
+        long value = Long.parseLong(s);
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Sprawdza czy kanoniczna liczba całkowita jest dokładnie reprezentowalna jako double.
+     *
+     * @param s tekst
+     * @return true dla liczb o co najwyżej 15 cyfrach
+     */
+    static boolean isExactDoubleInteger(String s) {
+        return isCanonicalLong(s) && s.length() - (s.charAt(0) == '-' ? 1 : 0) <= 15;
+    }
+
+    /**
+     * Sprawdza czy tekst jest liczbą dziesiętną z kropką (np. "10.50", "-0.1").
+     * Zapis nie musi być kanoniczny - {@link DoubleColumn} pamięta tekst wartości,
+     * których Double.toString nie odtworzy.
+     *
+     * @param s tekst
+     * @return true dla tekstów postaci -?[0-9]+.[0-9]+
+     */
+    static boolean isDecimal(String s) {
+        int n = s.length();
+        int i = n > 0 && s.charAt(0) == '-' ? 1 : 0;
+        int dot = -1;
+        for (int j = i; j < n; j++) {
+            char c = s.charAt(j);
+            if (c == '.') {
+                if (dot >= 0) {
+                    return false;
+                }
+                dot = j;
+            } else if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return dot > i && dot < n - 1;
+    }
+
+    /**
+     * Sprawdza czy tekst jest wartością logiczną zapisaną tak jak Boolean.toString.
+     *
+     * @param s tekst
+     * @return true dla "true" i "false"
+     */
+    static boolean isBoolean(String s) {
+        return s.equals("true") || s.equals("false");
+    }
+
+    /**
+     * Sprawdza czy tekst jest poprawną datą w formacie ISO (rrrr-mm-dd).
+     *
+     * @param s tekst
+     * @return true jeśli tekst jest poprawną datą
+     */
+    static boolean isIsoDate(String s) {
+        if (s.length() != 10 || s.charAt(4) != '-' || s.charAt(7) != '-') {
+            return false;
+        }
+        for (int i = 0; i < 10; i++) {
+            if (i != 4 && i != 7 && (s.charAt(i) < '0' || s.charAt(i) > '9')) {
+                return false;
+            }
+        }
+        int year = Integer.parseInt(s, 0, 4, 10);
+        int month = Integer.parseInt(s, 5, 7, 10);
+        int day = Integer.parseInt(s, 8, 10, 10);
+        if (month < 1 || month > 12 || day < 1) {
+            return false;
+        }
+        boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        return day <= java.time.Month.of(month).length(leap);
+    }
+}
@@ -0,0 +1,768 @@
+package csvwrangler;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Binarna pamięć podręczna (sidecar) wczytanych plików CSV. Po pierwszym wczytaniu
+ * dużego pliku zapisywane są sparsowane, typowane kolumny modelu - bloki int[], long[],
+ * double[] (z tekstem liczb o niekanonicznym zapisie), mapy bitowe, słowniki kolumn
+ * kodowanych słownikowo i teksty w UTF-8 -
+ * wraz z wykrytym dialektem. Kolejne otwarcie tego samego pliku mapuje plik
+ * pamięci podręcznej do pamięci i kopiuje bloki bezpośrednio do kolumn, bez
+ * parsowania tekstu i rozpoznawania typów. Bloki kolumn tekstowych pozostają
+ * spakowane w UTF-8 i dekodowane są dopiero przy pierwszym dostępie
+ * ({@link StringColumn.Packed}), więc czas otwarcia nie zależy od liczby tekstów.
+ * Przy otwieraniu wybranych kolumn bloki pozostałych są pomijane bez odczytu.
+ * <p>
+ * Wpis jest kluczowany ścieżką pliku, jego rozmiarem, czasem modyfikacji
+ * i skrótem SHA-256 próbki zawartości (początek, koniec i bloki rozłożone
+ * równomiernie w pliku) - wyznaczenie klucza nie wymaga czytania całego pliku.
+ * Wpis niezgodny z kluczem jest usuwany i plik wczytywany jest od nowa.
+ * <p>
+ * Pliki pamięci podręcznej trzymane są w katalogu {@code ~/.csvwrangler/cache}
+ * (właściwość csvwrangler.cacheDir), tylko dla plików CSV od 16 MB
+ * (csvwrangler.sidecarMinSize), a ich łączny rozmiar ograniczony jest do 8 GB
+ * (csvwrangler.sidecarCacheSize) - najdawniej używane wpisy są usuwane.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+final class ColumnarCache {
+    /** Minimalny rozmiar pliku CSV, dla którego zapisywana jest pamięć podręczna */
+    static final long MIN_FILE_SIZE = Long.getLong("csvwrangler.sidecarMinSize", 16L * 1024 * 1024);
+    /** Maksymalny łączny rozmiar plików pamięci podręcznej */
+    static final long MAX_CACHE_SIZE = Long.getLong("csvwrangler.sidecarCacheSize", 8L * 1024 * 1024 * 1024);
+    static final Path DIRECTORY = Path.of(System.getProperty("csvwrangler.cacheDir",
+            Path.of(System.getProperty("user.home"), ".csvwrangler", "cache").toString()));
+
+    private static final long MAGIC = 0x4353_5657_434F_4C31L; // "CSVWCOL1"
+    private static final int VERSION = 2;
+    private static final String EXTENSION = ".csvw";
+    /** Rozmiar próbki z początku i końca pliku wliczanej do skrótu zawartości */
+    private static final int FINGERPRINT_EDGE = 64 * 1024;
+    /** Liczba i rozmiar bloków z wnętrza pliku wliczanych do skrótu zawartości */
+    private static final int FINGERPRINT_BLOCKS = 64;
+    private static final int FINGERPRINT_BLOCK_SIZE = 4 * 1024;
+    /** Rozmiar jednorazowo mapowanego okna pliku pamięci podręcznej */
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final byte STRING = 0;
+    private static final byte INTEGER = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte DATE = 5;
+    private static final byte DICTIONARY = 6;
+
+    private ColumnarCache() {
+    }
+
+    /**
+     * Klucz wpisu - identyfikuje plik i stan jego zawartości.
+     *
+     * @param path bezwzględna ścieżka pliku
+     * @param size rozmiar pliku w bajtach
+     * @param modified czas ostatniej modyfikacji w milisekundach
+     * @param fingerprint skrót SHA-256 próbki zawartości
+     */
+    record Key(String path, long size, long modified, byte[] fingerprint) {
+        private boolean matches(String path, long size, long modified, byte[] fingerprint) {
+            return this.path.equals(path) && this.size == size && this.modified == modified
+                    && Arrays.equals(this.fingerprint, fingerprint);
+        }
+    }
+
+    /**
+     * Wpis odczytany z pamięci podręcznej.
+     *
+     * @param dialect dialekt pliku
+     * @param names nazwy kolumn
+     * @param columns kolumny danych
+     */
+    record Entry(CSVDialect dialect, List<String> names, List<Column> columns) {
+        int rowCount() {
+            return columns.isEmpty() ? 0 : columns.getFirst().size();
+        }
+    }
+
+    /**
+     * Sprawdza czy dla pliku o podanym rozmiarze używana jest pamięć podręczna.
+     *
+     * @param size rozmiar pliku CSV
+     * @return true dla plików od {@link #MIN_FILE_SIZE} bajtów
+     */
+    static boolean isWorthCaching(long size) {
+        return size >= MIN_FILE_SIZE;
+    }
+
+    /**
+     * Wyznacza klucz pliku, czytając jedynie próbkę zawartości. Klucz należy
+     * wyznaczyć przed wczytaniem pliku - zmiana pliku w trakcie wczytywania
+     * unieważni wtedy zapisany wpis.
+     *
+     * @param file plik CSV
+     * @param channel otwarty kanał pliku (pozycja kanału nie jest zmieniana)
+     * @return klucz wpisu
+     * @throws IOException jeśli nie uda się odczytać pliku
+     */
+    static Key key(File file, FileChannel channel) throws IOException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        long size = channel.size();
+        return new Key(path.toString(), size, modified, fingerprint(channel, size));
+    }
+
+    /**
+     * Wyznacza skrót SHA-256 rozmiaru i próbki zawartości pliku.
+     */
+    private static byte[] fingerprint(FileChannel channel, long size) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(ByteBuffer.allocate(Long.BYTES).putLong(0, size));
+        ByteBuffer block = ByteBuffer.allocate(FINGERPRINT_EDGE);
+        int edge = (int) Math.min(FINGERPRINT_EDGE, size); // tylko pierwsze size bajtów, nawet jeśli plik urósł
+        hashBlock(channel, digest, block, 0, edge);
+        long inner = Math.max(0, size - 2L * FINGERPRINT_EDGE);
+        for (int i = 0; i < FINGERPRINT_BLOCKS && inner > FINGERPRINT_BLOCK_SIZE; i++) {
+            long position = FINGERPRINT_EDGE + inner * i / FINGERPRINT_BLOCKS;
+            hashBlock(channel, digest, block, position, FINGERPRINT_BLOCK_SIZE);
+        }
+        hashBlock(channel, digest, block, Math.max(0, size - FINGERPRINT_EDGE), edge);
+        return digest.digest();
+    }
+
+    /**
+     * Sprawdza czy plik od wyznaczenia klucza co najwyżej urósł, tzn. czy próbka
+     * zawartości jego pierwszych {@code key.size()} bajtów jest taka sama (np. do pliku
+     * dopisano wiersze). Podobnie jak klucz, sprawdzenie nie czyta całego pliku.
+     *
+     * @param key klucz wyznaczony wcześniej dla pliku
+     * @param channel otwarty kanał pliku
+     * @return true jeśli wcześniejsza zawartość pliku się nie zmieniła
+     * @throws IOException jeśli nie uda się odczytać pliku
+     */
+    static boolean isPrefixUnchanged(Key key, FileChannel channel) throws IOException {
+        return channel.size() >= key.size() && Arrays.equals(fingerprint(channel, key.size()), key.fingerprint());
+    }
+
+    private static void hashBlock(FileChannel channel, MessageDigest digest, ByteBuffer block, long position,
+                                  int length) throws IOException {
+        block.clear().limit(length);
+        while (block.hasRemaining() && channel.read(block, position + block.position()) > 0) {
+            // odczyt pozycyjny - pozycja kanału pozostaje bez zmian
+        }
+        digest.update(block.flip());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 jest dostępny w każdej implementacji Javy
+        }
+    }
+
+    /**
+     * Zwraca ścieżkę pliku pamięci podręcznej dla pliku CSV.
+     *
+     * @param key klucz wpisu
+     * @return ścieżka pliku pamięci podręcznej
+     */
+    static Path sidecarPath(Key key) {
+        byte[] hash = sha256().digest(key.path().getBytes(StandardCharsets.UTF_8));
+        return DIRECTORY.resolve(HexFormat.of().formatHex(hash, 0, 16) + EXTENSION);
+    }
+
+    /**
+     * Odczytuje wpis zgodny z kluczem. Wpis nieaktualny lub uszkodzony jest usuwany.
+     *
+     * @param key klucz pliku
+     * @return wpis lub null, jeśli nie ma aktualnego wpisu
+     */
+    static Entry read(Key key) {
+        return read(key, null);
+    }
+
+    /**
+     * Odczytuje wpis zgodny z kluczem, kopiując bloki tylko wybranych kolumn. Bloki
+     * pozostałych są pomijane bez odczytu, a kolumny trafiają do wpisu jako
+     * niewczytane ({@link UnloadedColumn}). Wpis nieaktualny lub uszkodzony jest usuwany.
+     *
+     * @param key klucz pliku
+     * @param projection indeksy wczytywanych kolumn (null - wszystkie)
+     * @return wpis lub null, jeśli nie ma aktualnego wpisu
+     */
+    static Entry read(Key key, int[] projection) {
+        Path sidecar = sidecarPath(key);
+        if (!Files.isRegularFile(sidecar)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+            Entry entry = read(new Input(channel), key, projection);
+            if (entry != null) {
+                // Czas modyfikacji wpisu wyznacza kolejność usuwania najdawniej używanych
+                Files.setLastModifiedTime(sidecar, FileTime.fromMillis(System.currentTimeMillis()));
+                return entry;
+            }
+        } catch (IOException | RuntimeException e) {
+            // uszkodzony wpis - plik zostanie wczytany od nowa
+        }
+        try {
+            Files.deleteIfExists(sidecar);
+        } catch (IOException e) {
+            // wpis zostanie nadpisany przy zapisie
+        }
+        return null;
+    }
+
+    private static Entry read(Input in, Key key, int[] projection) throws IOException {
+        if (in.getLong() != MAGIC || in.getInt() != VERSION
+                || in.getByte() != (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 1 : 0)) {
+            return null;
+        }
+        String path = in.getString();
+        long size = in.getLong();
+        long modified = in.getLong();
+        byte[] fingerprint = new byte[in.getInt()];
+        in.getBytes(fingerprint, 0, fingerprint.length);
+        if (!key.matches(path, size, modified, fingerprint)) {
+            return null;
+        }
+
+        CSVDialect dialect = new CSVDialect(in.getChar(), in.getChar(), in.getByte() != 0,
+                Charset.forName(in.getString()), in.getInt(), in.getString());
+        int rowCount = in.getInt();
+        int columnCount = in.getInt();
+        int chunkCount = (rowCount + Column.CHUNK_MASK) >>> Column.CHUNK_SHIFT;
+        List<String> names = new ArrayList<>(columnCount);
+        List<Column> columns = new ArrayList<>(columnCount);
+        BitSet selected = new BitSet();
+        if (projection == null) {
+            selected.set(0, columnCount);
+        } else {
+            Arrays.stream(projection).forEach(selected::set);
+        }
+        for (int col = 0; col < columnCount; col++) {
+            names.add(in.getString());
+            byte kind = in.getByte();
+            if (!selected.get(col)) {
+                skipColumn(in, kind, rowCount);
+                columns.add(new UnloadedColumn(rowCount));
+                continue;
+            }
+            Column column = newColumn(kind);
+            if (column instanceof DictionaryColumn dictionary) {
+                List<String> values = new ArrayList<>();
+                for (int i = in.getInt(); i > 0; i--) {
+                    values.add(in.getString());
+                }
+                dictionary.restoreDictionary(values);
+            }
+            Object[] chunks = new Object[chunkCount];
+            long[][] nullChunks = new long[chunkCount][];
+            long[][] flagChunks = new long[chunkCount][];
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                int n = Math.min(Column.CHUNK_SIZE, rowCount - (chunk << Column.CHUNK_SHIFT));
+                nullChunks[chunk] = in.getByte() != 0 ? in.getLongs(Column.CHUNK_SIZE >>> 6) : null;
+                flagChunks[chunk] = in.getByte() != 0 ? in.getLongs(Column.CHUNK_SIZE >>> 6) : null;
+                chunks[chunk] = switch (kind) {
+                    case INTEGER, DATE, DICTIONARY -> in.getInts(n);
+                    case LONG -> in.getLongs(n);
+                    case DOUBLE -> {
+                        double[] values = in.getDoubles(n);
+                        yield in.getByte() != 0 ? new DoubleColumn.Texts(values, getTexts(in, n)) : values;
+                    }
+                    case BOOLEAN -> in.getLongs((n + 63) >>> 6);
+                    default -> {
+                        int[] offsets = in.getInts(n + 1);
+                        byte[] bytes = new byte[offsets[n]];
+                        in.getBytes(bytes, 0, bytes.length);
+                        long[] nulls = nullChunks[chunk];
+                        // własna kopia mapy - mapa kolumny może zmienić się przed dekodowaniem bloku
+                        yield new StringColumn.Packed(bytes, offsets, nulls != null ? nulls.clone() : null);
+                    }
+                };
+            }
+            column.restore(chunks, nullChunks, flagChunks, rowCount);
+            columns.add(column);
+        }
+        if (in.getLong() != MAGIC) {
+            throw new IOException("Niepełny plik pamięci podręcznej");
+        }
+        return new Entry(dialect, names, columns);
+    }
+
+    /**
+     * Przesuwa odczyt za dane kolumny (słownik, mapy bitowe i bloki wartości).
+     */
+    private static void skipColumn(Input in, byte kind, int rowCount) throws IOException {
+        if (kind == DICTIONARY) {
+            for (int i = in.getInt(); i > 0; i--) {
+                in.skip(in.getInt());
+            }
+        }
+        int chunkCount = (rowCount + Column.CHUNK_MASK) >>> Column.CHUNK_SHIFT;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int n = Math.min(Column.CHUNK_SIZE, rowCount - (chunk << Column.CHUNK_SHIFT));
+            for (int bits = 0; bits < 2; bits++) {
+                if (in.getByte() != 0) {
+                    in.skip((Column.CHUNK_SIZE >>> 6) * (long) Long.BYTES);
+                }
+            }
+            switch (kind) {
+                case INTEGER, DATE, DICTIONARY -> in.skip((long) n * Integer.BYTES);
+                case LONG -> in.skip((long) n * Long.BYTES);
+                case DOUBLE -> {
+                    in.skip((long) n * Long.BYTES);
+                    if (in.getByte() != 0) {
+                        skipStrings(in, n);
+                    }
+                }
+                case BOOLEAN -> in.skip((long) ((n + 63) >>> 6) * Long.BYTES);
+                default -> skipStrings(in, n);
+            }
+        }
+    }
+
+    private static void skipStrings(Input in, int n) throws IOException {
+        in.skip((long) n * Integer.BYTES);
+        in.skip(in.getInt()); // ostatnia pozycja to długość tekstów bloku
+    }
+
+    /**
+     * Odczytuje zapamiętane teksty bloku kolumny liczb zmiennoprzecinkowych
+     * (pusty tekst oznacza wartość zapisywaną z liczby).
+     */
+    private static String[] getTexts(Input in, int n) throws IOException {
+        int[] offsets = in.getInts(n + 1);
+        byte[] bytes = new byte[offsets[n]];
+        in.getBytes(bytes, 0, bytes.length);
+        String[] texts = new String[n];
+        for (int i = 0; i < n; i++) {
+            if (offsets[i + 1] > offsets[i]) {
+                texts[i] = new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+            }
+        }
+        return texts;
+    }
+
+    private static Column newColumn(byte kind) throws IOException {
+        return switch (kind) {
+            case STRING -> new StringColumn();
+            case INTEGER -> new IntColumn();
+            case LONG -> new LongColumn();
+            case DOUBLE -> new DoubleColumn();
+            case BOOLEAN -> new BooleanColumn();
+            case DATE -> new DateColumn();
+            case DICTIONARY -> new DictionaryColumn();
+            default -> throw new IOException("Nieznany rodzaj kolumny: " + kind);
+        };
+    }
+
+    private static byte kindOf(Column column) {
+        return switch (column) {
+            case IntColumn c -> INTEGER;
+            case LongColumn c -> LONG;
+            case DoubleColumn c -> DOUBLE;
+            case BooleanColumn c -> BOOLEAN;
+            case DateColumn c -> DATE;
+            case DictionaryColumn c -> DICTIONARY;
+            default -> STRING;
+        };
+    }
+
+    /**
+     * Zapisuje kolumny modelu jako wpis dla klucza. Plik zastępowany jest dopiero
+     * po zapisaniu całości, po czym usuwane są najdawniej używane wpisy ponad limit.
+     *
+     * @param key klucz pliku wyznaczony przed jego wczytaniem
+     * @param dialect dialekt pliku
+     * @param model model z wczytanymi danymi (nie może być modyfikowany w trakcie zapisu)
+     * @throws IOException jeśli nie uda się zapisać pliku
+     */
+    static void write(Key key, CSVDialect dialect, CSVTableModel model) throws IOException {
+        Files.createDirectories(DIRECTORY);
+        Path sidecar = sidecarPath(key);
+        Path temp = Files.createTempFile(DIRECTORY, sidecar.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                 Output out = new Output(channel)) {
+                write(out, key, dialect, model);
+            }
+            Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        evict();
+    }
+
+    /**
+     * Zapisuje wpis w wątku wirtualnym. Model powinien być kopią
+     * ({@link CSVTableModel#clone()}), aby zapis nie blokował edycji.
+     * Błędy zapisu są pomijane - pamięć podręczna jest jedynie przyspieszeniem.
+     *
+     * @param key klucz pliku wyznaczony przed jego wczytaniem
+     * @param dialect dialekt pliku
+     * @param snapshot kopia modelu z wczytanymi danymi
+     */
+    static void writeInBackground(Key key, CSVDialect dialect, CSVTableModel snapshot) {
+        Thread.ofVirtual().name("csvwrangler-sidecar").start(() -> {
+            try {
+                write(key, dialect, snapshot);
+            } catch (IOException | RuntimeException e) {
+                // plik zostanie wczytany od nowa przy następnym otwarciu
+            }
+        });
+    }
+
+    private static void write(Output out, Key key, CSVDialect dialect, CSVTableModel model) throws IOException {
+        if (!model.isFullyLoaded()) {
+            throw new IOException("Model nie zawiera wszystkich kolumn pliku");
+        }
+        out.putLong(MAGIC);
+        out.putInt(VERSION);
+        out.putByte(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 1 : 0);
+        out.putString(key.path());
+        out.putLong(key.size());
+        out.putLong(key.modified());
+        out.putInt(key.fingerprint().length);
+        out.putBytes(key.fingerprint(), 0, key.fingerprint().length);
+
+        out.putChar(dialect.separator());
+        out.putChar(dialect.quote());
+        out.putByte(dialect.hasHeader() ? 1 : 0);
+        out.putString(dialect.charset().name());
+        out.putInt(dialect.bomLength());
+        out.putString(dialect.lineSeparator());
+
+        int rowCount = model.getBaseRowCount();
+        out.putInt(rowCount);
+        out.putInt(model.getColumnCount());
+        int chunkCount = (rowCount + Column.CHUNK_MASK) >>> Column.CHUNK_SHIFT;
+        for (int col = 0; col < model.getColumnCount(); col++) {
+            Column column = model.getColumnStorage(col);
+            byte kind = kindOf(column);
+            out.putString(model.getColumnName(col));
+            out.putByte(kind);
+            if (column instanceof DictionaryColumn dictionary) {
+                out.putInt(dictionary.getDictionarySize());
+                for (int code = 0; code < dictionary.getDictionarySize(); code++) {
+                    out.putString(dictionary.getDictionaryValue(code));
+                }
+            }
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                int n = Math.min(Column.CHUNK_SIZE, rowCount - (chunk << Column.CHUNK_SHIFT));
+                putBits(out, column.nullChunks[chunk]);
+                putBits(out, column.flagChunks[chunk]);
+                Object values = column.chunks[chunk];
+                switch (kind) {
+                    case INTEGER, DATE, DICTIONARY -> out.putInts((int[]) values, n);
+                    case LONG -> out.putLongs((long[]) values, n);
+                    case DOUBLE -> {
+                        if (values instanceof DoubleColumn.Texts texts) {
+                            out.putDoubles(texts.values(), n);
+                            out.putByte(1);
+                            putStrings(out, texts.texts(), n);
+                        } else {
+                            out.putDoubles((double[]) values, n);
+                            out.putByte(0);
+                        }
+                    }
+                    case BOOLEAN -> out.putLongs((long[]) values, (n + 63) >>> 6);
+                    default -> putStrings(out, values, n);
+                }
+            }
+        }
+        out.putLong(MAGIC);
+    }
+
+    private static void putBits(Output out, long[] bits) throws IOException {
+        out.putByte(bits != null ? 1 : 0);
+        if (bits != null) {
+            out.putLongs(bits, bits.length);
+        }
+    }
+
+    private static void putStrings(Output out, Object chunk, int n) throws IOException {
+        if (chunk instanceof StringColumn.Packed packed) {
+            out.putInts(packed.offsets(), n + 1);
+            out.putBytes(packed.bytes(), 0, packed.offsets()[n]);
+            return;
+        }
+        String[] values = (String[]) chunk;
+        byte[][] encoded = new byte[n][];
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            encoded[i] = values[i] != null ? values[i].getBytes(StandardCharsets.UTF_8) : new byte[0];
+            offsets[i + 1] = offsets[i] + encoded[i].length;
+        }
+        out.putInts(offsets, n + 1);
+        for (byte[] bytes : encoded) {
+            out.putBytes(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Usuwa najdawniej używane wpisy, jeśli ich łączny rozmiar przekracza {@link #MAX_CACHE_SIZE}.
+     */
+    private static void evict() throws IOException {
+        List<Path> entries;
+        try (Stream<Path> files = Files.list(DIRECTORY)) {
+            entries = files.filter(file -> file.getFileName().toString().endsWith(EXTENSION))
+                    .sorted(Comparator.comparing(ColumnarCache::lastModified).reversed())
+                    .toList();
+        }
+        long total = 0;
+        for (Path entry : entries) {
+            total += Files.size(entry);
+            if (total > MAX_CACHE_SIZE) {
+                Files.deleteIfExists(entry);
+            }
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Buforowany zapis wartości w natywnej kolejności bajtów.
+     */
+    private static final class Output implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.nativeOrder());
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void putByte(int value) throws IOException {
+            ensure(1);
+            buffer.put((byte) value);
+        }
+
+        void putChar(char value) throws IOException {
+            ensure(Character.BYTES);
+            buffer.putChar(value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            putBytes(bytes, 0, bytes.length);
+        }
+
+        void putBytes(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(1);
+                int n = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, n);
+                offset += n;
+                length -= n;
+            }
+        }
+
+        void putInts(int[] values, int length) throws IOException {
+            for (int i = 0; i < length; ) {
+                ensure(Integer.BYTES);
+                int n = Math.min(length - i, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(values, i, n);
+                buffer.position(buffer.position() + n * Integer.BYTES);
+                i += n;
+            }
+        }
+
+        void putLongs(long[] values, int length) throws IOException {
+            for (int i = 0; i < length; ) {
+                ensure(Long.BYTES);
+                int n = Math.min(length - i, buffer.remaining() / Long.BYTES);
+                buffer.asLongBuffer().put(values, i, n);
+                buffer.position(buffer.position() + n * Long.BYTES);
+                i += n;
+            }
+        }
+
+        void putDoubles(double[] values, int length) throws IOException {
+            for (int i = 0; i < length; ) {
+                ensure(Double.BYTES);
+                int n = Math.min(length - i, buffer.remaining() / Double.BYTES);
+                buffer.asDoubleBuffer().put(values, i, n);
+                buffer.position(buffer.position() + n * Double.BYTES);
+                i += n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Odczyt wartości z pliku zmapowanego do pamięci kolejnymi oknami.
+     */
+    private static final class Input {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        Input(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0);
+        }
+
+        private void map(long position) throws IOException {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+            window.order(ByteOrder.nativeOrder());
+            windowStart = position;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (window.remaining() < bytes) {
+                long position = windowStart + window.position();
+                if (position + bytes > size) {
+                    throw new EOFException("Niepełny plik pamięci podręcznej");
+                }
+                map(position);
+            }
+        }
+
+        byte getByte() throws IOException {
+            ensure(1);
+            return window.get();
+        }
+
+        char getChar() throws IOException {
+            ensure(Character.BYTES);
+            return window.getChar();
+        }
+
+        int getInt() throws IOException {
+            ensure(Integer.BYTES);
+            return window.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensure(Long.BYTES);
+            return window.getLong();
+        }
+
+        String getString() throws IOException {
+            byte[] bytes = new byte[getInt()];
+            getBytes(bytes, 0, bytes.length);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void skip(long bytes) throws IOException {
+            long position = windowStart + window.position() + bytes;
+            if (position > size) {
+                throw new EOFException("Niepełny plik pamięci podręcznej");
+            }
+            if (position - windowStart <= window.limit()) {
+                window.position((int) (position - windowStart));
+            } else {
+                map(position);
+            }
+        }
+
+        void getBytes(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(1);
+                int n = Math.min(length, window.remaining());
+                window.get(bytes, offset, n);
+                offset += n;
+                length -= n;
+            }
+        }
+
+        int[] getInts(int length) throws IOException {
+            int[] values = new int[length];
+            for (int i = 0; i < length; ) {
+                ensure(Integer.BYTES);
+                int n = Math.min(length - i, window.remaining() / Integer.BYTES);
+                window.asIntBuffer().get(values, i, n);
+                window.position(window.position() + n * Integer.BYTES);
+                i += n;
+            }
+            return values;
+        }
+
+        long[] getLongs(int length) throws IOException {
+            long[] values = new long[length];
+            for (int i = 0; i < length; ) {
+                ensure(Long.BYTES);
+                int n = Math.min(length - i, window.remaining() / Long.BYTES);
+                window.asLongBuffer().get(values, i, n);
+                window.position(window.position() + n * Long.BYTES);
+                i += n;
+            }
+            return values;
+        }
+
+        double[] getDoubles(int length) throws IOException {
+            double[] values = new double[length];
+            for (int i = 0; i < length; ) {
+                ensure(Double.BYTES);
+                int n = Math.min(length - i, window.remaining() / Double.BYTES);
+                window.asDoubleBuffer().get(values, i, n);
+                window.position(window.position() + n * Double.BYTES);
+                i += n;
+            }
+            return values;
+        }
+    }
+}
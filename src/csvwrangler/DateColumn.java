@@ -0,0 +1,78 @@
+package csvwrangler;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Kolumna dat przechowywana jako numery dni od epoki (int[]).
+ * Przyjmuje obiekty LocalDate oraz teksty w formacie ISO (rrrr-mm-dd),
+ * których zapis LocalDate.toString odtwarza bez zmian.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+class DateColumn extends Column {
+
+    @Override
+    Object get(int row) {
+        return isNull(row) ? null : LocalDate.ofEpochDay(getEpochDay(row));
+    }
+
+    /**
+     * Zwraca datę komórki jako numer dnia od epoki.
+     *
+     * @param row indeks wiersza
+     * @return numer dnia (0 dla pustej komórki)
+     */
+    int getEpochDay(int row) {
+        return ((int[]) chunks[row >>> CHUNK_SHIFT])[row & CHUNK_MASK];
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        boolean isNull = isEmpty(value);
+        int day = 0;
+        if (!isNull) {
+            LocalDate date = value instanceof LocalDate d ? d : LocalDate.parse(value.toString());
+            day = (int) date.toEpochDay();
+        }
+        ((int[]) chunks[row >>> CHUNK_SHIFT])[row & CHUNK_MASK] = day;
+        setNull(row, isNull);
+    }
+
+    @Override
+    boolean canStore(Object value) {
+        return isEmpty(value) || (value instanceof LocalDate d && d.getYear() >= 0 && d.getYear() <= 9999)
+                || (value instanceof String s && ColumnType.isIsoDate(s));
+    }
+
+    @Override
+    ColumnType getType() {
+        return ColumnType.DATE;
+    }
+
+    @Override
+    protected Column newEmpty() {
+        return new DateColumn();
+    }
+
+    @Override
+    protected Object newChunk(int capacity) {
+        return new int[capacity];
+    }
+
+    @Override
+    protected Object copyChunk(Object chunk, int capacity) {
+        return Arrays.copyOf((int[]) chunk, capacity);
+    }
+
+    @Override
+    protected int chunkCapacity(Object chunk) {
+        return ((int[]) chunk).length;
+    }
+
+    @Override
+    protected void moveValue(int from, int to) {
+        ((int[]) chunks[to >>> CHUNK_SHIFT])[to & CHUNK_MASK] = ((int[]) chunks[from >>> CHUNK_SHIFT])[from & CHUNK_MASK];
+    }
+}
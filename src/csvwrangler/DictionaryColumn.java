@@ -0,0 +1,133 @@
+package csvwrangler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kolumna tekstowa kodowana słownikowo - każda różna wartość jest przechowywana
+ * raz w słowniku, a komórki zawierają jedynie jej kod (int).
+ * Przeznaczona dla kolumn o małej liczbie różnych wartości.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+class DictionaryColumn extends Column {
+    /** Maksymalna liczba różnych wartości kolumny kodowanej słownikowo */
+    static final int MAX_DICTIONARY_SIZE = 4096;
+
+    private List<String> values = new ArrayList<>();
+    private Map<String, Integer> codes = new HashMap<>();
+
+    @Override
+    Object get(int row) {
+        return isNull(row) ? null : values.get(getCode(row));
+    }
+
+    /**
+     * Zwraca kod słownikowy komórki.
+     *
+     * @param row indeks wiersza
+     * @return kod wartości (0 dla pustej komórki)
+     */
+    int getCode(int row) {
+        return ((int[]) chunks[row >>> CHUNK_SHIFT])[row & CHUNK_MASK];
+    }
+
+    /**
+     * Zwraca liczbę różnych wartości w słowniku.
+     *
+     * @return rozmiar słownika
+     */
+    int getDictionarySize() {
+        return values.size();
+    }
+
+    /**
+     * Zwraca wartość słownika o podanym kodzie.
+     *
+     * @param code kod wartości
+     * @return wartość
+     */
+    String getDictionaryValue(int code) {
+        return values.get(code);
+    }
+
+    /**
+     * Ustawia słownik kolumny (np. odczytany z {@link ColumnarCache}) - kody
+     * komórek odpowiadają pozycjom wartości na liście.
+     *
+     * @param dictionary różne wartości kolumny
+     */
+    void restoreDictionary(List<String> dictionary) {
+        values = new ArrayList<>(dictionary);
+        codes = new HashMap<>(values.size() * 2);
+        for (int code = 0; code < values.size(); code++) {
+            codes.put(values.get(code), code);
+        }
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        int[] chunk = (int[]) chunks[row >>> CHUNK_SHIFT];
+        if (value == null) {
+            chunk[row & CHUNK_MASK] = 0;
+            setNull(row, true);
+            return;
+        }
+        String text = value.toString();
+        Integer code = codes.get(text);
+        if (code == null) {
+            code = values.size();
+            values.add(text);
+            codes.put(text, code);
+        }
+        chunk[row & CHUNK_MASK] = code;
+        setNull(row, false);
+    }
+
+    @Override
+    boolean canStore(Object value) {
+        return value == null || values.size() < MAX_DICTIONARY_SIZE || codes.containsKey(value.toString());
+    }
+
+    @Override
+    Column copy() {
+        DictionaryColumn copy = (DictionaryColumn) super.copy();
+        copy.values = new ArrayList<>(values);
+        copy.codes = new HashMap<>(codes);
+        return copy;
+    }
+
+    @Override
+    ColumnType getType() {
+        return ColumnType.STRING;
+    }
+
+    @Override
+    protected Column newEmpty() {
+        return new DictionaryColumn();
+    }
+
+    @Override
+    protected Object newChunk(int capacity) {
+        return new int[capacity];
+    }
+
+    @Override
+    protected Object copyChunk(Object chunk, int capacity) {
+        return Arrays.copyOf((int[]) chunk, capacity);
+    }
+
+    @Override
+    protected int chunkCapacity(Object chunk) {
+        return ((int[]) chunk).length;
+    }
+
+    @Override
+    protected void moveValue(int from, int to) {
+        ((int[]) chunks[to >>> CHUNK_SHIFT])[to & CHUNK_MASK] = ((int[]) chunks[from >>> CHUNK_SHIFT])[from & CHUNK_MASK];
+    }
+}
@@ -0,0 +1,151 @@
+package csvwrangler;
+
+import java.util.Arrays;
+
+/**
+ * Kolumna liczb zmiennoprzecinkowych przechowywana w tablicach double[].
+ * Przyjmuje liczby dziesiętne w dowolnym zapisie (np. "10.50", "1.00"), a zapis do pliku
+ * odtwarza dokładnie wczytany tekst. Liczby całkowite zapisane bez kropki (np. "100")
+ * oznaczane są znacznikiem, aby ich tekst nie zmienił się na "100.0". Tekst pozostałych
+ * wartości, których Double.toString nie odtworzy, pamiętany jest obok liczb - blok
+ * z takimi wartościami ma postać {@link Texts}, a blok bez nich pozostaje tablicą double[].
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+class DoubleColumn extends Column {
+
+    /**
+     * Blok zawierający wartości o niekanonicznym zapisie.
+     *
+     * @param values wartości bloku
+     * @param texts oryginalny tekst wartości (null - tekst odtwarzany z liczby)
+     */
+    record Texts(double[] values, String[] texts) {
+    }
+
+    @Override
+    Object get(int row) {
+        return isNull(row) ? null : getDouble(row);
+    }
+
+    /**
+     * Zwraca wartość komórki bez opakowywania w obiekt.
+     *
+     * @param row indeks wiersza
+     * @return wartość (0 dla pustej komórki)
+     */
+    double getDouble(int row) {
+        return values(chunks[row >>> CHUNK_SHIFT])[row & CHUNK_MASK];
+    }
+
+    @Override
+    String getString(int row) {
+        if (isNull(row)) {
+            return null;
+        }
+        String text = getText(row);
+        if (text != null) {
+            return text;
+        }
+        double value = getDouble(row);
+        return getFlag(row) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    /**
+     * Zwraca zapamiętany tekst wartości o niekanonicznym zapisie.
+     *
+     * @param row indeks wiersza
+     * @return tekst lub null, jeśli wartość zapisywana jest z liczby
+     */
+    private String getText(int row) {
+        return chunks[row >>> CHUNK_SHIFT] instanceof Texts chunk ? chunk.texts()[row & CHUNK_MASK] : null;
+    }
+
+    /**
+     * Zapamiętuje tekst wartości, zamieniając w razie potrzeby blok double[] na {@link Texts}.
+     *
+     * @param row indeks wiersza
+     * @param text tekst lub null, jeśli wartość zapisywana jest z liczby
+     */
+    private void setText(int row, String text) {
+        int chunk = row >>> CHUNK_SHIFT;
+        if (chunks[chunk] instanceof Texts texts) {
+            texts.texts()[row & CHUNK_MASK] = text;
+        } else if (text != null) {
+            double[] values = (double[]) chunks[chunk];
+            String[] texts = new String[values.length];
+            texts[row & CHUNK_MASK] = text;
+            chunks[chunk] = new Texts(values, texts);
+        }
+    }
+
+    private static double[] values(Object chunk) {
+        return chunk instanceof Texts texts ? texts.values() : (double[]) chunk;
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        boolean isNull = isEmpty(value);
+        boolean integral = false;
+        double number = 0;
+        String text = null;
+        if (!isNull) {
+            if (value instanceof Number n) {
+                number = n.doubleValue();
+                integral = !(value instanceof Double || value instanceof Float);
+            } else {
+                String s = value.toString();
+                integral = ColumnType.isCanonicalLong(s);
+                number = integral ? Long.parseLong(s) : Double.parseDouble(s);
+                if (!integral && !Double.toString(number).equals(s)) {
+                    text = s;
+                }
+            }
+        }
+        values(chunks[row >>> CHUNK_SHIFT])[row & CHUNK_MASK] = number;
+        setText(row, text);
+        setNull(row, isNull);
+        setFlag(row, integral);
+    }
+
+    @Override
+    boolean canStore(Object value) {
+        return isEmpty(value) || value instanceof Double || value instanceof Integer
+                || (value instanceof String s && (ColumnType.isDecimal(s) || ColumnType.isExactDoubleInteger(s)));
+    }
+
+    @Override
+    ColumnType getType() {
+        return ColumnType.DOUBLE;
+    }
+
+    @Override
+    protected Column newEmpty() {
+        return new DoubleColumn();
+    }
+
+    @Override
+    protected Object newChunk(int capacity) {
+        return new double[capacity];
+    }
+
+    @Override
+    protected Object copyChunk(Object chunk, int capacity) {
+        if (chunk instanceof Texts texts) {
+            return new Texts(Arrays.copyOf(texts.values(), capacity), Arrays.copyOf(texts.texts(), capacity));
+        }
+        return Arrays.copyOf((double[]) chunk, capacity);
+    }
+
+    @Override
+    protected int chunkCapacity(Object chunk) {
+        return values(chunk).length;
+    }
+
+    @Override
+    protected void moveValue(int from, int to) {
+        values(chunks[to >>> CHUNK_SHIFT])[to & CHUNK_MASK] = getDouble(from);
+        setText(to, getText(from));
+    }
+}
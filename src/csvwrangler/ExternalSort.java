@@ -0,0 +1,789 @@
+package csvwrangler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Sortowanie zewnętrzne i filtrowanie plików CSV większych niż dostępna pamięć.
+ * Plik czytany jest strumieniowo w paczkach, których szacowany rozmiar nie przekracza
+ * połowy budżetu pamięci. Każda paczka trafia do tymczasowego modelu kolumnowego
+ * ({@link CSVTableModel}), jest filtrowana ({@link FilterExpression}, {@link ParallelFilter}),
+ * sortowana i zapisywana przez {@link CSVWriter} do pliku tymczasowego (przebiegu).
+ * Przebiegi scalane są k-drogowo do pliku wynikowego - po co najwyżej
+ * {@value #MAX_MERGE_FAN_IN} naraz, w razie potrzeby w kilku etapach. Zużycie pamięci
+ * nie zależy więc od rozmiaru pliku. Jeśli dane mieszczą się w jednej paczce, pliki
+ * tymczasowe nie są tworzone; bez kluczy sortowania paczki zapisywane są od razu.
+ * <p>
+ * Typy kolumn rozpoznawane są na podstawie pierwszej paczki (jak przy wczytywaniu).
+ * Wartości kolumny typowanej porównywane są zgodnie z typem; wartości, które do typu
+ * nie pasują, trafiają za nimi (porównywane jako tekst), a puste komórki - na koniec.
+ * Sortowanie jest stabilne.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public class ExternalSort {
+    /** Maksymalna liczba przebiegów scalanych jednocześnie */
+    static final int MAX_MERGE_FAN_IN = 64;
+    /** Najmniejszy dopuszczalny budżet pamięci */
+    private static final long MIN_MEMORY_BUDGET = 4L * 1024 * 1024;
+    /** Liczba wierszy, na podstawie których rozpoznawane są typy kolumn */
+    private static final int SCHEMA_SAMPLE_ROWS = 16_384;
+    /** Co ile wierszy zgłaszany jest postęp i sprawdzane przerwanie */
+    private static final int PROGRESS_INTERVAL = 65_536;
+    /** Szacowany narzut pamięci na wiersz paczki (indeksy, klucze sortowania) */
+    private static final int ROW_OVERHEAD = 32;
+
+    private static final byte TYPED = 0;
+    private static final byte TEXT = 1;
+    private static final byte EMPTY = 2;
+
+    private final char separator;
+    private final boolean hasHeaders;
+    private final long memoryBudget;
+    private final Path tempDirectory;
+    private final Charset charset;
+    private String columns;
+    private String hiddenColumns;
+
+    /**
+     * Wynik przetwarzania.
+     *
+     * @param rowsRead liczba wczytanych wierszy danych (bez nagłówka)
+     * @param rowsWritten liczba zapisanych wierszy danych
+     * @param runs liczba przebiegów zapisanych na dysk (0 - dane zmieściły się w pamięci)
+     * @param millis czas przetwarzania w milisekundach
+     */
+    public record Result(long rowsRead, long rowsWritten, int runs, long millis) {
+        /**
+         * Zwraca przepustowość przetwarzania.
+         *
+         * @return liczba wczytanych wierszy na sekundę
+         */
+        public long rowsPerSecond() {
+            return rowsRead * 1000 / Math.max(1, millis);
+        }
+    }
+
+    /**
+     * Odbiorca informacji o postępie (wywoływany z wątku przetwarzania).
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Zgłasza postęp etapu.
+         *
+         * @param stage nazwa etapu (np. "Sortowanie", "Scalanie")
+         * @param done wykonana część etapu
+         * @param total cały etap
+         */
+        void progress(String stage, long done, long total);
+    }
+
+    /**
+     * Tworzy sortowanie zewnętrzne.
+     *
+     * @param separator separator pól pliku wejściowego i wynikowego
+     * @param hasHeaders czy pierwszy wiersz pliku zawiera nagłówki
+     * @param memoryBudget przybliżona maksymalna ilość pamięci na dane w bajtach
+     * @param tempDirectory katalog plików tymczasowych (null - katalog systemowy)
+     * @param charset kodowanie znaków pliku wynikowego
+     */
+    public ExternalSort(char separator, boolean hasHeaders, long memoryBudget, Path tempDirectory, Charset charset) {
+        this.separator = separator;
+        this.hasHeaders = hasHeaders;
+        this.memoryBudget = Math.max(MIN_MEMORY_BUDGET, memoryBudget);
+        this.tempDirectory = tempDirectory;
+        this.charset = charset;
+    }
+
+    /**
+     * Zwraca domyślny budżet pamięci - jedną czwartą maksymalnej pamięci JVM.
+     *
+     * @return budżet pamięci w bajtach
+     */
+    public static long defaultMemoryBudget() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * Ustawia kolumny pliku wynikowego (w podanej kolejności).
+     *
+     * @param columns nazwy lub numery (od 1) kolumn rozdzielone przecinkami (puste lub null - wszystkie)
+     */
+    public void setColumns(String columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Ustawia kolumny pomijane w pliku wynikowym.
+     *
+     * @param hiddenColumns nazwy lub numery (od 1) kolumn rozdzielone przecinkami (puste lub null - żadne)
+     */
+    public void setHiddenColumns(String hiddenColumns) {
+        this.hiddenColumns = hiddenColumns;
+    }
+
+    /**
+     * Przetwarza plik: filtruje i sortuje wiersze, zapisując wynik do pliku wynikowego.
+     * Bez filtra i kluczy sortowania wiersze przepisywane są bezpośrednio, z pominięciem
+     * modelu. Plik wynikowy zastępowany jest dopiero po zapisaniu wszystkich danych.
+     *
+     * @param input plik wejściowy
+     * @param output plik wynikowy (może być tym samym plikiem co wejściowy)
+     * @param sortSpec klucze sortowania, np. {@code "kwota:desc, kraj"} (pusty lub null - bez sortowania)
+     * @param filter wyrażenie filtrujące w składni {@link FilterExpression} (puste lub null - bez filtrowania)
+     * @param listener odbiorca postępu
+     * @param cancelled sprawdzane w trakcie przetwarzania - zwrócenie true przerywa je bez zmiany pliku wynikowego
+     * @return wynik przetwarzania lub null, jeśli przerwano
+     * @throws IOException jeśli nie uda się odczytać lub zapisać danych
+     * @throws ParseException jeśli klucze sortowania, kolumny lub wyrażenie filtrujące są niepoprawne
+     */
+    public Result run(File input, File output, String sortSpec, String filter, ProgressListener listener,
+                      BooleanSupplier cancelled) throws IOException, ParseException {
+        long start = System.nanoTime();
+        String filterText = filter != null && !filter.isBlank() ? filter : null;
+        Path workDirectory = null;
+        try (CSVRecordReader reader = CSVRecordReader.open(input, separator);
+             CSVWriter writer = new CSVWriter(output.toPath(), separator, charset)) {
+            if (!reader.nextRecord()) {
+                writer.commit();
+                return new Result(0, 0, 0, elapsedMillis(start));
+            }
+            String[] first = reader.toArray();
+            String[] columnNames = hasHeaders ? first : defaultColumnNames(first.length);
+            List<ParallelSorter.SortKey> keys = parseSortKeys(sortSpec, columnNames);
+            int[] projection = projection(columnNames);
+            long totalBytes = Math.max(1, input.length());
+            if (hasHeaders) {
+                writeRow(writer, columnNames, projection);
+            }
+            if (keys.isEmpty() && filterText == null) {
+                long rows = copy(reader, hasHeaders ? null : first, projection, writer, listener, totalBytes, cancelled);
+                if (rows < 0) {
+                    return null;
+                }
+                writer.commit();
+                return new Result(rows, rows, 0, elapsedMillis(start));
+            }
+
+            // Typy kolumn z pierwszych wierszy - stosowane do wszystkich paczek
+            List<String[]> sample = new ArrayList<>();
+            if (!hasHeaders) {
+                sample.add(first);
+            }
+            while (sample.size() < SCHEMA_SAMPLE_ROWS && reader.nextRecord()) {
+                sample.add(reader.toArray());
+            }
+            TypeInferrer schema = new TypeInferrer(columnNames.length);
+            for (String[] row : sample) {
+                schema.accept(row);
+            }
+            ColumnType[] types = schema.getTypes();
+            long chunkBudget = memoryBudget / 2;
+
+            List<Path> runs = new ArrayList<>();
+            long rowsRead = 0;
+            long rowsWritten = 0;
+            CSVTableModel chunk = newChunk(columnNames, schema);
+            long chunkBytes = 0;
+            int sampleIndex = 0;
+            while (true) {
+                String[] row;
+                if (sampleIndex < sample.size()) {
+                    row = sample.get(sampleIndex);
+                    sample.set(sampleIndex++, null);
+                } else if (reader.nextRecord()) {
+                    row = reader.toArray();
+                } else {
+                    break;
+                }
+                chunk.addRow(row);
+                chunkBytes += estimateRowBytes(row, types, schema);
+                rowsRead++;
+                if (rowsRead % PROGRESS_INTERVAL == 0) {
+                    if (cancelled.getAsBoolean()) {
+                        return null;
+                    }
+                    listener.progress("Przetwarzanie", reader.getBytesRead(), totalBytes);
+                }
+                if (chunkBytes >= chunkBudget) {
+                    if (keys.isEmpty()) {
+                        rowsWritten += writeChunk(chunk, filterText, keys, types, projection, writer, cancelled);
+                    } else {
+                        if (workDirectory == null) {
+                            workDirectory = tempDirectory != null
+                                    ? Files.createTempDirectory(tempDirectory, "csvwrangler-sort")
+                                    : Files.createTempDirectory("csvwrangler-sort");
+                        }
+                        Path run = spill(chunk, filterText, keys, types, null, workDirectory, runs.size(), cancelled);
+                        if (run == null) {
+                            return null;
+                        }
+                        runs.add(run);
+                    }
+                    chunk = newChunk(columnNames, schema);
+                    chunkBytes = 0;
+                }
+            }
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+
+            if (runs.isEmpty()) {
+                rowsWritten += writeChunk(chunk, filterText, keys, types, projection, writer, cancelled);
+            } else {
+                if (chunk.getBaseRowCount() > 0) {
+                    Path run = spill(chunk, filterText, keys, types, null, workDirectory, runs.size(), cancelled);
+                    if (run == null) {
+                        return null;
+                    }
+                    runs.add(run);
+                }
+                chunk = null;
+                rowsWritten = mergeAll(runs, keys, types, projection, workDirectory, writer, listener, cancelled);
+                if (rowsWritten < 0) {
+                    return null;
+                }
+            }
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+            writer.commit();
+            return new Result(rowsRead, rowsWritten, runs.size(), elapsedMillis(start));
+        } finally {
+            deleteDirectory(workDirectory);
+        }
+    }
+
+    /**
+     * Zamienia opis kluczy sortowania na klucze kolumn. Kolumnę można wskazać nazwą
+     * lub numerem (od 1), a kierunek dopisać po dwukropku ({@code asc} lub {@code desc}).
+     *
+     * @param spec opis kluczy, np. {@code "kwota:desc, kraj"} (pusty lub null - brak kluczy)
+     * @param columnNames nazwy kolumn pliku
+     * @return klucze sortowania
+     * @throws ParseException jeśli kolumna nie istnieje lub kierunek jest niepoprawny
+     */
+    public static List<ParallelSorter.SortKey> parseSortKeys(String spec, String[] columnNames) throws ParseException {
+        List<ParallelSorter.SortKey> keys = new ArrayList<>();
+        if (spec == null || spec.isBlank()) {
+            return keys;
+        }
+        int offset = 0;
+        for (String part : spec.split(",", -1)) {
+            String name = part.strip();
+            boolean ascending = true;
+            int colon = name.lastIndexOf(':');
+            if (colon >= 0) {
+                String direction = name.substring(colon + 1).strip().toLowerCase(Locale.ROOT);
+                if (direction.equals("desc")) {
+                    ascending = false;
+                } else if (!direction.equals("asc")) {
+                    throw new ParseException("Nieznany kierunek sortowania: " + direction, offset);
+                }
+                name = name.substring(0, colon).strip();
+            }
+            keys.add(new ParallelSorter.SortKey(columnIndex(name, columnNames, offset), ascending));
+            offset += part.length() + 1;
+        }
+        return keys;
+    }
+
+    /**
+     * Wyszukuje kolumnę po nazwie lub numerze (od 1).
+     */
+    private static int columnIndex(String name, String[] columnNames, int offset) throws ParseException {
+        for (int col = 0; col < columnNames.length; col++) {
+            if (name.equals(columnNames[col])) {
+                return col;
+            }
+        }
+        if (!name.isEmpty() && name.chars().allMatch(Character::isDigit) && name.length() < 10) {
+            int number = Integer.parseInt(name);
+            if (number >= 1 && number <= columnNames.length) {
+                return number - 1;
+            }
+        }
+        throw new ParseException("Nieznana kolumna: " + name, offset);
+    }
+
+    /**
+     * Tworzy domyślne nazwy kolumn dla pliku bez nagłówków (jak przy wczytywaniu).
+     */
+    private static String[] defaultColumnNames(int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = "Kol " + (i + 1);
+        }
+        return names;
+    }
+
+    /**
+     * Tworzy pusty model paczki o kolumnach zakodowanych zgodnie z rozpoznanym schematem.
+     */
+    private static CSVTableModel newChunk(String[] columnNames, TypeInferrer schema) {
+        CSVTableModel chunk = new CSVTableModel();
+        chunk.setColumnIdentifiers(columnNames);
+        chunk.applySchema(schema);
+        return chunk;
+    }
+
+    /**
+     * Szacuje pamięć zajmowaną przez wiersz w modelu kolumnowym.
+     */
+    private static long estimateRowBytes(String[] row, ColumnType[] types, TypeInferrer schema) {
+        long bytes = ROW_OVERHEAD;
+        for (int col = 0; col < types.length; col++) {
+            if (types[col] != ColumnType.STRING) {
+                bytes += Long.BYTES;
+            } else if (schema.isLowCardinality(col)) {
+                bytes += Integer.BYTES;
+            } else {
+                // obiekt String z tablicą znaków
+                bytes += 56 + (col < row.length && row[col] != null ? 2L * row[col].length() : 0);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Wyznacza kolejność zapisu wierszy paczki: wiersze spełniające filtr,
+     * posortowane według kluczy.
+     */
+    private static int[] chunkOrder(CSVTableModel chunk, String filter, List<ParallelSorter.SortKey> keys,
+                                    ColumnType[] types, BooleanSupplier cancelled) throws ParseException {
+        int rowCount = chunk.getBaseRowCount();
+        int[] rows;
+        if (filter != null) {
+            FilterExpression expression = FilterExpression.compile(filter, chunk);
+            BitSet selected = new ParallelFilter().evaluate(expression, rowCount, null, cancelled, done -> { });
+            rows = selected.stream().toArray();
+        } else {
+            rows = new int[rowCount];
+            Arrays.setAll(rows, i -> i);
+        }
+        if (!keys.isEmpty()) {
+            RowKeys rowKeys = new RowKeys(rowCount, keys, types);
+            for (int row : rows) {
+                rowKeys.set(row, col -> chunk.getBaseStringAt(row, col));
+            }
+            IntSort.parallelSort(rows, rowKeys::compare, ForkJoinPool.commonPool());
+        }
+        return rows;
+    }
+
+    /**
+     * Zapisuje wiersze paczki (przefiltrowane i posortowane).
+     *
+     * @param columns indeksy zapisywanych kolumn (null - wszystkie)
+     * @return liczba zapisanych wierszy
+     */
+    private static long writeChunk(CSVTableModel chunk, String filter, List<ParallelSorter.SortKey> keys,
+                                   ColumnType[] types, int[] columns, CSVWriter writer, BooleanSupplier cancelled)
+            throws IOException, ParseException {
+        int[] rows = chunkOrder(chunk, filter, keys, types, cancelled);
+        int columnCount = columns != null ? columns.length : chunk.getColumnCount();
+        for (int i = 0; i < rows.length; i++) {
+            if (i % PROGRESS_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                return i;
+            }
+            for (int col = 0; col < columnCount; col++) {
+                writer.writeField(chunk.getBaseStringAt(rows[i], columns != null ? columns[col] : col));
+            }
+            writer.endRecord();
+        }
+        return rows.length;
+    }
+
+    /**
+     * Przepisuje wiersze z pliku wejściowego bez filtrowania i sortowania.
+     *
+     * @param first pierwszy, już wczytany wiersz danych (null - brak)
+     * @param columns indeksy zapisywanych kolumn (null - wszystkie)
+     * @return liczba przepisanych wierszy lub -1, jeśli przerwano
+     */
+    private static long copy(CSVRecordReader reader, String[] first, int[] columns, CSVWriter writer,
+                             ProgressListener listener, long totalBytes, BooleanSupplier cancelled)
+            throws IOException {
+        long rows = 0;
+        if (first != null) {
+            writeRow(writer, first, columns);
+            rows++;
+        }
+        while (reader.nextRecord()) {
+            if (columns == null) {
+                int fieldCount = reader.getFieldCount();
+                for (int i = 0; i < fieldCount; i++) {
+                    writer.writeField(reader.getField(i));
+                }
+            } else {
+                for (int column : columns) {
+                    writer.writeField(column < reader.getFieldCount() ? reader.getField(column) : "");
+                }
+            }
+            writer.endRecord();
+            rows++;
+            if (rows % PROGRESS_INTERVAL == 0) {
+                if (cancelled.getAsBoolean()) {
+                    return -1;
+                }
+                listener.progress("Przetwarzanie", reader.getBytesRead(), totalBytes);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Zapisuje wiersz, ograniczając go do wybranych kolumn.
+     *
+     * @param columns indeksy zapisywanych kolumn (null - wszystkie)
+     */
+    private static void writeRow(CSVWriter writer, String[] row, int[] columns) throws IOException {
+        if (columns == null) {
+            writer.writeRecord(row);
+            return;
+        }
+        for (int column : columns) {
+            writer.writeField(column < row.length ? row[column] : "");
+        }
+        writer.endRecord();
+    }
+
+    /**
+     * Wyznacza kolumny pliku wynikowego na podstawie {@link #setColumns(String)}
+     * i {@link #setHiddenColumns(String)}.
+     *
+     * @return indeksy kolumn lub null, jeśli zapisywane są wszystkie kolumny w oryginalnej kolejności
+     */
+    private int[] projection(String[] columnNames) throws ParseException {
+        boolean selected = columns != null && !columns.isBlank();
+        boolean hidden = hiddenColumns != null && !hiddenColumns.isBlank();
+        if (!selected && !hidden) {
+            return null;
+        }
+        int[] projection = selected ? parseColumns(columns, columnNames) : identity(columnNames.length);
+        if (hidden) {
+            BitSet skipped = new BitSet();
+            for (int column : parseColumns(hiddenColumns, columnNames)) {
+                skipped.set(column);
+            }
+            projection = Arrays.stream(projection).filter(column -> !skipped.get(column)).toArray();
+        }
+        return projection;
+    }
+
+    private static int[] identity(int count) {
+        int[] columns = new int[count];
+        Arrays.setAll(columns, i -> i);
+        return columns;
+    }
+
+    /**
+     * Zamienia listę kolumn (nazwy lub numery od 1, rozdzielone przecinkami) na indeksy.
+     *
+     * @param spec lista kolumn, np. {@code "id, kwota, 5"}
+     * @param columnNames nazwy kolumn pliku
+     * @return indeksy kolumn w podanej kolejności
+     * @throws ParseException jeśli kolumna nie istnieje
+     */
+    public static int[] parseColumns(String spec, String[] columnNames) throws ParseException {
+        String[] parts = spec.split(",", -1);
+        int[] indices = new int[parts.length];
+        int offset = 0;
+        for (int i = 0; i < parts.length; i++) {
+            indices[i] = columnIndex(parts[i].strip(), columnNames, offset);
+            offset += parts[i].length() + 1;
+        }
+        return indices;
+    }
+
+    /**
+     * Zapisuje posortowaną paczkę do pliku tymczasowego (przebiegu).
+     *
+     * @param cancelled sprawdzane podczas sortowania i zapisu paczki
+     * @return plik przebiegu lub null, jeśli przerwano (przebieg nie jest wtedy zapisywany)
+     */
+    private Path spill(CSVTableModel chunk, String filter, List<ParallelSorter.SortKey> keys, ColumnType[] types,
+                       int[] columns, Path workDirectory, int index, BooleanSupplier cancelled)
+            throws IOException, ParseException {
+        Path run = workDirectory.resolve("run-" + index + ".csv");
+        try (CSVWriter writer = runWriter(run)) {
+            writeChunk(chunk, filter, keys, types, columns, writer, cancelled);
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+            writer.commit();
+        }
+        return run;
+    }
+
+    private CSVWriter runWriter(Path run) throws IOException {
+        // Przebiegi czytane są przez StreamCSVReader w dialekcie CSVDialect.of(separator), czyli w UTF-8
+        return new CSVWriter(run, separator, CSVTokenizer.DEFAULT_QUOTE, "\n", StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Scala przebiegi do pliku wynikowego, w razie potrzeby w kilku etapach
+     * (po {@value #MAX_MERGE_FAN_IN} przebiegów).
+     *
+     * @param columns indeksy kolumn zapisywanych do pliku wynikowego (null - wszystkie)
+     * @return liczba zapisanych wierszy lub -1, jeśli przerwano
+     */
+    private long mergeAll(List<Path> runs, List<ParallelSorter.SortKey> keys, ColumnType[] types, int[] columns,
+                          Path workDirectory, CSVWriter writer, ProgressListener listener,
+                          BooleanSupplier cancelled) throws IOException {
+        List<Path> pending = new ArrayList<>(runs);
+        int next = runs.size();
+        while (pending.size() > MAX_MERGE_FAN_IN) {
+            List<Path> merged = new ArrayList<>();
+            for (int from = 0; from < pending.size(); from += MAX_MERGE_FAN_IN) {
+                List<Path> group = pending.subList(from, Math.min(pending.size(), from + MAX_MERGE_FAN_IN));
+                if (group.size() == 1) {
+                    merged.add(group.getFirst());
+                    continue;
+                }
+                Path run = workDirectory.resolve("run-" + next++ + ".csv");
+                try (CSVWriter runWriter = runWriter(run)) {
+                    if (merge(group, keys, types, null, runWriter, listener, cancelled) < 0) {
+                        return -1;
+                    }
+                    runWriter.commit();
+                }
+                for (Path merging : group) {
+                    Files.deleteIfExists(merging);
+                }
+                merged.add(run);
+            }
+            pending = merged;
+        }
+        return merge(pending, keys, types, columns, writer, listener, cancelled);
+    }
+
+    /**
+     * Scala k-drogowo posortowane przebiegi. Przy równych kluczach pierwszeństwo
+     * ma wcześniejszy przebieg, co zachowuje stabilność sortowania.
+     *
+     * @param columns indeksy zapisywanych kolumn (null - wszystkie)
+     * @return liczba zapisanych wierszy lub -1, jeśli przerwano
+     */
+    private long merge(List<Path> runs, List<ParallelSorter.SortKey> keys, ColumnType[] types, int[] columns,
+                       CSVWriter writer,
+                       ProgressListener listener, BooleanSupplier cancelled) throws IOException {
+        int k = runs.size();
+        CSVRecordReader[] readers = new CSVRecordReader[k];
+        String[][] heads = new String[k][];
+        RowKeys headKeys = new RowKeys(k, keys, types);
+        long totalBytes = 0;
+        for (Path run : runs) {
+            totalBytes += Files.size(run);
+        }
+        try {
+            PriorityQueue<Integer> queue = new PriorityQueue<>(k, (a, b) -> {
+                int result = headKeys.compare(a, b);
+                return result != 0 ? result : Integer.compare(a, b);
+            });
+            for (int r = 0; r < k; r++) {
+                readers[r] = new StreamCSVReader(runs.get(r).toFile(), separator);
+                if (advance(readers[r], r, heads, headKeys)) {
+                    queue.add(r);
+                }
+            }
+            long written = 0;
+            while (!queue.isEmpty()) {
+                int r = queue.poll();
+                writeRow(writer, heads[r], columns);
+                written++;
+                if (advance(readers[r], r, heads, headKeys)) {
+                    queue.add(r);
+                }
+                if (written % PROGRESS_INTERVAL == 0) {
+                    if (cancelled.getAsBoolean()) {
+                        return -1;
+                    }
+                    long read = 0;
+                    for (CSVRecordReader reader : readers) {
+                        read += reader.getBytesRead();
+                    }
+                    listener.progress("Scalanie", read, totalBytes);
+                }
+            }
+            return written;
+        } finally {
+            for (CSVRecordReader reader : readers) {
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Wczytuje kolejny wiersz przebiegu jako jego bieżący wiersz.
+     *
+     * @return false na końcu przebiegu
+     */
+    private static boolean advance(CSVRecordReader reader, int run, String[][] heads, RowKeys headKeys)
+            throws IOException {
+        if (!reader.nextRecord()) {
+            heads[run] = null;
+            return false;
+        }
+        String[] row = reader.toArray();
+        heads[run] = row;
+        headKeys.set(run, col -> col < row.length ? row[col] : null);
+        return true;
+    }
+
+    private static long elapsedMillis(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * Usuwa katalog plików tymczasowych wraz z zawartością.
+     */
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (directory == null) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    /**
+     * Klucze sortowania wierszy wyznaczone z tekstu komórek: dla każdego klucza
+     * rodzaj wartości (zgodna z typem kolumny, inny tekst, pusta), liczba zachowująca
+     * porządek wartości zgodnych z typem i tekst pozostałych.
+     */
+    private static final class RowKeys {
+        private final List<ParallelSorter.SortKey> keys;
+        private final ColumnType[] types;
+        private final byte[][] kinds;
+        private final long[][] numbers;
+        private final String[][] texts;
+
+        RowKeys(int rowCount, List<ParallelSorter.SortKey> keys, ColumnType[] columnTypes) {
+            this.keys = keys;
+            this.types = new ColumnType[keys.size()];
+            this.kinds = new byte[keys.size()][rowCount];
+            this.numbers = new long[keys.size()][rowCount];
+            this.texts = new String[keys.size()][rowCount];
+            for (int k = 0; k < keys.size(); k++) {
+                int column = keys.get(k).column();
+                types[k] = column < columnTypes.length ? columnTypes[column] : ColumnType.STRING;
+            }
+        }
+
+        /**
+         * Wyznacza klucze wiersza.
+         *
+         * @param row pozycja wiersza
+         * @param values dostęp do tekstu komórki wiersza według indeksu kolumny
+         */
+        void set(int row, IntFunction<String> values) {
+            for (int k = 0; k < types.length; k++) {
+                String value = values.apply(keys.get(k).column());
+                texts[k][row] = null;
+                if (value == null || value.isEmpty()) {
+                    kinds[k][row] = EMPTY;
+                } else if (setNumber(k, row, value)) {
+                    kinds[k][row] = TYPED;
+                } else {
+                    kinds[k][row] = TEXT;
+                    texts[k][row] = value;
+                }
+            }
+        }
+
+        /**
+         * Zapisuje liczbę zachowującą porządek wartości zgodnej z typem kolumny.
+         *
+         * @return false, jeśli wartość nie pasuje do typu kolumny
+         */
+        private boolean setNumber(int k, int row, String value) {
+            long number;
+            switch (types[k]) {
+                case INTEGER, LONG -> {
+                    if (!ColumnType.isCanonicalLong(value)) {
+                        return false;
+                    }
+                    number = Long.parseLong(value);
+                }
+                case DOUBLE -> {
+                    if (!ColumnType.isExactDoubleInteger(value) && !ColumnType.isDecimal(value)) {
+                        return false;
+                    }
+                    long bits = Double.doubleToLongBits(Double.parseDouble(value));
+                    number = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+                }
+                case DATE -> {
+                    if (!ColumnType.isIsoDate(value)) {
+                        return false;
+                    }
+                    number = Integer.parseInt(value, 0, 4, 10) * 10_000L
+                            + Integer.parseInt(value, 5, 7, 10) * 100L + Integer.parseInt(value, 8, 10, 10);
+                }
+                case BOOLEAN -> {
+                    if (!ColumnType.isBoolean(value)) {
+                        return false;
+                    }
+                    number = value.equals("true") ? 1 : 0;
+                }
+                default -> {
+                    return false;
+                }
+            }
+            numbers[k][row] = number;
+            return true;
+        }
+
+        /**
+         * Porównuje wiersze według wszystkich kluczy.
+         */
+        int compare(int a, int b) {
+            for (int k = 0; k < types.length; k++) {
+                int result = Byte.compare(kinds[k][a], kinds[k][b]);
+                if (result == 0) {
+                    result = switch (kinds[k][a]) {
+                        case TYPED -> Long.compare(numbers[k][a], numbers[k][b]);
+                        case TEXT -> texts[k][a].compareTo(texts[k][b]);
+                        default -> 0;
+                    };
+                }
+                if (result != 0) {
+                    return keys.get(k).ascending() ? result : -result;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Uruchamia sortowanie z wiersza poleceń - odpowiednik {@code csvwrangler.Main --batch}
+     * (opis argumentów w {@link Main}).
+     *
+     * @param args argumenty wiersza poleceń
+     */
+    public static void main(String[] args) {
+        System.exit(Main.runBatch(args));
+    }
+}
@@ -0,0 +1,293 @@
+package csvwrangler;
+
+import javax.swing.*;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Śledzenie pliku CSV, do którego dopisywane są wiersze (np. dziennika rosnącego
+ * w ciągu dnia). Zapamiętywana jest pozycja końca ostatniego kompletnego rekordu;
+ * po każdej zmianie pliku odczytywane i parsowane są tylko bajty dopisane za nią,
+ * a sparsowane rekordy przekazywane są do EDT jedną paczką.
+ * <p>
+ * Zmiany wykrywane są przez WatchService katalogu pliku, a dodatkowo plik
+ * sprawdzany jest co {@value #POLL_INTERVAL} ms - tam, gdzie WatchService nie
+ * zgłasza zmian (np. udziały sieciowe), śledzenie działa przez odpytywanie.
+ * Rekord niezakończony znakiem końca wiersza (właśnie dopisywany) czeka, aż
+ * zostanie dopisany w całości. Obsługiwane są kodowania, w których końce wierszy
+ * da się rozpoznać w bajtach ({@link CSVDialect#isByteOriented()}).
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+final class FileFollower implements Closeable {
+    /** Odstęp między sprawdzeniami pliku w milisekundach */
+    static final long POLL_INTERVAL = 1000;
+    /** Maksymalna liczba bajtów parsowanych w jednym kroku */
+    private static final int MAX_TAIL_BYTES = 16 * 1024 * 1024;
+    /** Rozmiar bloku czytanego przy szukaniu końca ostatniego rekordu */
+    private static final int SCAN_BLOCK_SIZE = 64 * 1024;
+
+    private final File file;
+    private final CSVDialect dialect;
+    private long offset;
+    private boolean replaceLast;
+    private volatile boolean closed;
+    private WatchService watcher;
+    private Thread thread;
+
+    /**
+     * Rekordy dopisane do pliku.
+     *
+     * @param rows sparsowane rekordy
+     * @param replacesLast czy pierwszy rekord zastępuje ostatni wiersz modelu (wczytany z niekompletnego rekordu)
+     * @param end pozycja w pliku za ostatnim rekordem
+     */
+    record Tail(List<String[]> rows, boolean replacesLast, long end) {
+    }
+
+    /**
+     * Odbiorca dopisanych rekordów wywoływany w EDT.
+     */
+    @FunctionalInterface
+    interface TailConsumer {
+        /**
+         * Przyjmuje dopisane rekordy.
+         *
+         * @param tail dopisane rekordy
+         * @return true jeśli rekordy trafiły do modelu, false - jeśli należy je
+         *         dostarczyć ponownie później (np. trwa operacja w tle)
+         */
+        boolean accept(Tail tail);
+    }
+
+    /**
+     * Tworzy obiekt śledzący plik od końca wczytanej części. Jeśli wczytana część
+     * nie kończy się znakiem końca wiersza, ostatni rekord był w trakcie dopisywania -
+     * śledzenie zaczyna się od jego początku, a pierwszy odczytany rekord zastąpi
+     * ostatni wiersz modelu.
+     *
+     * @param file śledzony plik
+     * @param dialect dialekt pliku
+     * @param loadedLength liczba bajtów pliku wczytanych do modelu
+     * @throws IOException jeśli kodowanie pliku nie jest obsługiwane lub nie uda się go odczytać
+     */
+    FileFollower(File file, CSVDialect dialect, long loadedLength) throws IOException {
+        if (!dialect.isByteOriented()) {
+            throw new IOException("Śledzenie pliku wymaga kodowania UTF-8 lub jednobajtowego (wykryto "
+                    + dialect.charset() + ")");
+        }
+        this.file = file;
+        this.dialect = dialect;
+        this.offset = Math.max(loadedLength, dialect.bomLength());
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < loadedLength) {
+                throw new IOException("Plik został skrócony od wczytania - wczytaj go ponownie");
+            }
+            long lineStart = lineStart(channel, offset);
+            if (lineStart > dialect.bomLength() && lineStart < offset) {
+                offset = lineStart;
+                replaceLast = true;
+            }
+        }
+    }
+
+    /**
+     * Szuka początku wiersza zawierającego ostatni bajt przed podaną pozycją.
+     *
+     * @return pozycja za ostatnim znakiem końca wiersza przed {@code end} (lub początek danych)
+     */
+    private long lineStart(FileChannel channel, long end) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(SCAN_BLOCK_SIZE);
+        long start = end;
+        while (start > dialect.bomLength()) {
+            long from = Math.max(dialect.bomLength(), start - SCAN_BLOCK_SIZE);
+            block.clear().limit((int) (start - from));
+            while (block.hasRemaining() && channel.read(block, from + block.position()) > 0) {
+                // odczyt pozycyjny
+            }
+            for (int i = block.position() - 1; i >= 0; i--) {
+                byte b = block.get(i);
+                if (b == '\n' || b == '\r') {
+                    return from + i + 1;
+                }
+            }
+            start = from;
+        }
+        return dialect.bomLength();
+    }
+
+    private static int byteAt(FileChannel channel, long position) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(1);
+        return channel.read(b, position) == 1 ? b.get(0) : -1;
+    }
+
+    /**
+     * Zwraca plik śledzony przez ten obiekt.
+     *
+     * @return śledzony plik
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Uruchamia śledzenie w osobnym wątku.
+     *
+     * @param consumer odbiorca dopisanych rekordów (wywoływany w EDT)
+     * @param onError obsługa błędu kończącego śledzenie, np. skrócenia pliku (wywoływana w EDT)
+     */
+    void start(TailConsumer consumer, Consumer<IOException> onError) {
+        try {
+            watcher = file.toPath().getFileSystem().newWatchService();
+            Path directory = file.toPath().toAbsolutePath().getParent();
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+        } catch (IOException | UnsupportedOperationException e) {
+            watcher = null; // wystarczy odpytywanie
+        }
+        thread = Thread.ofPlatform().daemon().name("csvwrangler-follow").start(() -> run(consumer, onError));
+    }
+
+    private void run(TailConsumer consumer, Consumer<IOException> onError) {
+        try {
+            while (!closed) {
+                Tail tail = read();
+                if (tail != null) {
+                    boolean[] applied = new boolean[1];
+                    SwingUtilities.invokeAndWait(() -> applied[0] = !closed && consumer.accept(tail));
+                    if (applied[0]) {
+                        offset = tail.end();
+                        replaceLast = false;
+                        continue; // dopisana część mogła być dłuższa niż jeden krok
+                    }
+                    Thread.sleep(POLL_INTERVAL);
+                    continue;
+                }
+                waitForChange();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // zakończono śledzenie
+        } catch (IOException e) {
+            if (!closed) {
+                SwingUtilities.invokeLater(() -> onError.accept(e));
+            }
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Czeka na zdarzenie zmiany w katalogu pliku lub upływ odstępu odpytywania.
+     */
+    private void waitForChange() throws InterruptedException {
+        if (watcher == null) {
+            Thread.sleep(POLL_INTERVAL);
+            return;
+        }
+        WatchKey key = watcher.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+        if (key != null) {
+            key.pollEvents(); // zdarzenia innych plików katalogu kończą się jedynie sprawdzeniem rozmiaru
+            key.reset();
+        }
+    }
+
+    /**
+     * Odczytuje i parsuje kompletne rekordy dopisane za zapamiętaną pozycją
+     * (pozycja nie jest zmieniana do potwierdzenia przyjęcia rekordów).
+     *
+     * @return dopisane rekordy lub null, jeśli nie dopisano żadnego kompletnego rekordu
+     * @throws IOException jeśli plik został skrócony lub nie uda się go odczytać
+     */
+    Tail read() throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < offset) {
+                throw new IOException("Plik " + file.getName() + " został skrócony lub zastąpiony - wczytaj go ponownie");
+            }
+            if (size == offset) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size - offset, MAX_TAIL_BYTES));
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) > 0) {
+                // odczyt pozycyjny
+            }
+            byte[] bytes = buffer.array();
+            int length = buffer.position();
+            // "\n" po "\r" kończącym poprzedni krok należy do tamtego końca wiersza
+            int start = bytes[0] == '\n' && byteAt(channel, offset - 1) == '\r' ? 1 : 0;
+            int end = completeLength(bytes, start, length);
+            if (end == 0) {
+                if (length == MAX_TAIL_BYTES) {
+                    throw new IOException("Rekord dłuższy niż " + MAX_TAIL_BYTES / (1024 * 1024) + " MB");
+                }
+                return null;
+            }
+            List<String[]> rows = new ArrayList<>();
+            CSVTokenizer tokenizer = new CSVTokenizer(new InputStreamReader(
+                    new ByteArrayInputStream(bytes, start, end - start), dialect.charset()),
+                    dialect.separator(), dialect.quote());
+            while (tokenizer.nextRecord()) {
+                rows.add(tokenizer.toArray());
+            }
+            return new Tail(rows, replaceLast, offset + end);
+        }
+    }
+
+    /**
+     * Wyznacza długość danych kończących się ostatnim znakiem końca wiersza poza cudzysłowem.
+     * Dane zaczynają się na granicy rekordu, więc stan cudzysłowu jest znany od początku.
+     *
+     * @return liczba bajtów kompletnych rekordów (0, jeśli nie ma żadnego)
+     */
+    private int completeLength(byte[] bytes, int start, int length) {
+        byte quote = (byte) dialect.quote();
+        boolean quoted = false;
+        int end = 0;
+        for (int i = start; i < length; i++) {
+            byte b = bytes[i];
+            if (b == quote) {
+                quoted = !quoted; // podwojony cudzysłów przełącza stan dwukrotnie
+            } else if (!quoted && (b == '\n' || b == '\r')) {
+                end = i + 1;
+                if (b == '\r' && i + 1 < length && bytes[i + 1] == '\n') {
+                    end = ++i + 1;
+                }
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Kończy śledzenie i zwalnia WatchService.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                // WatchService jest już nieużywany
+            }
+        }
+    }
+}
@@ -0,0 +1,853 @@
+package csvwrangler;
+
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.DoublePredicate;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+
+/**
+ * Wyrażenie filtrujące skompilowane do predykatu na wierszach bazowych modelu.
+ * Składnia (słowa kluczowe bez rozróżniania wielkości liter):
+ * <pre>
+ *     wyrażenie := składnik (OR składnik)*
+ *     składnik  := czynnik (AND czynnik)*
+ *     czynnik   := NOT czynnik | '(' wyrażenie ')' | warunek
+ *     warunek   := kolumna operator wartość
+ *                | kolumna IN '(' wartość (',' wartość)* ')'
+ *                | kolumna IS [NOT] NULL
+ *     operator  := = | != | &lt;&gt; | &lt; | &lt;= | &gt; | &gt;= | ~ (zawiera) | ^= (zaczyna się od)
+ * </pre>
+ * Kolumna to nazwa bez spacji albo nazwa w cudzysłowie ("Nazwa kolumny"), wartość -
+ * tekst w apostrofach ('PL'), liczba, true/false lub pojedyncze słowo.
+ * Przykład: {@code amount > 100 AND country IN ('PL','DE') OR name ~ 'abc'}.
+ * <p>
+ * Każdy warunek kompilowany jest raz, w postaci właściwej dla typu kolumny: porównania
+ * liczb i dat działają bezpośrednio na tablicach int/long/double kolumny (stała
+ * porównania jest parsowana tylko przy kompilacji), a warunki na kolumnach kodowanych
+ * słownikowo sprawdzane są raz dla każdej wartości słownika. Liczba porównywana z kolumną
+ * tekstową (np. liczby zapisane w różny sposób) porównywana jest z wartością liczbową
+ * komórki, a nie alfabetycznie.
+ * <p>
+ * Puste komórki obsługiwane są jak NULL w SQL (logika trójwartościowa): porównanie z pustą
+ * komórką - także != i &lt;&gt; - nie jest ani prawdziwe, ani fałszywe, więc wiersz nie spełnia
+ * ani warunku, ani jego zaprzeczenia NOT; {@code NOT kraj = 'PL'} wybiera te same wiersze co
+ * {@code kraj != 'PL'}. AND jest fałszywe, gdy fałszywy jest którykolwiek warunek, a OR - gdy
+ * fałszywe są wszystkie. Puste komórki wybiera tylko IS NULL. Tak samo traktowane są komórki
+ * kolumny tekstowej porównywane z liczbą, których tekst nie jest liczbą. W operatorach AND
+ * i OR najtańsze warunki sprawdzane są najpierw.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public final class FilterExpression {
+    /**
+     * Warunek sprawdzany dla wiersza bazowego.
+     */
+    @FunctionalInterface
+    public interface RowPredicate {
+        /**
+         * Sprawdza wiersz.
+         *
+         * @param row indeks wiersza bazowego
+         * @return true jeśli wiersz spełnia warunek
+         */
+        boolean test(int row);
+    }
+
+    private final String text;
+    private final RowPredicate predicate;
+    private final int[] columns;
+    private final boolean threadSafe;
+
+    private FilterExpression(String text, RowPredicate predicate, int[] columns, boolean threadSafe) {
+        this.text = text;
+        this.predicate = predicate;
+        this.columns = columns;
+        this.threadSafe = threadSafe;
+    }
+
+    /**
+     * Kompiluje wyrażenie dla bieżącego schematu modelu.
+     * Skompilowany predykat odwołuje się do kolumn modelu, więc należy go użyć
+     * przed kolejną zmianą danych.
+     *
+     * @param text treść wyrażenia
+     * @param model model, którego wiersze będą sprawdzane
+     * @return skompilowane wyrażenie
+     * @throws ParseException jeśli wyrażenie jest niepoprawne (pozycja błędu w {@link ParseException#getErrorOffset()})
+     */
+    public static FilterExpression compile(String text, CSVTableModel model) throws ParseException {
+        Parser parser = new Parser(text, model);
+        Compiled compiled = parser.parseExpression();
+        parser.expect(TokenType.END, "Nieoczekiwany tekst");
+        return new FilterExpression(text, compiled.predicate(), parser.columns.stream().toArray(), !model.isPaged());
+    }
+
+    /**
+     * Zwraca treść wyrażenia.
+     *
+     * @return treść wyrażenia
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Zwraca skompilowany predykat.
+     *
+     * @return predykat na wierszach bazowych
+     */
+    public RowPredicate getPredicate() {
+        return predicate;
+    }
+
+    /**
+     * Zwraca kolumny, do których odwołuje się wyrażenie - tylko ich wartości
+     * muszą być wczytane przed sprawdzaniem wierszy.
+     *
+     * @return rosnąco posortowane indeksy kolumn modelu
+     */
+    public int[] getColumns() {
+        return columns.clone();
+    }
+
+    /**
+     * Sprawdza czy predykat można wywoływać równolegle z wielu wątków.
+     * W trybie stronicowanym wiersze czytane są z pliku pojedynczo, więc
+     * sprawdzanie równoległe nie przyspiesza filtrowania.
+     *
+     * @return true jeśli dane są w pamięci
+     */
+    public boolean isThreadSafe() {
+        return threadSafe;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Skompilowany fragment wyrażenia z szacowanym kosztem sprawdzenia jednego wiersza.
+     * Wiersz może spełniać fragment ({@code predicate}), nie spełniać go ({@code negation})
+     * albo żadne z nich, jeśli wynik zależy od pustej komórki (logika trójwartościowa SQL).
+     *
+     * @param predicate wiersze, dla których fragment jest prawdziwy
+     * @param negation wiersze, dla których fragment jest fałszywy
+     * @param cost szacowany koszt sprawdzenia
+     */
+    private record Compiled(RowPredicate predicate, RowPredicate negation, int cost) {
+        /**
+         * Tworzy warunek na komórce - komórka bez wartości (nieznana) nie spełnia ani warunku, ani jego zaprzeczenia.
+         *
+         * @param predicate warunek (fałszywy dla nieznanych komórek)
+         * @param known wiersze, w których wartość komórki jest znana
+         * @param cost szacowany koszt sprawdzenia
+         */
+        static Compiled condition(RowPredicate predicate, RowPredicate known, int cost) {
+            return new Compiled(predicate, row -> known.test(row) && !predicate.test(row), cost);
+        }
+    }
+
+    private enum TokenType { IDENTIFIER, QUOTED_IDENTIFIER, STRING, NUMBER, OPERATOR, LEFT, RIGHT, COMMA, END }
+
+    private record Token(TokenType type, String text, int offset) {
+        boolean isKeyword(String keyword) {
+            return type == TokenType.IDENTIFIER && text.equalsIgnoreCase(keyword);
+        }
+    }
+
+    private enum Operator { EQ, NE, LT, LE, GT, GE, CONTAINS, STARTS, IN }
+
+    /**
+     * Parser metodą zejść rekurencyjnych, kompilujący warunki w trakcie analizy.
+     */
+    private static final class Parser {
+        private final String text;
+        private final CSVTableModel model;
+        /** Kolumny, do których odwołują się warunki */
+        private final BitSet columns = new BitSet();
+        private int position;
+        private Token token;
+
+        Parser(String text, CSVTableModel model) throws ParseException {
+            this.text = text;
+            this.model = model;
+            next();
+        }
+
+        Compiled parseExpression() throws ParseException {
+            List<Compiled> operands = new ArrayList<>();
+            operands.add(parseTerm());
+            while (token.isKeyword("OR")) {
+                next();
+                operands.add(parseTerm());
+            }
+            return combine(operands, false);
+        }
+
+        private Compiled parseTerm() throws ParseException {
+            List<Compiled> operands = new ArrayList<>();
+            operands.add(parseFactor());
+            while (token.isKeyword("AND")) {
+                next();
+                operands.add(parseFactor());
+            }
+            return combine(operands, true);
+        }
+
+        private Compiled parseFactor() throws ParseException {
+            if (token.isKeyword("NOT")) {
+                next();
+                Compiled operand = parseFactor();
+                return new Compiled(operand.negation(), operand.predicate(), operand.cost());
+            }
+            if (token.type() == TokenType.LEFT) {
+                next();
+                Compiled inner = parseExpression();
+                expect(TokenType.RIGHT, "Oczekiwano ')'");
+                return inner;
+            }
+            return parseCondition();
+        }
+
+        private Compiled parseCondition() throws ParseException {
+            if (token.type() != TokenType.IDENTIFIER && token.type() != TokenType.QUOTED_IDENTIFIER) {
+                throw error("Oczekiwano nazwy kolumny");
+            }
+            Token name = token;
+            int column = model.findColumn(name.text());
+            if (column < 0) {
+                throw new ParseException("Nie znaleziono kolumny: " + name.text(), name.offset());
+            }
+            columns.set(column);
+            next();
+
+            if (token.isKeyword("IS")) {
+                next();
+                boolean negate = token.isKeyword("NOT");
+                if (negate) {
+                    next();
+                }
+                if (!token.isKeyword("NULL")) {
+                    throw error("Oczekiwano NULL");
+                }
+                next();
+                RowPredicate isNull = ColumnPredicates.isNull(model, column);
+                RowPredicate isNotNull = row -> !isNull.test(row);
+                return negate ? new Compiled(isNotNull, isNull, 1) : new Compiled(isNull, isNotNull, 1);
+            }
+            if (token.isKeyword("IN")) {
+                next();
+                expect(TokenType.LEFT, "Oczekiwano '(' po IN");
+                List<Token> values = new ArrayList<>();
+                values.add(parseValue());
+                while (token.type() == TokenType.COMMA) {
+                    next();
+                    values.add(parseValue());
+                }
+                expect(TokenType.RIGHT, "Oczekiwano ')'");
+                return ColumnPredicates.compile(model, column, Operator.IN, values);
+            }
+            if (token.type() != TokenType.OPERATOR) {
+                throw error("Oczekiwano operatora porównania");
+            }
+            Operator operator = switch (token.text()) {
+                case "=", "==" -> Operator.EQ;
+                case "!=", "<>" -> Operator.NE;
+                case "<" -> Operator.LT;
+                case "<=" -> Operator.LE;
+                case ">" -> Operator.GT;
+                case ">=" -> Operator.GE;
+                case "~" -> Operator.CONTAINS;
+                case "^=" -> Operator.STARTS;
+                default -> throw error("Nieznany operator: " + token.text());
+            };
+            next();
+            return ColumnPredicates.compile(model, column, operator, List.of(parseValue()));
+        }
+
+        private Token parseValue() throws ParseException {
+            Token value = token;
+            if (value.type() != TokenType.STRING && value.type() != TokenType.NUMBER
+                    && value.type() != TokenType.IDENTIFIER) {
+                throw error("Oczekiwano wartości");
+            }
+            next();
+            return value;
+        }
+
+        void expect(TokenType type, String message) throws ParseException {
+            if (token.type() != type) {
+                throw error(message);
+            }
+            next();
+        }
+
+        private ParseException error(String message) {
+            return new ParseException(message + " (pozycja " + (token.offset() + 1) + ")", token.offset());
+        }
+
+        /**
+         * Odczytuje kolejny leksem.
+         */
+        private void next() throws ParseException {
+            int n = text.length();
+            while (position < n && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            int start = position;
+            if (position == n) {
+                token = new Token(TokenType.END, "", start);
+                return;
+            }
+            char c = text.charAt(position);
+            switch (c) {
+                case '(' -> token = single(TokenType.LEFT, start);
+                case ')' -> token = single(TokenType.RIGHT, start);
+                case ',' -> token = single(TokenType.COMMA, start);
+                case '\'' -> token = new Token(TokenType.STRING, quoted('\''), start);
+                case '"', '`' -> token = new Token(TokenType.QUOTED_IDENTIFIER, quoted(c), start);
+                case '=', '!', '<', '>', '~', '^' -> {
+                    position++;
+                    if (position < n && (text.charAt(position) == '=' || (c == '<' && text.charAt(position) == '>'))) {
+                        position++;
+                    }
+                    String op = text.substring(start, position);
+                    if (op.equals("!") || op.equals("^")) {
+                        throw new ParseException("Nieznany operator: " + op + " (pozycja " + (start + 1) + ")", start);
+                    }
+                    token = new Token(TokenType.OPERATOR, op, start);
+                }
+                default -> {
+                    if (isNumberStart(c, start)) {
+                        position++;
+                        while (position < n && isNumberPart(text.charAt(position))) {
+                            position++;
+                        }
+                        token = new Token(TokenType.NUMBER, text.substring(start, position), start);
+                    } else if (isWordPart(c)) {
+                        while (position < n && isWordPart(text.charAt(position))) {
+                            position++;
+                        }
+                        token = new Token(TokenType.IDENTIFIER, text.substring(start, position), start);
+                    } else {
+                        throw new ParseException("Niedozwolony znak '" + c + "' (pozycja " + (start + 1) + ")", start);
+                    }
+                }
+            }
+        }
+
+        private Token single(TokenType type, int start) {
+            position++;
+            return new Token(type, text.substring(start, position), start);
+        }
+
+        /**
+         * Odczytuje tekst w cudzysłowie; podwojony cudzysłów oznacza sam znak.
+         */
+        private String quoted(char quote) throws ParseException {
+            int start = position;
+            StringBuilder sb = new StringBuilder();
+            position++;
+            while (true) {
+                if (position >= text.length()) {
+                    throw new ParseException("Niezamknięty cudzysłów (pozycja " + (start + 1) + ")", start);
+                }
+                char c = text.charAt(position++);
+                if (c == quote) {
+                    if (position < text.length() && text.charAt(position) == quote) {
+                        position++;
+                    } else {
+                        return sb.toString();
+                    }
+                }
+                sb.append(c);
+            }
+        }
+
+        private boolean isNumberStart(char c, int start) {
+            if (c >= '0' && c <= '9') {
+                return true;
+            }
+            return c == '-' && start + 1 < text.length() && Character.isDigit(text.charAt(start + 1));
+        }
+
+        private static boolean isNumberPart(char c) {
+            return (c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '-' || c == '+';
+        }
+
+        private static boolean isWordPart(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '-';
+        }
+    }
+
+    /**
+     * Łączy warunki operatorem AND lub OR, sprawdzając najtańsze jako pierwsze.
+     *
+     * @param operands warunki
+     * @param and true dla AND, false dla OR
+     * @return warunek złożony
+     */
+    private static Compiled combine(List<Compiled> operands, boolean and) {
+        if (operands.size() == 1) {
+            return operands.getFirst();
+        }
+        operands.sort(Comparator.comparingInt(Compiled::cost));
+        RowPredicate[] p = new RowPredicate[operands.size()];
+        RowPredicate[] n = new RowPredicate[operands.size()];
+        int cost = 0;
+        for (int i = 0; i < p.length; i++) {
+            p[i] = operands.get(i).predicate();
+            n[i] = operands.get(i).negation();
+            cost += operands.get(i).cost();
+        }
+        // AND jest fałszywe, gdy fałszywy jest którykolwiek warunek, a OR - gdy wszystkie
+        return and ? new Compiled(all(p), any(n), cost) : new Compiled(any(p), all(n), cost);
+    }
+
+    private static RowPredicate all(RowPredicate[] p) {
+        if (p.length == 2) {
+            RowPredicate a = p[0];
+            RowPredicate b = p[1];
+            return row -> a.test(row) && b.test(row);
+        }
+        return row -> {
+            for (RowPredicate operand : p) {
+                if (!operand.test(row)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    private static RowPredicate any(RowPredicate[] p) {
+        if (p.length == 2) {
+            RowPredicate a = p[0];
+            RowPredicate b = p[1];
+            return row -> a.test(row) || b.test(row);
+        }
+        return row -> {
+            for (RowPredicate operand : p) {
+                if (operand.test(row)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Kompilacja pojedynczych warunków w postaci właściwej dla kodowania kolumny.
+     */
+    private static final class ColumnPredicates {
+        /** Koszty sprawdzenia warunku (względne) */
+        private static final int COST_PRIMITIVE = 1;
+        private static final int COST_TEXT_EQUALS = 2;
+        private static final int COST_TEXT_SCAN = 4;
+        private static final int COST_PAGED = 8;
+        /** Wyniki warunku dla tekstu komórki (logika trójwartościowa) */
+        private static final int MATCH = 1;
+        private static final int NO_MATCH = 0;
+        private static final int UNKNOWN = -1;
+
+        private ColumnPredicates() {
+        }
+
+        static RowPredicate isNull(CSVTableModel model, int column) {
+            Column storage = model.getColumnStorage(column);
+            if (storage instanceof DictionaryColumn dictionary) {
+                // Pusty tekst może być wartością słownika
+                boolean[] empty = new boolean[dictionary.getDictionarySize()];
+                for (int code = 0; code < empty.length; code++) {
+                    String value = dictionary.getDictionaryValue(code);
+                    empty[code] = value == null || value.isEmpty();
+                }
+                return row -> dictionary.isNull(row) || empty[dictionary.getCode(row)];
+            }
+            if (storage == null || storage instanceof StringColumn) {
+                IntFunction<String> values = textOf(model, column, storage);
+                return row -> {
+                    String value = values.apply(row);
+                    return value == null || value.isEmpty();
+                };
+            }
+            return storage::isNull;
+        }
+
+        static Compiled compile(CSVTableModel model, int column, Operator operator, List<Token> values)
+                throws ParseException {
+            Column storage = model.getColumnStorage(column);
+            if (operator == Operator.CONTAINS || operator == Operator.STARTS) {
+                if (storage instanceof DictionaryColumn dictionary) {
+                    return dictionary(dictionary, operator, values);
+                }
+                return text(model, column, storage, operator, values, COST_TEXT_SCAN);
+            }
+            RowPredicate known = row -> !storage.isNull(row);
+            return switch (storage) {
+                case IntColumn ints -> {
+                    long[] range = longRange(operator, values, model, column);
+                    long lo = range[0];
+                    long hi = range[1];
+                    boolean negate = range[2] != 0;
+                    if (operator == Operator.IN) {
+                        long[] set = longSet(values, model, column);
+                        yield Compiled.condition(row -> !ints.isNull(row) && Arrays.binarySearch(set, ints.getInt(row)) >= 0, known, COST_PRIMITIVE);
+                    }
+                    yield Compiled.condition(row -> {
+                        if (ints.isNull(row)) {
+                            return false;
+                        }
+                        int v = ints.getInt(row);
+                        return (v >= lo && v <= hi) != negate;
+                    }, known, COST_PRIMITIVE);
+                }
+                case LongColumn longs -> {
+                    long[] range = longRange(operator, values, model, column);
+                    long lo = range[0];
+                    long hi = range[1];
+                    boolean negate = range[2] != 0;
+                    if (operator == Operator.IN) {
+                        long[] set = longSet(values, model, column);
+                        yield Compiled.condition(row -> !longs.isNull(row) && Arrays.binarySearch(set, longs.getLong(row)) >= 0, known, COST_PRIMITIVE);
+                    }
+                    yield Compiled.condition(row -> {
+                        if (longs.isNull(row)) {
+                            return false;
+                        }
+                        long v = longs.getLong(row);
+                        return (v >= lo && v <= hi) != negate;
+                    }, known, COST_PRIMITIVE);
+                }
+                case DateColumn dates -> {
+                    long[] range = dateRange(operator, values, model, column);
+                    long lo = range[0];
+                    long hi = range[1];
+                    boolean negate = range[2] != 0;
+                    if (operator == Operator.IN) {
+                        long[] set = dateSet(values, model, column);
+                        yield Compiled.condition(row -> !dates.isNull(row) && Arrays.binarySearch(set, dates.getEpochDay(row)) >= 0, known, COST_PRIMITIVE);
+                    }
+                    yield Compiled.condition(row -> {
+                        if (dates.isNull(row)) {
+                            return false;
+                        }
+                        int v = dates.getEpochDay(row);
+                        return (v >= lo && v <= hi) != negate;
+                    }, known, COST_PRIMITIVE);
+                }
+                case DoubleColumn doubles -> {
+                    if (operator == Operator.IN) {
+                        double[] set = new double[values.size()];
+                        for (int i = 0; i < set.length; i++) {
+                            set[i] = number(values.get(i), model, column);
+                        }
+                        Arrays.sort(set);
+                        yield Compiled.condition(row -> !doubles.isNull(row) && Arrays.binarySearch(set, doubles.getDouble(row)) >= 0, known, COST_PRIMITIVE);
+                    }
+                    double x = number(values.getFirst(), model, column);
+                    double lo = switch (operator) {
+                        case GT -> Math.nextUp(x);
+                        case GE, EQ, NE -> x;
+                        default -> Double.NEGATIVE_INFINITY;
+                    };
+                    double hi = switch (operator) {
+                        case LT -> Math.nextDown(x);
+                        case LE, EQ, NE -> x;
+                        default -> Double.POSITIVE_INFINITY;
+                    };
+                    boolean negate = operator == Operator.NE;
+                    yield Compiled.condition(row -> {
+                        if (doubles.isNull(row)) {
+                            return false;
+                        }
+                        double v = doubles.getDouble(row);
+                        return (v >= lo && v <= hi) != negate;
+                    }, known, COST_PRIMITIVE);
+                }
+                case BooleanColumn booleans -> {
+                    if (operator != Operator.EQ && operator != Operator.NE && operator != Operator.IN) {
+                        throw new ParseException("Kolumnę logiczną można porównywać tylko operatorami =, != i IN: "
+                                + model.getColumnName(column), values.getFirst().offset());
+                    }
+                    boolean acceptTrue = false;
+                    boolean acceptFalse = false;
+                    for (Token value : values) {
+                        if (value.text().equalsIgnoreCase("true")) {
+                            acceptTrue = true;
+                        } else if (value.text().equalsIgnoreCase("false")) {
+                            acceptFalse = true;
+                        } else {
+                            throw new ParseException("Oczekiwano wartości true lub false (pozycja "
+                                    + (value.offset() + 1) + ")", value.offset());
+                        }
+                    }
+                    if (operator == Operator.NE) {
+                        acceptTrue = !acceptTrue;
+                        acceptFalse = !acceptFalse;
+                    }
+                    boolean whenTrue = acceptTrue;
+                    boolean whenFalse = acceptFalse;
+                    yield Compiled.condition(row -> !booleans.isNull(row)
+                            && (booleans.getBoolean(row) ? whenTrue : whenFalse), known, COST_PRIMITIVE);
+                }
+                case DictionaryColumn dictionary -> dictionary(dictionary, operator, values);
+                case null, default -> text(model, column, storage, operator, values,
+                        (operator == Operator.EQ || operator == Operator.NE || operator == Operator.IN)
+                                && values.stream().allMatch(value -> numericLiteral(value) == null)
+                                ? COST_TEXT_EQUALS : COST_TEXT_SCAN);
+            };
+        }
+
+        /**
+         * Wyznacza zakres [lo, hi] liczb całkowitych spełniających porównanie
+         * (dla != zakres jest negowany). Stała niecałkowita zaokrąglana jest
+         * zgodnie z operatorem, np. {@code x < 2.5} to {@code x <= 2}.
+         *
+         * @return tablica {lo, hi, negate}
+         */
+        private static long[] longRange(Operator operator, List<Token> values, CSVTableModel model, int column)
+                throws ParseException {
+            if (operator == Operator.IN) {
+                return new long[]{0, 0, 0};
+            }
+            Token value = values.getFirst();
+            double x = number(value, model, column);
+            long floor;
+            long ceil;
+            if (ColumnType.isCanonicalLong(value.text())) {
+                floor = ceil = Long.parseLong(value.text());
+            } else {
+                floor = (long) Math.floor(x); // rzutowanie nasyca wartości spoza zakresu long
+                ceil = (long) Math.ceil(x);
+            }
+            return switch (operator) {
+                case EQ -> floor == ceil ? new long[]{floor, ceil, 0} : new long[]{1, 0, 0};
+                case NE -> floor == ceil ? new long[]{floor, ceil, 1} : new long[]{1, 0, 1};
+                case LT -> ceil == Long.MIN_VALUE ? new long[]{1, 0, 0} : new long[]{Long.MIN_VALUE, ceil - 1, 0};
+                case LE -> new long[]{Long.MIN_VALUE, floor, 0};
+                case GT -> floor == Long.MAX_VALUE ? new long[]{1, 0, 0} : new long[]{floor + 1, Long.MAX_VALUE, 0};
+                case GE -> new long[]{ceil, Long.MAX_VALUE, 0};
+                default -> throw new IllegalArgumentException(operator.name());
+            };
+        }
+
+        private static long[] longSet(List<Token> values, CSVTableModel model, int column) throws ParseException {
+            long[] set = new long[values.size()];
+            int n = 0;
+            for (Token value : values) {
+                double x = number(value, model, column);
+                if (ColumnType.isCanonicalLong(value.text())) {
+                    set[n++] = Long.parseLong(value.text());
+                } else if (x == Math.rint(x) && Math.abs(x) < 0x1p63) {
+                    set[n++] = (long) x;
+                }
+            }
+            set = Arrays.copyOf(set, n);
+            Arrays.sort(set);
+            return set;
+        }
+
+        /**
+         * Wyznacza zakres numerów dni spełniających porównanie z datą.
+         *
+         * @return tablica {lo, hi, negate}
+         */
+        private static long[] dateRange(Operator operator, List<Token> values, CSVTableModel model, int column)
+                throws ParseException {
+            if (operator == Operator.IN) {
+                return new long[]{0, 0, 0};
+            }
+            long day = date(values.getFirst(), model, column);
+            return switch (operator) {
+                case EQ -> new long[]{day, day, 0};
+                case NE -> new long[]{day, day, 1};
+                case LT -> new long[]{Long.MIN_VALUE, day - 1, 0};
+                case LE -> new long[]{Long.MIN_VALUE, day, 0};
+                case GT -> new long[]{day + 1, Long.MAX_VALUE, 0};
+                case GE -> new long[]{day, Long.MAX_VALUE, 0};
+                default -> throw new IllegalArgumentException(operator.name());
+            };
+        }
+
+        private static long[] dateSet(List<Token> values, CSVTableModel model, int column) throws ParseException {
+            long[] set = new long[values.size()];
+            for (int i = 0; i < set.length; i++) {
+                set[i] = date(values.get(i), model, column);
+            }
+            Arrays.sort(set);
+            return set;
+        }
+
+        private static double number(Token value, CSVTableModel model, int column) throws ParseException {
+            if (value.type() == TokenType.NUMBER) {
+                try {
+                    return Double.parseDouble(value.text());
+                } catch (NumberFormatException e) {
+                    // zgłaszane poniżej
+                }
+            }
+            throw new ParseException("Kolumna " + model.getColumnName(column) + " jest liczbowa - oczekiwano liczby zamiast "
+                    + value.text() + " (pozycja " + (value.offset() + 1) + ")", value.offset());
+        }
+
+        private static long date(Token value, CSVTableModel model, int column) throws ParseException {
+            if (!ColumnType.isIsoDate(value.text())) {
+                throw new ParseException("Kolumna " + model.getColumnName(column) + " zawiera daty - oczekiwano daty rrrr-mm-dd zamiast "
+                        + value.text() + " (pozycja " + (value.offset() + 1) + ")", value.offset());
+            }
+            return LocalDate.parse(value.text()).toEpochDay();
+        }
+
+        /**
+         * Tworzy warunek dla niepustego tekstu komórki, zwracający {@link #MATCH}, {@link #NO_MATCH}
+         * lub {@link #UNKNOWN}. Liczba w wyrażeniu porównywana jest z tekstem komórki jako liczba
+         * ({@code 5} równa się {@code 5.00}, {@code 100 > 99.5}); dla komórek, których tekst nie jest
+         * liczbą, wynik takiego porównania jest nieznany. Tekst komórki parsowany jest co najwyżej raz.
+         */
+        private static ToIntFunction<String> textMatcher(Operator operator, List<Token> values) {
+            Double number = numericLiteral(values.getFirst());
+            if (number != null && operator != Operator.CONTAINS && operator != Operator.STARTS
+                    && operator != Operator.IN) {
+                double x = number;
+                DoublePredicate compare = switch (operator) {
+                    case EQ -> v -> v == x;
+                    case NE -> v -> v != x;
+                    case LT -> v -> v < x;
+                    case LE -> v -> v <= x;
+                    case GT -> v -> v > x;
+                    default -> v -> v >= x;
+                };
+                return v -> {
+                    double parsed = parseNumber(v);
+                    return Double.isNaN(parsed) ? UNKNOWN : result(compare.test(parsed));
+                };
+            }
+            String x = values.getFirst().text();
+            return switch (operator) {
+                case EQ -> v -> result(v.equals(x));
+                case NE -> v -> result(!v.equals(x));
+                case LT -> v -> result(v.compareTo(x) < 0);
+                case LE -> v -> result(v.compareTo(x) <= 0);
+                case GT -> v -> result(v.compareTo(x) > 0);
+                case GE -> v -> result(v.compareTo(x) >= 0);
+                case CONTAINS -> v -> result(v.contains(x));
+                case STARTS -> v -> result(v.startsWith(x));
+                case IN -> {
+                    Set<String> set = new HashSet<>();
+                    double[] numbers = new double[values.size()];
+                    int n = 0;
+                    for (Token value : values) {
+                        Double literal = numericLiteral(value);
+                        if (literal != null) {
+                            numbers[n++] = literal;
+                        } else {
+                            set.add(value.text());
+                        }
+                    }
+                    double[] sorted = Arrays.copyOf(numbers, n);
+                    Arrays.sort(sorted);
+                    if (sorted.length == 0) {
+                        yield v -> result(set.contains(v));
+                    }
+                    // Gdy lista zawiera tylko liczby, wynik dla tekstu niebędącego liczbą jest nieznany
+                    int notNumber = set.isEmpty() ? UNKNOWN : NO_MATCH;
+                    yield v -> {
+                        if (set.contains(v)) {
+                            return MATCH;
+                        }
+                        double parsed = parseNumber(v);
+                        return Double.isNaN(parsed) ? notNumber : result(Arrays.binarySearch(sorted, parsed) >= 0);
+                    };
+                }
+            };
+        }
+
+        private static int result(boolean matches) {
+            return matches ? MATCH : NO_MATCH;
+        }
+
+        /**
+         * Zwraca wartość liczby z wyrażenia (raz dla literału, podczas kompilacji).
+         *
+         * @return wartość lub null, jeśli leksem nie jest poprawną liczbą (np. 2024-01-01 - porównywany jak tekst)
+         */
+        private static Double numericLiteral(Token value) {
+            if (value.type() != TokenType.NUMBER) {
+                return null;
+            }
+            try {
+                return Double.parseDouble(value.text());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Parsuje tekst komórki jako liczbę. Tekst sprawdzany jest najpierw bez zgłaszania wyjątków,
+         * więc parsowane są tylko komórki, które są liczbami.
+         *
+         * @return wartość lub NaN, jeśli tekst nie jest liczbą całkowitą ani dziesiętną
+         */
+        private static double parseNumber(String text) {
+            if (ColumnType.isCanonicalLong(text)) {
+                return Long.parseLong(text);
+            }
+            return ColumnType.isDecimal(text) ? Double.parseDouble(text) : Double.NaN;
+        }
+
+        /**
+         * Warunek dla kolumny słownikowej - sprawdzany raz dla każdej wartości słownika.
+         */
+        private static Compiled dictionary(DictionaryColumn dictionary, Operator operator, List<Token> values) {
+            ToIntFunction<String> matcher = textMatcher(operator, values);
+            boolean[] matches = new boolean[dictionary.getDictionarySize()];
+            boolean[] known = new boolean[matches.length];
+            for (int code = 0; code < matches.length; code++) {
+                String value = dictionary.getDictionaryValue(code);
+                int result = value != null && !value.isEmpty() ? matcher.applyAsInt(value) : UNKNOWN;
+                known[code] = result != UNKNOWN;
+                matches[code] = result == MATCH;
+            }
+            return Compiled.condition(row -> !dictionary.isNull(row) && matches[dictionary.getCode(row)],
+                    row -> !dictionary.isNull(row) && known[dictionary.getCode(row)], COST_PRIMITIVE);
+        }
+
+        /**
+         * Warunek dla tekstu komórek - każde sprawdzenie wiersza (warunku lub jego zaprzeczenia)
+         * ocenia tekst komórki jeden raz.
+         */
+        private static Compiled text(CSVTableModel model, int column, Column storage, Operator operator,
+                                     List<Token> tokens, int cost) {
+            ToIntFunction<String> matcher = textMatcher(operator, tokens);
+            IntFunction<String> values = textOf(model, column, storage);
+            IntUnaryOperator result = row -> {
+                String value = values.apply(row);
+                return value != null && !value.isEmpty() ? matcher.applyAsInt(value) : UNKNOWN;
+            };
+            return new Compiled(row -> result.applyAsInt(row) == MATCH, row -> result.applyAsInt(row) == NO_MATCH,
+                    storage != null ? cost : COST_PAGED);
+        }
+
+        private static IntFunction<String> textOf(CSVTableModel model, int column, Column storage) {
+            if (storage instanceof StringColumn strings) {
+                return strings::getString;
+            }
+            if (storage != null) {
+                return storage::getString;
+            }
+            return row -> model.getBaseStringAt(row, column);
+        }
+    }
+}
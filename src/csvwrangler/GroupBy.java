@@ -0,0 +1,1043 @@
+package csvwrangler;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Równoległe grupowanie wierszy modelu według wartości kolumn i wyznaczanie agregatów
+ * (liczba wierszy, suma, minimum, maksimum, średnia, liczba różnych wartości).
+ * Zakresy wierszy przetwarzane są w puli ForkJoinPool - każde zadanie buduje własną
+ * tablicę grup (otwarte adresowanie na kluczach typu long) i własne tablice akumulatorów
+ * typów prostych, bez synchronizacji; częściowe wyniki scalane są przy łączeniu zadań.
+ * Wartości kluczy czytane są bezpośrednio z kolumn (kody słownika, liczby, dni epoki),
+ * a kolumny tekstowe kodowane są liczbami przed grupowaniem.
+ * Wynikiem jest nowy model: kolumny kluczy i kolumny agregatów, po jednym wierszu
+ * dla każdej grupy w kolejności pierwszego wystąpienia w danych.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public class GroupBy {
+    /** Minimalna liczba wierszy grupowanych przez jedno zadanie */
+    private static final int BLOCK_SIZE = 1 << 16;
+    /** Maksymalna liczba kolumn grupowania (puste wartości zapisywane są w masce bitowej) */
+    private static final int MAX_KEYS = Long.SIZE;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Funkcja agregująca.
+     */
+    public enum Function {
+        COUNT("count"),
+        SUM("sum"),
+        MIN("min"),
+        MAX("max"),
+        AVG("avg"),
+        COUNT_DISTINCT("distinct");
+
+        private final String label;
+
+        Function(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Zwraca nazwę funkcji używaną w opisie agregatów.
+         *
+         * @return nazwa funkcji, np. "sum"
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * Agregat wyznaczany dla każdej grupy.
+     *
+     * @param function funkcja agregująca
+     * @param column indeks kolumny lub -1 dla liczby wierszy grupy ({@code count})
+     */
+    public record Aggregate(Function function, int column) {
+        /**
+         * Zwraca nazwę kolumny wyniku, np. {@code sum(kwota)}.
+         *
+         * @param columnNames nazwy kolumn modelu
+         * @return nazwa kolumny agregatu
+         */
+        public String name(String[] columnNames) {
+            return column < 0 ? function.getLabel() : function.getLabel() + "(" + columnNames[column] + ")";
+        }
+    }
+
+    /**
+     * Tworzy grupowanie korzystające ze wspólnej puli ForkJoinPool.
+     */
+    public GroupBy() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tworzy grupowanie.
+     *
+     * @param pool pula wątków przetwarzająca zakresy wierszy
+     */
+    public GroupBy(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Zamienia opis agregatów na listę. Agregaty rozdziela się przecinkami, a kolumnę
+     * podaje w nawiasie nazwą lub numerem (od 1); {@code count} bez kolumny oznacza
+     * liczbę wierszy grupy, a {@code count(kolumna)} - liczbę niepustych wartości.
+     *
+     * @param spec opis agregatów, np. {@code "count, sum(kwota), avg(kwota), distinct(klient)"}
+     * @param columnNames nazwy kolumn
+     * @return agregaty w podanej kolejności
+     * @throws ParseException jeśli funkcja lub kolumna nie istnieje
+     */
+    public static List<Aggregate> parseAggregates(String spec, String[] columnNames) throws ParseException {
+        List<Aggregate> aggregates = new ArrayList<>();
+        if (spec == null || spec.isBlank()) {
+            throw new ParseException("Brak agregatów", 0);
+        }
+        int offset = 0;
+        for (String part : spec.split(",", -1)) {
+            String text = part.strip();
+            String name = text;
+            String argument = null;
+            int open = text.indexOf('(');
+            if (open >= 0) {
+                if (!text.endsWith(")")) {
+                    throw new ParseException("Brak nawiasu zamykającego: " + text, offset);
+                }
+                name = text.substring(0, open).strip();
+                argument = text.substring(open + 1, text.length() - 1).strip();
+            }
+            Function function = parseFunction(name.toLowerCase(Locale.ROOT), offset);
+            int column = -1;
+            if (argument != null && !(argument.isEmpty() || argument.equals("*"))) {
+                try {
+                    column = ExternalSort.parseColumns(argument, columnNames)[0];
+                } catch (ParseException e) {
+                    throw new ParseException(e.getMessage(), offset);
+                }
+            } else if (function != Function.COUNT) {
+                throw new ParseException("Funkcja " + name + " wymaga kolumny", offset);
+            }
+            aggregates.add(new Aggregate(function, column));
+            offset += part.length() + 1;
+        }
+        return aggregates;
+    }
+
+    private static Function parseFunction(String name, int offset) throws ParseException {
+        for (Function function : Function.values()) {
+            if (function.getLabel().equals(name)) {
+                return function;
+            }
+        }
+        if (name.equals("count_distinct")) {
+            return Function.COUNT_DISTINCT;
+        }
+        throw new ParseException("Nieznana funkcja agregująca: " + name, offset);
+    }
+
+    /**
+     * Zwraca kolumny potrzebne do grupowania - muszą być wczytane przed {@link #aggregate}.
+     *
+     * @param keys indeksy kolumn grupowania
+     * @param aggregates agregaty
+     * @return rosnąco posortowane indeksy kolumn
+     */
+    public static int[] getColumns(int[] keys, List<Aggregate> aggregates) {
+        return IntStream.concat(Arrays.stream(keys),
+                        aggregates.stream().mapToInt(Aggregate::column).filter(column -> column >= 0))
+                .distinct().sorted().toArray();
+    }
+
+    /**
+     * Grupuje wiersze bazowe modelu i wyznacza agregaty.
+     *
+     * @param model model z wczytanymi kolumnami grupowania i agregatów
+     * @param keys indeksy kolumn grupowania (pusta tablica - jedna grupa wszystkich wierszy)
+     * @param aggregates agregaty
+     * @param rows grupowane wiersze bazowe (null - wszystkie)
+     * @param cancelled sprawdzane przed każdym zakresem - zwrócenie true przerywa grupowanie
+     * @param progress odbiorca liczby przetworzonych wierszy (wywoływany z wątków puli)
+     * @return model wyniku lub null, jeśli grupowanie przerwano
+     * @throws ParseException jeśli funkcji nie da się zastosować do typu kolumny
+     */
+    public CSVTableModel aggregate(CSVTableModel model, int[] keys, List<Aggregate> aggregates, BitSet rows,
+                                   BooleanSupplier cancelled, LongConsumer progress) throws ParseException {
+        if (model.isPaged()) {
+            throw new UnsupportedOperationException("Grupowanie niedostępne w trybie stronicowanym");
+        }
+        if (keys.length > MAX_KEYS) {
+            throw new ParseException("Zbyt wiele kolumn grupowania (maksymalnie " + MAX_KEYS + ")", 0);
+        }
+        String[] names = new String[model.getColumnCount()];
+        Arrays.setAll(names, model::getColumnName);
+        int rowCount = model.getBaseRowCount();
+
+        Column[] keyColumns = new Column[keys.length];
+        LongReader[] keyReaders = new LongReader[keys.length];
+        for (int k = 0; k < keys.length; k++) {
+            keyColumns[k] = storage(model, keys[k]);
+            keyReaders[k] = keyReader(keyColumns[k], rowCount);
+        }
+        Accumulator[] prototypes = new Accumulator[aggregates.size()];
+        for (int i = 0; i < prototypes.length; i++) {
+            prototypes[i] = accumulator(model, aggregates.get(i), names, rowCount);
+        }
+
+        Range task = new Range(keyColumns, keyReaders, prototypes, rows, 0, rowCount,
+                Math.max(BLOCK_SIZE, rowCount / (pool.getParallelism() * 4) + 1),
+                cancelled, progress, new AtomicLong());
+        Partial result = pool.invoke(task);
+        if (cancelled.getAsBoolean()) {
+            return null;
+        }
+
+        int[] order = result.order();
+        List<String> resultNames = new ArrayList<>();
+        List<Column> resultColumns = new ArrayList<>();
+        for (int k = 0; k < keys.length; k++) {
+            Column column = keyColumns[k].newEmpty();
+            for (int group : order) {
+                column.add(keyColumns[k].getString(result.firstRows[group]));
+            }
+            resultNames.add(names[keys[k]]);
+            resultColumns.add(column);
+        }
+        for (int i = 0; i < prototypes.length; i++) {
+            Aggregate aggregate = aggregates.get(i);
+            resultNames.add(aggregate.name(names));
+            resultColumns.add(aggregate.column() < 0 ? result.countColumn(order)
+                    : result.accumulators[i].result(order));
+        }
+        CSVTableModel grouped = new CSVTableModel();
+        grouped.setSeparator(model.getSeparator());
+        grouped.setColumnData(resultNames, resultColumns);
+        return grouped;
+    }
+
+    /**
+     * Zwraca wczytaną kolumnę modelu.
+     *
+     * @throws IllegalStateException jeśli kolumna nie została wczytana
+     */
+    private static Column storage(CSVTableModel model, int column) {
+        if (!model.isColumnLoaded(column)) {
+            throw new IllegalStateException("Kolumna " + model.getColumnName(column) + " nie została wczytana");
+        }
+        return model.getColumnStorage(column);
+    }
+
+    /**
+     * Tworzy odczyt wartości klucza jako liczby long - równe wartości dają równe liczby.
+     * Kolumny bez kodowania liczbowego (tekst) są najpierw kodowane numerami kolejnych
+     * różnych wartości.
+     */
+    private static LongReader keyReader(Column column, int rowCount) {
+        return switch (column) {
+            case DictionaryColumn dictionary -> dictionary::getCode;
+            case IntColumn ints -> ints::getInt;
+            case LongColumn longs -> longs::getLong;
+            case DateColumn dates -> dates::getEpochDay;
+            case BooleanColumn booleans -> row -> booleans.getBoolean(row) ? 1 : 0;
+            case DoubleColumn doubles -> row -> {
+                double value = doubles.getDouble(row);
+                return value == 0 ? 0 : Double.doubleToLongBits(value); // 0.0 i -0.0 to ta sama wartość
+            };
+            default -> {
+                int[] codes = new int[rowCount];
+                Map<String, Integer> dictionary = new HashMap<>();
+                for (int row = 0; row < rowCount; row++) {
+                    String value = column.getString(row);
+                    if (value != null) {
+                        codes[row] = dictionary.computeIfAbsent(value, v -> dictionary.size());
+                    }
+                }
+                yield row -> codes[row];
+            }
+        };
+    }
+
+    /**
+     * Tworzy akumulator agregatu, sprawdzając czy funkcję można zastosować do typu kolumny.
+     */
+    private static Accumulator accumulator(CSVTableModel model, Aggregate aggregate, String[] names, int rowCount)
+            throws ParseException {
+        if (aggregate.column() < 0) {
+            return new RowCount();
+        }
+        Column column = storage(model, aggregate.column());
+        return switch (aggregate.function()) {
+            case COUNT -> new ValueCount(column);
+            case COUNT_DISTINCT -> new DistinctCount(column, keyReader(column, rowCount));
+            case SUM, AVG -> switch (column) {
+                case IntColumn ints -> new LongSum(column, ints::getInt, aggregate.function() == Function.AVG);
+                case LongColumn longs -> new LongSum(column, longs::getLong, aggregate.function() == Function.AVG);
+                case DoubleColumn doubles -> new DoubleSum(doubles, aggregate.function() == Function.AVG);
+                default -> throw typeError(aggregate, names);
+            };
+            case MIN, MAX -> switch (column) {
+                case IntColumn ints -> new LongExtreme(column, ints::getInt, aggregate.function() == Function.MAX);
+                case LongColumn longs -> new LongExtreme(column, longs::getLong, aggregate.function() == Function.MAX);
+                case DateColumn dates -> new LongExtreme(column, dates::getEpochDay, aggregate.function() == Function.MAX);
+                case DoubleColumn doubles -> new DoubleExtreme(doubles, aggregate.function() == Function.MAX);
+                default -> throw typeError(aggregate, names);
+            };
+        };
+    }
+
+    private static ParseException typeError(Aggregate aggregate, String[] names) {
+        return new ParseException("Funkcji " + aggregate.function().getLabel() + " nie można zastosować do kolumny "
+                + names[aggregate.column()] + " (" + (aggregate.function() == Function.SUM
+                || aggregate.function() == Function.AVG ? "wymagane liczby" : "wymagane liczby lub daty") + ")", 0);
+    }
+
+    /**
+     * Odczyt wartości wiersza jako liczby long.
+     */
+    @FunctionalInterface
+    private interface LongReader {
+        long get(int row);
+    }
+
+    /**
+     * Zadanie grupujące zakres wierszy bazowych. Duże zakresy dzielone są na połowy,
+     * a częściowe wyniki połówek scalane.
+     */
+    private static final class Range extends RecursiveTask<Partial> {
+        private final Column[] keyColumns;
+        private final LongReader[] keyReaders;
+        private final Accumulator[] prototypes;
+        private final BitSet rows;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final BooleanSupplier cancelled;
+        private final LongConsumer progress;
+        private final AtomicLong done;
+
+        Range(Column[] keyColumns, LongReader[] keyReaders, Accumulator[] prototypes, BitSet rows, int from, int to,
+              int leafSize, BooleanSupplier cancelled, LongConsumer progress, AtomicLong done) {
+            this.keyColumns = keyColumns;
+            this.keyReaders = keyReaders;
+            this.prototypes = prototypes;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.cancelled = cancelled;
+            this.progress = progress;
+            this.done = done;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= leafSize) {
+                return aggregateRange();
+            }
+            int middle = (from + to) >>> 1;
+            Range left = new Range(keyColumns, keyReaders, prototypes, rows, from, middle, leafSize,
+                    cancelled, progress, done);
+            Range right = new Range(keyColumns, keyReaders, prototypes, rows, middle, to, leafSize,
+                    cancelled, progress, done);
+            left.fork();
+            Partial second = right.compute();
+            return left.join().merge(second);
+        }
+
+        private Partial aggregateRange() {
+            Partial partial = new Partial(keyColumns.length + 1, prototypes);
+            long[] key = new long[keyColumns.length + 1];
+            for (int block = from; block < to; block += BLOCK_SIZE) {
+                if (cancelled.getAsBoolean()) {
+                    return partial;
+                }
+                int end = Math.min(to, block + BLOCK_SIZE);
+                int row = rows == null ? block : rows.nextSetBit(block);
+                while (row >= 0 && row < end) {
+                    long nulls = 0;
+                    for (int k = 0; k < keyColumns.length; k++) {
+                        if (keyColumns[k].isNull(row)) {
+                            key[k] = 0;
+                            nulls |= 1L << k;
+                        } else {
+                            key[k] = keyReaders[k].get(row);
+                        }
+                    }
+                    key[keyColumns.length] = nulls;
+                    int group = partial.group(key, row);
+                    partial.counts[group]++;
+                    for (Accumulator accumulator : partial.accumulators) {
+                        accumulator.add(group, row);
+                    }
+                    row = rows == null ? row + 1 : rows.nextSetBit(row + 1);
+                }
+                progress.accept(done.addAndGet(end - block));
+            }
+            return partial;
+        }
+    }
+
+    /**
+     * Częściowy wynik zakresu wierszy: grupy, pierwszy wiersz i liczba wierszy każdej grupy
+     * oraz akumulatory agregatów.
+     */
+    private static final class Partial {
+        private final GroupMap groups;
+        private final Accumulator[] accumulators;
+        private int[] firstRows = new int[16];
+        private long[] counts = new long[16];
+
+        Partial(int keyWidth, Accumulator[] prototypes) {
+            groups = new GroupMap(keyWidth);
+            accumulators = new Accumulator[prototypes.length];
+            for (int i = 0; i < prototypes.length; i++) {
+                accumulators[i] = prototypes[i].newEmpty();
+                accumulators[i].resize(firstRows.length);
+            }
+        }
+
+        /**
+         * Zwraca numer grupy klucza, tworząc ją w razie potrzeby.
+         *
+         * @param key klucz (wartości kolumn i maska pustych wartości)
+         * @param row wiersz, w którym wystąpił klucz
+         * @return numer grupy
+         */
+        int group(long[] key, int row) {
+            int size = groups.size();
+            int group = groups.find(key);
+            if (group == size) {
+                if (group == firstRows.length) {
+                    int capacity = firstRows.length * 2;
+                    firstRows = Arrays.copyOf(firstRows, capacity);
+                    counts = Arrays.copyOf(counts, capacity);
+                    for (Accumulator accumulator : accumulators) {
+                        accumulator.resize(capacity);
+                    }
+                }
+                firstRows[group] = row;
+            } else if (row < firstRows[group]) {
+                firstRows[group] = row;
+            }
+            return group;
+        }
+
+        /**
+         * Scala dwa częściowe wyniki - mniejszy dołączany jest do większego.
+         *
+         * @param other częściowy wynik innego zakresu
+         * @return scalony wynik
+         */
+        Partial merge(Partial other) {
+            if (other.groups.size() > groups.size()) {
+                return other.merge(this);
+            }
+            long[] key = new long[groups.width()];
+            for (int g = 0; g < other.groups.size(); g++) {
+                other.groups.copyKey(g, key);
+                int group = group(key, other.firstRows[g]);
+                counts[group] += other.counts[g];
+                for (int i = 0; i < accumulators.length; i++) {
+                    accumulators[i].merge(group, other.accumulators[i], g);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Zwraca numery grup w kolejności pierwszego wystąpienia.
+         */
+        int[] order() {
+            long[] packed = new long[groups.size()];
+            for (int g = 0; g < packed.length; g++) {
+                packed[g] = (long) firstRows[g] << 32 | g;
+            }
+            Arrays.sort(packed);
+            int[] order = new int[packed.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = (int) packed[i];
+            }
+            return order;
+        }
+
+        /**
+         * Tworzy kolumnę liczby wierszy grup.
+         */
+        Column countColumn(int[] order) {
+            LongColumn column = new LongColumn();
+            for (int group : order) {
+                column.add(counts[group]);
+            }
+            return column;
+        }
+    }
+
+    /**
+     * Tablica grup z otwartym adresowaniem. Klucze (po {@code width} liczb long) zapisane są
+     * kolejno w jednej tablicy w kolejności tworzenia grup, a tablica mieszająca
+     * przechowuje numery grup.
+     */
+    private static final class GroupMap {
+        private final int width;
+        private long[] keys;
+        /** Numer grupy + 1 (0 - wolne miejsce) */
+        private int[] slots = new int[32];
+        private int size;
+
+        GroupMap(int width) {
+            this.width = width;
+            this.keys = new long[16 * width];
+        }
+
+        int width() {
+            return width;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Zwraca numer grupy klucza, dodając nową grupę (o numerze {@link #size()}), jeśli klucza nie ma.
+         */
+        int find(long[] key) {
+            int mask = slots.length - 1;
+            for (int i = hash(key, 0) & mask; ; i = (i + 1) & mask) {
+                int group = slots[i] - 1;
+                if (group < 0) {
+                    return insert(key, i);
+                }
+                if (matches(group, key)) {
+                    return group;
+                }
+            }
+        }
+
+        void copyKey(int group, long[] target) {
+            System.arraycopy(keys, group * width, target, 0, width);
+        }
+
+        private boolean matches(int group, long[] key) {
+            int base = group * width;
+            for (int k = 0; k < width; k++) {
+                if (keys[base + k] != key[k]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int insert(long[] key, int slot) {
+            int group = size++;
+            if (size * width > keys.length) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+            }
+            System.arraycopy(key, 0, keys, group * width, width);
+            slots[slot] = group + 1;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return group;
+        }
+
+        private void rehash() {
+            int[] resized = new int[slots.length * 2];
+            int mask = resized.length - 1;
+            for (int group = 0; group < size; group++) {
+                int i = hash(keys, group * width) & mask;
+                while (resized[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                resized[i] = group + 1;
+            }
+            slots = resized;
+        }
+
+        private int hash(long[] values, int offset) {
+            long h = 0;
+            for (int k = 0; k < width; k++) {
+                h = (h + values[offset + k]) * 0x9E3779B97F4A7C15L;
+            }
+            h = (h ^ (h >>> 32)) * 0xD6E8FEB86659FD93L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /**
+     * Zbiór liczb long z otwartym adresowaniem (liczba różnych wartości grupy).
+     */
+    private static final class LongSet {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private long[] values = newTable(8);
+        private boolean containsEmpty;
+        private int size;
+
+        private static long[] newTable(int capacity) {
+            long[] table = new long[capacity];
+            Arrays.fill(table, EMPTY);
+            return table;
+        }
+
+        void add(long value) {
+            if (value == EMPTY) {
+                if (!containsEmpty) {
+                    containsEmpty = true;
+                    size++;
+                }
+                return;
+            }
+            int mask = values.length - 1;
+            int i = mix(value) & mask;
+            while (values[i] != EMPTY) {
+                if (values[i] == value) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            values[i] = value;
+            if (++size * 2 > values.length) {
+                long[] old = values;
+                values = newTable(old.length * 2);
+                size = containsEmpty ? 1 : 0;
+                for (long v : old) {
+                    if (v != EMPTY) {
+                        add(v);
+                    }
+                }
+            }
+        }
+
+        void addAll(LongSet other) {
+            if (other.containsEmpty) {
+                add(EMPTY);
+            }
+            for (long value : other.values) {
+                if (value != EMPTY) {
+                    add(value);
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        private static int mix(long value) {
+            long h = value * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /**
+     * Akumulator agregatu - tablice typów prostych indeksowane numerem grupy.
+     * Każdy częściowy wynik ma własne akumulatory ({@link #newEmpty()}).
+     */
+    private abstract static class Accumulator {
+        /**
+         * Tworzy pusty akumulator tego samego agregatu.
+         */
+        abstract Accumulator newEmpty();
+
+        /**
+         * Powiększa tablice do podanej liczby grup.
+         */
+        abstract void resize(int capacity);
+
+        /**
+         * Dolicza wartość wiersza do grupy.
+         */
+        abstract void add(int group, int row);
+
+        /**
+         * Dolicza stan grupy innego akumulatora tego samego agregatu.
+         */
+        abstract void merge(int group, Accumulator other, int otherGroup);
+
+        /**
+         * Tworzy kolumnę wyników grup w podanej kolejności.
+         */
+        abstract Column result(int[] order);
+    }
+
+    /**
+     * Liczba wierszy grupy - wyznaczana przez {@link Partial}, akumulator nic nie zlicza.
+     */
+    private static final class RowCount extends Accumulator {
+        @Override
+        Accumulator newEmpty() {
+            return this;
+        }
+
+        @Override
+        void resize(int capacity) {
+        }
+
+        @Override
+        void add(int group, int row) {
+        }
+
+        @Override
+        void merge(int group, Accumulator other, int otherGroup) {
+        }
+
+        @Override
+        Column result(int[] order) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Liczba niepustych wartości kolumny.
+     */
+    private static final class ValueCount extends Accumulator {
+        private final Column column;
+        private long[] counts = new long[0];
+
+        ValueCount(Column column) {
+            this.column = column;
+        }
+
+        @Override
+        Accumulator newEmpty() {
+            return new ValueCount(column);
+        }
+
+        @Override
+        void resize(int capacity) {
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        @Override
+        void add(int group, int row) {
+            if (!column.isNull(row)) {
+                counts[group]++;
+            }
+        }
+
+        @Override
+        void merge(int group, Accumulator other, int otherGroup) {
+            counts[group] += ((ValueCount) other).counts[otherGroup];
+        }
+
+        @Override
+        Column result(int[] order) {
+            LongColumn result = new LongColumn();
+            for (int group : order) {
+                result.add(counts[group]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Suma lub średnia kolumny liczb całkowitych.
+     */
+    private static final class LongSum extends Accumulator {
+        private final Column column;
+        private final LongReader values;
+        private final boolean average;
+        private long[] sums = new long[0];
+        private long[] counts = new long[0];
+
+        LongSum(Column column, LongReader values, boolean average) {
+            this.column = column;
+            this.values = values;
+            this.average = average;
+        }
+
+        @Override
+        Accumulator newEmpty() {
+            return new LongSum(column, values, average);
+        }
+
+        @Override
+        void resize(int capacity) {
+            sums = Arrays.copyOf(sums, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        @Override
+        void add(int group, int row) {
+            if (!column.isNull(row)) {
+                sums[group] += values.get(row);
+                counts[group]++;
+            }
+        }
+
+        @Override
+        void merge(int group, Accumulator other, int otherGroup) {
+            LongSum sum = (LongSum) other;
+            sums[group] += sum.sums[otherGroup];
+            counts[group] += sum.counts[otherGroup];
+        }
+
+        @Override
+        Column result(int[] order) {
+            Column result = average ? new DoubleColumn() : new LongColumn();
+            for (int group : order) {
+                if (counts[group] == 0) {
+                    result.add(null);
+                } else {
+                    result.add(average ? (Object) ((double) sums[group] / counts[group]) : (Object) sums[group]);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Suma lub średnia kolumny liczb zmiennoprzecinkowych.
+     */
+    private static final class DoubleSum extends Accumulator {
+        private final DoubleColumn column;
+        private final boolean average;
+        private double[] sums = new double[0];
+        private long[] counts = new long[0];
+
+        DoubleSum(DoubleColumn column, boolean average) {
+            this.column = column;
+            this.average = average;
+        }
+
+        @Override
+        Accumulator newEmpty() {
+            return new DoubleSum(column, average);
+        }
+
+        @Override
+        void resize(int capacity) {
+            sums = Arrays.copyOf(sums, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        @Override
+        void add(int group, int row) {
+            if (!column.isNull(row)) {
+                sums[group] += column.getDouble(row);
+                counts[group]++;
+            }
+        }
+
+        @Override
+        void merge(int group, Accumulator other, int otherGroup) {
+            DoubleSum sum = (DoubleSum) other;
+            sums[group] += sum.sums[otherGroup];
+            counts[group] += sum.counts[otherGroup];
+        }
+
+        @Override
+        Column result(int[] order) {
+            DoubleColumn result = new DoubleColumn();
+            for (int group : order) {
+                result.add(counts[group] == 0 ? null : (Object) (average ? sums[group] / counts[group] : sums[group]));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Minimum lub maksimum kolumny liczb całkowitych lub dat. Zapamiętywany jest wiersz
+     * wartości, więc wynik ma typ i zapis tekstowy kolumny źródłowej.
+     */
+    private static final class LongExtreme extends Accumulator {
+        private final Column column;
+        private final LongReader values;
+        private final boolean max;
+        private long[] best = new long[0];
+        /** Wiersz najlepszej wartości (-1 - grupa bez wartości) */
+        private int[] rows = new int[0];
+
+        LongExtreme(Column column, LongReader values, boolean max) {
+            this.column = column;
+            this.values = values;
+            this.max = max;
+        }
+
+        @Override
+        Accumulator newEmpty() {
+            return new LongExtreme(column, values, max);
+        }
+
+        @Override
+        void resize(int capacity) {
+            int old = rows.length;
+            best = Arrays.copyOf(best, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+            Arrays.fill(rows, old, capacity, -1);
+        }
+
+        @Override
+        void add(int group, int row) {
+            if (!column.isNull(row)) {
+                offer(group, values.get(row), row);
+            }
+        }
+
+        private void offer(int group, long value, int row) {
+            int current = rows[group];
+            if (current < 0 || (max ? value > best[group] : value < best[group])
+                    || (value == best[group] && row < current)) {
+                best[group] = value;
+                rows[group] = row;
+            }
+        }
+
+        @Override
+        void merge(int group, Accumulator other, int otherGroup) {
+            LongExtreme extreme = (LongExtreme) other;
+            if (extreme.rows[otherGroup] >= 0) {
+                offer(group, extreme.best[otherGroup], extreme.rows[otherGroup]);
+            }
+        }
+
+        @Override
+        Column result(int[] order) {
+            return valuesAt(column, rows, order);
+        }
+    }
+
+    /**
+     * Minimum lub maksimum kolumny liczb zmiennoprzecinkowych.
+     */
+    private static final class DoubleExtreme extends Accumulator {
+        private final DoubleColumn column;
+        private final boolean max;
+        private double[] best = new double[0];
+        private int[] rows = new int[0];
+
+        DoubleExtreme(DoubleColumn column, boolean max) {
+            this.column = column;
+            this.max = max;
+        }
+
+        @Override
+        Accumulator newEmpty() {
+            return new DoubleExtreme(column, max);
+        }
+
+        @Override
+        void resize(int capacity) {
+            int old = rows.length;
+            best = Arrays.copyOf(best, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+            Arrays.fill(rows, old, capacity, -1);
+        }
+
+        @Override
+        void add(int group, int row) {
+            if (!column.isNull(row)) {
+                offer(group, column.getDouble(row), row);
+            }
+        }
+
+        private void offer(int group, double value, int row) {
+            int current = rows[group];
+            int order = current < 0 ? 0 : Double.compare(value, best[group]);
+            if (current < 0 || (max ? order > 0 : order < 0) || (order == 0 && row < current)) {
+                best[group] = value;
+                rows[group] = row;
+            }
+        }
+
+        @Override
+        void merge(int group, Accumulator other, int otherGroup) {
+            DoubleExtreme extreme = (DoubleExtreme) other;
+            if (extreme.rows[otherGroup] >= 0) {
+                offer(group, extreme.best[otherGroup], extreme.rows[otherGroup]);
+            }
+        }
+
+        @Override
+        Column result(int[] order) {
+            return valuesAt(column, rows, order);
+        }
+    }
+
+    /**
+     * Kopiuje wartości wskazanych wierszy do nowej kolumny tego samego rodzaju.
+     */
+    private static Column valuesAt(Column column, int[] rows, int[] order) {
+        Column result = column.newEmpty();
+        for (int group : order) {
+            result.add(rows[group] < 0 ? null : column.getString(rows[group]));
+        }
+        return result;
+    }
+
+    /**
+     * Liczba różnych niepustych wartości kolumny.
+     */
+    private static final class DistinctCount extends Accumulator {
+        private final Column column;
+        private final LongReader values;
+        private LongSet[] sets = new LongSet[0];
+
+        DistinctCount(Column column, LongReader values) {
+            this.column = column;
+            this.values = values;
+        }
+
+        @Override
+        Accumulator newEmpty() {
+            return new DistinctCount(column, values);
+        }
+
+        @Override
+        void resize(int capacity) {
+            sets = Arrays.copyOf(sets, capacity);
+        }
+
+        @Override
+        void add(int group, int row) {
+            if (!column.isNull(row)) {
+                set(group).add(values.get(row));
+            }
+        }
+
+        private LongSet set(int group) {
+            LongSet set = sets[group];
+            if (set == null) {
+                set = new LongSet();
+                sets[group] = set;
+            }
+            return set;
+        }
+
+        @Override
+        void merge(int group, Accumulator other, int otherGroup) {
+            LongSet values = ((DistinctCount) other).sets[otherGroup];
+            if (values != null) {
+                set(group).addAll(values);
+            }
+        }
+
+        @Override
+        Column result(int[] order) {
+            LongColumn result = new LongColumn();
+            for (int group : order) {
+                result.add((long) (sets[group] != null ? sets[group].size() : 0));
+            }
+            return result;
+        }
+    }
+}
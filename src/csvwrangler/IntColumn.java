@@ -0,0 +1,73 @@
+package csvwrangler;
+
+import java.util.Arrays;
+
+/**
+ * Kolumna liczb całkowitych mieszczących się w typie int, przechowywana w tablicach int[].
+ * Przyjmuje wyłącznie wartości, których zapis tekstowy jest kanoniczny,
+ * dzięki czemu zapis do pliku odtwarza dokładnie wczytany tekst.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+class IntColumn extends Column {
+
+    @Override
+    Object get(int row) {
+        return isNull(row) ? null : getInt(row);
+    }
+
+    /**
+     * Zwraca wartość komórki bez opakowywania w obiekt.
+     *
+     * @param row indeks wiersza
+     * @return wartość (0 dla pustej komórki)
+     */
+    int getInt(int row) {
+        return ((int[]) chunks[row >>> CHUNK_SHIFT])[row & CHUNK_MASK];
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        boolean isNull = isEmpty(value);
+        int[] chunk = (int[]) chunks[row >>> CHUNK_SHIFT];
+        chunk[row & CHUNK_MASK] = isNull ? 0 : value instanceof Number n ? n.intValue() : Integer.parseInt(value.toString());
+        setNull(row, isNull);
+    }
+
+    @Override
+    boolean canStore(Object value) {
+        return isEmpty(value) || value instanceof Integer
+                || (value instanceof String s && ColumnType.isCanonicalInt(s));
+    }
+
+    @Override
+    ColumnType getType() {
+        return ColumnType.INTEGER;
+    }
+
+    @Override
+    protected Column newEmpty() {
+        return new IntColumn();
+    }
+
+    @Override
+    protected Object newChunk(int capacity) {
+        return new int[capacity];
+    }
+
+    @Override
+    protected Object copyChunk(Object chunk, int capacity) {
+        return Arrays.copyOf((int[]) chunk, capacity);
+    }
+
+    @Override
+    protected int chunkCapacity(Object chunk) {
+        return ((int[]) chunk).length;
+    }
+
+    @Override
+    protected void moveValue(int from, int to) {
+        ((int[]) chunks[to >>> CHUNK_SHIFT])[to & CHUNK_MASK] = ((int[]) chunks[from >>> CHUNK_SHIFT])[from & CHUNK_MASK];
+    }
+}
@@ -0,0 +1,250 @@
+package csvwrangler;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Stabilne sortowanie tablic indeksów (int[]) według porównania podanego jako
+ * funkcja dwóch indeksów - bez opakowywania liczb w obiekty Integer.
+ * Duże tablice można sortować równolegle ({@link #parallelSort}): połówki
+ * sortowane są w osobnych zadaniach ForkJoinPool, a scalanie dzielone jest
+ * na niezależne części wyszukiwaniem binarnym.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+final class IntSort {
+    /** Rozmiar fragmentu sortowanego przez wstawianie */
+    private static final int INSERTION_THRESHOLD = 32;
+    /** Rozmiar fragmentu sortowanego lub scalanego sekwencyjnie w sortowaniu równoległym */
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    /**
+     * Porównanie dwóch elementów wskazanych indeksami.
+     */
+    @FunctionalInterface
+    interface IntComparator {
+        /**
+         * Porównuje elementy.
+         *
+         * @param a pierwszy indeks
+         * @param b drugi indeks
+         * @return wartość ujemna, zero lub dodatnia - jak w {@link java.util.Comparator}
+         */
+        int compare(int a, int b);
+    }
+
+    private IntSort() {
+    }
+
+    /**
+     * Sortuje tablicę stabilnie (sortowanie przez scalanie).
+     *
+     * @param a tablica do posortowania
+     * @param comparator porównanie elementów
+     */
+    static void sort(int[] a, IntComparator comparator) {
+        sort(a, 0, a.length, comparator);
+    }
+
+    /**
+     * Sortuje fragment tablicy stabilnie (sortowanie przez scalanie).
+     *
+     * @param a tablica do posortowania
+     * @param from początek fragmentu (włącznie)
+     * @param to koniec fragmentu (wyłącznie)
+     * @param comparator porównanie elementów
+     */
+    static void sort(int[] a, int from, int to, IntComparator comparator) {
+        int[] buffer = a.clone();
+        mergeSort(buffer, a, from, to, comparator);
+    }
+
+    /**
+     * Sortuje tablicę stabilnie, równolegle w podanej puli wątków.
+     * Wynik jest identyczny jak w {@link #sort(int[], IntComparator)}, więc
+     * porównanie musi być bezpieczne dla wielu wątków.
+     *
+     * @param a tablica do posortowania
+     * @param comparator porównanie elementów
+     * @param pool pula wątków
+     */
+    static void parallelSort(int[] a, IntComparator comparator, ForkJoinPool pool) {
+        if (a.length <= PARALLEL_THRESHOLD || pool.getParallelism() <= 1) {
+            sort(a, comparator);
+            return;
+        }
+        int[] buffer = a.clone();
+        pool.invoke(new SortTask(buffer, a, 0, a.length, comparator));
+    }
+
+    /**
+     * Zadanie sortujące dst[from, to) z src jako buforem (jak {@link #mergeSort}).
+     */
+    private static final class SortTask extends RecursiveAction {
+        private final int[] src;
+        private final int[] dst;
+        private final int from;
+        private final int to;
+        private final IntComparator comparator;
+
+        SortTask(int[] src, int[] dst, int from, int to, IntComparator comparator) {
+            this.src = src;
+            this.dst = dst;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                mergeSort(src, dst, from, to, comparator);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SortTask(dst, src, from, middle, comparator),
+                    new SortTask(dst, src, middle, to, comparator));
+            new MergeTask(src, dst, from, middle, middle, to, from, comparator).compute();
+        }
+    }
+
+    /**
+     * Zadanie scalające posortowane fragmenty src[from1, to1) i src[from2, to2)
+     * do dst od pozycji target. Duże scalenia dzielone są według środkowego elementu
+     * dłuższego fragmentu i jego pozycji w drugim fragmencie (wyszukiwanie binarne),
+     * z zachowaniem stabilności - przy równych elementach pierwszeństwo ma pierwszy fragment.
+     */
+    private static final class MergeTask extends RecursiveAction {
+        private final int[] src;
+        private final int[] dst;
+        private final int from1;
+        private final int to1;
+        private final int from2;
+        private final int to2;
+        private final int target;
+        private final IntComparator comparator;
+
+        MergeTask(int[] src, int[] dst, int from1, int to1, int from2, int to2, int target, IntComparator comparator) {
+            this.src = src;
+            this.dst = dst;
+            this.from1 = from1;
+            this.to1 = to1;
+            this.from2 = from2;
+            this.to2 = to2;
+            this.target = target;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            int length1 = to1 - from1;
+            int length2 = to2 - from2;
+            if (length1 + length2 <= PARALLEL_THRESHOLD) {
+                mergeRuns(src, dst, from1, to1, from2, to2, target, comparator);
+                return;
+            }
+            int split1;
+            int split2;
+            if (length1 >= length2) {
+                split1 = (from1 + to1) >>> 1;
+                // elementy drugiego fragmentu równe środkowemu trafiają za niego
+                split2 = lowerBound(src, from2, to2, src[split1], comparator);
+            } else {
+                split2 = (from2 + to2) >>> 1;
+                // elementy pierwszego fragmentu równe środkowemu trafiają przed niego
+                split1 = upperBound(src, from1, to1, src[split2], comparator);
+            }
+            int middleTarget = target + (split1 - from1) + (split2 - from2);
+            invokeAll(new MergeTask(src, dst, from1, split1, from2, split2, target, comparator),
+                    new MergeTask(src, dst, split1, to1, split2, to2, middleTarget, comparator));
+        }
+    }
+
+    /**
+     * Scala sekwencyjnie dwa posortowane fragmenty src do dst od pozycji target.
+     */
+    private static void mergeRuns(int[] src, int[] dst, int i, int to1, int j, int to2, int target,
+                                  IntComparator comparator) {
+        while (i < to1 && j < to2) {
+            dst[target++] = comparator.compare(src[i], src[j]) <= 0 ? src[i++] : src[j++];
+        }
+        System.arraycopy(src, i, dst, target, to1 - i);
+        System.arraycopy(src, j, dst, target + to1 - i, to2 - j);
+    }
+
+    /**
+     * Zwraca pierwszą pozycję fragmentu z elementem nie mniejszym od podanego.
+     */
+    private static int lowerBound(int[] a, int from, int to, int value, IntComparator comparator) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (comparator.compare(a[middle], value) < 0) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Zwraca pierwszą pozycję fragmentu z elementem większym od podanego.
+     */
+    private static int upperBound(int[] a, int from, int to, int value, IntComparator comparator) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (comparator.compare(a[middle], value) <= 0) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Sortuje dst[from, to) korzystając z src jako bufora (obie tablice mają na wejściu tę samą zawartość).
+     */
+    private static void mergeSort(int[] src, int[] dst, int from, int to, IntComparator comparator) {
+        if (to - from <= INSERTION_THRESHOLD) {
+            insertionSort(dst, from, to, comparator);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(dst, src, from, middle, comparator);
+        mergeSort(dst, src, middle, to, comparator);
+        merge(src, dst, from, middle, to, comparator);
+    }
+
+    /**
+     * Scala posortowane fragmenty src[from, middle) i src[middle, to) do dst.
+     */
+    static void merge(int[] src, int[] dst, int from, int middle, int to, IntComparator comparator) {
+        if (comparator.compare(src[middle - 1], src[middle]) <= 0) {
+            System.arraycopy(src, from, dst, from, to - from); // fragmenty już są w kolejności
+            return;
+        }
+        int i = from;
+        int j = middle;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < middle && comparator.compare(src[i], src[j]) <= 0)) {
+                dst[k] = src[i++];
+            } else {
+                dst[k] = src[j++];
+            }
+        }
+    }
+
+    private static void insertionSort(int[] a, int from, int to, IntComparator comparator) {
+        for (int i = from + 1; i < to; i++) {
+            int value = a[i];
+            int j = i - 1;
+            while (j >= from && comparator.compare(a[j], value) > 0) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = value;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package csvwrangler;
+
+import java.util.Arrays;
+
+/**
+ * Kolumna liczb całkowitych przechowywana w tablicach long[].
+ * Przyjmuje wyłącznie wartości, których zapis tekstowy jest kanoniczny,
+ * dzięki czemu zapis do pliku odtwarza dokładnie wczytany tekst.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+class LongColumn extends Column {
+
+    @Override
+    Object get(int row) {
+        return isNull(row) ? null : getLong(row);
+    }
+
+    /**
+     * Zwraca wartość komórki bez opakowywania w obiekt.
+     *
+     * @param row indeks wiersza
+     * @return wartość (0 dla pustej komórki)
+     */
+    long getLong(int row) {
+        return ((long[]) chunks[row >>> CHUNK_SHIFT])[row & CHUNK_MASK];
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        boolean isNull = isEmpty(value);
+        long[] chunk = (long[]) chunks[row >>> CHUNK_SHIFT];
+        chunk[row & CHUNK_MASK] = isNull ? 0 : value instanceof Number n ? n.longValue() : Long.parseLong(value.toString());
+        setNull(row, isNull);
+    }
+
+    @Override
+    boolean canStore(Object value) {
+        return isEmpty(value) || value instanceof Long || value instanceof Integer
+                || (value instanceof String s && ColumnType.isCanonicalLong(s));
+    }
+
+    @Override
+    ColumnType getType() {
+        return ColumnType.LONG;
+    }
+
+    @Override
+    protected Column newEmpty() {
+        return new LongColumn();
+    }
+
+    @Override
+    protected Object newChunk(int capacity) {
+        return new long[capacity];
+    }
+
+    @Override
+    protected Object copyChunk(Object chunk, int capacity) {
+        return Arrays.copyOf((long[]) chunk, capacity);
+    }
+
+    @Override
+    protected int chunkCapacity(Object chunk) {
+        return ((long[]) chunk).length;
+    }
+
+    @Override
+    protected void moveValue(int from, int to) {
+        ((long[]) chunks[to >>> CHUNK_SHIFT])[to & CHUNK_MASK] = ((long[]) chunks[from >>> CHUNK_SHIFT])[from & CHUNK_MASK];
+    }
+}
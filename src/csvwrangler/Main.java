@@ -0,0 +1,296 @@
+package csvwrangler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Punkt wejścia aplikacji wskazany w manifeście. Bez argumentów uruchamia interfejs
+ * graficzny ({@link CSVWranglerApp}), a z flagą {@value #BATCH_FLAG} - przetwarzanie
+ * wsadowe bez interfejsu, np. na serwerze lub w zadaniu cron:
+ * <pre>
+ * java -jar CSVWrangler.jar --batch wejście.csv wynik.csv
+ *      [--filter "kwota &gt; 100 AND kraj = 'PL'"] [--sort "kwota:desc,kraj"]
+ *      [--columns "id,kraj,kwota"] [--hide "uwagi"] [--memory 512m]
+ *      [--separator ";"] [--no-headers] [--temp katalog] [--charset UTF-8] [--quiet]
+ *      [--group-by "kraj" --aggregate "count, sum(kwota)"]
+ * </pre>
+ * Przetwarzanie wsadowe działa strumieniowo ({@link ExternalSort}): wczytuje plik,
+ * filtruje wiersze, wybiera kolumny, sortuje i zapisuje wynik w stałej ilości pamięci,
+ * niezależnie od rozmiaru pliku. Postęp i przepustowość (wierszy na sekundę) wypisywane
+ * są na standardowe wyjście błędów. Klasy okien Swing/AWT nie są przy tym ładowane.
+ * Z opcją {@code --group-by} wczytywane są tylko kolumny grupowania, agregatów i filtra,
+ * a do pliku wynikowego trafiają agregaty grup ({@link GroupBy}), posortowane opcjonalnie
+ * według {@code --sort}.
+ * <p>
+ * Kody wyjścia: 0 - sukces, 1 - błąd odczytu lub zapisu, 2 - niepoprawne argumenty.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public class Main {
+    /** Flaga przetwarzania wsadowego */
+    public static final String BATCH_FLAG = "--batch";
+
+    private static final int EXIT_OK = 0;
+    private static final int EXIT_ERROR = 1;
+    private static final int EXIT_USAGE = 2;
+    /** Minimalny odstęp między komunikatami o postępie w nanosekundach */
+    private static final long PROGRESS_PERIOD = 2_000_000_000L;
+
+    private static final String USAGE = """
+            Użycie: java -jar CSVWrangler.jar --batch wejście.csv wynik.csv [opcje]
+              --filter "wyrażenie"     filtr, np. "kwota > 100 AND kraj = 'PL'"
+              --sort "kolumny"         klucze sortowania, np. "kwota:desc,kraj"
+              --columns "kolumny"      zapisywane kolumny (nazwy lub numery od 1)
+              --hide "kolumny"         pomijane kolumny
+              --memory rozmiar         budżet pamięci, np. 512m (domyślnie 1/4 pamięci JVM)
+              --separator znak         separator pól (domyślnie wykrywany; "tab" - tabulator)
+              --no-headers             plik nie zawiera wiersza nagłówków
+              --temp katalog           katalog plików tymczasowych
+              --charset kodowanie      kodowanie pliku wynikowego (domyślnie UTF-8)
+              --quiet                  bez komunikatów o postępie
+              --group-by "kolumny"     grupowanie, np. "kraj,miasto" (wynik: jeden wiersz na grupę)
+              --aggregate "agregaty"   agregaty grup: count, sum, min, max, avg, distinct,
+                                       np. "count, sum(kwota), distinct(klient)" (domyślnie count)""";
+
+    private Main() {
+    }
+
+    /**
+     * Uruchamia aplikację.
+     *
+     * @param args {@value #BATCH_FLAG} i argumenty przetwarzania wsadowego
+     *             albo brak argumentów (interfejs graficzny)
+     */
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals(BATCH_FLAG)) {
+            System.exit(runBatch(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        CSVWranglerApp.main(args);
+    }
+
+    /**
+     * Wykonuje przetwarzanie wsadowe.
+     *
+     * @param args plik wejściowy, plik wynikowy i opcje
+     * @return kod wyjścia
+     */
+    static int runBatch(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 2 || args[0].startsWith("--") || args[1].startsWith("--")) {
+            System.err.println(USAGE);
+            return EXIT_USAGE;
+        }
+        File input = new File(args[0]);
+        File output = new File(args[1]);
+        String sort = null;
+        String filter = null;
+        String columns = null;
+        String hidden = null;
+        String groupBy = null;
+        String aggregates = null;
+        long memory = ExternalSort.defaultMemoryBudget();
+        Character separator = null;
+        boolean headers = true;
+        Path temp = null;
+        Charset charset = StandardCharsets.UTF_8;
+        boolean quiet = false;
+        try {
+            for (int i = 2; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--sort" -> sort = value(args, ++i);
+                    case "--filter" -> filter = value(args, ++i);
+                    case "--columns" -> columns = value(args, ++i);
+                    case "--hide" -> hidden = value(args, ++i);
+                    case "--memory" -> memory = parseSize(value(args, ++i));
+                    case "--separator" -> separator = parseSeparator(value(args, ++i));
+                    case "--no-headers" -> headers = false;
+                    case "--temp" -> temp = Path.of(value(args, ++i));
+                    case "--charset" -> charset = Charset.forName(value(args, ++i));
+                    case "--quiet" -> quiet = true;
+                    case "--group-by" -> groupBy = value(args, ++i);
+                    case "--aggregate" -> aggregates = value(args, ++i);
+                    default -> throw new IllegalArgumentException("Nieznana opcja: " + args[i]);
+                }
+            }
+            if (groupBy == null && aggregates != null) {
+                throw new IllegalArgumentException("Opcja --aggregate wymaga opcji --group-by");
+            }
+            if (groupBy != null && (columns != null || hidden != null || !headers)) {
+                throw new IllegalArgumentException("Opcji --group-by nie można łączyć z --columns, --hide i --no-headers");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return EXIT_USAGE;
+        }
+        if (!input.isFile()) {
+            System.err.println("Nie znaleziono pliku: " + input);
+            return EXIT_ERROR;
+        }
+        if (groupBy != null) {
+            return runGroupBy(input, output, separator, filter, groupBy, aggregates != null ? aggregates : "count",
+                    sort, charset, quiet);
+        }
+
+        char fieldSeparator = separator != null ? separator : CSVRecordReader.detectSeparator(input);
+        ExternalSort job = new ExternalSort(fieldSeparator, headers, memory, temp, charset);
+        job.setColumns(columns);
+        job.setHiddenColumns(hidden);
+        ExternalSort.ProgressListener listener = quiet ? (stage, done, total) -> { } : new ProgressPrinter();
+        try {
+            ExternalSort.Result result = job.run(input, output, sort, filter, listener, () -> false);
+            if (!quiet) {
+                System.err.println("Wierszy: " + result.rowsRead() + " | Zapisano: " + result.rowsWritten()
+                        + " | Przebiegów: " + result.runs() + " | Czas: " + result.millis() + " ms"
+                        + " | " + result.rowsPerSecond() + " wierszy/s");
+            }
+            return EXIT_OK;
+        } catch (ParseException e) {
+            System.err.println("Błędne parametry: " + e.getMessage());
+            return EXIT_USAGE;
+        } catch (IOException e) {
+            System.err.println("Błąd przetwarzania pliku: " + e.getMessage());
+            return EXIT_ERROR;
+        }
+    }
+
+    /**
+     * Grupuje wiersze pliku i zapisuje agregaty grup. Wczytywane są tylko kolumny
+     * grupowania i agregatów, a kolumny filtra - dopiero po rozpoznaniu wyrażenia.
+     *
+     * @return kod wyjścia
+     */
+    private static int runGroupBy(File input, File output, Character separator, String filter, String groupBy,
+                                  String aggregates, String sort, Charset charset, boolean quiet) {
+        long start = System.nanoTime();
+        try {
+            String[] names = CSVLoader.readColumnNames(input, separator);
+            int[] keys = groupBy.isBlank() ? new int[0] : ExternalSort.parseColumns(groupBy, names);
+            List<GroupBy.Aggregate> functions = GroupBy.parseAggregates(aggregates, names);
+            CSVTableModel model = new CSVTableModel();
+            CSVLoader.load(model, input, separator, GroupBy.getColumns(keys, functions));
+            BitSet rows = null;
+            if (filter != null) {
+                FilterExpression expression = FilterExpression.compile(filter, model);
+                model.setLoadedColumns(model.loadColumns(expression.getColumns(), () -> false));
+                // Typy wczytanych kolumn są znane dopiero teraz - wyrażenie kompilowane jest ponownie
+                expression = FilterExpression.compile(filter, model);
+                rows = new ParallelFilter().evaluate(expression, model.getBaseRowCount(), null,
+                        () -> false, done -> { });
+            }
+            long groupStart = System.nanoTime();
+            CSVTableModel result = new GroupBy().aggregate(model, keys, functions, rows, () -> false, done -> { });
+            long groupMillis = (System.nanoTime() - groupStart) / 1_000_000;
+            if (sort != null) {
+                String[] resultNames = new String[result.getColumnCount()];
+                Arrays.setAll(resultNames, result::getColumnName);
+                List<ParallelSorter.SortKey> sortKeys = ExternalSort.parseSortKeys(sort, resultNames);
+                result.setSortOrder(sortKeys, new ParallelSorter().sort(result, sortKeys, () -> false));
+            }
+            result.setCharset(charset);
+            CSVController.writeCSV(result, output, written -> { }, () -> false);
+            if (!quiet) {
+                System.err.println("Wierszy: " + (rows != null ? rows.cardinality() : model.getBaseRowCount())
+                        + " | Grup: " + result.getRowCount() + " | Grupowanie: " + groupMillis + " ms"
+                        + " | Czas: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            }
+            return EXIT_OK;
+        } catch (ParseException e) {
+            System.err.println("Błędne parametry: " + e.getMessage());
+            return EXIT_USAGE;
+        } catch (IOException e) {
+            System.err.println("Błąd przetwarzania pliku: " + e.getMessage());
+            return EXIT_ERROR;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EXIT_ERROR;
+        }
+    }
+
+    /**
+     * Zwraca wartość opcji.
+     *
+     * @throws IllegalArgumentException jeśli brakuje wartości
+     */
+    private static String value(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Brak wartości opcji " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    /**
+     * Zamienia rozmiar z opcjonalnym przyrostkiem (k, m, g) na bajty.
+     *
+     * @param text rozmiar, np. "512m"
+     * @return liczba bajtów
+     */
+    static long parseSize(String text) {
+        String size = text.strip().toLowerCase(Locale.ROOT);
+        long unit = 1;
+        if (size.endsWith("k") || size.endsWith("m") || size.endsWith("g")) {
+            unit = switch (size.charAt(size.length() - 1)) {
+                case 'k' -> 1024L;
+                case 'm' -> 1024L * 1024;
+                default -> 1024L * 1024 * 1024;
+            };
+            size = size.substring(0, size.length() - 1);
+        }
+        try {
+            return Long.parseLong(size) * unit;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Niepoprawny rozmiar: " + text);
+        }
+    }
+
+    /**
+     * Zamienia opis separatora na znak ("\t" lub "tab" oznacza tabulator).
+     *
+     * @param text opis separatora
+     * @return znak separatora
+     */
+    static char parseSeparator(String text) {
+        if (text.equals("\\t") || text.equalsIgnoreCase("tab")) {
+            return '\t';
+        }
+        if (text.length() != 1) {
+            throw new IllegalArgumentException("Separator musi być jednym znakiem: " + text);
+        }
+        return text.charAt(0);
+    }
+
+    /**
+     * Wypisuje postęp etapów co najwyżej raz na {@link #PROGRESS_PERIOD} nanosekund.
+     */
+    private static final class ProgressPrinter implements ExternalSort.ProgressListener {
+        private String stage;
+        private long stageStart;
+        private long lastReport = System.nanoTime();
+
+        @Override
+        public void progress(String stage, long done, long total) {
+            long now = System.nanoTime();
+            if (!stage.equals(this.stage)) {
+                this.stage = stage;
+                stageStart = now;
+            }
+            if (now - lastReport < PROGRESS_PERIOD) {
+                return;
+            }
+            lastReport = now;
+            long megabytes = done / (1024 * 1024);
+            long seconds = Math.max(1, (now - stageStart) / 1_000_000_000L);
+            System.err.println(stage + ": " + megabytes + " / " + total / (1024 * 1024) + " MB ("
+                    + done * 100 / Math.max(1, total) + "%) | " + megabytes / seconds + " MB/s");
+        }
+    }
+}
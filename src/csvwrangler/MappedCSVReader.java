@@ -0,0 +1,249 @@
+package csvwrangler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Czytnik CSV oparty o plik zmapowany do pamięci (FileChannel.map).
+ * Separatory i końce wierszy są wyszukiwane bezpośrednio w bajtach pliku,
+ * a dla bieżącego rekordu zapamiętywane są jedynie pozycje pól.
+ * Pole jest dekodowane do obiektu String dopiero, gdy ktoś o nie poprosi.
+ * Cudzysłowy są interpretowane tak samo jak w {@link CSVTokenizer}, a pola dekodowane
+ * w kodowaniu dialektu (UTF-8 lub kodowanie jednobajtowe).
+ * Pliki większe niż 2 GB są mapowane kolejnymi oknami.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public class MappedCSVReader implements CSVRecordReader {
+    /** Rozmiar jednorazowo mapowanego okna pliku */
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final byte separator;
+    private final byte quote;
+    private final Charset charset;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowLimit;
+    private long position;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private boolean[] fieldQuoted = new boolean[16];
+    private int fieldCount;
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Otwiera i mapuje plik do odczytu.
+     *
+     * @param file plik CSV
+     * @param separator separator pól (znak ASCII)
+     * @throws IOException jeśli nie uda się otworzyć pliku
+     */
+    public MappedCSVReader(File file, char separator) throws IOException {
+        this(file, CSVDialect.of(separator));
+    }
+
+    /**
+     * Otwiera i mapuje plik do odczytu.
+     *
+     * @param file plik CSV
+     * @param dialect dialekt pliku (separator i cudzysłów ASCII, kodowanie zgodne z ASCII)
+     * @throws IOException jeśli nie uda się otworzyć pliku
+     */
+    public MappedCSVReader(File file, CSVDialect dialect) throws IOException {
+        this(openChannel(file, dialect), dialect);
+    }
+
+    /**
+     * Tworzy czytnik na otwartym kanale. Odczyt zaczyna się za znacznikiem BOM,
+     * a zamknięcie czytnika zamyka kanał.
+     *
+     * @param channel kanał pliku
+     * @param dialect dialekt pliku (separator i cudzysłów ASCII, kodowanie zgodne z ASCII)
+     * @throws IOException jeśli nie uda się odczytać rozmiaru pliku
+     */
+    public MappedCSVReader(FileChannel channel, CSVDialect dialect) throws IOException {
+        checkDialect(dialect);
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.separator = (byte) dialect.separator();
+        this.quote = (byte) dialect.quote();
+        this.charset = dialect.charset();
+        this.position = dialect.bomLength();
+    }
+
+    private static FileChannel openChannel(File file, CSVDialect dialect) throws IOException {
+        checkDialect(dialect);
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    private static void checkDialect(CSVDialect dialect) {
+        if (!dialect.isByteOriented()) {
+            throw new IllegalArgumentException("Separator i cudzysłów muszą być znakami ASCII, a kodowanie zgodne z ASCII: "
+                    + dialect.separator() + " " + dialect.quote() + " " + dialect.charset());
+        }
+    }
+
+    @Override
+    public boolean nextRecord() throws IOException {
+        if (position >= fileSize) {
+            return false;
+        }
+        if (window == null || position < windowStart || position >= windowStart + windowLimit) {
+            map(position);
+        }
+        if (scanRecord()) {
+            return true;
+        }
+        // Rekord nie mieści się w bieżącym oknie - zmapuj okno od początku rekordu
+        map(position);
+        if (scanRecord()) {
+            return true;
+        }
+        throw new IOException("Rekord w pozycji " + position + " przekracza maksymalny rozmiar okna");
+    }
+
+    /**
+     * Mapuje okno pliku rozpoczynające się we wskazanej pozycji.
+     *
+     * @param start pozycja początku okna
+     * @throws IOException jeśli mapowanie się nie powiedzie
+     */
+    private void map(long start) throws IOException {
+        long size = Math.min(WINDOW_SIZE, fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        windowStart = start;
+        windowLimit = (int) size;
+    }
+
+    /**
+     * Wyszukuje granice pól bieżącego rekordu w zmapowanym oknie.
+     * Pola w cudzysłowach mogą zawierać separatory i znaki nowej linii (RFC 4180).
+     *
+     * @return true jeśli rekord zakończył się w oknie (lub na końcu pliku)
+     */
+    private boolean scanRecord() {
+        boolean lastWindow = windowStart + windowLimit >= fileSize;
+        int i = (int) (position - windowStart);
+        fieldCount = 0;
+        while (true) {
+            int start = i;
+            boolean quoted = i < windowLimit && window.get(i) == quote;
+            if (quoted) {
+                // Pomiń zawartość cudzysłowu łącznie z podwojonymi cudzysłowami
+                i++;
+                while (i < windowLimit) {
+                    if (window.get(i) == quote) {
+                        if (i + 1 == windowLimit && !lastWindow) {
+                            return false;
+                        }
+                        if (i + 1 < windowLimit && window.get(i + 1) == quote) {
+                            i += 2;
+                            continue;
+                        }
+                        i++;
+                        break;
+                    }
+                    i++;
+                }
+            }
+            while (i < windowLimit) {
+                byte b = window.get(i);
+                if (b == separator) {
+                    break;
+                }
+                if (b == '\n' || b == '\r') {
+                    int next = i + 1;
+                    if (b == '\r') {
+                        if (next == windowLimit && !lastWindow) {
+                            return false; // '\n' może leżeć w następnym oknie
+                        }
+                        if (next < windowLimit && window.get(next) == '\n') {
+                            next++;
+                        }
+                    }
+                    addField(start, i, quoted);
+                    position = windowStart + next;
+                    return true;
+                }
+                i++;
+            }
+            if (i == windowLimit) {
+                if (!lastWindow) {
+                    return false;
+                }
+                addField(start, windowLimit, quoted);
+                position = fileSize;
+                return true;
+            }
+            addField(start, i, quoted);
+            i++;
+        }
+    }
+
+    /**
+     * Zapamiętuje granice kolejnego pola.
+     *
+     * @param start początek pola w oknie
+     * @param end koniec pola w oknie (wyłącznie)
+     * @param quoted czy pole rozpoczyna się cudzysłowem
+     */
+    private void addField(int start, int end, boolean quoted) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = java.util.Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = java.util.Arrays.copyOf(fieldEnds, fieldCount * 2);
+            fieldQuoted = java.util.Arrays.copyOf(fieldQuoted, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldQuoted[fieldCount] = quoted;
+        fieldCount++;
+    }
+
+    @Override
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    @Override
+    public String getField(int index) {
+        int length = fieldEnds[index] - fieldStarts[index];
+        if (length == 0) {
+            return "";
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        window.get(fieldStarts[index], scratch, 0, length);
+        String raw = new String(scratch, 0, length, charset);
+        return fieldQuoted[index] ? CSVTokenizer.unquote(raw, (char) quote) : raw;
+    }
+
+    /**
+     * Ustawia pozycję, od której zostanie odczytany następny rekord.
+     * Pozycja musi wskazywać początek rekordu.
+     *
+     * @param position pozycja w pliku
+     */
+    public void seek(long position) {
+        this.position = position;
+        fieldCount = 0;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,445 @@
+package csvwrangler;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pomiary operacji kontrolera: czas trwania, liczba przetworzonych wierszy i bajtów,
+ * alokacja pamięci (według {@link java.lang.management.ThreadMXBean}), czas blokowania
+ * EDT oraz trafienia w pamięci podręczne i indeksy. Ostatnie operacje dostępne są
+ * w panelu wydajności, przez JMX ({@link MetricsMXBean}) i - jeśli nagrywanie JFR
+ * obejmuje zdarzenie {@value OperationEvent#NAME} - jako zdarzenia JFR.
+ * <p>
+ * Pomiary są domyślnie wyłączone (włącza je właściwość systemowa
+ * {@code csvwrangler.metrics=true}, panel wydajności lub JMX). Wyłączone nie kosztują
+ * prawie nic: {@link #start(String)} zwraca wspólną, pustą operację, a liczniki
+ * trafień sprawdzają tylko jedno pole.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public final class Metrics {
+    /** Liczba zapamiętanych ostatnich operacji */
+    static final int HISTORY_SIZE = 200;
+    /** Nazwa MBeana w serwerze platformy */
+    public static final String MBEAN_NAME = "csvwrangler:type=Metrics";
+
+    private static volatile boolean enabled = Boolean.getBoolean("csvwrangler.metrics");
+    /** Liczba trwających mierzonych operacji - liczniki trafień działają tylko w ich trakcie */
+    private static volatile int active;
+    private static final LongAdder cacheHits = new LongAdder();
+    private static final LongAdder cacheMisses = new LongAdder();
+    private static final ArrayDeque<Record> history = new ArrayDeque<>();
+    private static final Map<String, Summary> summaries = new LinkedHashMap<>();
+    private static boolean registered;
+
+    /** Pusta operacja zwracana, gdy pomiary są wyłączone */
+    static final Operation NONE = new Operation();
+
+    /**
+     * Pomiar zakończonej operacji.
+     *
+     * @param operation nazwa operacji
+     * @param startMillis czas rozpoczęcia (milisekundy od epoki)
+     * @param wallNanos czas trwania w nanosekundach
+     * @param edtNanos czas pracy w EDT (blokowania interfejsu) w nanosekundach
+     * @param rows liczba przetworzonych wierszy
+     * @param bytes liczba przetworzonych bajtów
+     * @param allocatedBytes liczba bajtów zaalokowanych przez wszystkie wątki w trakcie operacji
+     *                       (-1, jeśli JVM tego nie mierzy)
+     * @param cacheHits liczba trafień w pamięci podręczne i indeksy
+     * @param cacheMisses liczba chybień (budowa indeksu, odczyt strony z pliku, sortowanie)
+     * @param outcome wynik operacji
+     */
+    public record Record(String operation, long startMillis, long wallNanos, long edtNanos, long rows,
+                         long bytes, long allocatedBytes, long cacheHits, long cacheMisses, String outcome) {
+        /**
+         * Zwraca udział trafień w pamięciach podręcznych.
+         *
+         * @return udział trafień (0-1) lub -1, jeśli operacja z nich nie korzystała
+         */
+        public double cacheHitRate() {
+            long lookups = cacheHits + cacheMisses;
+            return lookups > 0 ? (double) cacheHits / lookups : -1;
+        }
+
+        /**
+         * Opisuje pomiar w jednym wierszu.
+         *
+         * @return opis pomiaru
+         */
+        public String describe() {
+            StringBuilder text = new StringBuilder(operation)
+                    .append(" | ").append(wallNanos / 1_000_000).append(" ms")
+                    .append(" | EDT ").append(edtNanos / 1_000_000).append(" ms")
+                    .append(" | wierszy ").append(rows)
+                    .append(" | ").append(bytes / (1024 * 1024)).append(" MB");
+            if (allocatedBytes >= 0) {
+                text.append(" | alokacja ").append(allocatedBytes / (1024 * 1024)).append(" MB");
+            }
+            double hitRate = cacheHitRate();
+            if (hitRate >= 0) {
+                text.append(" | trafienia ").append(Math.round(hitRate * 100)).append("%");
+            }
+            return text.append(" | ").append(outcome).toString();
+        }
+    }
+
+    /**
+     * Sumy pomiarów operacji o tej samej nazwie.
+     */
+    private static final class Summary {
+        long count;
+        long wallNanos;
+        long rows;
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Sprawdza czy pomiary są włączone.
+     *
+     * @return true jeśli operacje są mierzone
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Włącza lub wyłącza pomiary. Dotyczy operacji rozpoczynanych później.
+     *
+     * @param enabled true - mierz operacje
+     */
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * Rozpoczyna pomiar operacji.
+     *
+     * @param name nazwa operacji
+     * @return mierzona operacja lub pusta operacja, jeśli pomiary są wyłączone
+     *         i nie trwa nagrywanie JFR
+     */
+    public static Operation start(String name) {
+        OperationEvent event = new OperationEvent();
+        if (!enabled && !event.isEnabled()) {
+            return NONE;
+        }
+        return new Operation(name, event);
+    }
+
+    /**
+     * Odnotowuje trafienie w pamięć podręczną lub istniejący indeks.
+     */
+    static void cacheHit() {
+        if (active > 0) {
+            cacheHits.increment();
+        }
+    }
+
+    /**
+     * Odnotowuje chybienie - budowę indeksu, odczyt z pliku lub obliczenie wyniku.
+     */
+    static void cacheMiss() {
+        if (active > 0) {
+            cacheMisses.increment();
+        }
+    }
+
+    /**
+     * Zwraca ostatnie operacje, od najnowszej.
+     *
+     * @return pomiary co najwyżej {@value #HISTORY_SIZE} ostatnich operacji
+     */
+    public static synchronized List<Record> recent() {
+        List<Record> records = new ArrayList<>(history);
+        return records.reversed();
+    }
+
+    /**
+     * Zwraca liczbę i łączny czas operacji według nazwy.
+     *
+     * @return dla każdej nazwy: {liczba operacji, łączny czas w nanosekundach, łączna liczba wierszy}
+     */
+    static synchronized Map<String, long[]> summaries() {
+        Map<String, long[]> result = new LinkedHashMap<>();
+        summaries.forEach((name, summary) -> result.put(name,
+                new long[]{summary.count, summary.wallNanos, summary.rows}));
+        return result;
+    }
+
+    /**
+     * Zwraca łączną liczbę trafień w pamięci podręczne w mierzonych operacjach.
+     *
+     * @return liczba trafień
+     */
+    public static long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Zwraca łączną liczbę chybień w mierzonych operacjach.
+     *
+     * @return liczba chybień
+     */
+    public static long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * Usuwa zebrane pomiary.
+     */
+    public static synchronized void clear() {
+        history.clear();
+        summaries.clear();
+        cacheHits.reset();
+        cacheMisses.reset();
+    }
+
+    /**
+     * Rejestruje {@link MetricsMXBean} w serwerze MBean platformy (tylko raz).
+     *
+     * @return true jeśli MBean jest zarejestrowany
+     */
+    public static synchronized boolean registerMBean() {
+        if (!registered) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MBean(), new ObjectName(MBEAN_NAME));
+                registered = true;
+            } catch (JMException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static synchronized void record(Record record) {
+        if (history.size() == HISTORY_SIZE) {
+            history.removeFirst();
+        }
+        history.addLast(record);
+        Summary summary = summaries.computeIfAbsent(record.operation(), name -> new Summary());
+        summary.count++;
+        summary.wallNanos += record.wallNanos();
+        summary.rows += record.rows();
+    }
+
+    private static synchronized void activate(int delta) {
+        active += delta;
+    }
+
+    /**
+     * Łączna alokacja wszystkich wątków - bean ładowany dopiero przy pierwszym pomiarze.
+     */
+    private static final class Allocation {
+        private static final java.lang.management.ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+        static long totalAllocatedBytes() {
+            if (THREADS instanceof com.sun.management.ThreadMXBean threads && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getTotalThreadAllocatedBytes();
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Mierzona operacja. Wiersze, bajty i czas EDT dopisuje kod operacji,
+     * a pomiar zapisywany jest przy {@link #end(String)} lub {@link #close()}.
+     * Metody są bezpieczne do wywołania z dowolnego wątku.
+     */
+    public static final class Operation implements AutoCloseable {
+        private final String name;
+        private final OperationEvent event;
+        private final long startNanos;
+        private final long startMillis;
+        private final long startAllocated;
+        private final long startHits;
+        private final long startMisses;
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder edtNanos = new LongAdder();
+        private boolean blocking;
+        private boolean ended;
+
+        private Operation() {
+            name = null;
+            event = null;
+            startNanos = startMillis = startAllocated = startHits = startMisses = 0;
+            ended = true;
+        }
+
+        private Operation(String name, OperationEvent event) {
+            this.name = name;
+            this.event = event;
+            activate(1);
+            startHits = cacheHits.sum();
+            startMisses = cacheMisses.sum();
+            startAllocated = Allocation.totalAllocatedBytes();
+            startMillis = System.currentTimeMillis();
+            event.begin();
+            startNanos = System.nanoTime();
+        }
+
+        /**
+         * Oznacza operację wykonywaną w całości w EDT - cały jej czas liczony jest
+         * jako blokowanie interfejsu.
+         *
+         * @return ta operacja
+         */
+        public Operation blocking() {
+            blocking = true;
+            return this;
+        }
+
+        /**
+         * Dodaje przetworzone wiersze.
+         *
+         * @param count liczba wierszy
+         * @return ta operacja
+         */
+        public Operation rows(long count) {
+            if (!ended) {
+                rows.add(count);
+            }
+            return this;
+        }
+
+        /**
+         * Dodaje przetworzone bajty.
+         *
+         * @param count liczba bajtów
+         * @return ta operacja
+         */
+        public Operation bytes(long count) {
+            if (!ended) {
+                bytes.add(count);
+            }
+            return this;
+        }
+
+        /**
+         * Dodaje czas pracy w EDT.
+         *
+         * @param nanos czas w nanosekundach
+         */
+        public void edt(long nanos) {
+            if (!ended) {
+                edtNanos.add(nanos);
+            }
+        }
+
+        /**
+         * Kończy pomiar (kolejne wywołania nie mają skutku).
+         *
+         * @param outcome wynik operacji, np. "ok", "przerwano", "błąd"
+         */
+        public void end(String outcome) {
+            synchronized (this) {
+                if (ended) {
+                    return;
+                }
+                ended = true;
+            }
+            long wall = System.nanoTime() - startNanos;
+            long allocated = startAllocated >= 0 ? Allocation.totalAllocatedBytes() - startAllocated : -1;
+            long hits = cacheHits.sum() - startHits;
+            long misses = cacheMisses.sum() - startMisses;
+            activate(-1);
+            Record record = new Record(name, startMillis, wall, blocking ? wall : edtNanos.sum(), rows.sum(),
+                    bytes.sum(), allocated, hits, misses, outcome);
+            if (enabled) {
+                record(record);
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = name;
+                event.rows = record.rows();
+                event.bytes = record.bytes();
+                event.allocated = record.allocatedBytes();
+                event.edtTime = record.edtNanos();
+                event.cacheHits = hits;
+                event.cacheMisses = misses;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+
+        /**
+         * Kończy pomiar z wynikiem "ok", jeśli nie zakończono go wcześniej.
+         */
+        @Override
+        public void close() {
+            end("ok");
+        }
+    }
+
+    /**
+     * Implementacja {@link MetricsMXBean}.
+     */
+    private static final class MBean implements MetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            Metrics.setEnabled(enabled);
+        }
+
+        @Override
+        public long getOperationCount() {
+            return summaries().values().stream().mapToLong(summary -> summary[0]).sum();
+        }
+
+        @Override
+        public String[] getRecentOperations() {
+            return recent().stream().map(Record::describe).toArray(String[]::new);
+        }
+
+        @Override
+        public Map<String, Long> getOperationCounts() {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            summaries().forEach((name, summary) -> counts.put(name, summary[0]));
+            return counts;
+        }
+
+        @Override
+        public Map<String, Long> getAverageMillis() {
+            Map<String, Long> averages = new LinkedHashMap<>();
+            summaries().forEach((name, summary) -> averages.put(name, summary[1] / summary[0] / 1_000_000));
+            return averages;
+        }
+
+        @Override
+        public long getCacheHits() {
+            return Metrics.getCacheHits();
+        }
+
+        @Override
+        public long getCacheMisses() {
+            return Metrics.getCacheMisses();
+        }
+
+        @Override
+        public double getCacheHitRate() {
+            long hits = getCacheHits();
+            long lookups = hits + getCacheMisses();
+            return lookups > 0 ? (double) hits / lookups : 0;
+        }
+
+        @Override
+        public void reset() {
+            clear();
+        }
+    }
+}
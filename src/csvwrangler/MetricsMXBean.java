@@ -0,0 +1,62 @@
+package csvwrangler;
+
+import java.util.Map;
+
+/**
+ * Pomiary operacji ({@link Metrics}) udostępniane przez JMX pod nazwą
+ * {@value Metrics#MBEAN_NAME}, np. w JConsole lub VisualVM.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public interface MetricsMXBean {
+    /**
+     * @return true jeśli operacje są mierzone
+     */
+    boolean isEnabled();
+
+    /**
+     * @param enabled true - mierz operacje
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return liczba zmierzonych operacji
+     */
+    long getOperationCount();
+
+    /**
+     * @return opisy ostatnich operacji, od najnowszej
+     */
+    String[] getRecentOperations();
+
+    /**
+     * @return liczba operacji według nazwy
+     */
+    Map<String, Long> getOperationCounts();
+
+    /**
+     * @return średni czas operacji w milisekundach według nazwy
+     */
+    Map<String, Long> getAverageMillis();
+
+    /**
+     * @return liczba trafień w pamięci podręczne i indeksy
+     */
+    long getCacheHits();
+
+    /**
+     * @return liczba chybień (budowa indeksu, odczyt strony, sortowanie)
+     */
+    long getCacheMisses();
+
+    /**
+     * @return udział trafień (0-1)
+     */
+    double getCacheHitRate();
+
+    /**
+     * Usuwa zebrane pomiary.
+     */
+    void reset();
+}
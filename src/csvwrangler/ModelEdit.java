@@ -0,0 +1,53 @@
+package csvwrangler;
+
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+
+/**
+ * Zmiana modelu tabeli, którą można cofnąć i ponowić.
+ * Przechowuje migawki stanu sprzed i po zmianie - migawki współdzielą
+ * niezmienione bloki kolumn, więc każda zmiana zajmuje pamięć proporcjonalną
+ * do liczby zmodyfikowanych bloków.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public class ModelEdit extends AbstractUndoableEdit {
+    private final CSVTableModel model;
+    private final String name;
+    private final CSVTableModel.Snapshot before;
+    private final CSVTableModel.Snapshot after;
+
+    /**
+     * Tworzy zmianę modelu.
+     *
+     * @param model model, którego dotyczy zmiana
+     * @param name nazwa zmiany
+     * @param before migawka stanu sprzed zmiany
+     * @param after migawka stanu po zmianie
+     */
+    public ModelEdit(CSVTableModel model, String name, CSVTableModel.Snapshot before, CSVTableModel.Snapshot after) {
+        this.model = model;
+        this.name = name;
+        this.before = before;
+        this.after = after;
+    }
+
+    @Override
+    public void undo() throws CannotUndoException {
+        super.undo();
+        model.restore(before);
+    }
+
+    @Override
+    public void redo() throws CannotRedoException {
+        super.redo();
+        model.restore(after);
+    }
+
+    @Override
+    public String getPresentationName() {
+        return name;
+    }
+}
@@ -0,0 +1,52 @@
+package csvwrangler;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Zdarzenie JFR zapisywane po zakończeniu mierzonej operacji ({@link Metrics.Operation}).
+ * Nagrywanie włącza się np. opcją
+ * {@code -XX:StartFlightRecording:settings=profile,+csvwrangler.Operation#enabled=true}.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+@Name(OperationEvent.NAME)
+@Label("Operacja CSV Wrangler")
+@Category("CSV Wrangler")
+@Description("Operacja kontrolera z liczbą przetworzonych wierszy, alokacją i czasem blokowania EDT")
+class OperationEvent extends jdk.jfr.Event {
+    /** Nazwa zdarzenia */
+    static final String NAME = "csvwrangler.Operation";
+
+    @Label("Operacja")
+    String operation;
+
+    @Label("Wiersze")
+    long rows;
+
+    @Label("Bajty")
+    @DataAmount
+    long bytes;
+
+    @Label("Alokacja")
+    @DataAmount
+    long allocated;
+
+    @Label("Czas EDT")
+    @Timespan(Timespan.NANOSECONDS)
+    long edtTime;
+
+    @Label("Trafienia w pamięć podręczną")
+    long cacheHits;
+
+    @Label("Chybienia")
+    long cacheMisses;
+
+    @Label("Wynik")
+    String outcome;
+}
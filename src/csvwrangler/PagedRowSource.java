@@ -0,0 +1,219 @@
+package csvwrangler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * Źródło wierszy dla modelu w trybie stronicowanym - dla plików większych niż pamięć.
+ * W pamięci przechowywany jest jedynie rzadki indeks: pozycja w pliku co
+ * {@link #PAGE_SIZE}-tego rekordu. Strony wierszy wczytywane są na żądanie
+ * i trzymane w pamięci podręcznej LRU o konfigurowalnym rozmiarze.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public class PagedRowSource {
+    /** Liczba wierszy na stronie */
+    public static final int PAGE_SIZE = 1024;
+    /** Domyślna liczba stron w pamięci podręcznej (można ją zmienić właściwością csvwrangler.pageCacheSize) */
+    public static final int DEFAULT_CACHE_PAGES = Integer.getInteger("csvwrangler.pageCacheSize", 64);
+
+    private final File file;
+    private final CSVDialect dialect;
+    private final MappedCSVReader reader;
+    private final String[] columnNames;
+    private final long[] pageOffsets;
+    private final int rowCount;
+    private final Map<Integer, String[][]> cache;
+
+    /**
+     * Tworzy źródło na podstawie zbudowanego indeksu.
+     *
+     * @param file plik CSV
+     * @param dialect dialekt pliku
+     * @param reader czytnik pliku
+     * @param columnNames nazwy kolumn
+     * @param pageOffsets pozycje początków stron w pliku
+     * @param rowCount liczba wierszy danych
+     * @param cachePages maksymalna liczba stron w pamięci podręcznej
+     */
+    private PagedRowSource(File file, CSVDialect dialect, MappedCSVReader reader, String[] columnNames,
+                           long[] pageOffsets, int rowCount, int cachePages) {
+        this.file = file;
+        this.dialect = dialect;
+        this.reader = reader;
+        this.columnNames = columnNames;
+        this.pageOffsets = pageOffsets;
+        this.rowCount = rowCount;
+        this.cache = new LinkedHashMap<>(cachePages * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String[][]> eldest) {
+                return size() > cachePages;
+            }
+        };
+    }
+
+    /**
+     * Wykrywa dialekt pliku ({@link CSVDialect#sniff(FileChannel)}), indeksuje plik
+     * w jednym przebiegu i tworzy źródło wierszy.
+     *
+     * @param file plik CSV w kodowaniu UTF-8 lub jednobajtowym
+     * @param cachePages maksymalna liczba stron w pamięci podręcznej
+     * @param progress odbiorca liczby przetworzonych bajtów (wywoływany co stronę)
+     * @param cancelled sprawdzane co stronę - zwrócenie true przerywa indeksowanie
+     * @return źródło wierszy lub null, jeśli indeksowanie przerwano
+     * @throws IOException jeśli nie uda się odczytać pliku
+     */
+    public static PagedRowSource index(File file, int cachePages, LongConsumer progress, BooleanSupplier cancelled)
+            throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        MappedCSVReader reader;
+        CSVDialect dialect;
+        try {
+            dialect = CSVDialect.sniff(channel);
+            if (!dialect.isByteOriented()) {
+                throw new IOException("Tryb stronicowany wymaga pliku w kodowaniu UTF-8 lub jednobajtowym (wykryto "
+                        + dialect.charset() + ")");
+            }
+            reader = new MappedCSVReader(channel, dialect);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        try {
+            String[] columnNames = new String[0];
+            long firstRecord = reader.getBytesRead();
+            if (reader.nextRecord()) {
+                if (dialect.hasHeader()) {
+                    columnNames = reader.toArray();
+                } else {
+                    columnNames = new String[reader.getFieldCount()];
+                    for (int i = 0; i < columnNames.length; i++) {
+                        columnNames[i] = "Kol " + (i + 1);
+                    }
+                    reader.seek(firstRecord);
+                }
+            }
+
+            long[] offsets = new long[16];
+            int pages = 0;
+            int rows = 0;
+            long recordStart = reader.getBytesRead();
+            while (reader.nextRecord()) {
+                if (rows % PAGE_SIZE == 0) {
+                    if (cancelled.getAsBoolean()) {
+                        reader.close();
+                        return null;
+                    }
+                    if (pages == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, pages * 2);
+                    }
+                    offsets[pages++] = recordStart;
+                    progress.accept(recordStart);
+                }
+                rows++;
+                recordStart = reader.getBytesRead();
+            }
+            return new PagedRowSource(file, dialect, reader, columnNames, Arrays.copyOf(offsets, pages), rows, cachePages);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Zwraca plik źródłowy.
+     *
+     * @return plik CSV
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Zwraca wykryty dialekt pliku.
+     *
+     * @return dialekt pliku
+     */
+    public CSVDialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * Zwraca nazwy kolumn.
+     *
+     * @return nazwy kolumn
+     */
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    /**
+     * Zwraca liczbę wierszy danych.
+     *
+     * @return liczba wierszy
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Zwraca liczbę kolumn.
+     *
+     * @return liczba kolumn
+     */
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    /**
+     * Zwraca wartość komórki, wczytując w razie potrzeby stronę z pliku.
+     *
+     * @param row indeks wiersza
+     * @param column indeks kolumny
+     * @return wartość komórki lub null, jeśli wiersz ma mniej pól
+     */
+    public synchronized String getValueAt(int row, int column) {
+        String[] values = page(row / PAGE_SIZE)[row % PAGE_SIZE];
+        return column < values.length ? values[column] : null;
+    }
+
+    /**
+     * Zwraca stronę z pamięci podręcznej lub wczytuje ją z pliku.
+     *
+     * @param page numer strony
+     * @return wiersze strony
+     */
+    private String[][] page(int page) {
+        String[][] rows = cache.get(page);
+        if (rows != null) {
+            Metrics.cacheHit();
+        } else {
+            Metrics.cacheMiss();
+            rows = new String[Math.min(PAGE_SIZE, rowCount - page * PAGE_SIZE)][];
+            try {
+                reader.seek(pageOffsets[page]);
+                for (int i = 0; i < rows.length && reader.nextRecord(); i++) {
+                    rows[i] = reader.toArray();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Błąd odczytu strony " + page + " pliku " + file.getName(), e);
+            }
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] == null) {
+                    rows[i] = new String[0]; // plik skrócono po zindeksowaniu
+                }
+            }
+            cache.put(page, rows);
+        }
+        return rows;
+    }
+}
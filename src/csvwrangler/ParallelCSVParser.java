@@ -0,0 +1,374 @@
+package csvwrangler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Równoległy parser dużych plików CSV oparty o ForkJoinPool.
+ * Plik dzielony jest na zakresy bajtów, a następnie:
+ * <ol>
+ *     <li>równolegle zliczane są cudzysłowy w każdym zakresie i zapamiętywane pierwsze
+ *     znaki nowej linii przy parzystej i nieparzystej liczbie cudzysłowów,</li>
+ *     <li>na podstawie sum prefiksowych parzystości ustalane są prawdziwe granice rekordów
+ *     (znak nowej linii wewnątrz cudzysłowu nie jest granicą),</li>
+ *     <li>zakresy są parsowane równolegle, a wyniki przekazywane odbiorcy w oryginalnej
+ *     kolejności wierszy.</li>
+ * </ol>
+ * Jeśli zakres nie kończy się dokładnie na wyznaczonej granicy (np. przez niestandardowe
+ * cudzysłowy), dalsza część pliku parsowana jest sekwencyjnie.
+ * Parser może odczytywać tylko wybrane kolumny - pola pozostałych są pomijane bez dekodowania.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public class ParallelCSVParser {
+    /** Minimalny rozmiar pliku, od którego opłaca się parsowanie równoległe */
+    public static final long MIN_PARALLEL_SIZE = 128L * 1024 * 1024;
+    private static final long MIN_RANGE_SIZE = 16L * 1024 * 1024;
+    private static final long MAX_RANGE_SIZE = 1L << 30;
+    private static final int SEQUENTIAL_BATCH_SIZE = 16_384;
+
+    private final File file;
+    private final CSVDialect dialect;
+    private final ForkJoinPool pool;
+    private final int[] projection;
+
+    /**
+     * Odbiorca kolejnych paczek wierszy (wywoływany w kolejności wierszy w pliku).
+     */
+    @FunctionalInterface
+    public interface BatchConsumer {
+        /**
+         * Przyjmuje paczkę wierszy.
+         *
+         * @param rows sparsowane wiersze
+         * @param position pozycja w pliku za ostatnim wierszem paczki
+         * @throws InterruptedException jeśli odbiorca został przerwany
+         */
+        void accept(List<String[]> rows, long position) throws InterruptedException;
+    }
+
+    /**
+     * Tworzy parser korzystający ze wspólnej puli ForkJoinPool.
+     *
+     * @param file plik CSV
+     * @param separator separator pól (znak ASCII)
+     */
+    public ParallelCSVParser(File file, char separator) {
+        this(file, CSVDialect.of(separator));
+    }
+
+    /**
+     * Tworzy parser korzystający ze wspólnej puli ForkJoinPool.
+     *
+     * @param file plik CSV
+     * @param dialect dialekt pliku (zob. {@link CSVDialect#isByteOriented()})
+     */
+    public ParallelCSVParser(File file, CSVDialect dialect) {
+        this(file, dialect, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tworzy parser.
+     *
+     * @param file plik CSV
+     * @param separator separator pól (znak ASCII)
+     * @param pool pula wątków wykonująca parsowanie
+     */
+    public ParallelCSVParser(File file, char separator, ForkJoinPool pool) {
+        this(file, CSVDialect.of(separator), pool);
+    }
+
+    /**
+     * Tworzy parser.
+     *
+     * @param file plik CSV
+     * @param dialect dialekt pliku (zob. {@link CSVDialect#isByteOriented()})
+     * @param pool pula wątków wykonująca parsowanie
+     */
+    public ParallelCSVParser(File file, CSVDialect dialect, ForkJoinPool pool) {
+        this(file, dialect, pool, null);
+    }
+
+    /**
+     * Tworzy parser odczytujący tylko wybrane kolumny.
+     *
+     * @param file plik CSV
+     * @param dialect dialekt pliku (zob. {@link CSVDialect#isByteOriented()})
+     * @param pool pula wątków wykonująca parsowanie
+     * @param projection indeksy odczytywanych pól - wiersze zawierają tylko je, w tej kolejności
+     *                   (null - wszystkie pola)
+     */
+    public ParallelCSVParser(File file, CSVDialect dialect, ForkJoinPool pool, int[] projection) {
+        this.file = file;
+        this.dialect = dialect;
+        this.pool = pool;
+        this.projection = projection;
+    }
+
+    /**
+     * Sprawdza czy plik warto parsować równolegle.
+     *
+     * @param file plik CSV
+     * @param separator separator pól
+     * @return true dla dużych plików na maszynach wielordzeniowych
+     */
+    public static boolean isWorthParallel(File file, char separator) {
+        return isWorthParallel(file, CSVDialect.of(separator));
+    }
+
+    /**
+     * Sprawdza czy plik warto parsować równolegle.
+     *
+     * @param file plik CSV
+     * @param dialect dialekt pliku
+     * @return true dla dużych plików w kodowaniu zgodnym z ASCII na maszynach wielordzeniowych
+     */
+    public static boolean isWorthParallel(File file, CSVDialect dialect) {
+        return dialect.isByteOriented() && file.length() >= MIN_PARALLEL_SIZE
+                && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    /**
+     * Parsuje plik, przekazując wiersze odbiorcy w oryginalnej kolejności.
+     *
+     * @param consumer odbiorca paczek wierszy
+     * @param cancelled sprawdzane między zakresami - zwrócenie true przerywa parsowanie
+     * @return liczba sparsowanych rekordów
+     * @throws IOException jeśli nie uda się odczytać pliku
+     * @throws InterruptedException jeśli wątek zostanie przerwany
+     */
+    public long parse(BatchConsumer consumer, BooleanSupplier cancelled) throws IOException, InterruptedException {
+        long[] starts = findRecordBoundaries();
+        long fileSize = file.length();
+        int window = Math.max(2, pool.getParallelism() * 2);
+        Deque<ForkJoinTask<RangeResult>> pending = new ArrayDeque<>();
+        long records = 0;
+        int next = 0;
+
+        for (int i = 0; i < starts.length; i++) {
+            while (next < starts.length && pending.size() < window) {
+                long start = starts[next];
+                long end = next + 1 < starts.length ? starts[next + 1] : fileSize;
+                pending.add(pool.submit(() -> parseRange(start, end)));
+                next++;
+            }
+            RangeResult result = join(pending.poll());
+            long expectedEnd = i + 1 < starts.length ? starts[i + 1] : fileSize;
+            if (cancelled.getAsBoolean()) {
+                pending.forEach(task -> task.cancel(true));
+                return records;
+            }
+            if (result.end() != expectedEnd) {
+                // Granica wyznaczona błędnie - pozostałą część parsujemy sekwencyjnie
+                pending.forEach(task -> task.cancel(true));
+                return records + parseSequentially(starts[i], consumer, cancelled);
+            }
+            records += result.rows().size();
+            consumer.accept(result.rows(), result.end());
+        }
+        return records;
+    }
+
+    /**
+     * Czeka na wynik zadania, przekazując wyjątki wejścia-wyjścia.
+     *
+     * @param task zadanie
+     * @return wynik zadania
+     * @throws IOException jeśli zadanie zakończyło się błędem odczytu
+     * @throws InterruptedException jeśli wątek zostanie przerwany
+     */
+    private static RangeResult join(ForkJoinTask<RangeResult> task) throws IOException, InterruptedException {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Wynik parsowania zakresu.
+     *
+     * @param rows wiersze zakresu
+     * @param end pozycja, na której zakończyło się parsowanie
+     */
+    private record RangeResult(List<String[]> rows, long end) {
+    }
+
+    /**
+     * Parsuje rekordy rozpoczynające się w zakresie [start, end).
+     *
+     * @param start pozycja początku pierwszego rekordu
+     * @param end granica zakresu
+     * @return wiersze i pozycja końca ostatniego rekordu
+     * @throws IOException jeśli nie uda się odczytać pliku
+     */
+    private RangeResult parseRange(long start, long end) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (MappedCSVReader reader = new MappedCSVReader(file, dialect)) {
+            reader.seek(start);
+            while (reader.getBytesRead() < end && reader.nextRecord()) {
+                rows.add(reader.toArray(projection));
+            }
+            return new RangeResult(rows, reader.getBytesRead());
+        }
+    }
+
+    /**
+     * Parsuje sekwencyjnie plik od wskazanej pozycji do końca.
+     *
+     * @param start pozycja początku rekordu
+     * @param consumer odbiorca paczek wierszy
+     * @param cancelled warunek przerwania
+     * @return liczba sparsowanych rekordów
+     * @throws IOException jeśli nie uda się odczytać pliku
+     * @throws InterruptedException jeśli wątek zostanie przerwany
+     */
+    private long parseSequentially(long start, BatchConsumer consumer, BooleanSupplier cancelled)
+            throws IOException, InterruptedException {
+        long records = 0;
+        try (MappedCSVReader reader = new MappedCSVReader(file, dialect)) {
+            reader.seek(start);
+            List<String[]> rows = new ArrayList<>(SEQUENTIAL_BATCH_SIZE);
+            while (!cancelled.getAsBoolean() && reader.nextRecord()) {
+                rows.add(reader.toArray(projection));
+                if (rows.size() == SEQUENTIAL_BATCH_SIZE) {
+                    records += rows.size();
+                    consumer.accept(rows, reader.getBytesRead());
+                    rows = new ArrayList<>(SEQUENTIAL_BATCH_SIZE);
+                }
+            }
+            if (!rows.isEmpty()) {
+                records += rows.size();
+                consumer.accept(rows, reader.getBytesRead());
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Wyznacza pozycje początków rekordów dzielące plik na zakresy.
+     *
+     * @return rosnące pozycje początków zakresów (pierwsza zawsze za znacznikiem BOM)
+     * @throws IOException jeśli nie uda się odczytać pliku
+     */
+    long[] findRecordBoundaries() throws IOException {
+        long fileSize = file.length();
+        int ranges = (int) Math.max(1, Math.min(fileSize / MIN_RANGE_SIZE, pool.getParallelism() * 8L));
+        ranges = (int) Math.max(ranges, fileSize / MAX_RANGE_SIZE + 1);
+        long rangeSize = (fileSize + ranges - 1) / ranges;
+
+        RangeStats[] stats = new RangeStats[ranges];
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            pool.invoke(new QuoteScan(channel, (byte) dialect.quote(), stats, rangeSize, fileSize, 0, ranges));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // Parzystość cudzysłowów przed zakresem mówi, czy zakres zaczyna się wewnątrz cudzysłowu
+        List<Long> starts = new ArrayList<>();
+        starts.add((long) dialect.bomLength());
+        long quotes = 0;
+        for (int i = 0; i < ranges; i++) {
+            if (i > 0) {
+                long boundary = (quotes & 1) == 0 ? stats[i].firstEvenNewline : stats[i].firstOddNewline;
+                if (boundary >= 0 && boundary + 1 < fileSize && boundary + 1 > starts.getLast()) {
+                    starts.add(boundary + 1);
+                }
+            }
+            quotes += stats[i].quotes;
+        }
+        return starts.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Statystyki zakresu potrzebne do wyznaczenia granic rekordów.
+     */
+    private static class RangeStats {
+        long quotes;
+        long firstEvenNewline = -1;
+        long firstOddNewline = -1;
+    }
+
+    /**
+     * Zadanie fork/join zliczające cudzysłowy w zakresach pliku.
+     */
+    private static class QuoteScan extends RecursiveAction {
+        private final FileChannel channel;
+        private final byte quote;
+        private final RangeStats[] stats;
+        private final long rangeSize;
+        private final long fileSize;
+        private final int from;
+        private final int to;
+
+        QuoteScan(FileChannel channel, byte quote, RangeStats[] stats, long rangeSize, long fileSize, int from, int to) {
+            this.channel = channel;
+            this.quote = quote;
+            this.stats = stats;
+            this.rangeSize = rangeSize;
+            this.fileSize = fileSize;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new QuoteScan(channel, quote, stats, rangeSize, fileSize, from, middle),
+                        new QuoteScan(channel, quote, stats, rangeSize, fileSize, middle, to));
+                return;
+            }
+            long start = from * rangeSize;
+            long size = Math.max(0, Math.min(rangeSize, fileSize - start));
+            RangeStats result = new RangeStats();
+            if (size > 0) {
+                try {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                    long quotes = 0;
+                    int limit = (int) size;
+                    int i = 0;
+                    // Szukaj pierwszych znaków nowej linii przy obu parzystościach
+                    for (; i < limit && (result.firstEvenNewline < 0 || result.firstOddNewline < 0); i++) {
+                        byte b = buffer.get(i);
+                        if (b == quote) {
+                            quotes++;
+                        } else if (b == '\n') {
+                            if ((quotes & 1) == 0 && result.firstEvenNewline < 0) {
+                                result.firstEvenNewline = start + i;
+                            } else if ((quotes & 1) == 1 && result.firstOddNewline < 0) {
+                                result.firstOddNewline = start + i;
+                            }
+                        }
+                    }
+                    for (; i < limit; i++) {
+                        if (buffer.get(i) == quote) {
+                            quotes++;
+                        }
+                    }
+                    result.quotes = quotes;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            stats[from] = result;
+        }
+    }
+}
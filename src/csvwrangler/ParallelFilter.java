@@ -0,0 +1,140 @@
+package csvwrangler;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * Równoległe sprawdzanie skompilowanego wyrażenia filtrującego ({@link FilterExpression})
+ * na zakresach wierszy bazowych w puli ForkJoinPool.
+ * Zakresy są wyrównane do 64 wierszy, więc każde zadanie zapisuje własne słowa
+ * wynikowej mapy bitowej i nie wymaga synchronizacji. Jeśli podano mapę kandydatów
+ * (np. bieżący filtr), sprawdzane są tylko wskazane w niej wiersze.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public class ParallelFilter {
+    /** Liczba wierszy sprawdzanych przez jedno zadanie (wielokrotność 64) */
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Tworzy filtr korzystający ze wspólnej puli ForkJoinPool.
+     */
+    public ParallelFilter() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tworzy filtr.
+     *
+     * @param pool pula wątków sprawdzająca zakresy wierszy
+     */
+    public ParallelFilter(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Wyznacza wiersze spełniające wyrażenie.
+     *
+     * @param expression skompilowane wyrażenie
+     * @param rowCount liczba wierszy bazowych
+     * @param candidates wiersze do sprawdzenia (null - wszystkie)
+     * @param cancelled sprawdzane przed każdym zakresem - zwrócenie true przerywa filtrowanie
+     * @param progress odbiorca liczby sprawdzonych wierszy (wywoływany z wątków puli)
+     * @return mapa bitowa pasujących wierszy bazowych
+     */
+    public BitSet evaluate(FilterExpression expression, int rowCount, BitSet candidates,
+                           BooleanSupplier cancelled, LongConsumer progress) {
+        long[] words = new long[(rowCount + 63) >>> 6];
+        long[] mask = candidates != null ? candidates.toLongArray() : null;
+        Range task = new Range(expression.getPredicate(), rowCount, mask, words, 0, words.length,
+                cancelled, progress, new AtomicLong());
+        if (expression.isThreadSafe()) {
+            pool.invoke(task);
+        } else {
+            task.evaluate(); // tryb stronicowany - wiersze czytane są z pliku kolejno
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Zadanie sprawdzające zakres słów mapy bitowej (po 64 wiersze).
+     */
+    private static final class Range extends RecursiveAction {
+        private static final int BLOCK_WORDS = BLOCK_SIZE >>> 6;
+
+        private final FilterExpression.RowPredicate predicate;
+        private final int rowCount;
+        private final long[] mask;
+        private final long[] words;
+        private final int fromWord;
+        private final int toWord;
+        private final BooleanSupplier cancelled;
+        private final LongConsumer progress;
+        private final AtomicLong done;
+
+        Range(FilterExpression.RowPredicate predicate, int rowCount, long[] mask, long[] words,
+              int fromWord, int toWord, BooleanSupplier cancelled, LongConsumer progress, AtomicLong done) {
+            this.predicate = predicate;
+            this.rowCount = rowCount;
+            this.mask = mask;
+            this.words = words;
+            this.fromWord = fromWord;
+            this.toWord = toWord;
+            this.cancelled = cancelled;
+            this.progress = progress;
+            this.done = done;
+        }
+
+        @Override
+        protected void compute() {
+            if (toWord - fromWord <= BLOCK_WORDS) {
+                evaluateBlock(fromWord, toWord);
+                return;
+            }
+            int middle = (fromWord + toWord) >>> 1;
+            invokeAll(new Range(predicate, rowCount, mask, words, fromWord, middle, cancelled, progress, done),
+                    new Range(predicate, rowCount, mask, words, middle, toWord, cancelled, progress, done));
+        }
+
+        /**
+         * Sprawdza cały zakres w bieżącym wątku, blok po bloku.
+         */
+        void evaluate() {
+            for (int w = fromWord; w < toWord; w += BLOCK_WORDS) {
+                evaluateBlock(w, Math.min(toWord, w + BLOCK_WORDS));
+            }
+        }
+
+        private void evaluateBlock(int from, int to) {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            for (int w = from; w < to; w++) {
+                long candidates;
+                if (mask != null) {
+                    candidates = w < mask.length ? mask[w] : 0;
+                } else {
+                    int remaining = rowCount - (w << 6);
+                    candidates = remaining >= 64 ? -1L : (1L << remaining) - 1;
+                }
+                long result = 0;
+                while (candidates != 0) {
+                    int bit = Long.numberOfTrailingZeros(candidates);
+                    if (predicate.test((w << 6) + bit)) {
+                        result |= 1L << bit;
+                    }
+                    candidates &= candidates - 1;
+                }
+                words[w] = result;
+            }
+            progress.accept(done.addAndGet(Math.min(rowCount, (long) to << 6) - ((long) from << 6)));
+        }
+    }
+}
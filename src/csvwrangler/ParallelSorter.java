@@ -0,0 +1,409 @@
+package csvwrangler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Sortowanie wierszy modelu według jednej lub wielu kolumn bez przestawiania danych.
+ * Wynikiem jest permutacja wierszy bazowych (int[]), którą model stosuje jako widok
+ * ({@link CSVTableModel#setSortOrder(List, int[])}).
+ * Klucze kolumn liczbowych, dat, wartości logicznych i kolumn słownikowych
+ * zamieniane są na liczby long zachowujące porządek i sortowane stabilnym
+ * sortowaniem pozycyjnym (radix sort) - bez porównań i bez obiektów.
+ * Jeśli wśród kluczy jest kolumna tekstowa, wiersze sortowane są stabilnym
+ * sortowaniem przez scalanie ({@link IntSort}), równolegle dla dużych tabel.
+ * Puste komórki traktowane są jako największe - przy sortowaniu rosnącym trafiają na koniec.
+ * Wyniki zapamiętywane są w modelu do pierwszej zmiany danych, a kolejność odwrotna
+ * do zapamiętanej (zmiana kierunku wszystkich kluczy) wyznaczana jest z niej w czasie liniowym.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public class ParallelSorter {
+    /** Liczba bitów klucza przetwarzanych w jednym przebiegu sortowania pozycyjnego */
+    private static final int RADIX_BITS = 11;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int DIGIT_MASK = RADIX - 1;
+    /** Klucz pustej komórki przed normalizacją */
+    private static final long NULL_KEY = Long.MAX_VALUE;
+    /** Co ile wierszy sprawdzane jest przerwanie przy odczycie kluczy */
+    private static final int CANCEL_INTERVAL = Column.CHUNK_SIZE;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Tworzy obiekt sortujący korzystający ze wspólnej puli ForkJoinPool.
+     */
+    public ParallelSorter() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tworzy obiekt sortujący.
+     *
+     * @param pool pula wątków dla sortowania przez scalanie
+     */
+    public ParallelSorter(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Klucz sortowania - kolumna i kierunek.
+     *
+     * @param column indeks kolumny modelu
+     * @param ascending true - rosnąco, false - malejąco
+     */
+    public record SortKey(int column, boolean ascending) {
+        /**
+         * Zwraca klucz tej samej kolumny o przeciwnym kierunku.
+         *
+         * @return klucz odwrócony
+         */
+        public SortKey reversed() {
+            return new SortKey(column, !ascending);
+        }
+    }
+
+    /**
+     * Posortowana kolejność wierszy wraz z zaznaczeniem pozycji, na których
+     * wiersz ma klucze równe poprzedniemu (potrzebne do odwrócenia kolejności
+     * z zachowaniem stabilności).
+     *
+     * @param rows permutacja wierszy bazowych (nie jest modyfikowana)
+     * @param ties pozycje i, dla których wiersz rows[i] ma klucze równe wierszowi rows[i - 1]
+     */
+    record Order(int[] rows, BitSet ties) {
+        /**
+         * Wyznacza kolejność dla kluczy o odwróconych kierunkach: grupy równych
+         * kluczy występują w odwrotnej kolejności, a wiersze wewnątrz grupy
+         * zachowują kolejność rosnącą (jak w sortowaniu stabilnym).
+         *
+         * @return kolejność odwrócona
+         */
+        Order reversed() {
+            int n = rows.length;
+            int[] reversed = new int[n];
+            BitSet reversedTies = new BitSet(n);
+            int end = n;
+            while (end > 0) {
+                int start = end - 1;
+                while (ties.get(start)) {
+                    start--;
+                }
+                // grupa rows[start, end) trafia na pozycje od n - end w tej samej kolejności
+                int target = n - end;
+                System.arraycopy(rows, start, reversed, target, end - start);
+                if (end - start > 1) {
+                    reversedTies.set(target + 1, target + end - start);
+                }
+                end = start;
+            }
+            return new Order(reversed, reversedTies);
+        }
+    }
+
+    /**
+     * Wyznacza kolejność wierszy bazowych modelu posortowanych według kluczy.
+     * Wiersze o równych kluczach zachowują kolejność rosnącą.
+     *
+     * @param model model danych
+     * @param keys klucze sortowania, od najważniejszego
+     * @param cancelled sprawdzane w trakcie odczytu kluczy - zwrócenie true przerywa sortowanie
+     * @return permutacja wierszy bazowych (współdzielona z pamięcią podręczną modelu - nie należy
+     *         jej modyfikować) lub null, jeśli sortowanie przerwano
+     */
+    public int[] sort(CSVTableModel model, List<SortKey> keys, BooleanSupplier cancelled) {
+        keys = List.copyOf(keys);
+        Order order = model.getCachedSortOrder(keys);
+        if (order == null) {
+            Order reversed = model.getCachedSortOrder(reversed(keys));
+            if (reversed != null) {
+                Metrics.cacheHit();
+                order = reversed.reversed();
+            } else {
+                Metrics.cacheMiss();
+                order = sort(model, keys, model.getBaseRowCount(), cancelled);
+                if (order == null) {
+                    return null;
+                }
+            }
+            model.cacheSortOrder(keys, order);
+        } else {
+            Metrics.cacheHit();
+        }
+        return order.rows();
+    }
+
+    /**
+     * Zwraca klucze o odwróconych kierunkach.
+     *
+     * @param keys klucze sortowania
+     * @return klucze odwrócone
+     */
+    static List<SortKey> reversed(List<SortKey> keys) {
+        List<SortKey> reversed = new ArrayList<>(keys.size());
+        for (SortKey key : keys) {
+            reversed.add(key.reversed());
+        }
+        return List.copyOf(reversed);
+    }
+
+    private Order sort(CSVTableModel model, List<SortKey> keys, int rowCount, BooleanSupplier cancelled) {
+        long[][] numericKeys = new long[keys.size()][];
+        String[][] textKeys = new String[keys.size()][];
+        boolean allNumeric = true;
+        for (int k = 0; k < keys.size(); k++) {
+            SortKey key = keys.get(k);
+            Column column = model.getColumnStorage(key.column());
+            if (column instanceof StringColumn || column == null) {
+                textKeys[k] = textKeys(model, key.column(), rowCount, cancelled);
+                allNumeric = false;
+            } else {
+                numericKeys[k] = numericKeys(column, rowCount, key.ascending(), cancelled);
+            }
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+        }
+
+        int[] rows = new int[rowCount];
+        Arrays.setAll(rows, i -> i);
+        IntSort.IntComparator comparator = comparator(keys, numericKeys, textKeys);
+        BitSet ties = new BitSet(rowCount);
+        if (allNumeric) {
+            // Sortowanie pozycyjne jest stabilne, więc klucze sortowane są od najmniej ważnego
+            long[] sortedKeys = null;
+            for (int k = keys.size() - 1; k >= 0; k--) {
+                sortedKeys = radixSort(numericKeys[k], rows);
+            }
+            if (keys.size() == 1) {
+                for (int i = 1; i < rowCount; i++) {
+                    if (sortedKeys[i] == sortedKeys[i - 1]) {
+                        ties.set(i);
+                    }
+                }
+                return new Order(rows, ties);
+            }
+        } else {
+            IntSort.parallelSort(rows, comparator, pool);
+        }
+        for (int i = 1; i < rowCount; i++) {
+            if (comparator.compare(rows[i - 1], rows[i]) == 0) {
+                ties.set(i);
+            }
+        }
+        return new Order(rows, ties);
+    }
+
+    /**
+     * Tworzy porównanie wierszy według wszystkich kluczy.
+     */
+    private static IntSort.IntComparator comparator(List<SortKey> keys, long[][] numericKeys, String[][] textKeys) {
+        IntSort.IntComparator[] comparators = new IntSort.IntComparator[keys.size()];
+        for (int k = 0; k < keys.size(); k++) {
+            if (numericKeys[k] != null) {
+                long[] values = numericKeys[k];
+                comparators[k] = (a, b) -> Long.compareUnsigned(values[a], values[b]);
+            } else {
+                String[] values = textKeys[k];
+                comparators[k] = keys.get(k).ascending()
+                        ? (a, b) -> compareText(values[a], values[b])
+                        : (a, b) -> compareText(values[b], values[a]);
+            }
+        }
+        if (comparators.length == 1) {
+            return comparators[0];
+        }
+        return (a, b) -> {
+            for (IntSort.IntComparator comparator : comparators) {
+                int result = comparator.compare(a, b);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * Porównuje teksty, traktując pustą komórkę (null) jako największą.
+     */
+    private static int compareText(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : 1) : -1;
+        }
+        return a.compareTo(b);
+    }
+
+    /**
+     * Odczytuje teksty kolumny (puste jako null).
+     */
+    private static String[] textKeys(CSVTableModel model, int column, int rowCount, BooleanSupplier cancelled) {
+        String[] values = new String[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            if (row % CANCEL_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                return values;
+            }
+            String value = model.getBaseStringAt(row, column);
+            values[row] = value == null || value.isEmpty() ? null : value;
+        }
+        return values;
+    }
+
+    /**
+     * Odczytuje klucze kolumny typowanej jako nieujemne liczby zachowujące porządek:
+     * wartości przesunięte o minimum kolumny (dzięki czemu mieszczą się w niewielu
+     * bitach), puste komórki większe od wszystkich wartości, a przy sortowaniu
+     * malejącym - odjęte od klucza pustej komórki.
+     */
+    private static long[] numericKeys(Column column, int rowCount, boolean ascending, BooleanSupplier cancelled) {
+        long[] keys = new long[rowCount];
+        long[] ranks = column instanceof DictionaryColumn dictionary ? dictionaryRanks(dictionary) : null;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int row = 0; row < rowCount; row++) {
+            if (row % CANCEL_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                return keys;
+            }
+            long key;
+            if (column.isNull(row)) {
+                key = NULL_KEY;
+            } else if (ranks != null) {
+                key = ranks[((DictionaryColumn) column).getCode(row)];
+            } else if (column instanceof IntColumn ints) {
+                key = ints.getInt(row);
+            } else if (column instanceof LongColumn longs) {
+                key = longs.getLong(row);
+            } else if (column instanceof DoubleColumn doubles) {
+                long bits = Double.doubleToLongBits(doubles.getDouble(row));
+                key = bits ^ ((bits >> 63) & Long.MAX_VALUE); // porządek liczb long zgodny z porządkiem double
+            } else if (column instanceof DateColumn dates) {
+                key = dates.getEpochDay(row);
+            } else {
+                key = ((BooleanColumn) column).getBoolean(row) ? 1 : 0;
+            }
+            if (key != NULL_KEY) {
+                min = Math.min(min, key);
+                max = Math.max(max, key);
+            }
+            keys[row] = key;
+        }
+        long nullKey = max - min + 1;
+        for (int row = 0; row < rowCount; row++) {
+            long key = keys[row] == NULL_KEY ? nullKey : keys[row] - min;
+            keys[row] = ascending ? key : nullKey - key;
+        }
+        return keys;
+    }
+
+    /**
+     * Wyznacza pozycję każdej wartości słownika w porządku alfabetycznym.
+     * Pusta wartość otrzymuje klucz pustej komórki ({@link #NULL_KEY}).
+     */
+    private static long[] dictionaryRanks(DictionaryColumn column) {
+        int size = column.getDictionarySize();
+        int[] codes = new int[size];
+        Arrays.setAll(codes, i -> i);
+        IntSort.sort(codes, (a, b) -> compareText(emptyToNull(column.getDictionaryValue(a)),
+                emptyToNull(column.getDictionaryValue(b))));
+        long[] ranks = new long[size];
+        for (int rank = 0; rank < size; rank++) {
+            String value = column.getDictionaryValue(codes[rank]);
+            ranks[codes[rank]] = value == null || value.isEmpty() ? NULL_KEY : rank;
+        }
+        return ranks;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Sortuje stabilnie permutację wierszy według kluczy bez znaku (LSD radix sort).
+     * Sortowane jest najstarsze 32 bity klucza (licząc od najstarszego ustawionego bitu)
+     * przestawiane razem z numerem wiersza jako jedna liczba long; przebiegi, w których
+     * wszystkie klucze mają tę samą cyfrę, są pomijane. Wiersze o równych 32 najstarszych
+     * bitach, ale różnych kluczach, porządkowane są następnie sortowaniem przez scalanie.
+     *
+     * @param keys klucze wierszy bazowych
+     * @param rows permutacja sortowana w miejscu
+     * @return klucze w kolejności posortowanej permutacji
+     */
+    private static long[] radixSort(long[] keys, int[] rows) {
+        int n = rows.length;
+        long bits = 0;
+        for (long key : keys) {
+            bits |= key;
+        }
+        int width = Long.SIZE - Long.numberOfLeadingZeros(bits);
+        int drop = Math.max(0, width - Integer.SIZE);
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            packed[i] = (keys[rows[i]] >>> drop) << Integer.SIZE | rows[i];
+        }
+        long[] buffer = new long[n];
+        for (int shift = Integer.SIZE; shift < Integer.SIZE + width - drop; shift += RADIX_BITS) {
+            int[] offsets = digitOffsets(packed, shift);
+            if (offsets == null) {
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                long value = packed[i];
+                buffer[offsets[(int) (value >>> shift) & DIGIT_MASK]++] = value;
+            }
+            long[] swap = packed;
+            packed = buffer;
+            buffer = swap;
+        }
+        long[] sortedKeys = buffer;
+        for (int i = 0; i < n; i++) {
+            rows[i] = (int) packed[i];
+            sortedKeys[i] = keys[rows[i]];
+        }
+        if (drop > 0) {
+            int start = 0;
+            for (int i = 1; i <= n; i++) {
+                if (i == n || sortedKeys[i] >>> drop != sortedKeys[start] >>> drop) {
+                    if (i - start > 1) {
+                        int[] run = Arrays.copyOfRange(rows, start, i);
+                        IntSort.sort(run, (a, b) -> Long.compareUnsigned(keys[a], keys[b]));
+                        for (int j = 0; j < run.length; j++) {
+                            rows[start + j] = run[j];
+                            sortedKeys[start + j] = keys[run[j]];
+                        }
+                    }
+                    start = i;
+                }
+            }
+        }
+        return sortedKeys;
+    }
+
+    /**
+     * Zlicza cyfry kluczy na podanej pozycji i wyznacza początek każdej cyfry w wyniku przebiegu.
+     *
+     * @param keys klucze
+     * @param shift pozycja najmłodszego bitu cyfry
+     * @return pozycje początkowe cyfr lub null, jeśli wszystkie klucze mają tę samą cyfrę
+     */
+    private static int[] digitOffsets(long[] keys, int shift) {
+        int[] offsets = new int[RADIX];
+        for (long key : keys) {
+            offsets[(int) (key >>> shift) & DIGIT_MASK]++;
+        }
+        if (offsets[(int) (keys[0] >>> shift) & DIGIT_MASK] == keys.length) {
+            return null;
+        }
+        int position = 0;
+        for (int digit = 0; digit < RADIX; digit++) {
+            int count = offsets[digit];
+            offsets[digit] = position;
+            position += count;
+        }
+        return offsets;
+    }
+}
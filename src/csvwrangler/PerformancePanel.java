@@ -0,0 +1,107 @@
+package csvwrangler;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Panel wydajności - tabela ostatnich operacji zmierzonych przez {@link Metrics}
+ * (czas, blokowanie EDT, wiersze, dane, alokacja, trafienia w pamięci podręczne).
+ * Odświeżany co sekundę, gdy jest widoczny.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public class PerformancePanel extends JPanel {
+    /** Odstęp między odświeżeniami w milisekundach */
+    private static final int REFRESH_INTERVAL = 1000;
+    private static final String[] COLUMNS = {"Operacja", "Początek", "Czas [ms]", "EDT [ms]", "Wiersze",
+            "Wierszy/s", "Dane [MB]", "Alokacja [MB]", "Trafienia", "Wynik"};
+
+    private final DefaultTableModel operations = new DefaultTableModel(COLUMNS, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final JCheckBox enabledBox = new JCheckBox("Zbieraj pomiary");
+    private final JLabel summaryLabel = new JLabel();
+    private final Timer timer = new Timer(REFRESH_INTERVAL, e -> refresh());
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+    private List<Metrics.Record> shown = List.of();
+
+    /**
+     * Tworzy panel wydajności.
+     */
+    public PerformancePanel() {
+        super(new BorderLayout(5, 5));
+        setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
+        enabledBox.addActionListener(e -> Metrics.setEnabled(enabledBox.isSelected()));
+        JButton clearButton = new JButton("Wyczyść");
+        clearButton.addActionListener(e -> {
+            Metrics.clear();
+            refresh();
+        });
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(enabledBox);
+        controls.add(clearButton);
+        add(controls, BorderLayout.NORTH);
+
+        JTable table = new JTable(operations);
+        table.setAutoCreateRowSorter(true);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(summaryLabel, BorderLayout.SOUTH);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        refresh();
+        timer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        timer.stop();
+        super.removeNotify();
+    }
+
+    /**
+     * Odświeża tabelę, jeśli od ostatniego odświeżenia pojawiły się nowe pomiary.
+     */
+    private void refresh() {
+        enabledBox.setSelected(Metrics.isEnabled());
+        long hits = Metrics.getCacheHits();
+        long lookups = hits + Metrics.getCacheMisses();
+        summaryLabel.setText(" Trafienia w pamięci podręczne i indeksy: "
+                + (lookups > 0 ? Math.round(hits * 100.0 / lookups) + "% z " + lookups : "brak")
+                + " | JMX: " + Metrics.MBEAN_NAME);
+
+        List<Metrics.Record> records = Metrics.recent();
+        if (records.equals(shown)) {
+            return;
+        }
+        shown = records;
+        operations.setRowCount(0);
+        for (Metrics.Record record : records) {
+            long millis = record.wallNanos() / 1_000_000;
+            double hitRate = record.cacheHitRate();
+            operations.addRow(new Object[]{
+                    record.operation(),
+                    timeFormat.format(new Date(record.startMillis())),
+                    millis,
+                    record.edtNanos() / 1_000_000,
+                    record.rows(),
+                    record.rows() * 1000 / Math.max(1, millis),
+                    record.bytes() / (1024 * 1024),
+                    record.allocatedBytes() >= 0 ? record.allocatedBytes() / (1024 * 1024) : "-",
+                    hitRate >= 0 ? Math.round(hitRate * 100) + "%" : "-",
+                    record.outcome()
+            });
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package csvwrangler;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * Wspólna część indeksów kolumn budowanych jednorazowo dla wierszy bazowych.
+ * Indeks nie jest przebudowywany przy każdej zmianie: wiersze zmienione po zbudowaniu
+ * oznaczane są jako nieaktualne, a wiersze dopisane na końcu tworzą "ogon" - obie
+ * grupy sprawdzane są bezpośrednio przy zapytaniu. Gdy jest ich zbyt dużo, indeks
+ * zgłasza potrzebę przebudowy ({@link #needsRebuild(int)}).
+ * Puste wartości nie są indeksowane.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+abstract class RowIndex {
+    /** Minimalna liczba nieaktualnych wierszy, od której rozważana jest przebudowa */
+    private static final int MIN_REBUILD_THRESHOLD = 1024;
+
+    protected final IntFunction<String> values;
+    private int indexedRows;
+    private final BitSet stale = new BitSet();
+    private int staleCount;
+
+    /**
+     * Tworzy indeks obejmujący podaną liczbę wierszy.
+     *
+     * @param rowCount liczba wierszy bazowych
+     * @param values dostęp do tekstu komórki wiersza bazowego
+     */
+    protected RowIndex(int rowCount, IntFunction<String> values) {
+        this.values = values;
+        this.indexedRows = rowCount;
+    }
+
+    /**
+     * Sprawdza czy wiersz zmienił się po zbudowaniu indeksu.
+     *
+     * @param row indeks wiersza bazowego
+     * @return true jeśli wpis indeksu dla wiersza jest nieaktualny
+     */
+    protected boolean isStale(int row) {
+        return stale.get(row);
+    }
+
+    /**
+     * Sprawdza bezpośrednio wiersze nieaktualne i dopisane po zbudowaniu indeksu.
+     *
+     * @param rowCount bieżąca liczba wierszy bazowych
+     * @param result mapa bitowa, w której zaznaczane są pasujące wiersze
+     * @param matcher warunek dla niepustej wartości
+     */
+    protected void checkUnindexed(int rowCount, BitSet result, Predicate<String> matcher) {
+        for (int row = stale.nextSetBit(0); row >= 0; row = stale.nextSetBit(row + 1)) {
+            check(row, result, matcher);
+        }
+        for (int row = indexedRows; row < rowCount; row++) {
+            check(row, result, matcher);
+        }
+    }
+
+    private void check(int row, BitSet result, Predicate<String> matcher) {
+        String value = values.apply(row);
+        if (value != null && !value.isEmpty() && matcher.test(value)) {
+            result.set(row);
+        }
+    }
+
+    /**
+     * Oznacza wiersz jako zmieniony po zbudowaniu indeksu.
+     *
+     * @param row indeks wiersza bazowego
+     */
+    void markStale(int row) {
+        if (row < indexedRows && !stale.get(row)) {
+            stale.set(row);
+            staleCount++;
+        }
+    }
+
+    /**
+     * Usuwa wiersze z indeksu i przenumerowuje pozostałe.
+     *
+     * @param removed rosnąco posortowane indeksy usuwanych wierszy bazowych
+     */
+    void removeRows(int[] removed) {
+        renumber(removed);
+        BitSet shifted = new BitSet();
+        for (int row = stale.nextSetBit(0); row >= 0; row = stale.nextSetBit(row + 1)) {
+            int shift = removedBefore(removed, row);
+            if (shift >= 0) {
+                shifted.set(row - shift);
+            }
+        }
+        stale.clear();
+        stale.or(shifted);
+        staleCount = stale.cardinality();
+        indexedRows -= countBefore(removed, indexedRows);
+    }
+
+    /**
+     * Usuwa wiersze ze struktur indeksu i przenumerowuje pozostałe.
+     *
+     * @param removed rosnąco posortowane indeksy usuwanych wierszy bazowych
+     */
+    protected abstract void renumber(int[] removed);
+
+    /**
+     * Zwraca przesunięcie wiersza po usunięciu wierszy.
+     *
+     * @param removed rosnąco posortowane indeksy usuwanych wierszy
+     * @param row indeks wiersza
+     * @return liczba usuwanych wierszy przed wierszem lub -1, jeśli sam wiersz jest usuwany
+     */
+    protected static int removedBefore(int[] removed, int row) {
+        int position = Arrays.binarySearch(removed, row);
+        return position >= 0 ? -1 : -position - 1;
+    }
+
+    /**
+     * Zwraca liczbę usuwanych wierszy o indeksie mniejszym od podanego.
+     *
+     * @param removed rosnąco posortowane indeksy usuwanych wierszy
+     * @param row indeks wiersza
+     * @return liczba usuwanych wierszy przed wierszem
+     */
+    private static int countBefore(int[] removed, int row) {
+        int position = Arrays.binarySearch(removed, row);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    /**
+     * Sprawdza czy nieaktualnych i niezaindeksowanych wierszy jest na tyle dużo,
+     * że opłaca się przebudować indeks.
+     *
+     * @param rowCount bieżąca liczba wierszy bazowych
+     * @return true jeśli indeks należy przebudować
+     */
+    boolean needsRebuild(int rowCount) {
+        int unindexed = staleCount + Math.max(0, rowCount - indexedRows);
+        return unindexed > Math.max(MIN_REBUILD_THRESHOLD, indexedRows / 8);
+    }
+}
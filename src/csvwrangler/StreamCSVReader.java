@@ -0,0 +1,131 @@
+package csvwrangler;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Strumieniowy czytnik CSV - dekoduje plik przez InputStreamReader i dzieli go
+ * na rekordy przy pomocy {@link CSVTokenizer}. Przeznaczony dla małych plików
+ * i kodowań, w których nie da się dzielić rekordów w bajtach (np. UTF-16).
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public class StreamCSVReader implements CSVRecordReader {
+    private final CountingInputStream in;
+    private final Reader reader;
+    private final CSVTokenizer tokenizer;
+
+    /**
+     * Otwiera plik do odczytu.
+     *
+     * @param file plik CSV
+     * @param separator separator pól
+     * @throws IOException jeśli nie uda się otworzyć pliku
+     */
+    public StreamCSVReader(File file, char separator) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.READ), CSVDialect.of(separator));
+    }
+
+    /**
+     * Tworzy czytnik czytający kanał od jego bieżącej pozycji (początku pliku) do
+     * rozmiaru pliku z chwili otwarcia - dane dopisane w trakcie odczytu są pomijane,
+     * tak jak w {@link MappedCSVReader}. Znacznik BOM jest pomijany, a zamknięcie
+     * czytnika zamyka kanał.
+     *
+     * @param channel kanał pliku
+     * @param dialect dialekt pliku (separator, cudzysłów, kodowanie)
+     * @throws IOException jeśli nie uda się odczytać pliku
+     */
+    public StreamCSVReader(FileChannel channel, CSVDialect dialect) throws IOException {
+        this.in = new CountingInputStream(Channels.newInputStream(channel), channel.size() - channel.position());
+        in.skipNBytes(dialect.bomLength());
+        this.reader = new InputStreamReader(in, dialect.charset());
+        this.tokenizer = new CSVTokenizer(reader, dialect.separator(), dialect.quote());
+    }
+
+    @Override
+    public boolean nextRecord() throws IOException {
+        return tokenizer.nextRecord();
+    }
+
+    @Override
+    public int getFieldCount() {
+        return tokenizer.getFieldCount();
+    }
+
+    @Override
+    public String getField(int index) {
+        return tokenizer.getField(index);
+    }
+
+    @Override
+    public String[] toArray() {
+        return tokenizer.toArray();
+    }
+
+    @Override
+    public void setProjection(int[] projection) {
+        tokenizer.setProjection(projection);
+    }
+
+    @Override
+    public long getBytesRead() {
+        return in.getCount();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Strumień zliczający odczytane bajty (źródło informacji o postępie), kończący się po podanej liczbie bajtów.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final long limit;
+        private volatile long count;
+
+        CountingInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (count >= limit) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (count >= limit) {
+                return len == 0 ? 0 : -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, limit - count));
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, limit - count));
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
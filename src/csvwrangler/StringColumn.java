@@ -0,0 +1,113 @@
+package csvwrangler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Kolumna tekstowa - przechowuje dowolne wartości jako obiekty String.
+ * Używana dla kolumn o dużej liczbie różnych wartości oraz podczas wczytywania,
+ * zanim znane są typy danych.
+ * Blok odczytany z {@link ColumnarCache} może mieć postać spakowaną ({@link Packed} -
+ * teksty w UTF-8 i ich pozycje); jest on dekodowany do tablicy String[] dopiero
+ * przy pierwszym dostępie do któregoś z jego wierszy.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+class StringColumn extends Column {
+    /** Dostęp do bloków z semantyką acquire/release - blok zdekodowany w jednym wątku jest kompletny w innych */
+    private static final VarHandle CHUNK = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    /**
+     * Spakowany blok tekstów: wartości w UTF-8 zapisane jedna za drugą.
+     *
+     * @param bytes teksty w UTF-8
+     * @param offsets pozycje początków tekstów w {@code bytes} (o jedną więcej niż wierszy bloku)
+     * @param nulls mapa pustych komórek bloku (null - blok bez pustych komórek)
+     */
+    record Packed(byte[] bytes, int[] offsets, long[] nulls) {
+        int size() {
+            return offsets.length - 1;
+        }
+
+        String[] decode() {
+            String[] values = new String[size()];
+            for (int i = 0; i < values.length; i++) {
+                if (nulls == null || (nulls[i >>> 6] & (1L << i)) == 0) {
+                    values[i] = new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+                }
+            }
+            return values;
+        }
+    }
+
+    @Override
+    Object get(int row) {
+        return strings(row >>> CHUNK_SHIFT)[row & CHUNK_MASK];
+    }
+
+    @Override
+    String getString(int row) {
+        return strings(row >>> CHUNK_SHIFT)[row & CHUNK_MASK];
+    }
+
+    /**
+     * Zwraca blok wartości, dekodując go przy pierwszym dostępie, jeśli jest spakowany.
+     * Dwa wątki mogą zdekodować ten sam blok jednocześnie - oba otrzymają te same wartości.
+     *
+     * @param chunk numer bloku
+     * @return wartości bloku
+     */
+    String[] strings(int chunk) {
+        Object values = CHUNK.getAcquire(chunks, chunk);
+        if (values instanceof String[] strings) {
+            return strings;
+        }
+        String[] strings = ((Packed) values).decode();
+        CHUNK.setRelease(chunks, chunk, strings);
+        return strings;
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        strings(row >>> CHUNK_SHIFT)[row & CHUNK_MASK] = value != null ? value.toString() : null;
+        setNull(row, value == null);
+    }
+
+    @Override
+    boolean canStore(Object value) {
+        return true;
+    }
+
+    @Override
+    ColumnType getType() {
+        return ColumnType.STRING;
+    }
+
+    @Override
+    protected Column newEmpty() {
+        return new StringColumn();
+    }
+
+    @Override
+    protected Object newChunk(int capacity) {
+        return new String[capacity];
+    }
+
+    @Override
+    protected Object copyChunk(Object chunk, int capacity) {
+        return Arrays.copyOf(chunk instanceof Packed packed ? packed.decode() : (String[]) chunk, capacity);
+    }
+
+    @Override
+    protected int chunkCapacity(Object chunk) {
+        return chunk instanceof Packed packed ? packed.size() : ((String[]) chunk).length;
+    }
+
+    @Override
+    protected void moveValue(int from, int to) {
+        strings(to >>> CHUNK_SHIFT)[to & CHUNK_MASK] = strings(from >>> CHUNK_SHIFT)[from & CHUNK_MASK];
+    }
+}
@@ -0,0 +1,100 @@
+package csvwrangler;
+
+import javax.swing.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Wykonawca operacji działających w tle. Każda operacja dostaje własny wątek
+ * wirtualny, więc blokujące odczyty i zapisy plików nie zajmują wątków platformy,
+ * a EDT pozostaje wolny. W danej chwili aktywna jest co najwyżej jedna operacja
+ * użytkownika - kontroler sprawdza {@link #isBusy()} przed rozpoczęciem kolejnej.
+ * <p>
+ * Przerwanie SwingWorkera od razu kończy go ({@code isDone()}), choć jego wątek działa
+ * aż do najbliższego sprawdzenia {@code isCancelled()}. Dlatego wykonawca śledzi
+ * zakończenie samego wątku: operacja jest aktywna, dopóki jej wątek nie zakończy pracy
+ * i dopóki EDT nie obsłuży jej zakończenia ({@code done()}), kolejna operacja rusza
+ * dopiero po niej, a obsługa zakończenia (np. odblokowanie modelu) wywoływana jest w EDT
+ * na samym końcu.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public class TaskExecutor {
+    private final ExecutorService executor;
+    private SwingWorker<?, ?> current;
+    /** Zakończenie wątku ostatnio uruchomionej operacji */
+    private CompletableFuture<Void> running = CompletableFuture.completedFuture(null);
+
+    /**
+     * Tworzy wykonawcę uruchamiającego operacje w wątkach wirtualnych.
+     */
+    public TaskExecutor() {
+        this(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Tworzy wykonawcę korzystającego ze wskazanej puli wątków.
+     *
+     * @param executor pula wątków wykonująca operacje
+     */
+    public TaskExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Uruchamia operację w tle i zapamiętuje ją jako aktywną. Jeśli wątek poprzedniej
+     * (przerwanej) operacji jeszcze działa, nowa operacja rusza po jego zakończeniu.
+     *
+     * @param task operacja do wykonania
+     * @param finished wywoływane w EDT po zakończeniu wątku operacji i jej obsłudze w EDT
+     */
+    public void execute(SwingWorker<?, ?> task, Runnable finished) {
+        current = task;
+        CompletableFuture<Void> exited = new CompletableFuture<>();
+        // Zmiana stanu na DONE dociera do EDT po wywołaniu done() operacji
+        CompletableFuture<Void> handled = new CompletableFuture<>();
+        task.addPropertyChangeListener(e -> {
+            if ("state".equals(e.getPropertyName()) && e.getNewValue() == SwingWorker.StateValue.DONE) {
+                handled.complete(null);
+            }
+        });
+        running.thenRun(() -> executor.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                exited.complete(null);
+            }
+        }));
+        running = exited.runAfterBoth(handled, () -> { });
+        running.thenRun(() -> SwingUtilities.invokeLater(finished));
+    }
+
+    /**
+     * Sprawdza czy trwa operacja w tle.
+     *
+     * @return true jeśli ostatnia operacja (także przerwana) nie zakończyła jeszcze wątku lub obsługi w EDT
+     */
+    public boolean isBusy() {
+        return !running.isDone();
+    }
+
+    /**
+     * Przerywa aktywną operację, jeśli taka istnieje. Operacja kończy się przy
+     * najbliższym sprawdzeniu {@code isCancelled()} - do tego czasu pozostaje aktywna.
+     */
+    public void cancel() {
+        if (current != null && !current.isDone()) {
+            current.cancel(false);
+        }
+    }
+
+    /**
+     * Zamyka pulę wątków, przerywając aktywną operację.
+     */
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+}
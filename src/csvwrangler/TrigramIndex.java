@@ -0,0 +1,327 @@
+package csvwrangler;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntFunction;
+
+/**
+ * Indeks n-gramowy (trigramowy) kolumny przyspieszający wyszukiwanie podciągów ("zawiera").
+ * Dla każdego trzyznakowego fragmentu występującego w wartościach kolumny pamiętana
+ * jest rosnąca lista wierszy, w których występuje (indeks odwrócony). Szukany tekst
+ * o długości co najmniej 3 znaków musi zawierać wszystkie swoje trigramy, więc
+ * kandydatami są tylko wiersze z przecięcia ich list - dopiero one sprawdzane są
+ * przez {@link String#contains(CharSequence)}.
+ * Listy zapisywane są jako różnice kolejnych numerów wierszy w kodowaniu o zmiennej
+ * długości (7 bitów na bajt), co zwykle daje 1-2 bajty na wpis.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+class TrigramIndex extends RowIndex {
+    /** Długość n-gramu */
+    static final int GRAM = 3;
+
+    private long[] tableKeys = new long[1024];
+    private int[] tableIds = filled(1024);
+    private int trigramCount;
+    private int[] listStarts;
+    private byte[] postings;
+
+    /**
+     * Buduje indeks dla podanej liczby wierszy w dwóch przebiegach: pierwszy
+     * wyznacza rozmiary list, drugi wypełnia je bez dodatkowego kopiowania.
+     *
+     * @param rowCount liczba wierszy bazowych
+     * @param values dostęp do tekstu komórki wiersza bazowego
+     */
+    TrigramIndex(int rowCount, IntFunction<String> values) {
+        super(rowCount, values);
+
+        int[] scratch = new int[64];
+        int[] sizes = new int[256];
+        int[] last = new int[256];
+        Arrays.fill(last, -1);
+        long total = 0;
+        for (int row = 0; row < rowCount; row++) {
+            String value = values.apply(row);
+            if (value == null || value.length() < GRAM) {
+                continue;
+            }
+            scratch = ensureCapacity(scratch, value.length());
+            int n = rowTrigrams(value, scratch, true);
+            if (trigramCount > sizes.length) {
+                int oldLength = sizes.length;
+                sizes = Arrays.copyOf(sizes, Math.max(trigramCount, oldLength * 2));
+                last = Arrays.copyOf(last, sizes.length);
+                Arrays.fill(last, oldLength, last.length, -1);
+            }
+            for (int i = 0; i < n; i++) {
+                int id = scratch[i];
+                int size = varIntSize(row - last[id]);
+                sizes[id] += size;
+                total += size;
+                last[id] = row;
+            }
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            // Indeks nie mieści się w tablicy - zapytania przeglądają wszystkie wiersze
+            return;
+        }
+
+        listStarts = new int[trigramCount + 1];
+        for (int id = 0; id < trigramCount; id++) {
+            listStarts[id + 1] = listStarts[id] + sizes[id];
+        }
+        postings = new byte[(int) total];
+        int[] position = Arrays.copyOf(listStarts, trigramCount);
+        Arrays.fill(last, -1);
+        for (int row = 0; row < rowCount; row++) {
+            String value = values.apply(row);
+            if (value == null || value.length() < GRAM) {
+                continue;
+            }
+            int n = rowTrigrams(value, scratch, false);
+            for (int i = 0; i < n; i++) {
+                int id = scratch[i];
+                position[id] = writeVarInt(postings, position[id], row - last[id]);
+                last[id] = row;
+            }
+        }
+    }
+
+    /**
+     * Zaznacza wiersze, których wartość zawiera podany tekst.
+     *
+     * @param text szukany tekst (niepusty)
+     * @param rowCount bieżąca liczba wierszy bazowych
+     * @param result mapa bitowa, w której zaznaczane są pasujące wiersze
+     */
+    void findContains(String text, int rowCount, BitSet result) {
+        if (postings == null || text.length() < GRAM) {
+            for (int row = 0; row < rowCount; row++) {
+                String value = values.apply(row);
+                if (value != null && value.contains(text)) {
+                    result.set(row);
+                }
+            }
+            return;
+        }
+        int[] candidates = candidates(text);
+        for (int row : candidates) {
+            if (!isStale(row) && values.apply(row).contains(text)) {
+                result.set(row);
+            }
+        }
+        checkUnindexed(rowCount, result, value -> value.contains(text));
+    }
+
+    /**
+     * Wyznacza wiersze zawierające wszystkie trigramy tekstu - przecięcie list,
+     * zaczynając od najkrótszej.
+     *
+     * @param text szukany tekst (co najmniej {@value #GRAM} znaki)
+     * @return rosnąco posortowane indeksy wierszy kandydujących
+     */
+    private int[] candidates(String text) {
+        int[] ids = new int[text.length()];
+        int n = rowTrigrams(text, ids, false);
+        if (n == 0 || ids[0] < 0) {
+            return new int[0]; // tekst zawiera trigram niewystępujący w kolumnie
+        }
+        int[] order = Arrays.copyOf(ids, n);
+        IntSort.sort(order, (a, b) -> Integer.compare(listStarts[a + 1] - listStarts[a], listStarts[b + 1] - listStarts[b]));
+
+        int first = order[0];
+        int[] rows = new int[listStarts[first + 1] - listStarts[first]];
+        int count = 0;
+        int row = -1;
+        for (int p = listStarts[first]; p < listStarts[first + 1]; ) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings[p++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            row += delta;
+            rows[count++] = row;
+        }
+        for (int i = 1; i < n && count > 0; i++) {
+            count = intersect(rows, count, order[i]);
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Pozostawia w tablicy tylko wiersze występujące na liście trigramu.
+     *
+     * @param rows rosnąco posortowane wiersze
+     * @param count liczba wierszy w tablicy
+     * @param id identyfikator trigramu
+     * @return liczba pozostawionych wierszy
+     */
+    private int intersect(int[] rows, int count, int id) {
+        int kept = 0;
+        int i = 0;
+        int row = -1;
+        int p = listStarts[id];
+        int end = listStarts[id + 1];
+        while (i < count && p < end) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings[p++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            row += delta;
+            while (i < count && rows[i] < row) {
+                i++;
+            }
+            if (i < count && rows[i] == row) {
+                rows[kept++] = row;
+                i++;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Wyznacza różne trigramy wartości.
+     *
+     * @param value wartość
+     * @param ids tablica na identyfikatory trigramów (co najmniej długość wartości)
+     * @param add czy dodawać do indeksu trigramy jeszcze w nim nieobecne
+     * @return liczba różnych trigramów; jeśli add == false, a trigramu nie ma w indeksie,
+     *         zwracany jest jeden identyfikator -1
+     */
+    private int rowTrigrams(String value, int[] ids, boolean add) {
+        int n = 0;
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            long key = (long) value.charAt(i) << 32 | (long) value.charAt(i + 1) << 16 | value.charAt(i + 2);
+            int id = lookup(key, add);
+            if (id < 0) {
+                ids[0] = -1;
+                return 1;
+            }
+            ids[n++] = id;
+        }
+        Arrays.sort(ids, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Wyszukuje identyfikator trigramu w tablicy haszującej z adresowaniem otwartym.
+     *
+     * @param key trzy znaki zapisane w jednej liczbie
+     * @param add czy dodać trigram, jeśli go nie ma
+     * @return identyfikator trigramu lub -1, jeśli go nie ma i nie dodawano
+     */
+    private int lookup(long key, boolean add) {
+        int mask = tableKeys.length - 1;
+        int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+        while (tableIds[slot] >= 0) {
+            if (tableKeys[slot] == key) {
+                return tableIds[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!add) {
+            return -1;
+        }
+        tableKeys[slot] = key;
+        tableIds[slot] = trigramCount++;
+        if (trigramCount * 2 > tableKeys.length) {
+            grow();
+        }
+        return trigramCount - 1;
+    }
+
+    private void grow() {
+        long[] oldKeys = tableKeys;
+        int[] oldIds = tableIds;
+        tableKeys = new long[oldKeys.length * 2];
+        tableIds = filled(oldKeys.length * 2);
+        int mask = tableKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldIds[i] >= 0) {
+                int slot = (int) (oldKeys[i] * 0x9E3779B97F4A7C15L >>> 40) & mask;
+                while (tableIds[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                tableKeys[slot] = oldKeys[i];
+                tableIds[slot] = oldIds[i];
+            }
+        }
+    }
+
+    private static int[] filled(int length) {
+        int[] ids = new int[length];
+        Arrays.fill(ids, -1);
+        return ids;
+    }
+
+    private static int[] ensureCapacity(int[] array, int length) {
+        return array.length >= length ? array : new int[Math.max(length, array.length * 2)];
+    }
+
+    private static int varIntSize(int value) {
+        return value < (1 << 7) ? 1 : value < (1 << 14) ? 2 : value < (1 << 21) ? 3 : value < (1 << 28) ? 4 : 5;
+    }
+
+    private static int writeVarInt(byte[] target, int position, int value) {
+        while (value >= 0x80) {
+            target[position++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        target[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Usuwa wiersze z list i przenumerowuje pozostałe. Różnice między kolejnymi
+     * wierszami mogą tylko zmaleć, więc listy przepisywane są w miejscu.
+     *
+     * @param removed rosnąco posortowane indeksy usuwanych wierszy bazowych
+     */
+    @Override
+    protected void renumber(int[] removed) {
+        if (postings == null) {
+            return;
+        }
+        int w = 0;
+        for (int id = 0; id < trigramCount; id++) {
+            int p = listStarts[id];
+            int end = listStarts[id + 1];
+            listStarts[id] = w;
+            int row = -1;
+            int last = -1;
+            while (p < end) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = postings[p++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                row += delta;
+                int removedBefore = removedBefore(removed, row);
+                if (removedBefore >= 0) {
+                    int newRow = row - removedBefore;
+                    w = writeVarInt(postings, w, newRow - last);
+                    last = newRow;
+                }
+            }
+        }
+        listStarts[trigramCount] = w;
+    }
+}
@@ -0,0 +1,152 @@
+package csvwrangler;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Strumieniowe rozpoznawanie typów kolumn - wartości analizowane są jeden raz,
+ * w miarę jak parser dostarcza kolejne wiersze. Dla każdej kolumny pamiętana jest
+ * maska typów, do których pasowały wszystkie dotychczasowe wartości, oraz zbiór
+ * różnych wartości (do wykrycia kolumn nadających się do kodowania słownikowego).
+ * Sprawdzenia nie zgłaszają wyjątków.
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+public class TypeInferrer {
+    private int[] candidates;
+    private int[] nonEmpty;
+    private Set<String>[] distinct;
+
+    /**
+     * Tworzy analizator dla podanej liczby kolumn.
+     *
+     * @param columnCount liczba kolumn
+     */
+    public TypeInferrer(int columnCount) {
+        candidates = new int[columnCount];
+        nonEmpty = new int[columnCount];
+        distinct = newDistinctSets(columnCount);
+        Arrays.fill(candidates, ColumnType.ALL);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String>[] newDistinctSets(int columnCount) {
+        Set<String>[] sets = (Set<String>[]) new Set<?>[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            sets[i] = new HashSet<>();
+        }
+        return sets;
+    }
+
+    /**
+     * Zwraca liczbę analizowanych kolumn.
+     *
+     * @return liczba kolumn
+     */
+    public int getColumnCount() {
+        return candidates.length;
+    }
+
+    /**
+     * Uwzględnia wiersz. Pola nadmiarowe są pomijane, brakujące traktowane jak puste.
+     *
+     * @param row wartości wiersza
+     */
+    public void accept(String[] row) {
+        int n = Math.min(row.length, candidates.length);
+        for (int col = 0; col < n; col++) {
+            accept(col, row[col]);
+        }
+    }
+
+    /**
+     * Uwzględnia pojedynczą wartość kolumny.
+     *
+     * @param column indeks kolumny
+     * @param value wartość (null i pusty tekst nie zawężają typu)
+     */
+    public void accept(int column, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        nonEmpty[column]++;
+        if (candidates[column] != ColumnType.STRING.mask()) {
+            candidates[column] &= ColumnType.candidates(value);
+        }
+        Set<String> values = distinct[column];
+        if (values != null && values.add(value) && values.size() > DictionaryColumn.MAX_DICTIONARY_SIZE) {
+            distinct[column] = null;
+        }
+    }
+
+    /**
+     * Zwraca rozpoznany typ kolumny.
+     *
+     * @param column indeks kolumny
+     * @return najbardziej szczegółowy typ pasujący do wszystkich wartości (STRING dla pustej kolumny)
+     */
+    public ColumnType getType(int column) {
+        return nonEmpty[column] == 0 ? ColumnType.STRING : ColumnType.fromCandidates(candidates[column]);
+    }
+
+    /**
+     * Zwraca maskę typów, do których pasowały wszystkie wartości kolumny.
+     *
+     * @param column indeks kolumny
+     * @return maska typów ({@link ColumnType#mask()}); dla pustej kolumny tylko STRING
+     */
+    int getCandidates(int column) {
+        return nonEmpty[column] == 0 ? ColumnType.STRING.mask() : candidates[column];
+    }
+
+    /**
+     * Zwraca rozpoznane typy wszystkich kolumn.
+     *
+     * @return typy kolumn
+     */
+    public ColumnType[] getTypes() {
+        ColumnType[] types = new ColumnType[candidates.length];
+        for (int col = 0; col < types.length; col++) {
+            types[col] = getType(col);
+        }
+        return types;
+    }
+
+    /**
+     * Sprawdza czy kolumna ma na tyle mało różnych wartości, że opłaca się kodowanie słownikowe.
+     *
+     * @param column indeks kolumny
+     * @return true jeśli różnych wartości jest nie więcej niż połowa niepustych
+     */
+    public boolean isLowCardinality(int column) {
+        return distinct[column] != null && distinct[column].size() <= nonEmpty[column] / 2;
+    }
+
+    /**
+     * Tworzy pustą kolumnę w kodowaniu odpowiednim dla rozpoznanego typu.
+     *
+     * @param column indeks kolumny
+     * @return pusta kolumna
+     */
+    Column newColumn(int column) {
+        return getType(column).newColumn(isLowCardinality(column));
+    }
+
+    /**
+     * Tworzy niezależną kopię stanu analizatora (np. do przekazania między wątkami).
+     *
+     * @return kopia analizatora
+     */
+    public TypeInferrer copy() {
+        TypeInferrer copy = new TypeInferrer(0);
+        copy.candidates = candidates.clone();
+        copy.nonEmpty = nonEmpty.clone();
+        copy.distinct = newDistinctSets(distinct.length);
+        for (int col = 0; col < distinct.length; col++) {
+            copy.distinct[col] = distinct[col] != null ? new HashSet<>(distinct[col]) : null;
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,90 @@
+package csvwrangler;
+
+/**
+ * Kolumna, której wartości nie zostały wczytane z pliku (pominięta przy wczytywaniu
+ * albo zwolniona po ukryciu). Pamiętana jest jedynie liczba wierszy - wszystkie
+ * komórki są puste, a zapisywane wartości są pomijane, dzięki czemu niewczytana
+ * kolumna nie zajmuje pamięci niezależnie od liczby wierszy. Wartości wczytuje
+ * się na żądanie z pliku źródłowego ({@link ColumnSource}).
+ *
+ * @author Mateusz Jakoczyk
+ * @version 1.0
+ */
+final class UnloadedColumn extends StringColumn {
+
+    /**
+     * Tworzy pustą kolumnę niewczytaną.
+     */
+    UnloadedColumn() {
+    }
+
+    /**
+     * Tworzy kolumnę niewczytaną o podanej liczbie wierszy.
+     *
+     * @param size liczba wierszy
+     */
+    UnloadedColumn(int size) {
+        this.size = size;
+    }
+
+    @Override
+    boolean isNull(int row) {
+        return true;
+    }
+
+    @Override
+    Object get(int row) {
+        return null;
+    }
+
+    @Override
+    String getString(int row) {
+        return null;
+    }
+
+    @Override
+    void set(int row, Object value) {
+        // wartości kolumny pochodzą z pliku
+    }
+
+    @Override
+    protected void store(int row, Object value) {
+        // wartości kolumny pochodzą z pliku
+    }
+
+    @Override
+    void add(Object value) {
+        size++;
+    }
+
+    @Override
+    void setSize(int newSize) {
+        size = newSize;
+    }
+
+    @Override
+    void removeRows(int[] sortedRows) {
+        int removed = 0;
+        for (int i = 0; i < sortedRows.length; i++) {
+            if (i == 0 || sortedRows[i] != sortedRows[i - 1]) {
+                removed++;
+            }
+        }
+        size -= removed;
+    }
+
+    @Override
+    Column copy() {
+        return new UnloadedColumn(size);
+    }
+
+    @Override
+    protected Column newEmpty() {
+        return new UnloadedColumn();
+    }
+
+    @Override
+    protected void moveValue(int from, int to) {
+        // kolumna nie przechowuje wartości
+    }
+}